@@ -0,0 +1,91 @@
+package com.masking.benchmark;
+
+import com.masking.model.table.ColumnarLookupTable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+
+/**
+ * Source and lookup data for the benchmarks, generated from a fixed seed so that every run, on
+ * every commit, measures the same rows. Source rows draw their {@code key} uniformly from the
+ * {@code cardinality} keys of the lookup table, so every key has a match.
+ */
+public final class BenchmarkData {
+
+  /** Name the lookup table is registered under in the benchmark functions. */
+  public static final String TABLE = "bench";
+
+  public static final List<String> SOURCE_HEADERS =
+      List.of("id", "key", "name", "email", "amount");
+
+  public static final List<String> LOOKUP_HEADERS = List.of("key", "value", "email");
+
+  private static final long SEED = 7;
+
+  private BenchmarkData() {}
+
+  /** Distinct key {@code i}, zero-padded to {@code width} characters. */
+  public static String key(int i, int width) {
+    String digits = Integer.toString(i);
+    StringBuilder key = new StringBuilder(Math.max(width, digits.length() + 1)).append('k');
+    for (int pad = digits.length() + 1; pad < width; pad++) {
+      key.append('0');
+    }
+    return key.append(digits).toString();
+  }
+
+  /** A source CSV of {@code rows} records, header first. */
+  public static byte[] source(int rows, int cardinality, int width) {
+    Random random = new Random(SEED);
+    StringBuilder text = new StringBuilder(rows * (3 * width + 32));
+    try (CSVPrinter printer = new CSVPrinter(text, CSVFormat.DEFAULT)) {
+      printer.printRecord(SOURCE_HEADERS);
+      for (int row = 0; row < rows; row++) {
+        printer.printRecord(
+            row,
+            key(random.nextInt(cardinality), width),
+            letters(random, width),
+            letters(random, width) + "@example.com",
+            random.nextInt(100_000) / 100.0);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return text.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  /** A heap lookup table holding each of the {@code cardinality} keys once. */
+  public static ColumnarLookupTable lookupTable(int cardinality, int width) {
+    Random random = new Random(SEED + 1);
+    ColumnarLookupTable.Builder builder = new ColumnarLookupTable.Builder(TABLE, LOOKUP_HEADERS);
+    for (int i = 0; i < cardinality; i++) {
+      builder.addRow(
+          new String[] {
+            key(i, width), letters(random, width), letters(random, width) + "@example.org"
+          });
+    }
+    return builder.build();
+  }
+
+  /** Keys drawn uniformly from the {@code cardinality} keys, as the source rows draw them. */
+  public static String[] keys(int count, int cardinality, int width) {
+    Random random = new Random(SEED + 2);
+    String[] keys = new String[count];
+    for (int i = 0; i < count; i++) {
+      keys[i] = key(random.nextInt(cardinality), width);
+    }
+    return keys;
+  }
+
+  private static String letters(Random random, int length) {
+    char[] letters = new char[length];
+    for (int i = 0; i < length; i++) {
+      letters[i] = (char) ('a' + random.nextInt(26));
+    }
+    return new String(letters);
+  }
+}
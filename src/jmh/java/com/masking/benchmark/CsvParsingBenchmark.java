@@ -0,0 +1,147 @@
+package com.masking.benchmark;
+
+import com.masking.service.common.CsvRecordWriter;
+import com.masking.service.common.CsvScanner;
+import com.masking.service.common.CsvTokenizer;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reads and rewrites one chunk of source records the way a masker does, through commons-csv as the
+ * engines used to and through {@link CsvTokenizer} and {@link CsvRecordWriter} with either scanner.
+ * {@link #writeValues} writes the chunk's fields as decoded values, the way masked values are
+ * written. The chunk is generated from a fixed seed, so every run measures the same bytes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class CsvParsingBenchmark {
+
+  /** Size of the generated chunk; the engines' default chunk is 1 MiB. */
+  @Param("1048576")
+  int chunkBytes;
+
+  /** Average field length; wide fields are where a vector scan pays off. */
+  @Param({"8", "64"})
+  int fieldWidth;
+
+  /** Percentage of fields that are quoted because they hold a comma or a quote. */
+  @Param({"0", "10"})
+  int quotedPercent;
+
+  private byte[] chunk;
+  private CsvTokenizer scalar;
+  private CsvTokenizer vector;
+  private String[][] values;
+
+  @Setup
+  public void generate() throws IOException {
+    Random random = new Random(7);
+    StringBuilder text = new StringBuilder();
+    try (CSVPrinter printer = new CSVPrinter(text, CSVFormat.DEFAULT)) {
+      while (text.length() < chunkBytes) {
+        for (int f = 0; f < 8; f++) {
+          StringBuilder field = new StringBuilder();
+          int length = 1 + random.nextInt(2 * fieldWidth);
+          for (int i = 0; i < length; i++) {
+            field.append((char) ('a' + random.nextInt(26)));
+          }
+          if (random.nextInt(100) < quotedPercent) {
+            field.setCharAt(random.nextInt(length), random.nextBoolean() ? ',' : '"');
+          }
+          printer.print(field);
+        }
+        printer.println();
+      }
+    }
+    chunk = text.toString().getBytes(StandardCharsets.UTF_8);
+    scalar = new CsvTokenizer(CsvScanner.scalar());
+    vector = new CsvTokenizer(CsvScanner.vector());
+
+    List<String[]> records = new ArrayList<>();
+    scalar.reset(chunk);
+    while (scalar.next()) {
+      String[] record = new String[scalar.size()];
+      for (int i = 0; i < record.length; i++) {
+        record[i] = scalar.field(i);
+      }
+      records.add(record);
+    }
+    values = records.toArray(String[][]::new);
+  }
+
+  @Benchmark
+  public int commonsCsv() throws IOException {
+    StringBuilder output = new StringBuilder(chunk.length + chunk.length / 2);
+    try (CSVParser records =
+            CSVFormat.DEFAULT.parse(
+                new InputStreamReader(new ByteArrayInputStream(chunk), StandardCharsets.UTF_8));
+        CSVPrinter printer = new CSVPrinter(output, CSVFormat.DEFAULT)) {
+      for (CSVRecord record : records) {
+        for (String field : record) {
+          printer.print(field);
+        }
+        printer.println();
+      }
+    }
+    return output.toString().getBytes(StandardCharsets.UTF_8).length;
+  }
+
+  @Benchmark
+  public int tokenizerScalar() {
+    return rewrite(scalar);
+  }
+
+  @Benchmark
+  public int tokenizerVector() {
+    return rewrite(vector);
+  }
+
+  @Benchmark
+  public int writeValues() {
+    CsvRecordWriter output = new CsvRecordWriter("\r\n", chunk.length + chunk.length / 2);
+    for (String[] record : values) {
+      for (String value : record) {
+        output.field(value);
+      }
+      output.endRecord();
+    }
+    return output.size();
+  }
+
+  private int rewrite(CsvTokenizer tokenizer) {
+    CsvRecordWriter output = new CsvRecordWriter("\r\n", chunk.length + chunk.length / 2);
+    tokenizer.reset(chunk);
+    while (tokenizer.next()) {
+      for (int i = 0; i < tokenizer.size(); i++) {
+        output.field(tokenizer, i);
+      }
+      output.endRecord();
+    }
+    return output.size();
+  }
+}
@@ -0,0 +1,139 @@
+package com.masking.benchmark;
+
+import com.masking.MaskingFunctionImplementationApplication;
+import com.masking.model.CompiledFunction;
+import com.masking.model.hash_lookup.HashLookupPlan;
+import com.masking.model.lookup.LookUpPlan;
+import com.masking.model.pipeline.PipelinePlan;
+import com.masking.model.random_lookup.RandomLookupPlan;
+import com.masking.model.table.LookupTable;
+import com.masking.service.hash_lookup.HashLookupCsvGenerator;
+import com.masking.service.lookup.CsvOutputGenerator;
+import com.masking.service.pipeline.MaskingPipelineService;
+import com.masking.service.random_lookup.CsvProcessorService;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Masks a whole generated source with each engine, and with all three in one pipeline, as the
+ * endpoints do once the request is parsed. The engines come from the application context, so they
+ * run with the configured chunk size, thread count and scanner. The lookup indexes are built on
+ * the first invocation and then reused from the table, as for a registered lookup table.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class EngineBenchmark {
+
+  // The pipeline runs them in this order: LOOKUP consumes the key, which HASH_LOOKUP keeps
+  private static final String HASH_LOOKUP =
+      "HASH_LOOKUP(key, DEST=(key, email), "
+          + BenchmarkData.TABLE
+          + "(key, values=(key, email)))";
+  private static final String RAND_LOOKUP =
+      "RAND_LOOKUP(" + BenchmarkData.TABLE + ", DEST=(name), VALUES=(value), 1)";
+  private static final String LOOKUP =
+      "LOOKUP(key, " + BenchmarkData.TABLE + "(key, VALUES=(value)))";
+
+  @Param("100000")
+  int rows;
+
+  /** Distinct keys, which is also the size of the lookup table. */
+  @Param({"100", "100000"})
+  int cardinality;
+
+  /** Width of the key and of the text columns. */
+  @Param({"8", "64"})
+  int fieldWidth;
+
+  private ConfigurableApplicationContext context;
+  private CsvOutputGenerator csvOutputGenerator;
+  private HashLookupCsvGenerator hashLookupCsvGenerator;
+  private CsvProcessorService csvProcessorService;
+  private MaskingPipelineService maskingPipelineService;
+
+  private byte[] source;
+  private LookupTable table;
+  private PipelinePlan pipeline;
+
+  @Setup
+  public void setUp() {
+    context =
+        new SpringApplicationBuilder(MaskingFunctionImplementationApplication.class)
+            .web(WebApplicationType.NONE)
+            .logStartupInfo(false)
+            .run("--logging.level.root=WARN");
+    csvOutputGenerator = context.getBean(CsvOutputGenerator.class);
+    hashLookupCsvGenerator = context.getBean(HashLookupCsvGenerator.class);
+    csvProcessorService = context.getBean(CsvProcessorService.class);
+    maskingPipelineService = context.getBean(MaskingPipelineService.class);
+
+    source = BenchmarkData.source(rows, cardinality, fieldWidth);
+    table = BenchmarkData.lookupTable(cardinality, fieldWidth);
+    CompiledFunction<PipelinePlan> compiled =
+        maskingPipelineService.compile(List.of(HASH_LOOKUP, RAND_LOOKUP, LOOKUP));
+    if (!compiled.isValid()) {
+      throw new IllegalStateException(String.valueOf(compiled.getValidation().getMessages()));
+    }
+    pipeline = compiled.getPlan();
+  }
+
+  @TearDown
+  public void tearDown() {
+    context.close();
+  }
+
+  @Benchmark
+  public boolean lookup() throws IOException {
+    return csvOutputGenerator.writeOutputCsv(
+        input(), table, (LookUpPlan) step(2), OutputStream.nullOutputStream());
+  }
+
+  @Benchmark
+  public boolean hashLookup() throws IOException {
+    return hashLookupCsvGenerator.writeOutputCsv(
+        input(), table, (HashLookupPlan) step(0), OutputStream.nullOutputStream());
+  }
+
+  @Benchmark
+  public void randLookup() throws IOException {
+    csvProcessorService.writeOutputCsv(
+        input(), table, (RandomLookupPlan) step(1), OutputStream.nullOutputStream());
+  }
+
+  @Benchmark
+  public void pipeline() throws IOException {
+    maskingPipelineService.writeOutputCsv(
+        input(), pipeline, Map.of(BenchmarkData.TABLE, table), OutputStream.nullOutputStream());
+  }
+
+  private ByteArrayInputStream input() {
+    return new ByteArrayInputStream(source);
+  }
+
+  private Object step(int index) {
+    return pipeline.getSteps().get(index).getPlan();
+  }
+}
@@ -0,0 +1,66 @@
+package com.masking.benchmark;
+
+import com.masking.service.hash_lookup.HashDigester;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * HASH_LOOKUP key hashing with each kind of algorithm, per key: the digest alone, and the index
+ * key a source row is probed with, which is what a job pays per row.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HashingBenchmark {
+
+  private static final int KEYS = 4096;
+
+  @Param({"SHA-256", "MD5", "SIPHASH24", "MURMUR3_128", "XXHASH64"})
+  String algorithm;
+
+  @Param({"8", "64"})
+  int fieldWidth;
+
+  private HashDigester digester;
+  private String[] keys;
+
+  @Setup
+  public void setUp() {
+    digester = new HashDigester(algorithm, "benchmark-seed", true);
+    keys = BenchmarkData.keys(KEYS, KEYS, fieldWidth);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(KEYS)
+  public int digest() {
+    int h = 0;
+    for (String key : keys) {
+      h += digester.digest(key)[0];
+    }
+    return h;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(KEYS)
+  public int indexKey() {
+    int h = 0;
+    for (String key : keys) {
+      h += digester.indexKey(key).hashCode();
+    }
+    return h;
+  }
+}
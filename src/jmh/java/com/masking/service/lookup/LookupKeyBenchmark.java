@@ -0,0 +1,91 @@
+package com.masking.service.lookup;
+
+import com.masking.benchmark.BenchmarkData;
+import com.masking.model.table.LookupTable;
+import com.masking.model.table.RowHashIndex;
+import com.masking.service.common.MaskedRecord;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The LOOKUP engine's per-key work: hashing a lookup row's key, indexing the table and probing the
+ * index with source keys. Lives in the engine's package to reach {@link CompositeKeys}. Times are
+ * per key, except for {@link #buildIndex}, which indexes the whole table.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LookupKeyBenchmark {
+
+  private static final int KEYS = 65536;
+  private static final int[] KEY_COLUMNS = {0};
+
+  /** Rows of the lookup table; past the CPU caches, probes become memory bound. */
+  @Param({"1000", "1000000"})
+  int cardinality;
+
+  @Param({"8", "64"})
+  int fieldWidth;
+
+  private LookupTable table;
+  private RowHashIndex index;
+  private MaskedRecord[] records;
+  private CompositeKeys.Probe probe;
+
+  @Setup
+  public void setUp() {
+    table = BenchmarkData.lookupTable(cardinality, fieldWidth);
+    index = buildIndex();
+    records = new MaskedRecord[KEYS];
+    String[] keys = BenchmarkData.keys(KEYS, cardinality, fieldWidth);
+    for (int i = 0; i < KEYS; i++) {
+      records[i] = new MaskedRecord().add(keys[i]);
+    }
+    probe = new CompositeKeys.Probe(table, KEY_COLUMNS, KEY_COLUMNS);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(KEYS)
+  public int keyHash() {
+    int rows = table.getRowCount();
+    int h = 0;
+    for (int i = 0; i < KEYS; i++) {
+      h += CompositeKeys.hash(table, i % rows, KEY_COLUMNS);
+    }
+    return h;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(KEYS)
+  public int probe() {
+    int matched = 0;
+    for (MaskedRecord record : records) {
+      matched += index.find(probe.reset(record), probe);
+    }
+    return matched;
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public RowHashIndex buildIndex() {
+    return RowHashIndex.onHeap(
+        table.getRowCount(),
+        row -> CompositeKeys.hash(table, row, KEY_COLUMNS),
+        (row, otherRow) -> CompositeKeys.sameKey(table, row, otherRow, KEY_COLUMNS),
+        false);
+  }
+}
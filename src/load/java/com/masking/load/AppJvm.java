@@ -0,0 +1,120 @@
+package com.masking.load;
+
+import com.sun.tools.attach.VirtualMachine;
+import com.sun.tools.attach.VirtualMachineDescriptor;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.MBeanServerConnection;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+import javax.management.remote.JMXServiceURL;
+
+/**
+ * Heap and GC readings of the application's JVM, taken over JMX after attaching to the local
+ * process. Heap use is sampled every {@value #SAMPLE_MILLIS} ms between {@link #start} and {@link
+ * #stop}; GC counts and times are the difference between the two calls.
+ */
+final class AppJvm implements AutoCloseable {
+
+  private static final long SAMPLE_MILLIS = 50;
+
+  private final JMXConnector connector;
+  private final MemoryMXBean memory;
+  private final List<GarbageCollectorMXBean> collectors;
+  private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+  private final AtomicLong peakHeap = new AtomicLong();
+
+  private long startGcCount;
+  private long startGcMillis;
+
+  private AppJvm(String address) throws IOException {
+    connector = JMXConnectorFactory.connect(new JMXServiceURL(address));
+    MBeanServerConnection mbeans = connector.getMBeanServerConnection();
+    memory =
+        ManagementFactory.newPlatformMXBeanProxy(
+            mbeans, ManagementFactory.MEMORY_MXBEAN_NAME, MemoryMXBean.class);
+    collectors = ManagementFactory.getPlatformMXBeans(mbeans, GarbageCollectorMXBean.class);
+  }
+
+  /**
+   * Attaches to the JVM with process id {@code pid}, or, when it is null, to the one local JVM
+   * running the application jar or main class.
+   *
+   * @throws IllegalStateException if no single application JVM is found
+   */
+  static AppJvm attach(String pid) throws Exception {
+    if (pid == null) {
+      List<VirtualMachineDescriptor> apps =
+          VirtualMachine.list().stream()
+              .filter(
+                  vm ->
+                      vm.displayName().contains("Masking-Function")
+                          || vm.displayName().contains("MaskingFunctionImplementationApplication"))
+              .toList();
+      if (apps.size() != 1) {
+        throw new IllegalStateException(
+            apps.size() + " application JVMs found; pass --pid to pick one");
+      }
+      pid = apps.get(0).id();
+    }
+    VirtualMachine vm = VirtualMachine.attach(pid);
+    try {
+      return new AppJvm(vm.startLocalManagementAgent());
+    } finally {
+      vm.detach();
+    }
+  }
+
+  void start() {
+    startGcCount = gcCount();
+    startGcMillis = gcMillis();
+    peakHeap.set(0);
+    sampler.scheduleAtFixedRate(this::sample, 0, SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  /** Stops sampling and returns what the JVM did since {@link #start}. */
+  Readings stop() {
+    sampler.shutdownNow();
+    sample();
+    return new Readings(
+        peakHeap.get(),
+        memory.getHeapMemoryUsage().getMax(),
+        gcCount() - startGcCount,
+        gcMillis() - startGcMillis);
+  }
+
+  @Override
+  public void close() throws IOException {
+    sampler.shutdownNow();
+    connector.close();
+  }
+
+  private void sample() {
+    try {
+      peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+    } catch (RuntimeException e) {
+      // The application went away; keep the peak seen so far
+    }
+  }
+
+  private long gcCount() {
+    return collectors.stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+  }
+
+  private long gcMillis() {
+    return collectors.stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+  }
+
+  /**
+   * @param peakHeapBytes highest sampled heap use
+   * @param maxHeapBytes the heap limit, or -1 if none is set
+   */
+  record Readings(long peakHeapBytes, long maxHeapBytes, long gcCount, long gcMillis) {}
+}
@@ -0,0 +1,296 @@
+package com.masking.load;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Drives {@code /api/lookup}, {@code /api/random_lookup} and {@code /api/hash_lookup} concurrently
+ * against a running application with the files {@link OptimDataGenerator} writes, then reports
+ * throughput and latency percentiles per endpoint, and the application's peak heap and GC time.
+ * Start the application first, on the same machine so the harness can attach to its JVM:
+ *
+ * <pre>
+ * java -jar target/Masking-Function-0.0.1-SNAPSHOT.jar --masking.data-root=/data
+ * mvn -Pload test-compile exec:exec \
+ *     -Dload.args="--data=/data/load --data-path=load --concurrency=3 --requests=30 --stream"
+ * </pre>
+ *
+ * <p>Options, with their defaults:
+ *
+ * <ul>
+ *   <li>{@code --url=http://localhost:8080}
+ *   <li>{@code --data=load-data}: directory holding {@code optim_customers.csv} and {@code
+ *       optim_sales.csv}
+ *   <li>{@code --data-path}: that directory relative to the application's {@code
+ *       masking.data-root}; when given, files are passed as data paths instead of being uploaded
+ *   <li>{@code --endpoints=lookup,random_lookup,hash_lookup}: requests are spread over these in
+ *       turn
+ *   <li>{@code --concurrency=3}: requests in flight at once
+ *   <li>{@code --requests=9}: measured requests
+ *   <li>{@code --warmup=0}: requests per endpoint sent one at a time before measuring
+ *   <li>{@code --stream}, {@code --gzip}: ask for the masked CSV in the response body
+ *   <li>{@code --pid}: the application's process id, found by name if not given
+ *   <li>{@code --lookup-function}, {@code --random-lookup-function}, {@code
+ *       --hash-lookup-function}: override the functions, which by default mask the generated
+ *       customers through the generated sales table
+ * </ul>
+ */
+public final class LoadHarness {
+
+  private static final Map<String, String> FUNCTION_FIELDS =
+      Map.of(
+          "lookup", "lookupFunction",
+          "random_lookup", "randomLookupFunction",
+          "hash_lookup", "hashLookupFunction");
+
+  private static final Map<String, String> DEFAULT_FUNCTIONS =
+      Map.of(
+          "lookup",
+          "LOOKUP(salesman_id, optim_sales(salesman_id, VALUES=(first_name,last_name)))",
+          "random_lookup",
+          "RAND_LOOKUP(optim_sales, DEST=(email_address), VALUES=(email_address), 1)",
+          "hash_lookup",
+          "HASH_LOOKUP(salesman_id, DEST=(phone_number),"
+              + " optim_sales(salesman_id, values=(phone_number)))");
+
+  private final HttpClient client =
+      HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+  private final String url;
+  private final Path source;
+  private final Path lookup;
+  private final String dataPath;
+  private final boolean stream;
+  private final boolean gzip;
+  private final Map<String, String> functions = new LinkedHashMap<>();
+
+  private LoadHarness(Options options) {
+    url = options.get("url", "http://localhost:8080");
+    Path data = Path.of(options.get("data", "load-data"));
+    source = data.resolve("optim_customers.csv");
+    lookup = data.resolve("optim_sales.csv");
+    dataPath = options.get("data-path", null);
+    stream = options.getBoolean("stream");
+    gzip = options.getBoolean("gzip");
+    for (String endpoint : options.getList("endpoints", "lookup,random_lookup,hash_lookup")) {
+      if (!FUNCTION_FIELDS.containsKey(endpoint)) {
+        throw new IllegalArgumentException("Unknown endpoint: " + endpoint);
+      }
+      String option = endpoint.replace('_', '-') + "-function";
+      functions.put(endpoint, options.get(option, DEFAULT_FUNCTIONS.get(endpoint)));
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    Options options = new Options(args);
+    LoadHarness harness = new LoadHarness(options);
+    int concurrency = (int) options.getLong("concurrency", 3);
+    int requests = (int) options.getLong("requests", 9);
+    int warmup = (int) options.getLong("warmup", 0);
+
+    long rows = countRecords(harness.source) - 1;
+    long sourceBytes = Files.size(harness.source);
+    List<String> endpoints = new ArrayList<>(harness.functions.keySet());
+    System.out.printf(
+        "Source: %,d rows, %.1f MB; %d requests over %s, %d at a time%n",
+        rows, sourceBytes / 1e6, requests, endpoints, concurrency);
+
+    for (int i = 0; i < warmup; i++) {
+      for (String endpoint : endpoints) {
+        harness.send(endpoint);
+      }
+    }
+
+    AppJvm jvm = null;
+    try {
+      jvm = AppJvm.attach(options.get("pid", null));
+      jvm.start();
+    } catch (Exception e) {
+      System.out.println("No heap or GC figures: " + e.getMessage());
+    }
+
+    long started = System.nanoTime();
+    List<Future<Result>> futures = new ArrayList<>();
+    try (ExecutorService workers = Executors.newFixedThreadPool(concurrency)) {
+      for (int i = 0; i < requests; i++) {
+        String endpoint = endpoints.get(i % endpoints.size());
+        futures.add(workers.submit(() -> harness.send(endpoint)));
+      }
+    }
+    double seconds = (System.nanoTime() - started) / 1e9;
+
+    List<Result> results = new ArrayList<>();
+    for (Future<Result> future : futures) {
+      results.add(future.get());
+    }
+    System.out.printf("%nWall time: %.2f s%n", seconds);
+    System.out.printf(
+        "%-14s %5s %6s %12s %9s %9s %9s %9s %9s%n",
+        "endpoint", "ok", "failed", "rows/s", "MB/s", "p50 ms", "p90 ms", "p99 ms", "max ms");
+    for (String endpoint : endpoints) {
+      report(
+          endpoint,
+          results.stream().filter(r -> r.endpoint.equals(endpoint)).toList(),
+          rows,
+          sourceBytes,
+          seconds);
+    }
+    report("all", results, rows, sourceBytes, seconds);
+    results.stream()
+        .filter(r -> !r.ok())
+        .limit(3)
+        .forEach(r -> System.out.println("Failed " + r.endpoint + ": " + r.status + " " + r.body));
+
+    if (jvm != null) {
+      AppJvm.Readings readings = jvm.stop();
+      jvm.close();
+      System.out.printf(
+          "%nApplication heap: peak %.0f MB of %s; GC: %d collections, %.2f s (%.1f%% of wall)%n",
+          readings.peakHeapBytes() / 1e6,
+          readings.maxHeapBytes() < 0
+              ? "unlimited"
+              : String.format("%.0f MB", readings.maxHeapBytes() / 1e6),
+          readings.gcCount(),
+          readings.gcMillis() / 1e3,
+          readings.gcMillis() / 10.0 / seconds);
+    }
+  }
+
+  /** Sends one request and reads the whole response. */
+  private Result send(String endpoint) throws IOException, InterruptedException {
+    String boundary = "----load" + UUID.randomUUID();
+    List<HttpRequest.BodyPublisher> parts = new ArrayList<>();
+    if (dataPath != null) {
+      parts.add(field(boundary, "sourceDataPath", dataPath + "/" + source.getFileName()));
+      parts.add(field(boundary, "lookupDataPath", dataPath + "/" + lookup.getFileName()));
+    } else {
+      parts.add(file(boundary, "sourceCsvPath", source));
+      parts.add(file(boundary, "lookupCsvPath", lookup));
+    }
+    parts.add(field(boundary, FUNCTION_FIELDS.get(endpoint), functions.get(endpoint)));
+    parts.add(field(boundary, "stream", Boolean.toString(stream)));
+    parts.add(field(boundary, "gzip", Boolean.toString(gzip)));
+    parts.add(HttpRequest.BodyPublishers.ofString("--" + boundary + "--\r\n"));
+
+    HttpRequest request =
+        HttpRequest.newBuilder(URI.create(url + "/api/" + endpoint))
+            .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+            .POST(
+                HttpRequest.BodyPublishers.concat(parts.toArray(HttpRequest.BodyPublisher[]::new)))
+            .build();
+
+    long started = System.nanoTime();
+    HttpResponse<InputStream> response =
+        client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+    byte[] head = new byte[512];
+    int headLength = 0;
+    try (InputStream body = response.body()) {
+      byte[] buffer = new byte[1 << 16];
+      for (int read; (read = body.read(buffer)) >= 0; ) {
+        int copy = Math.min(read, head.length - headLength);
+        System.arraycopy(buffer, 0, head, headLength, copy);
+        headLength += copy;
+      }
+    }
+    long nanos = System.nanoTime() - started;
+    return new Result(
+        endpoint,
+        response.statusCode(),
+        nanos,
+        new String(head, 0, headLength, StandardCharsets.UTF_8));
+  }
+
+  private static HttpRequest.BodyPublisher field(String boundary, String name, String value) {
+    return HttpRequest.BodyPublishers.ofString(
+        "--"
+            + boundary
+            + "\r\nContent-Disposition: form-data; name=\""
+            + name
+            + "\"\r\n\r\n"
+            + value
+            + "\r\n",
+        StandardCharsets.UTF_8);
+  }
+
+  private static HttpRequest.BodyPublisher file(String boundary, String name, Path path)
+      throws IOException {
+    return HttpRequest.BodyPublishers.concat(
+        HttpRequest.BodyPublishers.ofString(
+            "--"
+                + boundary
+                + "\r\nContent-Disposition: form-data; name=\""
+                + name
+                + "\"; filename=\""
+                + path.getFileName()
+                + "\"\r\nContent-Type: text/csv\r\n\r\n"),
+        HttpRequest.BodyPublishers.ofFile(path),
+        HttpRequest.BodyPublishers.ofString("\r\n"));
+  }
+
+  private static void report(
+      String endpoint, List<Result> results, long rows, long sourceBytes, double seconds) {
+    List<Long> latencies = results.stream().filter(Result::ok).map(Result::nanos).sorted().toList();
+    long ok = latencies.size();
+    System.out.printf(
+        "%-14s %5d %6d %,12.0f %9.1f %9s %9s %9s %9s%n",
+        endpoint,
+        ok,
+        results.size() - ok,
+        ok * rows / seconds,
+        ok * sourceBytes / 1e6 / seconds,
+        percentile(latencies, 50),
+        percentile(latencies, 90),
+        percentile(latencies, 99),
+        percentile(latencies, 100));
+  }
+
+  /** Nearest-rank percentile in milliseconds. */
+  private static String percentile(List<Long> sortedNanos, int percent) {
+    if (sortedNanos.isEmpty()) {
+      return "-";
+    }
+    int rank = (int) Math.ceil(percent / 100.0 * sortedNanos.size());
+    return String.format("%.0f", sortedNanos.get(Math.max(0, rank - 1)) / 1e6);
+  }
+
+  /** Line feeds in {@code path}; the generated files have no line breaks inside fields. */
+  private static long countRecords(Path path) throws IOException {
+    long lines = 0;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+      while (channel.read(buffer) >= 0) {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+          if (buffer.get() == '\n') {
+            lines++;
+          }
+        }
+        buffer.clear();
+      }
+    }
+    return lines;
+  }
+
+  private record Result(String endpoint, int status, long nanos, String body) {
+    boolean ok() {
+      return status / 100 == 2;
+    }
+  }
+}
@@ -0,0 +1,255 @@
+package com.masking.load;
+
+import com.masking.service.common.CsvRecordWriter;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Writes a source table shaped like {@code optim_customers.csv} and a lookup table shaped like
+ * {@code optim_sales.csv}, at any size. The customers' {@code salesman_id} refers to the sales
+ * table's {@code salesman_id}, drawn from a Zipf distribution, and a share of the references miss
+ * on purpose. The same options and seed always give the same files.
+ *
+ * <pre>
+ * mvn -Pload test-compile exec:exec -Dload.main=OptimDataGenerator \
+ *     -Dload.args="--out=/data/load --rows=10000000 --keys=100000 --skew=1.1 --miss-rate=0.02"
+ * </pre>
+ *
+ * <p>Options, with their defaults:
+ *
+ * <ul>
+ *   <li>{@code --out=load-data}: directory the two files are written to
+ *   <li>{@code --rows=1000000}: customers, the source rows
+ *   <li>{@code --keys=10000}: salesmen, the lookup rows and distinct keys
+ *   <li>{@code --skew=0}: Zipf exponent of the key draw, 0 for uniform keys
+ *   <li>{@code --miss-rate=0}: share of customers whose salesman is not in the lookup table
+ *   <li>{@code --width=12}: length of the free-text fields
+ *   <li>{@code --seed=7}
+ * </ul>
+ */
+public final class OptimDataGenerator {
+
+  static final List<String> CUSTOMER_HEADERS =
+      List.of(
+          ("cust_id,custname,address1,address2,locality,city,state,country_code,"
+                  + "postal_code,postal_code_plus4,email_address,phone_number,ytd_sales,"
+                  + "salesman_id,nationality,national_id,creditcard_number,creditcard_type,"
+                  + "creditcard_exp,creditcard_cvv,driver_license,creditcard_history")
+              .split(","));
+
+  static final List<String> SALES_HEADERS =
+      List.of(
+          ("sales_id,salesman_id,first_name,last_name,nationality,national_id,"
+                  + "phone_number,age,sex,territory,email_address,manager_id")
+              .split(","));
+
+  private static final String[] CITIES = {
+    "New York,NY,US", "Los Angeles,CA,US", "Chicago,IL,US", "Houston,TX,US", "Toronto,ON,CA",
+    "London,LDN,GB", "Madrid,MD,ES", "Tokyo,TK,JP", "Sydney,NSW,AU", "Berlin,BE,DE"
+  };
+  private static final String[] NATIONALITIES = {
+    "American", "Canadian", "British", "Spanish", "Japanese", "Australian", "German"
+  };
+  private static final String[] CARD_TYPES = {"Visa", "MasterCard", "Amex", "Discover"};
+  private static final String[] TERRITORIES = {
+    "North America", "Europe", "Asia Pacific", "Latin America"
+  };
+  private static final String[] STREETS = {"Main St", "Oak Ave", "Pine Rd", "Elm St", "Park Ave"};
+  private static final String[] LOCALITIES = {"Downtown", "Westside", "Uptown", "Harbor"};
+
+  // Rows written per output buffer
+  private static final int BATCH_ROWS = 4096;
+
+  private final SplittableRandom random;
+  private final int width;
+  private final int keyDigits;
+
+  private OptimDataGenerator(long seed, int width, long keys) {
+    this.random = new SplittableRandom(seed);
+    this.width = width;
+    this.keyDigits = Math.max(4, Long.toString(keys).length());
+  }
+
+  public static void main(String[] args) throws IOException {
+    Options options = new Options(args);
+    Path out = Path.of(options.get("out", "load-data"));
+    long rows = options.getLong("rows", 1_000_000);
+    int keys = (int) options.getLong("keys", 10_000);
+    double skew = options.getDouble("skew", 0);
+    double missRate = options.getDouble("miss-rate", 0);
+    int width = (int) options.getLong("width", 12);
+    long seed = options.getLong("seed", 7);
+    if (keys < 1 || rows < 0 || width < 1 || missRate < 0 || missRate > 1 || skew < 0) {
+      throw new IllegalArgumentException(
+          "Need keys >= 1, rows >= 0, width >= 1, skew >= 0 and a miss rate between 0 and 1");
+    }
+
+    Files.createDirectories(out);
+    long started = System.nanoTime();
+    new OptimDataGenerator(seed, width, keys).writeSales(out.resolve("optim_sales.csv"), keys);
+    // The source draws from its own stream, so the lookup table does not depend on the row count
+    new OptimDataGenerator(seed + 1, width, keys)
+        .writeCustomers(
+            out.resolve("optim_customers.csv"), rows, new KeySampler(keys, skew), missRate);
+    System.out.printf(
+        "Wrote %,d customers and %,d salesmen to %s in %.1f s%n",
+        rows, keys, out.toAbsolutePath(), (System.nanoTime() - started) / 1e9);
+  }
+
+  private void writeSales(Path path, int keys) throws IOException {
+    try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(path), 1 << 16)) {
+      new CsvRecordWriter("\r\n", 1024).record(SALES_HEADERS).writeTo(output);
+      for (int from = 0; from < keys; from += BATCH_ROWS) {
+        CsvRecordWriter batch = new CsvRecordWriter("\r\n", BATCH_ROWS * (4 * width + 96));
+        for (int i = from; i < Math.min(keys, from + BATCH_ROWS); i++) {
+          String first = capitalized(width / 2 + 1);
+          String last = capitalized(width / 2 + 1);
+          batch
+              .field(Integer.toString(i + 1))
+              .field(salesmanId("SM", i + 1))
+              .field(first)
+              .field(last)
+              .field(pick(NATIONALITIES))
+              .field(letters(1).toUpperCase() + digits(8))
+              .field("555-" + digits(3) + "-" + digits(4))
+              .field(Integer.toString(22 + random.nextInt(45)))
+              .field(random.nextBoolean() ? "M" : "F")
+              .field(pick(TERRITORIES))
+              .field(first.toLowerCase() + "." + last.toLowerCase() + "@optim.com")
+              .field(i == 0 ? "" : salesmanId("SM", 1 + random.nextInt(Math.min(i, 20))))
+              .endRecord();
+        }
+        batch.writeTo(output);
+      }
+    }
+  }
+
+  private void writeCustomers(Path path, long rows, KeySampler keys, double missRate)
+      throws IOException {
+    try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(path), 1 << 16)) {
+      new CsvRecordWriter("\r\n", 1024).record(CUSTOMER_HEADERS).writeTo(output);
+      for (long from = 0; from < rows; from += BATCH_ROWS) {
+        CsvRecordWriter batch = new CsvRecordWriter("\r\n", BATCH_ROWS * (6 * width + 320));
+        for (long row = from; row < Math.min(rows, from + BATCH_ROWS); row++) {
+          String[] city = pick(CITIES).split(",");
+          String name = capitalized(width);
+          batch
+              .field("C" + pad(row + 1, Math.max(7, Long.toString(rows).length())))
+              .field(name + " " + (random.nextBoolean() ? "Corporation" : "Industries"))
+              .field((1 + random.nextInt(9999)) + " " + pick(STREETS))
+              .field(random.nextInt(3) == 0 ? "Suite " + (100 + random.nextInt(900)) : "")
+              .field(pick(LOCALITIES))
+              .field(city[0])
+              .field(city[1])
+              .field(city[2])
+              .field(digits(5))
+              .field(digits(4))
+              .field(name.toLowerCase() + "@" + letters(6) + ".com")
+              .field(digits(3) + "-555-" + digits(4))
+              .field(random.nextInt(10_000_000) / 100 + "." + digits(2))
+              .field(
+                  random.nextDouble() < missRate
+                      ? salesmanId("SX", 1 + random.nextInt(keys.size()))
+                      : salesmanId("SM", keys.next(random)))
+              .field(pick(NATIONALITIES))
+              .field(letters(2).toUpperCase() + digits(7))
+              .field(digits(16))
+              .field(pick(CARD_TYPES))
+              .field(digits(4))
+              .field(digits(3))
+              .field(city[1] + digits(8))
+              .field(
+                  "<transactions><tx date=\"2025-0"
+                      + (1 + random.nextInt(9))
+                      + "-1"
+                      + random.nextInt(10)
+                      + "\" amount=\""
+                      + random.nextInt(5000)
+                      + "."
+                      + digits(2)
+                      + "\"/></transactions>")
+              .endRecord();
+        }
+        batch.writeTo(output);
+      }
+    }
+  }
+
+  private String salesmanId(String prefix, long number) {
+    return prefix + pad(number, keyDigits);
+  }
+
+  private static String pad(long number, int digits) {
+    String text = Long.toString(number);
+    return text.length() >= digits ? text : "0".repeat(digits - text.length()) + text;
+  }
+
+  private String pick(String[] values) {
+    return values[random.nextInt(values.length)];
+  }
+
+  private String digits(int length) {
+    char[] chars = new char[length];
+    for (int i = 0; i < length; i++) {
+      chars[i] = (char) ('0' + random.nextInt(10));
+    }
+    return new String(chars);
+  }
+
+  private String letters(int length) {
+    char[] chars = new char[length];
+    for (int i = 0; i < length; i++) {
+      chars[i] = (char) ('a' + random.nextInt(26));
+    }
+    return new String(chars);
+  }
+
+  private String capitalized(int length) {
+    String letters = letters(length);
+    return Character.toUpperCase(letters.charAt(0)) + letters.substring(1);
+  }
+
+  /**
+   * Draws key numbers 1..size, uniformly or with Zipf exponent {@code skew}, in which case key 1 is
+   * the most frequent. The cumulative distribution is computed once and searched per draw.
+   */
+  static final class KeySampler {
+    private final int size;
+    private final double[] cumulative;
+
+    KeySampler(int size, double skew) {
+      this.size = size;
+      if (skew == 0) {
+        this.cumulative = null;
+        return;
+      }
+      this.cumulative = new double[size];
+      double total = 0;
+      for (int k = 1; k <= size; k++) {
+        total += 1 / Math.pow(k, skew);
+        cumulative[k - 1] = total;
+      }
+      for (int k = 0; k < size; k++) {
+        cumulative[k] /= total;
+      }
+    }
+
+    int size() {
+      return size;
+    }
+
+    int next(SplittableRandom random) {
+      if (cumulative == null) {
+        return 1 + random.nextInt(size);
+      }
+      int index = Arrays.binarySearch(cumulative, random.nextDouble());
+      return 1 + Math.min(size - 1, index >= 0 ? index : -index - 1);
+    }
+  }
+}
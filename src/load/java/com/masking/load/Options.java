@@ -0,0 +1,50 @@
+package com.masking.load;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** {@code --name=value} (or {@code --name value}) command line options. */
+final class Options {
+
+  private final Map<String, String> values = new HashMap<>();
+
+  Options(String[] args) {
+    for (int i = 0; i < args.length; i++) {
+      String arg = args[i];
+      if (!arg.startsWith("--")) {
+        throw new IllegalArgumentException("Expected --name=value, got: " + arg);
+      }
+      int equals = arg.indexOf('=');
+      if (equals > 0) {
+        values.put(arg.substring(2, equals), arg.substring(equals + 1));
+      } else if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+        values.put(arg.substring(2), args[++i]);
+      } else {
+        values.put(arg.substring(2), "true");
+      }
+    }
+  }
+
+  String get(String name, String defaultValue) {
+    return values.getOrDefault(name, defaultValue);
+  }
+
+  long getLong(String name, long defaultValue) {
+    String value = values.get(name);
+    return value != null ? Long.parseLong(value.replace("_", "")) : defaultValue;
+  }
+
+  double getDouble(String name, double defaultValue) {
+    String value = values.get(name);
+    return value != null ? Double.parseDouble(value) : defaultValue;
+  }
+
+  boolean getBoolean(String name) {
+    return Boolean.parseBoolean(values.get(name));
+  }
+
+  List<String> getList(String name, String defaultValue) {
+    return List.of(get(name, defaultValue).split(","));
+  }
+}
@@ -0,0 +1,53 @@
+package com.masking.component;
+
+import com.masking.service.common.JobAdmission;
+
+/**
+ * A request's hold on the admission slot of the CSV it streams. The masking endpoints run
+ * asynchronously and hand their slot to a response body that is only written once the request is
+ * dispatched again; if that never happens, because the client left, the request failed or the
+ * body could not be written, {@link ResponseCompletionSupport} releases the slot when the request
+ * ends. Endpoints take it as a handler argument, created for each request.
+ */
+public final class ResponseCompletion {
+
+  private JobAdmission.Permit permit;
+  private boolean completed;
+
+  /**
+   * Holds {@code permit} until the request ends, releasing it right away if it already has.
+   *
+   * @return false if the request is over and nobody will read the response
+   */
+  public synchronized boolean hold(JobAdmission.Permit permit) {
+    if (completed) {
+      permit.close();
+      return false;
+    }
+    this.permit = permit;
+    return true;
+  }
+
+  /**
+   * Takes the held permit over for a body about to be written, which releases it itself, so the
+   * request ending meanwhile no longer releases the lookup tables the body reads.
+   *
+   * @return false if the request is already over and the permit released
+   */
+  public synchronized boolean claim() {
+    if (completed) {
+      return false;
+    }
+    permit = null;
+    return true;
+  }
+
+  /** Called once the request is over for any reason; a body that already ran released nothing. */
+  synchronized void complete() {
+    completed = true;
+    if (permit != null) {
+      permit.close();
+      permit = null;
+    }
+  }
+}
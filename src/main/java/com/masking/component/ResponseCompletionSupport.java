@@ -0,0 +1,64 @@
+package com.masking.component;
+
+import java.util.List;
+import org.springframework.core.MethodParameter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.DeferredResultProcessingInterceptor;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Gives each request that declares a {@link ResponseCompletion} argument a fresh one, created on
+ * the request thread before the asynchronous handler runs, and completes it when the request's
+ * asynchronous processing ends, whether the response was written, failed or timed out. The
+ * masking endpoints return a {@code CompletableFuture}, which Spring MVC processes as a {@link
+ * DeferredResult}.
+ */
+@Component
+public class ResponseCompletionSupport
+    implements WebMvcConfigurer,
+        HandlerMethodArgumentResolver,
+        DeferredResultProcessingInterceptor {
+
+  private static final String ATTRIBUTE = ResponseCompletion.class.getName();
+
+  @Override
+  public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+    resolvers.add(this);
+  }
+
+  @Override
+  public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+    configurer.registerDeferredResultInterceptors(this);
+  }
+
+  @Override
+  public boolean supportsParameter(MethodParameter parameter) {
+    return parameter.getParameterType() == ResponseCompletion.class;
+  }
+
+  @Override
+  public ResponseCompletion resolveArgument(
+      MethodParameter parameter,
+      ModelAndViewContainer mavContainer,
+      NativeWebRequest webRequest,
+      WebDataBinderFactory binderFactory) {
+    ResponseCompletion completion = new ResponseCompletion();
+    webRequest.setAttribute(ATTRIBUTE, completion, RequestAttributes.SCOPE_REQUEST);
+    return completion;
+  }
+
+  @Override
+  public <T> void afterCompletion(NativeWebRequest request, DeferredResult<T> deferredResult) {
+    Object completion = request.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+    if (completion instanceof ResponseCompletion responseCompletion) {
+      responseCompletion.complete();
+    }
+  }
+}
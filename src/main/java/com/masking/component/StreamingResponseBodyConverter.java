@@ -0,0 +1,47 @@
+package com.masking.component;
+
+import java.io.IOException;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Writes a {@link StreamingResponseBody} returned inside a {@code ResponseEntity<?>}. Spring MVC
+ * only streams such bodies when the declared return type names them, which the masking endpoints
+ * cannot do since they answer either JSON or a streamed CSV; the body is written on the thread
+ * dispatching the response.
+ */
+@Component
+public class StreamingResponseBodyConverter
+    extends AbstractHttpMessageConverter<StreamingResponseBody> {
+
+  public StreamingResponseBodyConverter() {
+    super(MediaType.ALL);
+  }
+
+  @Override
+  protected boolean supports(Class<?> clazz) {
+    return StreamingResponseBody.class.isAssignableFrom(clazz);
+  }
+
+  @Override
+  protected boolean canRead(MediaType mediaType) {
+    return false;
+  }
+
+  @Override
+  protected StreamingResponseBody readInternal(
+      Class<? extends StreamingResponseBody> clazz, HttpInputMessage inputMessage) {
+    throw new HttpMessageNotReadableException("Response bodies cannot be read", inputMessage);
+  }
+
+  @Override
+  protected void writeInternal(StreamingResponseBody body, HttpOutputMessage outputMessage)
+      throws IOException {
+    body.writeTo(outputMessage.getBody());
+  }
+}
@@ -4,10 +4,8 @@ import java.util.List;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-import org.springframework.stereotype.Component;
 
 @Data
-@Component
 @AllArgsConstructor
 @NoArgsConstructor
 public class ValidationResponse {
@@ -1,29 +1,65 @@
 package com.masking.controller;
 
+import com.masking.component.ResponseCompletion;
 import com.masking.component.ValidationResponse;
-import com.masking.model.hash_lookup.HashLookupStore;
-import com.masking.model.lookup.LookUpStore;
-import com.masking.model.random_lookup.RandomLookupStore;
+import com.masking.model.CompiledFunction;
+import com.masking.model.MaskingFunctionType;
+import com.masking.model.hash_lookup.HashLookupPlan;
+import com.masking.model.job.MaskingJobStatus;
+import com.masking.model.lookup.LookUpPlan;
+import com.masking.model.pipeline.MultiTablePlan;
+import com.masking.model.pipeline.PipelinePlan;
+import com.masking.model.random_lookup.RandomLookupPlan;
+import com.masking.model.table.LookupTable;
+import com.masking.service.common.CompressedStreams;
+import com.masking.service.common.DataPathException;
+import com.masking.service.common.DataRoot;
+import com.masking.service.common.FunctionPlanCache;
+import com.masking.service.common.JobAdmission;
+import com.masking.service.common.JobRejectedException;
+import com.masking.service.common.MaskingJobService;
+import com.masking.service.common.MaskingMetrics;
 import com.masking.service.hash_lookup.HashLookupCsvGenerator;
 import com.masking.service.hash_lookup.HashLookupFunctionValidator;
 import com.masking.service.lookup.CsvColumnValidatorService;
 import com.masking.service.lookup.CsvOutputGenerator;
 import com.masking.service.lookup.LookUpFunctionValidator;
+import com.masking.service.pipeline.MaskingPipelineService;
+import com.masking.service.pipeline.MultiTableMaskingService;
 import com.masking.service.random_lookup.CsvProcessorService;
 import com.masking.service.random_lookup.RandomLookupFunctionValidator;
+import com.masking.service.table.LookupTableRegistry;
+import io.swagger.v3.oas.annotations.Parameter;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import java.util.zip.GZIPOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.scheduling.annotation.Async;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/api")
@@ -31,6 +67,18 @@ public class LookUpController {
 
   private static final Logger logger = LoggerFactory.getLogger(LookUpController.class);
 
+  /** Writes the masked form of a source CSV; one of the engines' {@code writeOutputCsv}. */
+  @FunctionalInterface
+  private interface MaskedCsvWriter {
+    void write(InputStream source, OutputStream output) throws IOException;
+  }
+
+  /** Resolves and spools a request's files for an asynchronous job, returning the job's work. */
+  @FunctionalInterface
+  private interface JobInputs {
+    MaskingJobService.Task spool(MaskingJobService.Submission submission) throws IOException;
+  }
+
   @Autowired private LookUpFunctionValidator lookUpFunctionValidator;
   @Autowired private RandomLookupFunctionValidator randomLookupFunctionValidator;
   @Autowired private HashLookupFunctionValidator hashLookupFunctionValidator;
@@ -39,41 +87,105 @@ public class LookUpController {
   @Autowired private CsvOutputGenerator csvOutputGenerator;
   @Autowired private CsvProcessorService csvProcessorService;
   @Autowired private HashLookupCsvGenerator hashLookupCsvGenerator;
+  @Autowired private MaskingPipelineService maskingPipelineService;
+  @Autowired private MultiTableMaskingService multiTableMaskingService;
+  @Autowired private MaskingMetrics maskingMetrics;
 
-  @Autowired private LookUpStore lookUpStore;
-  @Autowired private RandomLookupStore randomLookupStore;
-  @Autowired private HashLookupStore hashLookupStore;
+  @Autowired private FunctionPlanCache functionPlanCache;
+  @Autowired private LookupTableRegistry lookupTableRegistry;
+  @Autowired private JobAdmission jobAdmission;
+  @Autowired private MaskingJobService maskingJobService;
+  @Autowired private DataRoot dataRoot;
+  @Autowired private CompressedStreams compressedStreams;
 
   @Async
   @PostMapping(value = "/lookup", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-  public CompletableFuture<ResponseEntity<ValidationResponse>> validateLookupFunction(
-      @RequestParam("sourceCsvPath") MultipartFile sourceCsv,
-      @RequestParam("lookupCsvPath") MultipartFile lookupCsv,
-      @RequestParam("lookupFunction") String function) {
+  public CompletableFuture<ResponseEntity<?>> validateLookupFunction(
+      @RequestParam(value = "sourceCsvPath", required = false) MultipartFile sourceCsv,
+      @RequestParam(value = "lookupCsvPath", required = false) MultipartFile lookupCsv,
+      @RequestParam(value = "sourceDataPath", required = false) String sourceDataPath,
+      @RequestParam(value = "lookupDataPath", required = false) String lookupDataPath,
+      @RequestParam("lookupFunction") String function,
+      @RequestParam(value = "stream", defaultValue = "false") boolean stream,
+      @RequestParam(value = "gzip", defaultValue = "false") boolean gzip,
+      @RequestParam(value = "async", defaultValue = "false") boolean async,
+      @Parameter(hidden = true) ResponseCompletion completion) {
 
     logger.info("Received /lookup request with function: {}", function);
-    try {
-      ValidationResponse functionValidation =
-          lookUpFunctionValidator.validateAndExtract(function, lookUpStore);
-      if (isInvalid(functionValidation)) {
-        logger.warn("Function validation failed: {}", functionValidation.getMessages());
+    if (async) {
+      return submitJob(
+          MaskingFunctionType.LOOKUP.name(),
+          stream,
+          submission -> {
+            MultipartFile source =
+                submission.source(
+                    dataRoot.require(sourceCsv, sourceDataPath, "sourceCsvPath", "sourceDataPath"));
+            MultipartFile lookup =
+                submission.input(
+                    dataRoot.select(lookupCsv, lookupDataPath, "lookupCsvPath", "lookupDataPath"));
+            return () ->
+                result(
+                    validateLookupFunction(
+                        source, lookup, null, null, function, false, false, false, null));
+          });
+    }
+    try (JobAdmission.Permit permit = jobAdmission.admit()) {
+      MaskingMetrics.Clock clock = maskingMetrics.clock(MaskingFunctionType.LOOKUP.name());
+      MultipartFile sourceFile =
+          dataRoot.require(sourceCsv, sourceDataPath, "sourceCsvPath", "sourceDataPath");
+      MultipartFile lookupFile =
+          dataRoot.select(lookupCsv, lookupDataPath, "lookupCsvPath", "lookupDataPath");
+
+      CompiledFunction<LookUpPlan> compiled =
+          functionPlanCache.compile(
+              MaskingFunctionType.LOOKUP, function, lookUpFunctionValidator::compile);
+      clock.lap(MaskingMetrics.Phase.VALIDATION);
+      if (!compiled.isValid()) {
+        logger.warn("Function validation failed: {}", compiled.getValidation().getMessages());
         return CompletableFuture.completedFuture(
-            ResponseEntity.badRequest().body(functionValidation));
+            ResponseEntity.badRequest().body(compiled.getValidation()));
+      }
+      LookUpPlan lookUpPlan = compiled.getPlan();
+
+      LookupTable lookupTable =
+          lookupTableRegistry.resolve(
+              lookUpPlan.getLookupTableName(), lookupFile, lookUpPlan.isCacheEnabled(), permit);
+      clock.lap(MaskingMetrics.Phase.LOOKUP_LOAD);
+      if (lookupTable == null) {
+        return CompletableFuture.completedFuture(
+            tableNotRegistered(lookUpPlan.getLookupTableName()));
       }
 
       ValidationResponse columnValidation =
-          csvColumnValidatorService.validateColumns(sourceCsv, lookupCsv, lookUpStore);
+          csvColumnValidatorService.validateColumns(sourceFile, lookupTable, lookUpPlan);
+      clock.lap(MaskingMetrics.Phase.VALIDATION);
       if (isInvalid(columnValidation)) {
         logger.warn("Column validation failed: {}", columnValidation.getMessages());
         return CompletableFuture.completedFuture(
             ResponseEntity.badRequest().body(columnValidation));
       }
 
+      if (stream) {
+        logger.info("Streaming output CSV for /lookup...");
+        return CompletableFuture.completedFuture(
+            streamCsv(
+                sourceFile,
+                gzip,
+                permit,
+                completion,
+                (source, output) ->
+                    csvOutputGenerator.writeOutputCsv(source, lookupTable, lookUpPlan, output)));
+      }
+
       logger.info("Generating output CSV for /lookup...");
       return CompletableFuture.completedFuture(
           buildCsvResponse(
-              csvOutputGenerator.generateOutputCsv(sourceCsv, lookupCsv, lookUpStore)));
+              csvOutputGenerator.generateOutputCsv(sourceFile, lookupTable, lookUpPlan)));
 
+    } catch (JobRejectedException e) {
+      return CompletableFuture.completedFuture(rejected(e));
+    } catch (DataPathException e) {
+      return CompletableFuture.completedFuture(badDataPath(e));
     } catch (Exception e) {
       logger.error("Error processing /lookup request", e);
       return CompletableFuture.completedFuture(handleException(e));
@@ -82,35 +194,103 @@ public class LookUpController {
 
   @Async
   @PostMapping(value = "/random_lookup", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-  public CompletableFuture<ResponseEntity<ValidationResponse>> validateRandomLookupFunction(
-      @RequestParam("sourceCsvPath") MultipartFile sourceCsv,
-      @RequestParam("lookupCsvPath") MultipartFile lookupCsv,
-      @RequestParam("randomLookupFunction") String function) {
+  public CompletableFuture<ResponseEntity<?>> validateRandomLookupFunction(
+      @RequestParam(value = "sourceCsvPath", required = false) MultipartFile sourceCsv,
+      @RequestParam(value = "lookupCsvPath", required = false) MultipartFile lookupCsv,
+      @RequestParam(value = "sourceDataPath", required = false) String sourceDataPath,
+      @RequestParam(value = "lookupDataPath", required = false) String lookupDataPath,
+      @RequestParam("randomLookupFunction") String function,
+      @RequestParam(value = "stream", defaultValue = "false") boolean stream,
+      @RequestParam(value = "gzip", defaultValue = "false") boolean gzip,
+      @RequestParam(value = "async", defaultValue = "false") boolean async,
+      @Parameter(hidden = true) ResponseCompletion completion) {
 
     logger.info("Received /random_lookup request with function: {}", function);
-    try {
-      ValidationResponse functionValidation =
-          randomLookupFunctionValidator.validateAndExtract(function, randomLookupStore);
-      if (isInvalid(functionValidation)) {
+    if (async) {
+      return submitJob(
+          MaskingFunctionType.RAND_LOOKUP.name(),
+          stream,
+          submission -> {
+            MultipartFile source =
+                submission.source(
+                    dataRoot.require(sourceCsv, sourceDataPath, "sourceCsvPath", "sourceDataPath"));
+            MultipartFile lookup =
+                submission.input(
+                    dataRoot.select(lookupCsv, lookupDataPath, "lookupCsvPath", "lookupDataPath"));
+            return () ->
+                result(
+                    validateRandomLookupFunction(
+                        source, lookup, null, null, function, false, false, false, null));
+          });
+    }
+    try (JobAdmission.Permit permit = jobAdmission.admit()) {
+      MaskingMetrics.Clock clock = maskingMetrics.clock(MaskingFunctionType.RAND_LOOKUP.name());
+      MultipartFile sourceFile =
+          dataRoot.require(sourceCsv, sourceDataPath, "sourceCsvPath", "sourceDataPath");
+      MultipartFile lookupFile =
+          dataRoot.select(lookupCsv, lookupDataPath, "lookupCsvPath", "lookupDataPath");
+
+      CompiledFunction<RandomLookupPlan> compiled =
+          functionPlanCache.compile(
+              MaskingFunctionType.RAND_LOOKUP, function, randomLookupFunctionValidator::compile);
+      clock.lap(MaskingMetrics.Phase.VALIDATION);
+      if (!compiled.isValid()) {
         logger.warn(
-            "Random lookup function validation failed: {}", functionValidation.getMessages());
+            "Random lookup function validation failed: {}",
+            compiled.getValidation().getMessages());
+        return CompletableFuture.completedFuture(
+            ResponseEntity.badRequest().body(compiled.getValidation()));
+      }
+      RandomLookupPlan randomLookupPlan = compiled.getPlan();
+
+      LookupTable lookupTable =
+          lookupTableRegistry.resolve(
+              randomLookupPlan.getLookupTableName(),
+              lookupFile,
+              randomLookupPlan.isCacheEnabled(),
+              permit);
+      clock.lap(MaskingMetrics.Phase.LOOKUP_LOAD);
+      if (lookupTable == null) {
         return CompletableFuture.completedFuture(
-            ResponseEntity.badRequest().body(functionValidation));
+            tableNotRegistered(randomLookupPlan.getLookupTableName()));
       }
 
-      ValidationResponse processValidation =
-          csvProcessorService.validateAndGenerateCsv(sourceCsv, lookupCsv, randomLookupStore);
-      if (isInvalid(processValidation)) {
-        logger.warn("Random lookup CSV validation failed: {}", processValidation.getMessages());
+      if (stream) {
+        ValidationResponse columnValidation =
+            csvProcessorService.validateColumns(sourceFile, lookupTable, randomLookupPlan);
+        clock.lap(MaskingMetrics.Phase.VALIDATION);
+        if (isInvalid(columnValidation)) {
+          logger.warn("Random lookup CSV validation failed: {}", columnValidation.getMessages());
+          return CompletableFuture.completedFuture(
+              ResponseEntity.badRequest().body(columnValidation));
+        }
+        logger.info("Streaming output CSV for /random_lookup...");
         return CompletableFuture.completedFuture(
-            ResponseEntity.badRequest().body(processValidation));
+            streamCsv(
+                sourceFile,
+                gzip,
+                permit,
+                completion,
+                (source, output) ->
+                    csvProcessorService.writeOutputCsv(
+                        source, lookupTable, randomLookupPlan, output)));
       }
 
+      // Validation and generation share one pass over the source
       logger.info("Generating output CSV for /random_lookup...");
-      return CompletableFuture.completedFuture(
-          buildCsvResponse(
-              csvProcessorService.generateOutputCsv(sourceCsv, lookupCsv, randomLookupStore)));
+      ValidationResponse processResponse =
+          csvProcessorService.validateAndGenerateCsv(sourceFile, lookupTable, randomLookupPlan);
+      if ("FAILED".equals(processResponse.getStatus())) {
+        logger.warn("Random lookup CSV validation failed: {}", processResponse.getMessages());
+        return CompletableFuture.completedFuture(
+            ResponseEntity.badRequest().body(processResponse));
+      }
+      return CompletableFuture.completedFuture(buildCsvResponse(processResponse));
 
+    } catch (JobRejectedException e) {
+      return CompletableFuture.completedFuture(rejected(e));
+    } catch (DataPathException e) {
+      return CompletableFuture.completedFuture(badDataPath(e));
     } catch (Exception e) {
       logger.error("Error processing /random_lookup request", e);
       return CompletableFuture.completedFuture(handleException(e));
@@ -119,30 +299,299 @@ public class LookUpController {
 
   @Async
   @PostMapping(value = "/hash_lookup", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-  public CompletableFuture<ResponseEntity<ValidationResponse>> validateHashLookupFunction(
-      @RequestParam("sourceCsvPath") MultipartFile sourceCsv,
-      @RequestParam("lookupCsvPath") MultipartFile lookupCsv,
-      @RequestParam("hashLookupFunction") String function) {
+  public CompletableFuture<ResponseEntity<?>> validateHashLookupFunction(
+      @RequestParam(value = "sourceCsvPath", required = false) MultipartFile sourceCsv,
+      @RequestParam(value = "lookupCsvPath", required = false) MultipartFile lookupCsv,
+      @RequestParam(value = "sourceDataPath", required = false) String sourceDataPath,
+      @RequestParam(value = "lookupDataPath", required = false) String lookupDataPath,
+      @RequestParam("hashLookupFunction") String function,
+      @RequestParam(value = "stream", defaultValue = "false") boolean stream,
+      @RequestParam(value = "gzip", defaultValue = "false") boolean gzip,
+      @RequestParam(value = "async", defaultValue = "false") boolean async,
+      @Parameter(hidden = true) ResponseCompletion completion) {
 
     logger.info("Received /hash_lookup request with function: {}", function);
-    ValidationResponse functionValidation =
-        hashLookupFunctionValidator.validateAndExtract(function);
-    if (!"SUCCESS".equalsIgnoreCase(functionValidation.getStatus())) {
-      logger.warn("Hash lookup function validation failed: {}", functionValidation.getMessages());
-      return CompletableFuture.completedFuture(
-          ResponseEntity.badRequest().body(functionValidation));
+    if (async) {
+      return submitJob(
+          MaskingFunctionType.HASH_LOOKUP.name(),
+          stream,
+          submission -> {
+            MultipartFile source =
+                submission.source(
+                    dataRoot.require(sourceCsv, sourceDataPath, "sourceCsvPath", "sourceDataPath"));
+            MultipartFile lookup =
+                submission.input(
+                    dataRoot.select(lookupCsv, lookupDataPath, "lookupCsvPath", "lookupDataPath"));
+            return () ->
+                result(
+                    validateHashLookupFunction(
+                        source, lookup, null, null, function, false, false, false, null));
+          });
     }
+    try (JobAdmission.Permit permit = jobAdmission.admit()) {
+      MaskingMetrics.Clock clock = maskingMetrics.clock(MaskingFunctionType.HASH_LOOKUP.name());
+      MultipartFile sourceFile =
+          dataRoot.require(sourceCsv, sourceDataPath, "sourceCsvPath", "sourceDataPath");
+      MultipartFile lookupFile =
+          dataRoot.select(lookupCsv, lookupDataPath, "lookupCsvPath", "lookupDataPath");
+
+      CompiledFunction<HashLookupPlan> compiled =
+          functionPlanCache.compile(
+              MaskingFunctionType.HASH_LOOKUP, function, hashLookupFunctionValidator::compile);
+      clock.lap(MaskingMetrics.Phase.VALIDATION);
+      if (!compiled.isValid()) {
+        logger.warn(
+            "Hash lookup function validation failed: {}", compiled.getValidation().getMessages());
+        return CompletableFuture.completedFuture(
+            ResponseEntity.badRequest().body(compiled.getValidation()));
+      }
+      HashLookupPlan hashLookupPlan = compiled.getPlan();
+
+      LookupTable lookupTable =
+          lookupTableRegistry.resolve(
+              hashLookupPlan.getLookupTableName(),
+              lookupFile,
+              Boolean.TRUE.equals(hashLookupPlan.getCacheEnabled()),
+              permit);
+      clock.lap(MaskingMetrics.Phase.LOOKUP_LOAD);
+      if (lookupTable == null) {
+        return CompletableFuture.completedFuture(
+            tableNotRegistered(hashLookupPlan.getLookupTableName()));
+      }
+
+      if (stream) {
+        logger.info("Streaming output CSV for /hash_lookup...");
+        return CompletableFuture.completedFuture(
+            streamCsv(
+                sourceFile,
+                gzip,
+                permit,
+                completion,
+                (source, output) ->
+                    hashLookupCsvGenerator.writeOutputCsv(
+                        source, lookupTable, hashLookupPlan, output)));
+      }
 
-    try {
       logger.info("Generating output CSV for /hash_lookup...");
       return CompletableFuture.completedFuture(
-          buildCsvResponse(hashLookupCsvGenerator.process(sourceCsv, lookupCsv, hashLookupStore)));
+          buildCsvResponse(
+              hashLookupCsvGenerator.process(sourceFile, lookupTable, hashLookupPlan)));
+    } catch (JobRejectedException e) {
+      return CompletableFuture.completedFuture(rejected(e));
+    } catch (DataPathException e) {
+      return CompletableFuture.completedFuture(badDataPath(e));
     } catch (Exception e) {
       logger.error("Error processing /hash_lookup request", e);
       return CompletableFuture.completedFuture(handleException(e));
     }
   }
 
+  /**
+   * Applies several functions, given in order as repeated {@code function} fields, in a single pass
+   * over the source: each function masks the columns the one before it produced. Lookup tables
+   * come from repeated {@code lookupCsvPath} uploads or {@code lookupDataPath} paths, each matched
+   * to the table named like the file without its extension, or else from the registry.
+   */
+  @Async
+  @PostMapping(value = "/pipeline", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+  public CompletableFuture<ResponseEntity<?>> runPipeline(
+      @RequestParam(value = "sourceCsvPath", required = false) MultipartFile sourceCsv,
+      @RequestParam(value = "lookupCsvPath", required = false) List<MultipartFile> lookupCsvs,
+      @RequestParam(value = "sourceDataPath", required = false) String sourceDataPath,
+      // Read from the raw form: a single function would otherwise be split at its commas
+      @RequestParam MultiValueMap<String, String> form,
+      @RequestParam(value = "stream", defaultValue = "false") boolean stream,
+      @RequestParam(value = "gzip", defaultValue = "false") boolean gzip,
+      @RequestParam(value = "async", defaultValue = "false") boolean async,
+      @Parameter(hidden = true) ResponseCompletion completion) {
+
+    List<String> functions = form.getOrDefault("function", List.of());
+    logger.info("Received /pipeline request with functions: {}", functions);
+    if (async) {
+      return submitJob(
+          MaskingMetrics.PIPELINE,
+          stream,
+          submission -> {
+            MultipartFile source =
+                submission.source(
+                    dataRoot.require(sourceCsv, sourceDataPath, "sourceCsvPath", "sourceDataPath"));
+            List<MultipartFile> lookups = new ArrayList<>();
+            for (MultipartFile lookup :
+                dataFiles(
+                    lookupCsvs, form.get("lookupDataPath"), "lookupCsvPath", "lookupDataPath")) {
+              lookups.add(submission.input(lookup));
+            }
+            MultiValueMap<String, String> jobForm = new LinkedMultiValueMap<>();
+            jobForm.put("function", functions);
+            return () ->
+                result(runPipeline(source, lookups, null, jobForm, false, false, false, null));
+          });
+    }
+    try (JobAdmission.Permit permit = jobAdmission.admit()) {
+      MaskingMetrics.Clock clock = maskingMetrics.clock(MaskingMetrics.PIPELINE);
+      MultipartFile sourceFile =
+          dataRoot.require(sourceCsv, sourceDataPath, "sourceCsvPath", "sourceDataPath");
+      List<MultipartFile> lookupFiles =
+          dataFiles(lookupCsvs, form.get("lookupDataPath"), "lookupCsvPath", "lookupDataPath");
+
+      CompiledFunction<PipelinePlan> compiled = maskingPipelineService.compile(functions);
+      clock.lap(MaskingMetrics.Phase.VALIDATION);
+      if (!compiled.isValid()) {
+        logger.warn("Pipeline validation failed: {}", compiled.getValidation().getMessages());
+        return CompletableFuture.completedFuture(
+            ResponseEntity.badRequest().body(compiled.getValidation()));
+      }
+      PipelinePlan pipelinePlan = compiled.getPlan();
+
+      Map<String, LookupTable> tables =
+          maskingPipelineService.resolveTables(pipelinePlan, lookupFiles, permit);
+      clock.lap(MaskingMetrics.Phase.LOOKUP_LOAD);
+      String missingTable = maskingPipelineService.missingTable(pipelinePlan, tables);
+      if (missingTable != null) {
+        return CompletableFuture.completedFuture(tableNotRegistered(missingTable));
+      }
+
+      if (stream) {
+        ValidationResponse columnValidation =
+            maskingPipelineService.validateColumns(sourceFile, pipelinePlan, tables);
+        clock.lap(MaskingMetrics.Phase.VALIDATION);
+        if (isInvalid(columnValidation)) {
+          logger.warn("Pipeline column validation failed: {}", columnValidation.getMessages());
+          return CompletableFuture.completedFuture(
+              ResponseEntity.badRequest().body(columnValidation));
+        }
+        logger.info("Streaming output CSV for /pipeline...");
+        return CompletableFuture.completedFuture(
+            streamCsv(
+                sourceFile,
+                gzip,
+                permit,
+                completion,
+                (source, output) ->
+                    maskingPipelineService.writeOutputCsv(source, pipelinePlan, tables, output)));
+      }
+
+      // Validation and generation share one pass over the source
+      logger.info("Generating output CSV for /pipeline...");
+      ValidationResponse processResponse =
+          maskingPipelineService.generateOutputCsv(sourceFile, pipelinePlan, tables);
+      if ("FAILED".equals(processResponse.getStatus())) {
+        logger.warn("Pipeline column validation failed: {}", processResponse.getMessages());
+        return CompletableFuture.completedFuture(
+            ResponseEntity.badRequest().body(processResponse));
+      }
+      return CompletableFuture.completedFuture(buildCsvResponse(processResponse));
+
+    } catch (JobRejectedException e) {
+      return CompletableFuture.completedFuture(rejected(e));
+    } catch (DataPathException e) {
+      return CompletableFuture.completedFuture(badDataPath(e));
+    } catch (Exception e) {
+      logger.error("Error processing /pipeline request", e);
+      return CompletableFuture.completedFuture(handleException(e));
+    }
+  }
+
+  /**
+   * Masks a set of related tables with key functions, given as repeated {@code function} fields of
+   * the form {@code [columns=]FUNCTION}, so keys stay consistent across the tables. Tables are
+   * repeated {@code sourceCsvPath} uploads or {@code sourceDataPath} paths, each named like its
+   * file without the extension; lookup tables are given as for {@code /pipeline}.
+   */
+  @Async
+  @PostMapping(value = "/multi_table", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+  public CompletableFuture<ResponseEntity<?>> maskTables(
+      @RequestParam(value = "sourceCsvPath", required = false) List<MultipartFile> sourceCsvs,
+      @RequestParam(value = "lookupCsvPath", required = false) List<MultipartFile> lookupCsvs,
+      // Read from the raw form: a single function would otherwise be split at its commas
+      @RequestParam MultiValueMap<String, String> form,
+      @RequestParam(value = "async", defaultValue = "false") boolean async) {
+
+    List<String> functions = form.getOrDefault("function", List.of());
+    logger.info("Received /multi_table request with functions: {}", functions);
+    if (async) {
+      return submitJob(
+          MaskingMetrics.MULTI_TABLE,
+          false,
+          submission -> {
+            List<MultipartFile> sources = new ArrayList<>();
+            for (MultipartFile source :
+                dataFiles(
+                    sourceCsvs, form.get("sourceDataPath"), "sourceCsvPath", "sourceDataPath")) {
+              sources.add(submission.source(source));
+            }
+            List<MultipartFile> lookups = new ArrayList<>();
+            for (MultipartFile lookup :
+                dataFiles(
+                    lookupCsvs, form.get("lookupDataPath"), "lookupCsvPath", "lookupDataPath")) {
+              lookups.add(submission.input(lookup));
+            }
+            MultiValueMap<String, String> jobForm = new LinkedMultiValueMap<>();
+            jobForm.put("function", functions);
+            return () -> result(maskTables(sources, lookups, jobForm, false));
+          });
+    }
+    try (JobAdmission.Permit permit = jobAdmission.admit()) {
+      MaskingMetrics.Clock clock = maskingMetrics.clock(MaskingMetrics.MULTI_TABLE);
+      List<MultipartFile> sourceFiles =
+          dataFiles(sourceCsvs, form.get("sourceDataPath"), "sourceCsvPath", "sourceDataPath");
+      List<MultipartFile> lookupFiles =
+          dataFiles(lookupCsvs, form.get("lookupDataPath"), "lookupCsvPath", "lookupDataPath");
+
+      CompiledFunction<MultiTablePlan> compiled = multiTableMaskingService.compile(functions);
+      clock.lap(MaskingMetrics.Phase.VALIDATION);
+      if (!compiled.isValid()) {
+        logger.warn("Multi-table validation failed: {}", compiled.getValidation().getMessages());
+        return CompletableFuture.completedFuture(
+            ResponseEntity.badRequest().body(compiled.getValidation()));
+      }
+      MultiTablePlan plan = compiled.getPlan();
+
+      Map<String, LookupTable> tables =
+          maskingPipelineService.resolveTables(plan.getFunctions(), lookupFiles, permit);
+      clock.lap(MaskingMetrics.Phase.LOOKUP_LOAD);
+      String missingTable = maskingPipelineService.missingTable(plan.getFunctions(), tables);
+      if (missingTable != null) {
+        return CompletableFuture.completedFuture(tableNotRegistered(missingTable));
+      }
+
+      logger.info("Masking {} tables for /multi_table...", sourceFiles.size());
+      ValidationResponse processResponse =
+          multiTableMaskingService.mask(sourceFiles, plan, tables);
+      if ("FAILED".equals(processResponse.getStatus())) {
+        logger.warn("Multi-table validation failed: {}", processResponse.getMessages());
+        return CompletableFuture.completedFuture(
+            ResponseEntity.badRequest().body(processResponse));
+      }
+      return CompletableFuture.completedFuture(ResponseEntity.ok(processResponse));
+
+    } catch (JobRejectedException e) {
+      return CompletableFuture.completedFuture(rejected(e));
+    } catch (DataPathException e) {
+      return CompletableFuture.completedFuture(badDataPath(e));
+    } catch (Exception e) {
+      logger.error("Error processing /multi_table request", e);
+      return CompletableFuture.completedFuture(handleException(e));
+    }
+  }
+
+  @GetMapping("/admission")
+  public ResponseEntity<Map<String, Long>> admissionStats() {
+    return ResponseEntity.ok(jobAdmission.stats());
+  }
+
+  @GetMapping("/plan_cache")
+  public ResponseEntity<Map<String, Long>> planCacheStats() {
+    return ResponseEntity.ok(functionPlanCache.stats());
+  }
+
+  @DeleteMapping("/plan_cache")
+  public ResponseEntity<Map<String, Long>> clearPlanCache() {
+    functionPlanCache.clear();
+    logger.info("Function plan cache cleared");
+    return ResponseEntity.ok(functionPlanCache.stats());
+  }
+
   private boolean isInvalid(ValidationResponse response) {
     return response.getMessages() != null && !response.getMessages().isEmpty();
   }
@@ -158,6 +607,129 @@ public class LookUpController {
     return ResponseEntity.status(500).body(response);
   }
 
+  /**
+   * Streams the masked CSV as the response body, gzip-encoded on request, instead of writing it
+   * under the output folder. The job keeps its admission slot until the last row is sent, or until
+   * {@code completion} sees the request end without the body being written.
+   */
+  private ResponseEntity<StreamingResponseBody> streamCsv(
+      MultipartFile sourceCsv,
+      boolean gzip,
+      JobAdmission.Permit permit,
+      ResponseCompletion completion,
+      MaskedCsvWriter csv) {
+    JobAdmission.Permit streamPermit = permit.handOff();
+    if (!completion.hold(streamPermit)) {
+      logger.info("Request ended before its masked CSV could be streamed");
+    }
+    StreamingResponseBody body =
+        outputStream -> {
+          if (!completion.claim()) {
+            // The request is over and the job's lookup tables may already be closed
+            return;
+          }
+          try (streamPermit;
+              InputStream source = compressedStreams.openSource(sourceCsv);
+              OutputStream output =
+                  new BufferedOutputStream(
+                      gzip ? new GZIPOutputStream(outputStream, true) : outputStream)) {
+            csv.write(source, output);
+          } catch (IOException | RuntimeException e) {
+            // The status line is already sent; all that is left is to cut the response short
+            logger.error("Error streaming masked CSV", e);
+            throw e;
+          }
+        };
+
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(new MediaType("text", "csv", StandardCharsets.UTF_8));
+    String fileName =
+        "masked_"
+            + compressedStreams.inflatedName(
+                Objects.requireNonNullElse(sourceCsv.getOriginalFilename(), "source.csv"));
+    headers.setContentDisposition(ContentDisposition.attachment().filename(fileName).build());
+    if (gzip) {
+      headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+    }
+    return ResponseEntity.ok().headers(headers).body(body);
+  }
+
+  /**
+   * Queues a request with {@code async=true} as a {@link MaskingJobService} job and answers 202
+   * with its status, to be followed under {@code /api/jobs/{id}}. {@code inputs} resolves and
+   * spools the request's files and returns the job, which repeats the request synchronously on
+   * the copies.
+   */
+  private CompletableFuture<ResponseEntity<?>> submitJob(
+      String function, boolean stream, JobInputs inputs) {
+    if (stream) {
+      return CompletableFuture.completedFuture(
+          ResponseEntity.badRequest()
+              .body(
+                  new ValidationResponse(
+                      "FAILED", List.of("An asynchronous job cannot stream its output."))));
+    }
+    try (MaskingJobService.Submission submission = maskingJobService.newSubmission()) {
+      MaskingJobStatus status = submission.submit(function, inputs.spool(submission));
+      return CompletableFuture.completedFuture(
+          ResponseEntity.accepted()
+              .location(URI.create("/api/jobs/" + status.getId()))
+              .body(status));
+    } catch (JobRejectedException e) {
+      return CompletableFuture.completedFuture(rejected(e));
+    } catch (DataPathException e) {
+      return CompletableFuture.completedFuture(badDataPath(e));
+    } catch (Exception e) {
+      logger.error("Error submitting {} job", function, e);
+      return CompletableFuture.completedFuture(handleException(e));
+    }
+  }
+
+  /** The body of a request run synchronously without streaming, always a validation response. */
+  private static ValidationResponse result(CompletableFuture<ResponseEntity<?>> response) {
+    return (ValidationResponse) response.join().getBody();
+  }
+
+  /** Uploaded files followed by the files {@code dataPaths} name under the data root. */
+  private List<MultipartFile> dataFiles(
+      List<MultipartFile> uploads, List<String> dataPaths, String uploadParam, String pathParam) {
+    List<MultipartFile> files = new ArrayList<>();
+    if (uploads != null) {
+      files.addAll(uploads);
+    }
+    if (dataPaths != null) {
+      for (String dataPath : dataPaths) {
+        files.add(dataRoot.select(null, dataPath, uploadParam, pathParam));
+      }
+    }
+    return files;
+  }
+
+  private ResponseEntity<ValidationResponse> tableNotRegistered(String tableName) {
+    logger.warn("No lookup table uploaded and none registered as '{}'", tableName);
+    return ResponseEntity.badRequest()
+        .body(
+            new ValidationResponse(
+                "FAILED",
+                List.of(
+                    "Lookup table '"
+                        + tableName
+                        + "' is not registered; upload lookupCsvPath or register it via"
+                        + " /api/lookup_tables")));
+  }
+
+  private ResponseEntity<ValidationResponse> badDataPath(DataPathException e) {
+    logger.warn("Bad data path: {}", e.getMessage());
+    return ResponseEntity.badRequest()
+        .body(new ValidationResponse("FAILED", List.of(e.getMessage())));
+  }
+
+  private ResponseEntity<ValidationResponse> rejected(JobRejectedException e) {
+    return ResponseEntity.status(e.getStatus())
+        .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+        .body(new ValidationResponse("REJECTED", List.of(e.getMessage())));
+  }
+
   private ResponseEntity<ValidationResponse> handleException(Exception e) {
     logger.error("Unhandled exception: {}", e.getMessage(), e);
     return ResponseEntity.status(500)
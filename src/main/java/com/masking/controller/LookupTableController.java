@@ -0,0 +1,91 @@
+package com.masking.controller;
+
+import com.masking.component.ValidationResponse;
+import com.masking.model.table.LookupTableInfo;
+import com.masking.model.table.LookupTableStorage;
+import com.masking.service.common.DataPathException;
+import com.masking.service.common.DataRoot;
+import com.masking.service.table.LookupTableRegistry;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+
+/** Registers, lists and evicts the named lookup tables kept by {@link LookupTableRegistry}. */
+@RestController
+@RequestMapping("/api/lookup_tables")
+public class LookupTableController {
+
+  private static final Logger logger = LoggerFactory.getLogger(LookupTableController.class);
+
+  @Autowired private LookupTableRegistry lookupTableRegistry;
+  @Autowired private DataRoot dataRoot;
+
+  @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+  public ResponseEntity<?> registerTable(
+      @RequestParam("tableName") String tableName,
+      @RequestParam(value = "lookupCsvPath", required = false) MultipartFile lookupCsv,
+      @RequestParam(value = "lookupDataPath", required = false) String lookupDataPath,
+      @RequestParam(value = "storage", required = false) LookupTableStorage storage) {
+    logger.info("Registering lookup table '{}'", tableName);
+    try {
+      MultipartFile lookupFile =
+          dataRoot.require(lookupCsv, lookupDataPath, "lookupCsvPath", "lookupDataPath");
+      return ResponseEntity.ok(lookupTableRegistry.register(tableName, lookupFile, storage));
+    } catch (DataPathException e) {
+      return ResponseEntity.badRequest()
+          .body(new ValidationResponse("FAILED", List.of(e.getMessage())));
+    } catch (IllegalStateException e) {
+      logger.warn("Lookup table '{}' rejected: {}", tableName, e.getMessage());
+      return ResponseEntity.status(HttpStatus.INSUFFICIENT_STORAGE)
+          .body(new ValidationResponse("FAILED", List.of(e.getMessage())));
+    } catch (Exception e) {
+      logger.error("Error registering lookup table '{}'", tableName, e);
+      return ResponseEntity.status(500)
+          .body(
+              new ValidationResponse(
+                  "ERROR", List.of("Internal Server Error: " + e.getMessage())));
+    }
+  }
+
+  @GetMapping
+  public ResponseEntity<List<LookupTableInfo>> listTables() {
+    return ResponseEntity.ok(lookupTableRegistry.list());
+  }
+
+  @GetMapping("/{tableName}")
+  public ResponseEntity<?> describeTable(@PathVariable String tableName) {
+    LookupTableInfo info = lookupTableRegistry.describe(tableName);
+    if (info == null) {
+      return notRegistered(tableName);
+    }
+    return ResponseEntity.ok(info);
+  }
+
+  @DeleteMapping("/{tableName}")
+  public ResponseEntity<ValidationResponse> evictTable(@PathVariable String tableName) {
+    if (!lookupTableRegistry.evict(tableName)) {
+      return notRegistered(tableName);
+    }
+    return ResponseEntity.ok(
+        new ValidationResponse("SUCCESS", List.of("Lookup table evicted: " + tableName)));
+  }
+
+  private ResponseEntity<ValidationResponse> notRegistered(String tableName) {
+    return ResponseEntity.status(HttpStatus.NOT_FOUND)
+        .body(
+            new ValidationResponse(
+                "FAILED", List.of("Lookup table is not registered: " + tableName)));
+  }
+}
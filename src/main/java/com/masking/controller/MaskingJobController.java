@@ -0,0 +1,60 @@
+package com.masking.controller;
+
+import com.masking.component.ValidationResponse;
+import com.masking.model.job.MaskingJobStatus;
+import com.masking.service.common.MaskingJobService;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Status and cancellation of the asynchronous jobs that the masking endpoints queue when called
+ * with {@code async=true}.
+ */
+@RestController
+@RequestMapping("/api/jobs")
+public class MaskingJobController {
+
+  @Autowired private MaskingJobService maskingJobService;
+
+  @GetMapping
+  public ResponseEntity<List<MaskingJobStatus>> listJobs() {
+    return ResponseEntity.ok(maskingJobService.list());
+  }
+
+  /** State, rows processed, share of the source read, ETA and output location of one job. */
+  @GetMapping("/{id}")
+  public ResponseEntity<?> describeJob(@PathVariable String id) {
+    MaskingJobStatus status = maskingJobService.status(id);
+    if (status == null) {
+      return notFound(id);
+    }
+    return ResponseEntity.ok(status);
+  }
+
+  /** Cancels a queued or running job; a job that already finished is reported with 409. */
+  @DeleteMapping("/{id}")
+  public ResponseEntity<?> cancelJob(@PathVariable String id) {
+    boolean finished = isFinished(maskingJobService.status(id));
+    MaskingJobStatus status = maskingJobService.cancel(id);
+    if (status == null) {
+      return notFound(id);
+    }
+    return ResponseEntity.status(finished ? HttpStatus.CONFLICT : HttpStatus.ACCEPTED).body(status);
+  }
+
+  private static boolean isFinished(MaskingJobStatus status) {
+    return status != null && status.getState().isFinished();
+  }
+
+  private ResponseEntity<ValidationResponse> notFound(String id) {
+    return ResponseEntity.status(HttpStatus.NOT_FOUND)
+        .body(new ValidationResponse("FAILED", List.of("No masking job " + id)));
+  }
+}
@@ -0,0 +1,26 @@
+package com.masking.model;
+
+import com.masking.component.ValidationResponse;
+import lombok.Value;
+
+/**
+ * Outcome of parsing and validating a function string: the immutable plan on success, otherwise
+ * the validation errors to send back to the caller.
+ */
+@Value
+public class CompiledFunction<P> {
+  ValidationResponse validation;
+  P plan;
+
+  public static <P> CompiledFunction<P> valid(ValidationResponse validation, P plan) {
+    return new CompiledFunction<>(validation, plan);
+  }
+
+  public static <P> CompiledFunction<P> invalid(ValidationResponse validation) {
+    return new CompiledFunction<>(validation, null);
+  }
+
+  public boolean isValid() {
+    return plan != null;
+  }
+}
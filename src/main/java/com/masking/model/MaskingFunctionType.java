@@ -0,0 +1,37 @@
+package com.masking.model;
+
+import java.util.Locale;
+
+/** The masking functions the service understands, keyed by their function-string prefix. */
+public enum MaskingFunctionType {
+  LOOKUP,
+  RAND_LOOKUP,
+  HASH_LOOKUP;
+
+  /** The type whose prefix {@code function} starts with, ignoring case, or null. */
+  public static MaskingFunctionType of(String function) {
+    if (function == null) {
+      return null;
+    }
+    String prefix = function.strip().toUpperCase(Locale.ROOT);
+    for (MaskingFunctionType type : values()) {
+      if (prefix.startsWith(type.name() + "(")) {
+        return type;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Canonical form of a function string of this type, used to recognise repeats of the same
+   * function. RAND_LOOKUP drops all whitespace, exactly as its validator does before parsing; the
+   * other parsers treat inner whitespace as significant in places (quoted seeds, column lists), so
+   * only the surrounding whitespace is removed.
+   */
+  public String normalize(String function) {
+    if (function == null) {
+      return null;
+    }
+    return this == RAND_LOOKUP ? function.replaceAll("\\s+", "") : function.strip();
+  }
+}
@@ -0,0 +1,19 @@
+package com.masking.model.hash_lookup;
+
+import java.util.List;
+import lombok.Value;
+
+/** Immutable, request-owned result of parsing a HASH_LOOKUP function. */
+@Value
+public class HashLookupPlan {
+  List<String> sourceSearchColumns;
+  List<String> destinationColumns;
+  String lookupTableName;
+  List<String> lookupSearchColumns;
+  List<String> lookupValueColumns;
+  String trimCharacters;
+  String algorithm;
+  Boolean cacheEnabled;
+  List<String> preserveOptions;
+  String seed;
+}
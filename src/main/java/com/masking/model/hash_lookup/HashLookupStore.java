@@ -5,9 +5,10 @@ import java.util.List;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-import org.springframework.stereotype.Component;
 
-@Component
+/**
+ * Mutable scratch state filled while a HASH_LOOKUP function is parsed; see {@link HashLookupPlan}.
+ */
 @NoArgsConstructor
 @AllArgsConstructor
 @Data
@@ -35,4 +36,18 @@ public class HashLookupStore {
     preserveOptions.clear();
     seed = null;
   }
+
+  public HashLookupPlan toPlan() {
+    return new HashLookupPlan(
+        List.copyOf(sourceSearchColumns),
+        List.copyOf(destinationColumns),
+        lookupTableName,
+        List.copyOf(lookupSearchColumns),
+        List.copyOf(lookupValueColumns),
+        trimCharacters,
+        algorithm,
+        cacheEnabled,
+        List.copyOf(preserveOptions),
+        seed);
+  }
 }
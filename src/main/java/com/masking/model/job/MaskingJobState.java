@@ -0,0 +1,22 @@
+package com.masking.model.job;
+
+/** Where an asynchronous masking job is in its life. */
+public enum MaskingJobState {
+  /** Accepted and waiting for a job worker. */
+  QUEUED,
+  /** On a job worker: waiting for an admission slot, loading lookup tables or masking. */
+  RUNNING,
+  /** Finished with its output written. */
+  SUCCEEDED,
+  /**
+   * Invalid function or columns, or an error; any partial output is deleted, except a checkpointed
+   * one that sending the same request again resumes.
+   */
+  FAILED,
+  /** Stopped on request; any output it had started is deleted. */
+  CANCELLED;
+
+  public boolean isFinished() {
+    return this != QUEUED && this != RUNNING;
+  }
+}
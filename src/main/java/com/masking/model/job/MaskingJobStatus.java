@@ -0,0 +1,28 @@
+package com.masking.model.job;
+
+import com.masking.component.ValidationResponse;
+import java.time.Instant;
+import java.util.List;
+import lombok.Value;
+
+/** A snapshot of an asynchronous masking job, as reported under {@code /api/jobs}. */
+@Value
+public class MaskingJobStatus {
+  String id;
+  String function;
+  MaskingJobState state;
+  Instant submittedAt;
+  Instant startedAt;
+  Instant finishedAt;
+  long rowsProcessed;
+  // Source bytes read as stored, so compressed bytes for a compressed source, of sourceBytes
+  long bytesRead;
+  long sourceBytes;
+  // Share of the source bytes read, 0 to 100; null until the source is first read
+  Double percentDone;
+  // Seconds left at the read rate so far; null while unknown or once finished
+  Long etaSeconds;
+  List<String> outputs;
+  // The response the job would have given synchronously; null until it finishes
+  ValidationResponse result;
+}
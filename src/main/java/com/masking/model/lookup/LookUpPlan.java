@@ -0,0 +1,20 @@
+package com.masking.model.lookup;
+
+import java.util.List;
+import lombok.Value;
+
+/**
+ * Immutable, request-owned result of parsing a LOOKUP function. Built from a {@link LookUpStore}
+ * once validation succeeds and handed to column validation and CSV generation, so concurrent
+ * requests never share parsing state.
+ */
+@Value
+public class LookUpPlan {
+  List<String> sourceSearchColumns;
+  List<String> destinationColumns;
+  String lookupTableName;
+  List<String> lookupSearchColumns;
+  List<String> lookupValueColumns;
+  boolean cacheEnabled;
+  List<String> preserveOptions;
+}
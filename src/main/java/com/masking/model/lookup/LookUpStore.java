@@ -1,13 +1,12 @@
 package com.masking.model.lookup;
 
 import lombok.Data;
-import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
 import java.util.List;
 
+/** Mutable scratch state filled while a LOOKUP function is parsed; see {@link LookUpPlan}. */
 @Data
-@Component
 public class LookUpStore {
     private List<String> sourceSearchColumns = new ArrayList<>();
     private List<String> destinationColumns= new ArrayList<>();
@@ -16,4 +15,15 @@ public class LookUpStore {
     private List<String> lookupValueColumns= new ArrayList<>();
     private boolean cacheEnabled;
     private List<String> preserveOptions= new ArrayList<>();
+
+    public LookUpPlan toPlan() {
+        return new LookUpPlan(
+                List.copyOf(sourceSearchColumns),
+                List.copyOf(destinationColumns),
+                lookupTableName,
+                List.copyOf(lookupSearchColumns),
+                List.copyOf(lookupValueColumns),
+                cacheEnabled,
+                List.copyOf(preserveOptions));
+    }
 }
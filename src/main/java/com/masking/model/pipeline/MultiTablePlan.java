@@ -0,0 +1,17 @@
+package com.masking.model.pipeline;
+
+import java.util.List;
+import lombok.Value;
+
+/**
+ * Immutable result of compiling the key functions of a multi-table job. Function {@code i} of
+ * {@link #functions} masks the columns named by {@code targets.get(i)}, each either {@code column}
+ * for that column in every table or {@code table.column} for one table.
+ */
+@Value
+public class MultiTablePlan {
+  PipelinePlan functions;
+  List<List<String>> targets;
+  // The single column each function reads (or, for RAND_LOOKUP, writes)
+  List<String> keyColumns;
+}
@@ -0,0 +1,29 @@
+package com.masking.model.pipeline;
+
+import com.masking.model.MaskingFunctionType;
+import java.util.List;
+import lombok.Value;
+
+/**
+ * Immutable result of compiling an ordered list of masking functions into one pass over a source:
+ * each step masks the records the step before it produced.
+ */
+@Value
+public class PipelinePlan {
+  List<Step> steps;
+
+  /** Names of the lookup tables the steps use, each once, in order of first use. */
+  public List<String> getLookupTableNames() {
+    return steps.stream().map(Step::getLookupTableName).distinct().toList();
+  }
+
+  /** One function of the pipeline with its compiled plan. */
+  @Value
+  public static class Step {
+    MaskingFunctionType type;
+    // LookUpPlan, HashLookupPlan or RandomLookupPlan, as given by the type
+    Object plan;
+    String lookupTableName;
+    boolean cacheEnabled;
+  }
+}
@@ -0,0 +1,16 @@
+package com.masking.model.random_lookup;
+
+import java.util.List;
+import lombok.Value;
+
+/** Immutable, request-owned result of parsing a RAND_LOOKUP function. */
+@Value
+public class RandomLookupPlan {
+  String lookupTableName;
+  List<String> destinationColumns;
+  List<String> lookupValueColumns;
+  Integer limit;
+  List<String> preserveOptions;
+  List<String> ignoreOptions;
+  boolean cacheEnabled;
+}
@@ -3,15 +3,17 @@ package com.masking.model.random_lookup;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Mutable scratch state filled while a RAND_LOOKUP function is parsed; see {@link
+ * RandomLookupPlan}.
+ */
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-@Component
 public class RandomLookupStore {
     private String lookupTableName; // Table to pick random data from
     private List<String> destinationColumns = new ArrayList<>(); // Where random values will go
@@ -19,4 +21,16 @@ public class RandomLookupStore {
     private Integer limit; // Limit number of rows (optional)
     private List<String> preserveOptions = new ArrayList<>(); // Optional PRESERVE options
     private List<String> ignoreOptions = new ArrayList<>();
+    private boolean cacheEnabled; // Keep the lookup table registered for later requests
+
+    public RandomLookupPlan toPlan() {
+        return new RandomLookupPlan(
+                lookupTableName,
+                List.copyOf(destinationColumns),
+                List.copyOf(lookupValueColumns),
+                limit,
+                List.copyOf(preserveOptions),
+                List.copyOf(ignoreOptions),
+                cacheEnabled);
+    }
 }
@@ -0,0 +1,93 @@
+package com.masking.model.table;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Accumulates one column of a {@link ColumnarLookupTable}. Values are dictionary-encoded while the
+ * column has few distinct values; once it has too many to pay off the column switches to packed
+ * UTF-8 bytes.
+ */
+final class ColumnBuilder {
+
+  private Map<String, Integer> codesByValue = new HashMap<>();
+  private String[] dictionary = new String[16];
+  private int[] codes = new int[1024];
+
+  private byte[] data;
+  private int[] offsets;
+  private int dataLength;
+
+  private int rowCount;
+
+  void add(String value) {
+    if (codesByValue != null) {
+      Integer code = codesByValue.get(value);
+      if (code == null) {
+        if (codesByValue.size() == DictionaryColumn.MAX_DICTIONARY_SIZE) {
+          switchToPacked();
+          addPacked(value);
+          return;
+        }
+        code = codesByValue.size();
+        codesByValue.put(value, code);
+        if (code == dictionary.length) {
+          dictionary = Arrays.copyOf(dictionary, code * 2);
+        }
+        dictionary[code] = value;
+      }
+      if (rowCount == codes.length) {
+        codes = Arrays.copyOf(codes, rowCount * 2);
+      }
+      codes[rowCount++] = code;
+    } else {
+      addPacked(value);
+    }
+  }
+
+  LookupColumn build() {
+    // A dictionary only pays off when values repeat
+    if (codesByValue != null && codesByValue.size() > rowCount / 2) {
+      switchToPacked();
+    }
+    if (codesByValue != null) {
+      return new DictionaryColumn(Arrays.copyOf(dictionary, codesByValue.size()), codes, rowCount);
+    }
+    return new PackedColumn(Arrays.copyOf(data, dataLength), Arrays.copyOf(offsets, rowCount + 1));
+  }
+
+  private void switchToPacked() {
+    int[] dictionaryCodes = codes;
+    int count = rowCount;
+    String[] values = dictionary;
+    codesByValue = null;
+    dictionary = null;
+    codes = null;
+    data = new byte[Math.max(1024, count * 16)];
+    offsets = new int[Math.max(1024, count * 2)];
+    rowCount = 0;
+    for (int row = 0; row < count; row++) {
+      addPacked(values[dictionaryCodes[row]]);
+    }
+  }
+
+  private void addPacked(String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    if (dataLength + (long) bytes.length > Integer.MAX_VALUE - 8) {
+      throw new IllegalStateException(
+          "Lookup column exceeds 2 GB on the heap; load the table with MAPPED storage");
+    }
+    if (dataLength + bytes.length > data.length) {
+      long grown = Math.max((long) data.length * 2, dataLength + bytes.length);
+      data = Arrays.copyOf(data, (int) Math.min(Integer.MAX_VALUE - 8, grown));
+    }
+    if (rowCount + 2 > offsets.length) {
+      offsets = Arrays.copyOf(offsets, offsets.length * 2);
+    }
+    System.arraycopy(bytes, 0, data, dataLength, bytes.length);
+    dataLength += bytes.length;
+    offsets[++rowCount] = dataLength;
+  }
+}
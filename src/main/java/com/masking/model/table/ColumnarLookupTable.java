@@ -0,0 +1,118 @@
+package com.masking.model.table;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Heap {@link LookupTable} stored column by column. Each column is either a {@link
+ * DictionaryColumn} (a code per row into its few distinct values) or a {@link PackedColumn} (the
+ * UTF-8 bytes of every row in one array), whichever the data calls for. Either way there are no
+ * per-row or per-value objects, which keeps a table to a fraction of the size of one map or array
+ * per row and keeps the values of a column together in memory.
+ */
+public class ColumnarLookupTable implements LookupTable {
+
+  private final String name;
+  private final List<String> headers;
+  private final Map<String, Integer> columnIndexes = new HashMap<>();
+  private final LookupColumn[] columns;
+  private final int rowCount;
+  private final TableIndexes indexes = new TableIndexes();
+
+  private ColumnarLookupTable(
+      String name, List<String> headers, LookupColumn[] columns, int rowCount) {
+    this.name = name;
+    this.headers = headers;
+    this.columns = columns;
+    this.rowCount = rowCount;
+    for (int i = 0; i < headers.size(); i++) {
+      columnIndexes.putIfAbsent(headers.get(i), i);
+    }
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public List<String> getHeaders() {
+    return headers;
+  }
+
+  @Override
+  public int getRowCount() {
+    return rowCount;
+  }
+
+  @Override
+  public int columnIndex(String column) {
+    return columnIndexes.getOrDefault(column, -1);
+  }
+
+  @Override
+  public String getValue(int row, int column) {
+    return column < columns.length ? columns[column].get(row) : "";
+  }
+
+  @Override
+  public <T> T index(String key, Function<LookupTable, T> builder) {
+    return indexes.get(key, () -> builder.apply(this));
+  }
+
+  @Override
+  public int getIndexCount() {
+    return indexes.size();
+  }
+
+  @Override
+  public void limitIndexes(int maxIndexes, IndexBudget budget) {
+    indexes.limit(maxIndexes, budget);
+  }
+
+  @Override
+  public long estimatedBytes() {
+    long bytes = 0;
+    for (LookupColumn column : columns) {
+      bytes += column.estimatedBytes();
+    }
+    return bytes + indexes.heapBytes();
+  }
+
+  /** Collects rows column by column into a new {@link ColumnarLookupTable}. */
+  public static class Builder {
+
+    private final String name;
+    private final List<String> headers;
+    private final ColumnBuilder[] columns;
+    private int rowCount;
+
+    public Builder(String name, List<String> headers) {
+      this.name = name;
+      this.headers = List.copyOf(headers);
+      this.columns = new ColumnBuilder[this.headers.size()];
+      for (int i = 0; i < columns.length; i++) {
+        columns[i] = new ColumnBuilder();
+      }
+    }
+
+    /** Appends one row; values past the header count are dropped, missing ones are empty. */
+    public void addRow(String[] values) {
+      for (int i = 0; i < columns.length; i++) {
+        columns[i].add(i < values.length ? values[i] : "");
+      }
+      rowCount++;
+    }
+
+    public ColumnarLookupTable build() {
+      LookupColumn[] built = new LookupColumn[columns.length];
+      for (int i = 0; i < columns.length; i++) {
+        built[i] = columns[i].build();
+        columns[i] = null;
+      }
+      return new ColumnarLookupTable(name, headers, built, rowCount);
+    }
+  }
+}
@@ -0,0 +1,45 @@
+package com.masking.model.table;
+
+/**
+ * Column with few distinct values: each value is stored once in a dictionary and rows hold a code
+ * into it, one byte wide for up to 256 distinct values and two bytes wide for up to 65536.
+ */
+final class DictionaryColumn implements LookupColumn {
+
+  static final int MAX_DICTIONARY_SIZE = 1 << 16;
+
+  private final String[] dictionary;
+  private final byte[] byteCodes;
+  private final char[] charCodes;
+
+  DictionaryColumn(String[] dictionary, int[] codes, int rowCount) {
+    this.dictionary = dictionary;
+    if (dictionary.length <= 1 << 8) {
+      byteCodes = new byte[rowCount];
+      for (int row = 0; row < rowCount; row++) {
+        byteCodes[row] = (byte) codes[row];
+      }
+      charCodes = null;
+    } else {
+      charCodes = new char[rowCount];
+      for (int row = 0; row < rowCount; row++) {
+        charCodes[row] = (char) codes[row];
+      }
+      byteCodes = null;
+    }
+  }
+
+  @Override
+  public String get(int row) {
+    return dictionary[byteCodes != null ? byteCodes[row] & 0xff : charCodes[row]];
+  }
+
+  @Override
+  public long estimatedBytes() {
+    long bytes = 16 + 4L * dictionary.length;
+    for (String value : dictionary) {
+      bytes += 40 + value.length();
+    }
+    return bytes + (byteCodes != null ? byteCodes.length : 2L * charCodes.length);
+  }
+}
@@ -0,0 +1,45 @@
+package com.masking.model.table;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/** {@link KeyIndex} backed by a {@link HashMap}, for tables held on the heap. */
+final class HeapKeyIndex<K> implements KeyIndex<K> {
+
+  // HashMap node + boxed Integer + share of the bucket array; keys are sized by the caller
+  private static final long ENTRY_OVERHEAD = 64;
+
+  private final Map<K, Integer> rowsByKey;
+  private final long keyBytes;
+
+  private HeapKeyIndex(Map<K, Integer> rowsByKey, long keyBytes) {
+    this.rowsByKey = rowsByKey;
+    this.keyBytes = keyBytes;
+  }
+
+  static <K> HeapKeyIndex<K> build(
+      int rowCount, IntFunction<K> keyOfRow, boolean firstWins, long bytesPerKey) {
+    Map<K, Integer> rowsByKey = HashMap.newHashMap(rowCount);
+    for (int row = 0; row < rowCount; row++) {
+      K key = keyOfRow.apply(row);
+      if (firstWins) {
+        rowsByKey.putIfAbsent(key, row);
+      } else {
+        rowsByKey.put(key, row);
+      }
+    }
+    return new HeapKeyIndex<>(rowsByKey, bytesPerKey * rowsByKey.size());
+  }
+
+  @Override
+  public int find(K key) {
+    Integer row = rowsByKey.get(key);
+    return row != null ? row : -1;
+  }
+
+  @Override
+  public long estimatedBytes() {
+    return ENTRY_OVERHEAD * rowsByKey.size() + keyBytes;
+  }
+}
@@ -0,0 +1,25 @@
+package com.masking.model.table;
+
+/**
+ * Memory a lookup table's owner, such as the {@code LookupTableRegistry}, lets the table spend on
+ * the indexes it keeps. A table asks before keeping each index it builds; an index that does not
+ * fit is still handed to the job that built it, but is not kept for later ones.
+ */
+@FunctionalInterface
+public interface IndexBudget {
+
+  /** Keeps every index. */
+  IndexBudget UNBOUNDED =
+      (bytes, keep) -> {
+        keep.run();
+        return true;
+      };
+
+  /**
+   * Runs {@code keep} if an index of {@code bytes} estimated heap bytes fits, atomically with any
+   * other charge against the same budget.
+   *
+   * @return whether the index fit and {@code keep} ran
+   */
+  boolean charge(long bytes, Runnable keep);
+}
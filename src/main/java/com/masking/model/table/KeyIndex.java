@@ -0,0 +1,23 @@
+package com.masking.model.table;
+
+import java.util.function.IntFunction;
+
+/**
+ * Index from a key derived from each lookup row to that row's ordinal. Tables hand these out
+ * through {@link LookupTable#keyIndex}, which picks the implementation matching the table's
+ * storage.
+ */
+public interface KeyIndex<K> extends MemoryFootprint {
+
+  /** Row ordinal stored for {@code key}, or -1 when no lookup row has it. */
+  int find(K key);
+
+  /**
+   * Heap index over rows {@code 0..rowCount-1} keyed by {@code keyOfRow}. With {@code firstWins}
+   * the first row of a duplicated key is kept, otherwise the last one.
+   */
+  static <K> KeyIndex<K> build(
+      int rowCount, IntFunction<K> keyOfRow, boolean firstWins, long bytesPerKey) {
+    return HeapKeyIndex.build(rowCount, keyOfRow, firstWins, bytesPerKey);
+  }
+}
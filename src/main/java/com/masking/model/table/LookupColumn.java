@@ -0,0 +1,7 @@
+package com.masking.model.table;
+
+/** One column of a {@link ColumnarLookupTable}, addressed by row ordinal. */
+interface LookupColumn extends MemoryFootprint {
+
+  String get(int row);
+}
@@ -0,0 +1,102 @@
+package com.masking.model.table;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * A parsed lookup CSV shared by the LOOKUP, RAND_LOOKUP and HASH_LOOKUP engines. Rows are
+ * addressed by ordinal and columns by index, so engines resolve column names once per job and
+ * then fetch values without per-row maps.
+ *
+ * <p>A table is read-only once loaded. Engines attach the indexes they need through {@link
+ * #index}, which builds each one at most once per table, so a table kept in the {@code
+ * LookupTableRegistry} is parsed and indexed once and reused by every later request. The registry
+ * {@link #limitIndexes limits} the indexes a table keeps, since every new hash seed or key column
+ * adds one.
+ *
+ * <p>Jobs {@link #lease} the tables they use, so a table that is evicted or replaced while jobs
+ * still read it is only {@link #close() closed} once they are done.
+ */
+public interface LookupTable extends MemoryFootprint {
+
+  String getName();
+
+  List<String> getHeaders();
+
+  int getRowCount();
+
+  /** Index of {@code column} in {@link #getHeaders()}, or -1 if the table has no such column. */
+  int columnIndex(String column);
+
+  String getValue(int row, int column);
+
+  /**
+   * Returns the index kept under {@code key}, building it with {@code builder} on first use. The
+   * key must capture every setting the index depends on (columns, trim rules, hash seed...). An
+   * index over the table's {@link #limitIndexes limits} is built again on its next use.
+   */
+  <T> T index(String key, Function<LookupTable, T> builder);
+
+  /**
+   * {@link #index} for a {@link KeyIndex} over every row, stored the way the table stores its
+   * rows. {@code keyOfRow} must be safe to call again after the build; {@code bytesPerKey} is the
+   * heap estimate of one key.
+   */
+  default <K> KeyIndex<K> keyIndex(
+      String key, IntFunction<K> keyOfRow, boolean firstWins, long bytesPerKey) {
+    return index(
+        key, table -> KeyIndex.build(table.getRowCount(), keyOfRow, firstWins, bytesPerKey));
+  }
+
+  /**
+   * {@link #index} for a {@link RowHashIndex} over every row, stored the way the table stores its
+   * rows. Both functions are only used while the index is built.
+   */
+  default RowHashIndex hashIndex(
+      String key, IntUnaryOperator hashOfRow, RowHashIndex.SameKey sameKey, boolean firstWins) {
+    return index(
+        key, table -> RowHashIndex.onHeap(table.getRowCount(), hashOfRow, sameKey, firstWins));
+  }
+
+  /** Number of indexes currently attached to the table. */
+  int getIndexCount();
+
+  /**
+   * Keeps at most {@code maxIndexes} indexes, dropping the least recently used one to make room,
+   * and only those {@code budget} has room for.
+   */
+  void limitIndexes(int maxIndexes, IndexBudget budget);
+
+  default LookupTableStorage getStorage() {
+    return LookupTableStorage.HEAP;
+  }
+
+  /** Bytes held in memory-mapped files rather than on the heap. */
+  default long mappedBytes() {
+    return 0;
+  }
+
+  /**
+   * Holds the table open for a job until the returned lease is closed.
+   *
+   * @throws IllegalStateException if the table is already closed
+   */
+  default Lease lease() {
+    return () -> {};
+  }
+
+  /**
+   * Releases the table's mapped memory and files, at once if no {@link #lease} holds it or else
+   * once the last one is closed. Heap tables are left to the garbage collector.
+   */
+  default void close() {}
+
+  /** A job's hold on a table; closing it more than once releases it once. */
+  @FunctionalInterface
+  interface Lease extends AutoCloseable {
+    @Override
+    void close();
+  }
+}
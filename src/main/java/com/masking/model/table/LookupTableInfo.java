@@ -0,0 +1,18 @@
+package com.masking.model.table;
+
+import java.time.Instant;
+import java.util.List;
+import lombok.Value;
+
+/** What the registry reports about one registered lookup table. */
+@Value
+public class LookupTableInfo {
+  String name;
+  List<String> headers;
+  int rowCount;
+  int indexCount;
+  long estimatedBytes;
+  LookupTableStorage storage;
+  long mappedBytes;
+  Instant registeredAt;
+}
@@ -0,0 +1,9 @@
+package com.masking.model.table;
+
+/** Where a {@link LookupTable} keeps its rows. */
+public enum LookupTableStorage {
+  /** Dictionary-encoded or packed columns on the JVM heap; fastest for small and medium tables. */
+  HEAP,
+  /** Packed UTF-8 records and open-addressing indexes in memory-mapped files, off the heap. */
+  MAPPED
+}
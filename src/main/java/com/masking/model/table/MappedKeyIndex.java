@@ -0,0 +1,53 @@
+package com.masking.model.table;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.IntFunction;
+
+/**
+ * {@link KeyIndex} for {@link MappedLookupTable}: a {@link RowHashIndex} with its slots in a
+ * memory-mapped file. Keys are not stored; a probe whose hash matches re-derives the key from the
+ * row with {@code keyOfRow} to confirm it, so the heap cost is independent of the row count.
+ */
+final class MappedKeyIndex<K> implements KeyIndex<K> {
+
+  private final RowHashIndex index;
+  private final IntFunction<K> keyOfRow;
+
+  private MappedKeyIndex(RowHashIndex index, IntFunction<K> keyOfRow) {
+    this.index = index;
+    this.keyOfRow = keyOfRow;
+  }
+
+  /** Same contract as {@link KeyIndex#build}, with the slots mapped from a file in {@code dir}. */
+  static <K> MappedKeyIndex<K> build(
+      Path directory, int rowCount, IntFunction<K> keyOfRow, boolean firstWins)
+      throws IOException {
+    RowHashIndex index =
+        RowHashIndex.mapped(
+            directory,
+            rowCount,
+            row -> keyOfRow.apply(row).hashCode(),
+            (row, otherRow) -> keyOfRow.apply(row).equals(keyOfRow.apply(otherRow)),
+            firstWins);
+    return new MappedKeyIndex<>(index, keyOfRow);
+  }
+
+  @Override
+  public int find(K key) {
+    return index.find(key.hashCode(), row -> key.equals(keyOfRow.apply(row)));
+  }
+
+  long mappedBytes() {
+    return index.mappedBytes();
+  }
+
+  void close() {
+    index.close();
+  }
+
+  @Override
+  public long estimatedBytes() {
+    return 0;
+  }
+}
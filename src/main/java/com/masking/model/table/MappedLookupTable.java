@@ -0,0 +1,249 @@
+package com.masking.model.table;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Off-heap {@link LookupTable} for dictionaries too large to hold as {@code String}s on the heap.
+ *
+ * <p>Rows are packed into a memory-mapped value block: each row is one record holding, for every
+ * header column, a 4-byte length followed by the UTF-8 bytes of the value. A second mapped block
+ * holds the 8-byte offset of every record. Key indexes are {@link MappedKeyIndex}es, so neither
+ * the rows nor their indexes add to heap size or GC work; values are decoded on access.
+ *
+ * <p>{@link #close() Closing} the table unmaps its blocks and indexes and deletes whatever is left
+ * of their files, once no job {@link #lease leases} it any more.
+ */
+public class MappedLookupTable implements LookupTable {
+
+  private final String name;
+  private final List<String> headers;
+  private final Map<String, Integer> columnIndexes = new HashMap<>();
+  private final int rowCount;
+  private final MappedRegion recordOffsets;
+  private final MappedRegion records;
+  private final Path directory;
+  private final TableLeases leases = new TableLeases(this::release);
+  private final TableIndexes indexes = new TableIndexes(leases::drop);
+
+  private MappedLookupTable(
+      String name,
+      List<String> headers,
+      int rowCount,
+      MappedRegion recordOffsets,
+      MappedRegion records,
+      Path directory) {
+    this.name = name;
+    this.headers = List.copyOf(headers);
+    this.rowCount = rowCount;
+    this.recordOffsets = recordOffsets;
+    this.records = records;
+    this.directory = directory;
+    for (int i = 0; i < this.headers.size(); i++) {
+      columnIndexes.putIfAbsent(this.headers.get(i), i);
+    }
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public List<String> getHeaders() {
+    return headers;
+  }
+
+  @Override
+  public int getRowCount() {
+    return rowCount;
+  }
+
+  @Override
+  public int columnIndex(String column) {
+    return columnIndexes.getOrDefault(column, -1);
+  }
+
+  @Override
+  public String getValue(int row, int column) {
+    if (column >= headers.size()) {
+      return "";
+    }
+    long position = recordOffsets.getLong((long) row * Long.BYTES);
+    for (int i = 0; i < column; i++) {
+      position += Integer.BYTES + records.getInt(position);
+    }
+    int length = records.getInt(position);
+    if (length == 0) {
+      return "";
+    }
+    byte[] bytes = new byte[length];
+    records.get(position + Integer.BYTES, bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public <T> T index(String key, Function<LookupTable, T> builder) {
+    return indexes.get(key, () -> builder.apply(this));
+  }
+
+  @Override
+  public <K> KeyIndex<K> keyIndex(
+      String key, IntFunction<K> keyOfRow, boolean firstWins, long bytesPerKey) {
+    return index(
+        key,
+        table -> {
+          try {
+            return MappedKeyIndex.build(directory, rowCount, keyOfRow, firstWins);
+          } catch (IOException e) {
+            throw new UncheckedIOException("Cannot map index of lookup table " + name, e);
+          }
+        });
+  }
+
+  @Override
+  public RowHashIndex hashIndex(
+      String key, IntUnaryOperator hashOfRow, RowHashIndex.SameKey sameKey, boolean firstWins) {
+    return index(
+        key,
+        table -> {
+          try {
+            return RowHashIndex.mapped(directory, rowCount, hashOfRow, sameKey, firstWins);
+          } catch (IOException e) {
+            throw new UncheckedIOException("Cannot map index of lookup table " + name, e);
+          }
+        });
+  }
+
+  @Override
+  public int getIndexCount() {
+    return indexes.size();
+  }
+
+  @Override
+  public void limitIndexes(int maxIndexes, IndexBudget budget) {
+    indexes.limit(maxIndexes, budget);
+  }
+
+  @Override
+  public LookupTableStorage getStorage() {
+    return LookupTableStorage.MAPPED;
+  }
+
+  @Override
+  public long mappedBytes() {
+    return recordOffsets.size() + records.size() + indexes.mappedBytes();
+  }
+
+  @Override
+  public Lease lease() {
+    return leases.lease(name);
+  }
+
+  @Override
+  public void close() {
+    leases.close();
+  }
+
+  private void release() {
+    indexes.clear().forEach(TableIndexes::close);
+    recordOffsets.close();
+    records.close();
+  }
+
+  @Override
+  public long estimatedBytes() {
+    // Only the headers and index bookkeeping live on the heap
+    long bytes = 256;
+    for (String header : headers) {
+      bytes += 40 + header.length();
+    }
+    return bytes;
+  }
+
+  /**
+   * Streams rows into the temp files of a new {@link MappedLookupTable}. Closing a builder that
+   * was not {@link #build() built} deletes its files.
+   */
+  public static class Builder implements Closeable {
+
+    private final String name;
+    private final List<String> headers;
+    private final Path directory;
+    private final Path recordsFile;
+    private final Path offsetsFile;
+    private final DataOutputStream recordsOut;
+    private final DataOutputStream offsetsOut;
+    private final byte[][] encoded;
+    private long position;
+    private int rowCount;
+    private int maxRecordBytes;
+    private boolean built;
+
+    public Builder(String name, List<String> headers, Path directory) throws IOException {
+      this.name = name;
+      this.headers = List.copyOf(headers);
+      this.directory = Files.createDirectories(directory);
+      this.recordsFile = Files.createTempFile(directory, "lookup-records-", ".dat");
+      this.offsetsFile = Files.createTempFile(directory, "lookup-offsets-", ".dat");
+      this.recordsOut =
+          new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(recordsFile)));
+      this.offsetsOut =
+          new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(offsetsFile)));
+      this.encoded = new byte[this.headers.size()][];
+    }
+
+    /** Appends one row; values past the header count are dropped, missing ones are empty. */
+    public void addRow(String[] values) throws IOException {
+      long recordBytes = 0;
+      for (int i = 0; i < encoded.length; i++) {
+        encoded[i] = i < values.length ? values[i].getBytes(StandardCharsets.UTF_8) : new byte[0];
+        recordBytes += Integer.BYTES + encoded[i].length;
+      }
+      if (recordBytes > Integer.MAX_VALUE / 2) {
+        throw new IOException(
+            "Lookup row " + rowCount + " is too large: " + recordBytes + " bytes");
+      }
+      offsetsOut.writeLong(position);
+      for (byte[] value : encoded) {
+        recordsOut.writeInt(value.length);
+        recordsOut.write(value);
+      }
+      position += recordBytes;
+      maxRecordBytes = Math.max(maxRecordBytes, (int) recordBytes);
+      rowCount++;
+    }
+
+    public MappedLookupTable build() throws IOException {
+      recordsOut.close();
+      offsetsOut.close();
+      MappedRegion offsets =
+          MappedRegion.mapReadOnly(offsetsFile, (long) rowCount * Long.BYTES, 0);
+      MappedRegion records = MappedRegion.mapReadOnly(recordsFile, position, maxRecordBytes);
+      built = true;
+      return new MappedLookupTable(name, headers, rowCount, offsets, records, directory);
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (!built) {
+        recordsOut.close();
+        offsetsOut.close();
+        MappedRegion.release(recordsFile);
+        MappedRegion.release(offsetsFile);
+      }
+    }
+  }
+}
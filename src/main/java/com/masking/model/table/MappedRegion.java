@@ -0,0 +1,137 @@
+package com.masking.model.table;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import sun.misc.Unsafe;
+
+/**
+ * A file mapped as consecutive 1 GiB segments, so it can be addressed with {@code long} offsets
+ * past the 2 GiB limit of a single {@link MappedByteBuffer}. Each segment also maps {@code overlap}
+ * bytes past its end, so any value of at most that many bytes is read from one segment.
+ *
+ * <p>The backing file is deleted as soon as it is mapped where the platform allows it, and
+ * otherwise when the region is {@link #close() closed}. Closing unmaps the segments right away, so
+ * the disk space is released without waiting for the buffers to be garbage collected; nothing may
+ * read or write the region after that.
+ */
+final class MappedRegion {
+
+  private static final int SEGMENT_BITS = 30;
+  private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+  private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+  // Unmaps a buffer without waiting for GC; null leaves unmapping to the garbage collector
+  private static final Unsafe UNSAFE = unsafe();
+
+  private MappedByteBuffer[] segments;
+  private final long size;
+  // The backing file when it could not be deleted while mapped, or null
+  private final Path file;
+
+  private MappedRegion(MappedByteBuffer[] segments, long size, Path file) {
+    this.segments = segments;
+    this.size = size;
+    this.file = file;
+  }
+
+  /** Maps the first {@code size} bytes of an existing file read-only and deletes the file. */
+  static MappedRegion mapReadOnly(Path file, long size, int overlap) throws IOException {
+    return map(file, size, overlap, FileChannel.MapMode.READ_ONLY);
+  }
+
+  /** Maps a zero-filled writable region of {@code size} bytes backed by a new temp file. */
+  static MappedRegion allocate(Path directory, String prefix, long size) throws IOException {
+    Path file = Files.createTempFile(directory, prefix, ".idx");
+    return map(file, size, 0, FileChannel.MapMode.READ_WRITE);
+  }
+
+  private static MappedRegion map(Path file, long size, int overlap, FileChannel.MapMode mode)
+      throws IOException {
+    int count = (int) ((size + SEGMENT_SIZE - 1) >>> SEGMENT_BITS);
+    MappedByteBuffer[] segments = new MappedByteBuffer[count];
+    boolean deleted;
+    try (FileChannel channel =
+        mode == FileChannel.MapMode.READ_ONLY
+            ? FileChannel.open(file, StandardOpenOption.READ)
+            : FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      for (int i = 0; i < count; i++) {
+        long start = (long) i << SEGMENT_BITS;
+        segments[i] = channel.map(mode, start, Math.min(size - start, SEGMENT_SIZE + overlap));
+      }
+    } finally {
+      deleted = delete(file);
+    }
+    return new MappedRegion(segments, size, deleted ? null : file);
+  }
+
+  /** Deletes a file that is no longer needed, deferring to JVM exit where that is not allowed. */
+  static void release(Path file) {
+    if (!delete(file)) {
+      file.toFile().deleteOnExit();
+    }
+  }
+
+  private static boolean delete(Path file) {
+    try {
+      Files.deleteIfExists(file);
+      return true;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /** Unmaps the segments and deletes the backing file if it is still there; idempotent. */
+  synchronized void close() {
+    if (segments == null) {
+      return;
+    }
+    if (UNSAFE != null) {
+      for (MappedByteBuffer segment : segments) {
+        UNSAFE.invokeCleaner(segment);
+      }
+    }
+    segments = null;
+    if (file != null) {
+      release(file);
+    }
+  }
+
+  long size() {
+    return size;
+  }
+
+  int getInt(long position) {
+    return segment(position).getInt((int) (position & SEGMENT_MASK));
+  }
+
+  long getLong(long position) {
+    return segment(position).getLong((int) (position & SEGMENT_MASK));
+  }
+
+  void putInt(long position, int value) {
+    segment(position).putInt((int) (position & SEGMENT_MASK), value);
+  }
+
+  void get(long position, byte[] destination) {
+    segment(position).get((int) (position & SEGMENT_MASK), destination);
+  }
+
+  private MappedByteBuffer segment(long position) {
+    return segments[(int) (position >>> SEGMENT_BITS)];
+  }
+
+  private static Unsafe unsafe() {
+    try {
+      Field field = Unsafe.class.getDeclaredField("theUnsafe");
+      field.setAccessible(true);
+      return (Unsafe) field.get(null);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      return null;
+    }
+  }
+}
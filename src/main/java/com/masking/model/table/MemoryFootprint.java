@@ -0,0 +1,7 @@
+package com.masking.model.table;
+
+/** Something that can estimate how much heap (or mapped memory) it keeps alive. */
+public interface MemoryFootprint {
+
+  long estimatedBytes();
+}
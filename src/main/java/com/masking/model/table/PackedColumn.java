@@ -0,0 +1,32 @@
+package com.masking.model.table;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Column with mostly distinct values: the UTF-8 bytes of all rows are packed back to back in one
+ * array with an offset per row, so a value costs its bytes plus four instead of a {@code String}
+ * object. Values are decoded on access.
+ */
+final class PackedColumn implements LookupColumn {
+
+  private final byte[] data;
+  private final int[] offsets;
+
+  /** {@code offsets} has {@code rowCount + 1} entries; row i spans offsets[i]..offsets[i+1]. */
+  PackedColumn(byte[] data, int[] offsets) {
+    this.data = data;
+    this.offsets = offsets;
+  }
+
+  @Override
+  public String get(int row) {
+    int start = offsets[row];
+    int length = offsets[row + 1] - start;
+    return length == 0 ? "" : new String(data, start, length, StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public long estimatedBytes() {
+    return 32 + data.length + 4L * offsets.length;
+  }
+}
@@ -0,0 +1,122 @@
+package com.masking.model.table;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Open-addressing index from the hash of a row's key to the row ordinal. Keys are never stored or
+ * built as objects: the caller supplies the hash and, on a probe, a predicate that compares its
+ * key with a candidate row field by field. This lets composite keys be matched without
+ * concatenating them, and costs 8 bytes per slot whatever the key size.
+ */
+public final class RowHashIndex implements MemoryFootprint {
+
+  /** Whether two rows carry the same indexed key. */
+  @FunctionalInterface
+  public interface SameKey {
+    boolean test(int row, int otherRow);
+  }
+
+  private final SlotStore slots;
+  private final long mask;
+  private final boolean mapped;
+
+  private RowHashIndex(SlotStore slots, long capacity, boolean mapped) {
+    this.slots = slots;
+    this.mask = capacity - 1;
+    this.mapped = mapped;
+  }
+
+  /**
+   * Heap index over rows {@code 0..rowCount-1}. With {@code firstWins} the first row of a
+   * duplicated key is kept, otherwise the last one.
+   */
+  public static RowHashIndex onHeap(
+      int rowCount, IntUnaryOperator hashOfRow, SameKey sameKey, boolean firstWins) {
+    long capacity = capacityFor(rowCount);
+    return new RowHashIndex(SlotStore.onHeap(capacity), capacity, false)
+        .fill(rowCount, hashOfRow, sameKey, firstWins);
+  }
+
+  /** Same as {@link #onHeap}, with the slots in a memory-mapped file under {@code directory}. */
+  public static RowHashIndex mapped(
+      Path directory,
+      int rowCount,
+      IntUnaryOperator hashOfRow,
+      SameKey sameKey,
+      boolean firstWins)
+      throws IOException {
+    long capacity = capacityFor(rowCount);
+    return new RowHashIndex(SlotStore.mapped(directory, capacity), capacity, true)
+        .fill(rowCount, hashOfRow, sameKey, firstWins);
+  }
+
+  /** Row whose key has {@code hash} and satisfies {@code isKey}, or -1 if there is none. */
+  public int find(int hash, IntPredicate isKey) {
+    int spread = spread(hash);
+    for (long slot = spread & mask; ; slot = (slot + 1) & mask) {
+      int stored = slots.row(slot);
+      if (stored == 0) {
+        return -1;
+      }
+      if (slots.hash(slot) == spread && isKey.test(stored - 1)) {
+        return stored - 1;
+      }
+    }
+  }
+
+  long mappedBytes() {
+    return mapped ? slots.bytes() : 0;
+  }
+
+  /** Unmaps the slots of a mapped index, which must not be used afterwards. */
+  void close() {
+    slots.close();
+  }
+
+  @Override
+  public long estimatedBytes() {
+    return mapped ? 0 : slots.bytes();
+  }
+
+  private RowHashIndex fill(
+      int rowCount, IntUnaryOperator hashOfRow, SameKey sameKey, boolean firstWins) {
+    for (int row = 0; row < rowCount; row++) {
+      insert(row, spread(hashOfRow.applyAsInt(row)), sameKey, firstWins);
+    }
+    return this;
+  }
+
+  private void insert(int row, int hash, SameKey sameKey, boolean firstWins) {
+    for (long slot = hash & mask; ; slot = (slot + 1) & mask) {
+      int stored = slots.row(slot);
+      if (stored == 0) {
+        slots.set(slot, row + 1, hash);
+        return;
+      }
+      if (slots.hash(slot) == hash && sameKey.test(stored - 1, row)) {
+        if (!firstWins) {
+          slots.set(slot, row + 1, hash);
+        }
+        return;
+      }
+    }
+  }
+
+  // At most half full so probe chains stay short
+  private static long capacityFor(int rowCount) {
+    return Long.highestOneBit(Math.max(2L, rowCount * 2L - 1)) << 1;
+  }
+
+  // Murmur3 finalizer: callers pass plain hashCode()-style hashes, whose low bits pick slots poorly
+  private static int spread(int h) {
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h;
+  }
+}
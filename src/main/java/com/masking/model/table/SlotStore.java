@@ -0,0 +1,100 @@
+package com.masking.model.table;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Slots of a {@link RowHashIndex}: per slot, the row ordinal plus one (0 marks an empty slot) and
+ * the row's key hash.
+ */
+interface SlotStore {
+
+  int row(long slot);
+
+  int hash(long slot);
+
+  void set(long slot, int row, int hash);
+
+  /** Bytes held by the slots, on the heap or in a mapping. */
+  long bytes();
+
+  /** Releases a mapping right away instead of leaving it to the garbage collector. */
+  default void close() {}
+
+  static SlotStore onHeap(long capacity) {
+    if (capacity > Integer.MAX_VALUE / 2) {
+      throw new IllegalStateException(
+          "Index of " + capacity + " slots is too large for the heap; use MAPPED storage");
+    }
+    return new Heap(new int[(int) capacity * 2]);
+  }
+
+  static SlotStore mapped(Path directory, long capacity) throws IOException {
+    return new Mapped(MappedRegion.allocate(directory, "lookup-index-", capacity * 8));
+  }
+
+  /** Row and hash interleaved in one array so a probe touches a single cache line. */
+  final class Heap implements SlotStore {
+    private final int[] slots;
+
+    private Heap(int[] slots) {
+      this.slots = slots;
+    }
+
+    @Override
+    public int row(long slot) {
+      return slots[(int) slot << 1];
+    }
+
+    @Override
+    public int hash(long slot) {
+      return slots[((int) slot << 1) + 1];
+    }
+
+    @Override
+    public void set(long slot, int row, int hash) {
+      slots[(int) slot << 1] = row;
+      slots[((int) slot << 1) + 1] = hash;
+    }
+
+    @Override
+    public long bytes() {
+      return 16 + 4L * slots.length;
+    }
+  }
+
+  /** 8-byte slots in a memory-mapped file. */
+  final class Mapped implements SlotStore {
+    private final MappedRegion slots;
+
+    private Mapped(MappedRegion slots) {
+      this.slots = slots;
+    }
+
+    @Override
+    public int row(long slot) {
+      return slots.getInt(slot << 3);
+    }
+
+    @Override
+    public int hash(long slot) {
+      return slots.getInt((slot << 3) + 4);
+    }
+
+    @Override
+    public void set(long slot, int row, int hash) {
+      slots.putInt(slot << 3, row);
+      slots.putInt((slot << 3) + 4, hash);
+    }
+
+    @Override
+    public long bytes() {
+      return slots.size();
+    }
+
+    @Override
+    public void close() {
+      slots.close();
+    }
+  }
+}
@@ -0,0 +1,132 @@
+package com.masking.model.table;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * The indexes a {@link LookupTable} keeps, least recently used first. Each key is built at most
+ * once at a time; once {@link #limit limited}, at most {@code maxIndexes} are kept, the least
+ * recently used one making room for a new one, and an index its {@link IndexBudget} has no room
+ * for is returned without being kept.
+ *
+ * <p>The memory of the kept indexes is tracked as they come and go, so reading it never waits for
+ * an index being built. An index made room for is handed to the {@code onDrop} callback, outside
+ * any lock, since jobs may still be using it.
+ */
+final class TableIndexes {
+
+  private final Map<String, Object> indexes = new LinkedHashMap<>(16, 0.75f, true);
+  private final Map<String, Object> building = new ConcurrentHashMap<>();
+  private final AtomicLong heapBytes = new AtomicLong();
+  private final AtomicLong mappedBytes = new AtomicLong();
+  private volatile int maxIndexes = Integer.MAX_VALUE;
+  private volatile IndexBudget budget = IndexBudget.UNBOUNDED;
+  private final Consumer<Object> onDrop;
+
+  TableIndexes() {
+    this(index -> {});
+  }
+
+  TableIndexes(Consumer<Object> onDrop) {
+    this.onDrop = onDrop;
+  }
+
+  void limit(int maxIndexes, IndexBudget budget) {
+    this.maxIndexes = Math.max(1, maxIndexes);
+    this.budget = budget;
+  }
+
+  @SuppressWarnings("unchecked")
+  <T> T get(String key, Supplier<T> builder) {
+    Object index = cached(key);
+    if (index != null) {
+      return (T) index;
+    }
+    Object lock = building.computeIfAbsent(key, k -> new Object());
+    synchronized (lock) {
+      try {
+        index = cached(key);
+        if (index == null) {
+          index = builder.get();
+          keep(key, index).forEach(onDrop);
+        }
+      } finally {
+        building.remove(key, lock);
+      }
+    }
+    return (T) index;
+  }
+
+  synchronized int size() {
+    return indexes.size();
+  }
+
+  /** Removes and returns every kept index. */
+  synchronized List<Object> clear() {
+    List<Object> cleared = new ArrayList<>(indexes.values());
+    indexes.clear();
+    heapBytes.set(0);
+    mappedBytes.set(0);
+    return cleared;
+  }
+
+  long heapBytes() {
+    return heapBytes.get();
+  }
+
+  long mappedBytes() {
+    return mappedBytes.get();
+  }
+
+  private synchronized Object cached(String key) {
+    return indexes.get(key);
+  }
+
+  /** Keeps {@code index} if the budget allows, returning the indexes that made room for it. */
+  private synchronized List<Object> keep(String key, Object index) {
+    List<Object> evicted = new ArrayList<>();
+    Iterator<Object> eldest = indexes.values().iterator();
+    while (indexes.size() >= maxIndexes && eldest.hasNext()) {
+      Object dropped = eldest.next();
+      eldest.remove();
+      heapBytes.addAndGet(-heapBytes(dropped));
+      mappedBytes.addAndGet(-mappedBytes(dropped));
+      evicted.add(dropped);
+    }
+    budget.charge(
+        heapBytes(index),
+        () -> {
+          indexes.put(key, index);
+          heapBytes.addAndGet(heapBytes(index));
+          mappedBytes.addAndGet(mappedBytes(index));
+        });
+    return evicted;
+  }
+
+  /** Unmaps a mapped index, which must no longer be in use. */
+  static void close(Object index) {
+    if (index instanceof MappedKeyIndex<?> mappedIndex) {
+      mappedIndex.close();
+    } else if (index instanceof RowHashIndex rowHashIndex) {
+      rowHashIndex.close();
+    }
+  }
+
+  private static long heapBytes(Object index) {
+    return index instanceof MemoryFootprint footprint ? footprint.estimatedBytes() : 0;
+  }
+
+  private static long mappedBytes(Object index) {
+    if (index instanceof MappedKeyIndex<?> mappedIndex) {
+      return mappedIndex.mappedBytes();
+    }
+    return index instanceof RowHashIndex rowHashIndex ? rowHashIndex.mappedBytes() : 0;
+  }
+}
@@ -0,0 +1,87 @@
+package com.masking.model.table;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The jobs holding a {@link MappedLookupTable} open. Closing the table, and closing an index it no
+ * longer keeps, waits until no job holds it: unmapped memory must never be read again, so both
+ * only happen once the last {@link LookupTable.Lease lease} is closed.
+ *
+ * <p>Releases run outside this object's lock, so they may take the table's index lock.
+ */
+final class TableLeases {
+
+  private final Runnable release;
+  private final List<Object> dropped = new ArrayList<>();
+  private int leases;
+  private boolean closing;
+  private boolean closed;
+
+  /** {@code release} frees the table itself once it is closed and no longer leased. */
+  TableLeases(Runnable release) {
+    this.release = release;
+  }
+
+  /**
+   * Holds the table open for a job until the lease is closed.
+   *
+   * @throws IllegalStateException if {@code table} is already closed
+   */
+  LookupTable.Lease lease(String table) {
+    synchronized (this) {
+      if (closing) {
+        throw new IllegalStateException("Lookup table '" + table + "' is closed");
+      }
+      leases++;
+    }
+    AtomicBoolean returned = new AtomicBoolean();
+    return () -> {
+      if (!returned.getAndSet(true)) {
+        returnLease();
+      }
+    };
+  }
+
+  /** Closes {@code index} now if no job holds the table, or else once the last one is done. */
+  void drop(Object index) {
+    synchronized (this) {
+      if (leases > 0) {
+        dropped.add(index);
+        return;
+      }
+    }
+    TableIndexes.close(index);
+  }
+
+  /** Releases the table now if no job holds it, or else once the last one is done. */
+  void close() {
+    synchronized (this) {
+      closing = true;
+      if (leases > 0 || closed) {
+        return;
+      }
+      closed = true;
+    }
+    release.run();
+  }
+
+  private void returnLease() {
+    List<Object> indexes;
+    boolean releaseTable;
+    synchronized (this) {
+      if (--leases > 0) {
+        return;
+      }
+      indexes = new ArrayList<>(dropped);
+      dropped.clear();
+      releaseTable = closing && !closed;
+      closed |= releaseTable;
+    }
+    indexes.forEach(TableIndexes::close);
+    if (releaseTable) {
+      release.run();
+    }
+  }
+}
@@ -0,0 +1,106 @@
+package com.masking.service.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads another stream on a thread of its own, a few blocks ahead of the caller, so inflating a
+ * compressed source overlaps with parsing and masking what is already inflated. At most {@code
+ * blocksAhead} blocks wait to be read; closing the stream stops the thread and closes the source.
+ */
+final class BackgroundInputStream extends InputStream {
+
+  // Queued after the last block, or after a failure
+  private static final byte[] END = new byte[0];
+  private static final AtomicInteger threadCount = new AtomicInteger();
+
+  private final BlockingQueue<byte[]> blocks;
+  private final Thread reader;
+  private volatile IOException failure;
+  private byte[] block = new byte[0];
+  private int offset;
+  private boolean closed;
+
+  BackgroundInputStream(InputStream source, String name, int blockBytes, int blocksAhead) {
+    this.blocks = new ArrayBlockingQueue<>(blocksAhead);
+    this.reader =
+        new Thread(() -> readAhead(source, blockBytes), name + "-" + threadCount.incrementAndGet());
+    reader.setDaemon(true);
+    reader.start();
+  }
+
+  private void readAhead(InputStream source, int blockBytes) {
+    try {
+      try (source) {
+        byte[] next;
+        while ((next = source.readNBytes(blockBytes)).length > 0) {
+          blocks.put(next);
+        }
+      } catch (IOException | RuntimeException e) {
+        failure = e instanceof IOException io ? io : new IOException(e);
+      }
+      blocks.put(END);
+    } catch (InterruptedException e) {
+      // Closed by the caller, who reads no further
+    }
+  }
+
+  @Override
+  public int read() throws IOException {
+    return offset < block.length || nextBlock() ? block[offset++] & 0xff : -1;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    Objects.checkFromIndexSize(off, len, b.length);
+    if (len == 0) {
+      return 0;
+    }
+    if (offset == block.length && !nextBlock()) {
+      return -1;
+    }
+    int count = Math.min(len, block.length - offset);
+    System.arraycopy(block, offset, b, off, count);
+    offset += count;
+    return count;
+  }
+
+  @Override
+  public int available() {
+    return block.length - offset;
+  }
+
+  private boolean nextBlock() throws IOException {
+    if (block == END) {
+      if (failure != null) {
+        throw failure;
+      }
+      return false;
+    }
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+    try {
+      block = blocks.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while reading ahead");
+    }
+    offset = 0;
+    return block != END || nextBlock();
+  }
+
+  @Override
+  public void close() {
+    if (!closed) {
+      closed = true;
+      reader.interrupt();
+      blocks.clear();
+    }
+  }
+}
@@ -0,0 +1,326 @@
+package com.masking.service.common;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Runs a masking engine over a source CSV chunk by chunk. The calling thread cuts the source with
+ * {@link CsvChunkReader} and hands each chunk to a shared worker pool; masked chunks are written
+ * back in source order, with at most two chunks per worker in flight so memory stays bounded.
+ *
+ * <p>Output is byte-identical whatever the number of threads: chunk boundaries depend only on the
+ * input, each chunk is masked on its own against read-only lookup state, and chunks are written in
+ * order. With {@code masking.parallel.threads=1} chunks are masked on the calling thread.
+ *
+ * <p>Each job's parse, mask and write time, rows and bytes are recorded in {@link MaskingMetrics}.
+ * For an asynchronous {@link MaskingJob}, rows are also counted into the job as chunks go, and a
+ * cancelled job stops before its next chunk is read.
+ *
+ * <p>A {@link WriteListener} hears of every chunk once it is written, with the source offset the
+ * next chunk starts at, which is what {@link JobCheckpoints} saves to resume a job from.
+ */
+@Service
+public class ChunkedCsvProcessor {
+
+  /** Masks one chunk of source records into output rows; called concurrently for other chunks. */
+  @FunctionalInterface
+  private interface ChunkMasker {
+    /** Returns the number of records masked. */
+    int mask(CsvChunk chunk, CsvRecordWriter output) throws IOException;
+  }
+
+  /** Told of each masked chunk once it is written and flushed, in source order. */
+  @FunctionalInterface
+  public interface WriteListener {
+    /**
+     * @param nextChunk index of the chunk that comes next
+     * @param sourcePosition source offset, header included, where that chunk starts
+     * @param rows rows written by this call of {@code process} so far
+     */
+    void written(OutputStream output, int nextChunk, long sourcePosition, long rows)
+        throws IOException;
+  }
+
+  /** A chunk's masked rows, with what it covered of the source. */
+  private record MaskedChunk(int index, int sourceBytes, int rows, CsvRecordWriter output) {}
+
+  /** What one job did, recorded once it is done. */
+  private static final class JobStats {
+    final LongAdder rows = new LongAdder();
+    final LongAdder maskNanos = new LongAdder();
+    // The asynchronous job this runs for, if any, which progress is reported to
+    final MaskingJob job = MaskingJob.current();
+    long parseNanos;
+    long writeNanos;
+    long bytesRead;
+    long bytesWritten;
+    // Source offset after the last chunk written, and rows written so far
+    long writtenPosition;
+    long rowsWritten;
+  }
+
+  @Autowired private MaskingMetrics maskingMetrics;
+
+  // Worker threads; 0 means one per core and 1 masks on the calling thread
+  @Value("${masking.parallel.threads:0}")
+  private int threads;
+
+  @Value("${masking.parallel.chunk-bytes:1048576}")
+  private int chunkBytes;
+
+  // Scan fields with jdk.incubator.vector; needs the vector profile and --add-modules at run time
+  @Value("${masking.csv.vector-scan:false}")
+  private boolean vectorScan;
+
+  private ExecutorService workers;
+  private CsvScanner scanner;
+
+  @PostConstruct
+  void start() {
+    scanner = vectorScan ? CsvScanner.vector() : CsvScanner.scalar();
+    if (threads <= 0) {
+      threads = Runtime.getRuntime().availableProcessors();
+    }
+    if (threads > 1) {
+      AtomicInteger workerCount = new AtomicInteger();
+      workers =
+          Executors.newFixedThreadPool(
+              threads,
+              task -> {
+                Thread thread = new Thread(task, "csv-chunk-" + workerCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+              });
+    }
+  }
+
+  /** Reader cutting {@code source} into chunks of the configured size. */
+  public CsvChunkReader reader(InputStream source, boolean quoteAware) {
+    return new CsvChunkReader(source, chunkBytes, quoteAware);
+  }
+
+  /** A tokenizer for one masker call, scanning with the configured {@link CsvScanner}. */
+  public CsvTokenizer tokenizer() {
+    return new CsvTokenizer(scanner);
+  }
+
+  /**
+   * Masks every remaining record of {@code source} through {@code stages}, in order, and writes it
+   * as the last stage leaves it. The first stage reads field {@code sourceFields[i]} of a source
+   * record as its column {@code i}.
+   *
+   * <p>Chunks are written in order, each flushed as soon as it and the chunks before it are masked,
+   * so a client reading a streamed response sees rows while the rest of the source is still
+   * masked.
+   *
+   * @param function tags the job's {@link MaskingMetrics}
+   */
+  public void process(
+      String function,
+      CsvChunkReader source,
+      int[] sourceFields,
+      List<MaskingStage> stages,
+      OutputStream output,
+      String recordSeparator)
+      throws IOException {
+    process(function, source, sourceFields, stages, output, recordSeparator, null);
+  }
+
+  /** As above, telling {@code listener} of each chunk written; a null listener is not told. */
+  public void process(
+      String function,
+      CsvChunkReader source,
+      int[] sourceFields,
+      List<MaskingStage> stages,
+      OutputStream output,
+      String recordSeparator,
+      WriteListener listener)
+      throws IOException {
+    JobStats stats = new JobStats();
+    long started = System.nanoTime();
+    process(
+        source,
+        output,
+        recordSeparator,
+        stats,
+        listener,
+        (chunk, out) -> {
+          MaskingStage.Worker[] stageWorkers = new MaskingStage.Worker[stages.size()];
+          for (int i = 0; i < stageWorkers.length; i++) {
+            stageWorkers[i] = stages.get(i).worker(chunk);
+          }
+          CsvTokenizer record = tokenizer().reset(chunk.data());
+          MaskedRecord input = new MaskedRecord();
+          MaskedRecord masked = new MaskedRecord();
+          int rows = 0;
+          while (record.next()) {
+            input.reset(record);
+            for (int field : sourceFields) {
+              input.addSource(field);
+            }
+            for (MaskingStage.Worker worker : stageWorkers) {
+              masked.reset(record);
+              worker.mask(input, masked);
+              MaskedRecord next = masked;
+              masked = input;
+              input = next;
+            }
+            input.writeTo(out);
+            rows++;
+          }
+          return rows;
+        });
+    long nanos = System.nanoTime() - started;
+    maskingMetrics.record(function, MaskingMetrics.Phase.PARSE, stats.parseNanos);
+    maskingMetrics.record(function, MaskingMetrics.Phase.MASK, stats.maskNanos.sum());
+    maskingMetrics.record(function, MaskingMetrics.Phase.WRITE, stats.writeNanos);
+    maskingMetrics.processed(
+        function, stats.rows.sum(), stats.bytesRead, stats.bytesWritten, nanos);
+  }
+
+  private void process(
+      CsvChunkReader source,
+      OutputStream output,
+      String recordSeparator,
+      JobStats stats,
+      WriteListener listener,
+      ChunkMasker masker)
+      throws IOException {
+    output.flush();
+    stats.writtenPosition = source.position();
+    if (workers == null) {
+      CsvChunk chunk;
+      while ((chunk = nextChunk(source, stats)) != null) {
+        write(output, maskChunk(masker, chunk, recordSeparator, stats), stats, listener);
+      }
+      return;
+    }
+
+    Deque<Future<MaskedChunk>> inFlight = new ArrayDeque<>();
+    AtomicBoolean failed = new AtomicBoolean();
+    try {
+      CsvChunk chunk;
+      while ((chunk = nextChunk(source, stats)) != null) {
+        CsvChunk next = chunk;
+        inFlight.addLast(
+            workers.submit(
+                () -> failed.get() ? null : maskChunk(masker, next, recordSeparator, stats)));
+        while (!inFlight.isEmpty()
+            && (inFlight.size() >= threads * 2 || inFlight.peekFirst().isDone())) {
+          write(output, await(inFlight.removeFirst()), stats, listener);
+        }
+      }
+      while (!inFlight.isEmpty()) {
+        write(output, await(inFlight.removeFirst()), stats, listener);
+      }
+    } finally {
+      // Only non-empty after a failure: skip the chunks nobody will write and wait out the running
+      // ones, which read lookup tables the job may close as soon as this returns
+      failed.set(true);
+      inFlight.forEach(ChunkedCsvProcessor::awaitQuietly);
+    }
+  }
+
+  private static CsvChunk nextChunk(CsvChunkReader source, JobStats stats) throws IOException {
+    if (stats.job != null) {
+      stats.job.checkCancelled();
+    }
+    long started = System.nanoTime();
+    CsvChunk chunk = source.nextChunk();
+    stats.parseNanos += System.nanoTime() - started;
+    if (chunk != null) {
+      stats.bytesRead += chunk.data().length;
+    }
+    return chunk;
+  }
+
+  private static void write(
+      OutputStream output, MaskedChunk maskedChunk, JobStats stats, WriteListener listener)
+      throws IOException {
+    long started = System.nanoTime();
+    maskedChunk.output().writeTo(output);
+    output.flush();
+    stats.writeNanos += System.nanoTime() - started;
+    stats.bytesWritten += maskedChunk.output().size();
+    stats.writtenPosition += maskedChunk.sourceBytes();
+    stats.rowsWritten += maskedChunk.rows();
+    if (listener != null) {
+      listener.written(
+          output, maskedChunk.index() + 1, stats.writtenPosition, stats.rowsWritten);
+    }
+  }
+
+  private static MaskedChunk maskChunk(
+      ChunkMasker masker, CsvChunk chunk, String recordSeparator, JobStats stats)
+      throws IOException {
+    long started = System.nanoTime();
+    CsvRecordWriter output =
+        new CsvRecordWriter(recordSeparator, chunk.data().length + chunk.data().length / 2);
+    int rows = masker.mask(chunk, output);
+    stats.rows.add(rows);
+    stats.maskNanos.add(System.nanoTime() - started);
+    if (stats.job != null) {
+      stats.job.rowsMasked(rows);
+    }
+    return new MaskedChunk(chunk.index(), chunk.data().length, rows, output);
+  }
+
+  private static MaskedChunk await(Future<MaskedChunk> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while masking source chunks", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException io) {
+        throw io;
+      }
+      if (e.getCause() instanceof RuntimeException runtime) {
+        throw runtime;
+      }
+      throw new IOException(e.getCause());
+    }
+  }
+
+  /** Waits for {@code future} to be done whatever its outcome, even if interrupted. */
+  private static void awaitQuietly(Future<MaskedChunk> future) {
+    boolean interrupted = false;
+    while (true) {
+      try {
+        future.get();
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      } catch (ExecutionException | CancellationException e) {
+        break;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @PreDestroy
+  void shutdown() {
+    if (workers != null) {
+      workers.shutdownNow();
+    }
+  }
+}
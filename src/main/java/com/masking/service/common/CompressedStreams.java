@@ -0,0 +1,146 @@
+package com.masking.service.common;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipInputStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Compressed CSV files in and out. A source or lookup table may be a gzip file, or a zip file whose
+ * first entry is the CSV; it is recognised by its leading bytes, whatever it is named, and inflated
+ * on a thread of its own while the caller parses what is already inflated. With {@code
+ * masking.output.gzip} the engines write their output files gzipped, named {@code .csv.gz}.
+ *
+ * <p>Every source CSV, whether masked, validated or streamed, is read through {@link
+ * #openSource(MultipartFile)}, and every lookup table through {@link
+ * #openLookupTable(MultipartFile)}.
+ */
+@Service
+public class CompressedStreams {
+
+  private static final int BUFFER_BYTES = 64 * 1024;
+  // Inflated bytes handed over at a time, and how many may wait to be parsed
+  private static final int BLOCK_BYTES = 256 * 1024;
+  private static final int BLOCKS_AHEAD = 8;
+
+  @Value("${masking.output.gzip:false}")
+  private boolean gzipOutput;
+
+  /**
+   * The source's CSV, inflated if the file is compressed. Its bytes, as stored, count toward the
+   * progress of the asynchronous job running, if any.
+   */
+  public InputStream openSource(MultipartFile file) throws IOException {
+    MaskingJob job = MaskingJob.current();
+    InputStream in = file.getInputStream();
+    return decompressed(job != null ? new SourceProgress(in, job) : in);
+  }
+
+  /** The lookup table's CSV, inflated if the file is compressed. */
+  public InputStream openLookupTable(MultipartFile file) throws IOException {
+    return decompressed(file.getInputStream());
+  }
+
+  /** {@code in}, or what it inflates to if it starts like a gzip or zip file. */
+  public InputStream decompressed(InputStream in) throws IOException {
+    PushbackInputStream source = new PushbackInputStream(in, 4);
+    try {
+      byte[] magic = source.readNBytes(4);
+      source.unread(magic);
+      if (magic.length >= 2 && (magic[0] & 0xff) == 0x1f && (magic[1] & 0xff) == 0x8b) {
+        return inBackground(new GZIPInputStream(source, BUFFER_BYTES));
+      }
+      if (magic.length == 4
+          && magic[0] == 'P'
+          && magic[1] == 'K'
+          && magic[2] == 3
+          && magic[3] == 4) {
+        ZipInputStream zip = new ZipInputStream(source);
+        zip.getNextEntry();
+        return inBackground(zip);
+      }
+      return source;
+    } catch (IOException e) {
+      source.close();
+      throw e;
+    }
+  }
+
+  /** {@code name} without a {@code .gz} or {@code .zip} suffix: the name of the CSV inside. */
+  public String inflatedName(String name) {
+    String lower = name.toLowerCase(Locale.ROOT);
+    if (lower.endsWith(".gz")) {
+      return name.substring(0, name.length() - 3);
+    }
+    return lower.endsWith(".zip") ? name.substring(0, name.length() - 4) : name;
+  }
+
+  private static InputStream inBackground(InputStream inflating) {
+    return new BackgroundInputStream(inflating, "csv-inflate", BLOCK_BYTES, BLOCKS_AHEAD);
+  }
+
+  /** {@code .csv}, or {@code .csv.gz} when output is gzipped. */
+  public String outputExtension() {
+    return gzipOutput ? ".csv.gz" : ".csv";
+  }
+
+  public boolean isGzipOutput() {
+    return gzipOutput;
+  }
+
+  /** Claims a new output file under {@code directory}, named with {@link #outputExtension()}. */
+  public Path newOutputPath(String directory) throws IOException {
+    return OutputFiles.newOutputPath(directory, outputExtension());
+  }
+
+  /** A buffered stream writing {@code path}, gzipped when output is. */
+  public OutputStream newOutputStream(Path path) throws IOException {
+    OutputStream file = Files.newOutputStream(path);
+    return new BufferedOutputStream(gzipOutput ? new GzipMembersOutputStream(file) : file);
+  }
+
+  /** Counts the bytes read from a source into its job. */
+  private static final class SourceProgress extends FilterInputStream {
+    private final MaskingJob job;
+
+    SourceProgress(InputStream in, MaskingJob job) {
+      super(in);
+      this.job = job;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = in.read();
+      if (b >= 0) {
+        job.sourceRead(1);
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int count = in.read(b, off, len);
+      if (count > 0) {
+        job.sourceRead(count);
+      }
+      return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = in.skip(n);
+      job.sourceRead(skipped);
+      return skipped;
+    }
+  }
+}
@@ -0,0 +1,9 @@
+package com.masking.service.common;
+
+/**
+ * A run of whole source records cut by {@link CsvChunkReader}, without the header.
+ *
+ * @param index position of the chunk in the source, starting at 0
+ * @param data the chunk's bytes, ending at a record boundary
+ */
+public record CsvChunk(int index, byte[] data) {}
@@ -0,0 +1,240 @@
+package com.masking.service.common;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cuts a CSV byte stream into chunks of whole records, so chunks can be parsed independently and
+ * in parallel. Boundaries depend only on the input bytes and the chunk size, never on how the
+ * stream delivers them, so a given source is always cut the same way.
+ *
+ * <p>A record ends at {@code \n}, {@code \r\n} or a lone {@code \r}, as for {@link CsvTokenizer}
+ * and commons-csv. With {@code quoteAware} a line break only ends a record outside a quoted field,
+ * following the RFC 4180 rules commons-csv applies for {@code CSVFormat.DEFAULT}: a quote opens a
+ * quoted field only at the start of a field, and {@code ""} inside one is an escaped quote. Without
+ * it every line break ends a record, which is what line-oriented readers expect.
+ */
+public class CsvChunkReader {
+
+  private static final int FIELD_START = 0;
+  private static final int UNQUOTED = 1;
+  private static final int QUOTED = 2;
+  private static final int QUOTE_IN_QUOTED = 3;
+
+  private final InputStream in;
+  private final int chunkBytes;
+  private final boolean quoteAware;
+
+  private byte[] buffer;
+  private int length;
+  private int scanned;
+  private int lastBoundary;
+  private int state = FIELD_START;
+  // The last byte scanned was a \r ending a record, unless the next one is a \n
+  private boolean afterCr;
+  private boolean eof;
+  private int nextIndex;
+  // Source bytes handed out so far, header included
+  private long position;
+
+  public CsvChunkReader(InputStream in, int chunkBytes, boolean quoteAware) {
+    this.in = in;
+    this.chunkBytes = Math.max(chunkBytes, 1024);
+    this.quoteAware = quoteAware;
+    this.buffer = new byte[this.chunkBytes];
+  }
+
+  /**
+   * Reads the first record, which must come before any {@link #nextChunk()}, and returns it
+   * without its line terminator, or null if the source is empty.
+   */
+  public String readHeaderRecord() throws IOException {
+    byte[] header = cut(true);
+    if (header == null) {
+      return null;
+    }
+    int end = header.length;
+    while (end > 0 && (header[end - 1] == '\n' || header[end - 1] == '\r')) {
+      end--;
+    }
+    return new String(header, 0, end, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Column names, in order, of a record read by {@link #readHeaderRecord()}. Names may repeat but,
+   * as commons-csv requires of {@code CSVFormat.DEFAULT} headers, none may be blank.
+   *
+   * @throws IllegalArgumentException if a name is blank
+   */
+  public static List<String> headerNames(String headerRecord) {
+    CsvTokenizer header = new CsvTokenizer(CsvScanner.scalar());
+    header.reset(headerRecord.getBytes(StandardCharsets.UTF_8)).next();
+    List<String> names = new ArrayList<>(header.size());
+    for (int i = 0; i < header.size(); i++) {
+      String name = header.field(i);
+      if (name.isBlank()) {
+        throw new IllegalArgumentException("A header name is missing in " + headerRecord);
+      }
+      names.add(name);
+    }
+    return names;
+  }
+
+  /**
+   * Column indexes by name, in header order, of a record read by {@link #readHeaderRecord()}. A
+   * repeated name refers to its last occurrence.
+   */
+  public static Map<String, Integer> parseHeader(String headerRecord) {
+    return MaskingStage.columnIndexes(headerNames(headerRecord));
+  }
+
+  /** True once every byte after the header has been handed out. */
+  public boolean isExhausted() throws IOException {
+    if (length == 0 && !eof) {
+      fill();
+    }
+    return length == 0 && eof;
+  }
+
+  /** Source bytes consumed by the header and the chunks handed out so far. */
+  public long position() {
+    return position;
+  }
+
+  /**
+   * Continues at source byte {@code offset}, the {@link #position()} after an earlier run's chunk
+   * {@code nextIndex - 1}, numbering chunks from {@code nextIndex} on. Call it after {@link
+   * #readHeaderRecord()} and before the first {@link #nextChunk()}; {@code offset} must fall on a
+   * record boundary.
+   *
+   * @throws EOFException if the source ends before {@code offset}
+   */
+  public void resumeAt(long offset, int nextIndex) throws IOException {
+    long skip = offset - position;
+    if (skip < 0) {
+      throw new IllegalStateException("Cannot resume at " + offset + ", already at " + position);
+    }
+    int buffered = (int) Math.min(skip, length);
+    System.arraycopy(buffer, buffered, buffer, 0, length - buffered);
+    length -= buffered;
+    in.skipNBytes(skip - buffered);
+    scanned = 0;
+    lastBoundary = 0;
+    state = FIELD_START;
+    afterCr = false;
+    position = offset;
+    this.nextIndex = nextIndex;
+  }
+
+  /** The next chunk of about {@code chunkBytes} bytes of whole records, or null at the end. */
+  public CsvChunk nextChunk() throws IOException {
+    byte[] data = cut(false);
+    return data != null ? new CsvChunk(nextIndex++, data) : null;
+  }
+
+  private byte[] cut(boolean firstRecordOnly) throws IOException {
+    while (true) {
+      scan(firstRecordOnly);
+      boolean full = length == buffer.length;
+      if (lastBoundary > 0 && (firstRecordOnly || full || eof)) {
+        return take(lastBoundary);
+      }
+      if (eof) {
+        // Last record without a trailing line break, or ending in a \r nothing follows
+        return length > 0 ? take(length) : null;
+      }
+      if (full) {
+        // A single record longer than the buffer
+        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+      }
+      fill();
+    }
+  }
+
+  private void fill() throws IOException {
+    int read = in.readNBytes(buffer, length, buffer.length - length);
+    length += read;
+    if (length < buffer.length) {
+      eof = true;
+    }
+  }
+
+  private void scan(boolean stopAtFirstBoundary) {
+    while (scanned < length) {
+      byte b = buffer[scanned];
+      if (afterCr) {
+        afterCr = false;
+        if (b != '\n') {
+          // A lone \r ended the record before this byte
+          lastBoundary = scanned;
+          if (stopAtFirstBoundary) {
+            return;
+          }
+        }
+      }
+      scanned++;
+      if (advance(b)) {
+        lastBoundary = scanned;
+        if (stopAtFirstBoundary) {
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Feeds one byte to the record state machine; true if it ends a record. A {@code \r} that may
+   * end one only sets {@link #afterCr}, since that depends on the byte after it.
+   */
+  private boolean advance(byte b) {
+    if (!quoteAware) {
+      afterCr = b == '\r';
+      return b == '\n';
+    }
+    switch (state) {
+      case QUOTED:
+        if (b == '"') {
+          state = QUOTE_IN_QUOTED;
+        }
+        return false;
+      case QUOTE_IN_QUOTED:
+        if (b == '"') {
+          state = QUOTED;
+          return false;
+        }
+        break;
+      case FIELD_START:
+        if (b == '"') {
+          state = QUOTED;
+          return false;
+        }
+        break;
+      default:
+        break;
+    }
+    if (b == '\n') {
+      state = FIELD_START;
+      return true;
+    }
+    afterCr = b == '\r';
+    state = b == ',' || afterCr ? FIELD_START : UNQUOTED;
+    return false;
+  }
+
+  /** Removes and returns the first {@code count} bytes of the buffer. */
+  private byte[] take(int count) {
+    byte[] data = Arrays.copyOf(buffer, count);
+    System.arraycopy(buffer, count, buffer, 0, length - count);
+    length -= count;
+    scanned -= count;
+    lastBoundary = 0;
+    position += count;
+    return data;
+  }
+}
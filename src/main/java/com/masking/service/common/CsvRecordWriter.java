@@ -0,0 +1,147 @@
+package com.masking.service.common;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Builds CSV output as UTF-8 bytes. Fields are quoted by the same minimal rules {@code
+ * CSVPrinter} applies for {@code CSVFormat.DEFAULT}, so output is byte for byte what the engines
+ * wrote through commons-csv: a field is quoted if it contains a comma, quote, CR or LF, starts
+ * with a character up to {@code '#'} or ends with one up to a space, and an empty first field is
+ * written as {@code ""} so that a record never reads as an empty line.
+ *
+ * <p>Fields copied from a {@link CsvTokenizer} go from bytes to bytes without being decoded.
+ */
+public final class CsvRecordWriter {
+
+  private final byte[] recordSeparator;
+
+  private byte[] buffer;
+  private int size;
+  private boolean newRecord = true;
+
+  // UTF-8 encoding of the last string field
+  private byte[] encoded = new byte[64];
+
+  public CsvRecordWriter(String recordSeparator, int initialCapacity) {
+    this.recordSeparator = recordSeparator.getBytes(StandardCharsets.UTF_8);
+    this.buffer = new byte[Math.max(initialCapacity, 64)];
+  }
+
+  public CsvRecordWriter field(String value) {
+    int length = encode(value);
+    if (length >= 0) {
+      return field(encoded, 0, length);
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    return field(bytes, 0, bytes.length);
+  }
+
+  /** Appends a field of {@code record}, or an empty field for a column it does not have. */
+  public CsvRecordWriter field(CsvTokenizer record, int column) {
+    if (column < 0 || column >= record.size()) {
+      return field(record.data(), 0, 0);
+    }
+    if (record.isQuoted(column)) {
+      int length = record.unescape(column);
+      return field(record.unescaped(), 0, length);
+    }
+    return field(record.data(), record.start(column), record.end(column));
+  }
+
+  public CsvRecordWriter endRecord() {
+    append(recordSeparator, 0, recordSeparator.length);
+    newRecord = true;
+    return this;
+  }
+
+  /** Appends a whole record, such as a header. */
+  public CsvRecordWriter record(List<String> values) {
+    for (String value : values) {
+      field(value);
+    }
+    return endRecord();
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public void writeTo(OutputStream out) throws IOException {
+    out.write(buffer, 0, size);
+  }
+
+  private CsvRecordWriter field(byte[] bytes, int from, int to) {
+    if (!newRecord) {
+      ensure(1);
+      buffer[size++] = ',';
+    }
+    if (!needsQuotes(bytes, from, to)) {
+      append(bytes, from, to);
+    } else {
+      ensure(2 * (to - from) + 2);
+      buffer[size++] = '"';
+      for (int i = from; i < to; i++) {
+        byte b = bytes[i];
+        if (b == '"') {
+          buffer[size++] = '"';
+        }
+        buffer[size++] = b;
+      }
+      buffer[size++] = '"';
+    }
+    newRecord = false;
+    return this;
+  }
+
+  private boolean needsQuotes(byte[] bytes, int from, int to) {
+    if (from == to) {
+      return newRecord;
+    }
+    if ((bytes[from] & 0xff) <= '#') {
+      return true;
+    }
+    for (int i = from; i < to; i++) {
+      byte b = bytes[i];
+      if (b == ',' || b == '"' || b == '\n' || b == '\r') {
+        return true;
+      }
+    }
+    // Multi-byte characters end in a continuation byte, which compares above a space
+    return (bytes[to - 1] & 0xff) <= ' ';
+  }
+
+  /**
+   * Encodes an ASCII {@code value} into {@link #encoded} and returns its length, or -1 if it has
+   * other characters and needs the full UTF-8 encoder.
+   */
+  private int encode(String value) {
+    int length = value.length();
+    if (encoded.length < length) {
+      encoded = new byte[Math.max(length, encoded.length * 2)];
+    }
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c >= 0x80) {
+        return -1;
+      }
+      encoded[i] = (byte) c;
+    }
+    return length;
+  }
+
+  private void append(byte[] bytes, int from, int to) {
+    ensure(to - from);
+    System.arraycopy(bytes, from, buffer, size, to - from);
+    size += to - from;
+  }
+
+  private void ensure(int extra) {
+    if (size + extra > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(size + extra, buffer.length * 2));
+    }
+  }
+}
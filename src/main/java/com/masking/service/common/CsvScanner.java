@@ -0,0 +1,49 @@
+package com.masking.service.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Finds the bytes {@link CsvTokenizer} stops at. Fields are scanned in bulk for their end instead
+ * of being fed byte by byte through a state machine, which is what lets a SIMD implementation
+ * compare a whole vector of bytes at once.
+ */
+public interface CsvScanner {
+
+  /** Index of the first {@code '"'} in {@code data[from, to)}, or {@code to} if there is none. */
+  int indexOfQuote(byte[] data, int from, int to);
+
+  /**
+   * Index of the first {@code ','}, {@code '\n'} or {@code '\r'} in {@code data[from, to)}, or
+   * {@code to} if there is none.
+   */
+  int indexOfDelimiter(byte[] data, int from, int to);
+
+  /** Plain loops; the JIT already unrolls them well for the short fields of most files. */
+  static CsvScanner scalar() {
+    return ScalarCsvScanner.INSTANCE;
+  }
+
+  /**
+   * The {@code jdk.incubator.vector} scanner when it was built, with the {@code vector} Maven
+   * profile, and the JVM was started with {@code --add-modules jdk.incubator.vector}; otherwise
+   * {@link #scalar()}. It lives in its own source set so the default build does not depend on an
+   * incubator module.
+   */
+  static CsvScanner vector() {
+    Logger logger = LoggerFactory.getLogger(CsvScanner.class);
+    if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+      logger.warn("jdk.incubator.vector is not available; CSV fields are scanned without SIMD");
+      return scalar();
+    }
+    try {
+      return (CsvScanner)
+          Class.forName(CsvScanner.class.getPackageName() + ".VectorCsvScanner")
+              .getDeclaredConstructor()
+              .newInstance();
+    } catch (ReflectiveOperationException e) {
+      logger.warn("Built without the vector profile; CSV fields are scanned without SIMD");
+      return scalar();
+    }
+  }
+}
@@ -0,0 +1,189 @@
+package com.masking.service.common;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Splits CSV bytes into records and fields without decoding them. A record only stores where each
+ * field starts and ends; {@link #field(int)} decodes a field when it is asked for and {@link
+ * CsvRecordWriter#field(CsvTokenizer, int)} copies one as bytes, so columns that pass through
+ * unchanged are never turned into strings.
+ *
+ * <p>Records follow RFC 4180 as {@code CSVFormat.DEFAULT} reads it: fields are separated by
+ * commas, records by LF, CRLF or CR, a field starting with {@code "} is quoted and {@code ""}
+ * inside it is an escaped quote, and empty lines are skipped. A quote elsewhere in a field is kept
+ * as it is, and text between a closing quote and the next delimiter is kept rather than rejected.
+ *
+ * <p>One tokenizer is reused for every record of a chunk and is not thread safe.
+ */
+public final class CsvTokenizer {
+
+  private final CsvScanner scanner;
+
+  private byte[] data;
+  private int position;
+  private int limit;
+
+  private int size;
+  private int[] starts = new int[16];
+  private int[] ends = new int[16];
+  private boolean[] quoted = new boolean[16];
+
+  // Unescaped content of the last quoted field asked for
+  private byte[] unescaped = new byte[64];
+
+  public CsvTokenizer(CsvScanner scanner) {
+    this.scanner = scanner;
+  }
+
+  /** Starts over on the records in {@code data}. */
+  public CsvTokenizer reset(byte[] data) {
+    return reset(data, 0, data.length);
+  }
+
+  /** Starts over on the records in {@code data[from, to)}. */
+  public CsvTokenizer reset(byte[] data, int from, int to) {
+    this.data = data;
+    this.position = from;
+    this.limit = to;
+    this.size = 0;
+    return this;
+  }
+
+  /** Moves to the next record; false, with no fields, once every record has been read. */
+  public boolean next() {
+    size = 0;
+    while (position < limit) {
+      byte first = data[position];
+      if (first == '\n') {
+        position++;
+      } else if (first == '\r') {
+        position++;
+        if (position < limit && data[position] == '\n') {
+          position++;
+        }
+      } else {
+        parseRecord();
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Number of fields in the current record. */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * The decoded value of a field, or the empty string for a column the record does not have, so
+   * short records read as if padded with empty fields.
+   */
+  public String field(int column) {
+    if (column < 0 || column >= size) {
+      return "";
+    }
+    if (!quoted[column]) {
+      int start = starts[column];
+      return new String(data, start, ends[column] - start, StandardCharsets.UTF_8);
+    }
+    int length = unescape(column);
+    return new String(unescaped, 0, length, StandardCharsets.UTF_8);
+  }
+
+  byte[] data() {
+    return data;
+  }
+
+  int start(int column) {
+    return starts[column];
+  }
+
+  int end(int column) {
+    return ends[column];
+  }
+
+  boolean isQuoted(int column) {
+    return quoted[column];
+  }
+
+  /** Content bytes of a quoted field as they were before quoting, left in {@link #unescaped()}. */
+  int unescape(int column) {
+    int end = ends[column];
+    if (unescaped.length < end - starts[column]) {
+      unescaped = new byte[Math.max(end - starts[column], unescaped.length * 2)];
+    }
+    int length = 0;
+    boolean inQuotes = true;
+    for (int i = starts[column] + 1; i < end; i++) {
+      byte b = data[i];
+      if (inQuotes && b == '"') {
+        if (i + 1 < end && data[i + 1] == '"') {
+          unescaped[length++] = '"';
+          i++;
+        } else {
+          inQuotes = false;
+        }
+      } else {
+        unescaped[length++] = b;
+      }
+    }
+    return length;
+  }
+
+  byte[] unescaped() {
+    return unescaped;
+  }
+
+  private void parseRecord() {
+    int pos = position;
+    while (true) {
+      int start = pos;
+      boolean isQuoted = pos < limit && data[pos] == '"';
+      if (isQuoted) {
+        pos = afterClosingQuote(pos + 1);
+      }
+      pos = scanner.indexOfDelimiter(data, pos, limit);
+      add(start, pos, isQuoted);
+      if (pos == limit) {
+        position = limit;
+        return;
+      }
+      byte delimiter = data[pos++];
+      if (delimiter != ',') {
+        if (delimiter == '\r' && pos < limit && data[pos] == '\n') {
+          pos++;
+        }
+        position = pos;
+        return;
+      }
+    }
+  }
+
+  /** Index just past the quote closing a quoted field, or the limit if it is never closed. */
+  private int afterClosingQuote(int pos) {
+    while (true) {
+      int quote = scanner.indexOfQuote(data, pos, limit);
+      if (quote == limit) {
+        return limit;
+      }
+      if (quote + 1 < limit && data[quote + 1] == '"') {
+        pos = quote + 2;
+      } else {
+        return quote + 1;
+      }
+    }
+  }
+
+  private void add(int start, int end, boolean isQuoted) {
+    if (size == starts.length) {
+      starts = Arrays.copyOf(starts, size * 2);
+      ends = Arrays.copyOf(ends, size * 2);
+      quoted = Arrays.copyOf(quoted, size * 2);
+    }
+    starts[size] = start;
+    ends[size] = end;
+    quoted[size] = isQuoted;
+    size++;
+  }
+}
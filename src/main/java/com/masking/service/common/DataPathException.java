@@ -0,0 +1,9 @@
+package com.masking.service.common;
+
+/** A server-side data path that is missing, ambiguous or outside the configured data root. */
+public class DataPathException extends RuntimeException {
+
+  public DataPathException(String message) {
+    super(message);
+  }
+}
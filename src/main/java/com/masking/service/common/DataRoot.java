@@ -0,0 +1,109 @@
+package com.masking.service.common;
+
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Server-side input files for co-located batch jobs. Instead of uploading a CSV, a request can name
+ * a file relative to {@code masking.data-root}; it is read in place through a memory mapping. Paths
+ * are resolved against the real path of the root, after following symbolic links, and anything
+ * that ends up outside it is refused. With no data root configured the mode is off.
+ */
+@Service
+public class DataRoot {
+
+  private static final Logger logger = LoggerFactory.getLogger(DataRoot.class);
+
+  @Value("${masking.data-root:}")
+  private String dataRoot;
+
+  private Path root;
+
+  @PostConstruct
+  void init() throws IOException {
+    if (!dataRoot.isBlank()) {
+      root = Paths.get(dataRoot).toRealPath();
+      if (!Files.isDirectory(root)) {
+        throw new IllegalStateException("masking.data-root is not a directory: " + dataRoot);
+      }
+      logger.info("Serving server-side input files from {}", root);
+    }
+  }
+
+  /**
+   * The uploaded file, or the file {@code dataPath} names under the data root, or null when the
+   * request gives neither.
+   *
+   * @throws DataPathException if both are given or the path is not a readable file under the root
+   */
+  public MultipartFile select(
+      MultipartFile upload, String dataPath, String uploadParam, String pathParam) {
+    boolean hasPath = dataPath != null && !dataPath.isBlank();
+    if (upload != null && hasPath) {
+      throw new DataPathException("Give either " + uploadParam + " or " + pathParam + ", not both");
+    }
+    if (!hasPath) {
+      return upload;
+    }
+    try {
+      return new DataRootFile(uploadParam, resolve(dataPath));
+    } catch (IOException e) {
+      throw new DataPathException("Cannot read " + pathParam + " '" + dataPath + "'");
+    }
+  }
+
+  /** Like {@link #select} but one of the two is required. */
+  public MultipartFile require(
+      MultipartFile upload, String dataPath, String uploadParam, String pathParam) {
+    MultipartFile file = select(upload, dataPath, uploadParam, pathParam);
+    if (file == null) {
+      throw new DataPathException("Upload " + uploadParam + " or give " + pathParam);
+    }
+    return file;
+  }
+
+  /** True if {@code file} was selected by a path under the data root rather than uploaded. */
+  public boolean contains(MultipartFile file) {
+    return root != null
+        && file instanceof DataRootFile selected
+        && selected.path().startsWith(root);
+  }
+
+  private Path resolve(String dataPath) throws IOException {
+    if (root == null) {
+      throw new DataPathException("Server-side paths are disabled; set masking.data-root");
+    }
+    Path file;
+    try {
+      file = root.resolve(dataPath).normalize();
+    } catch (InvalidPathException e) {
+      throw new DataPathException("Invalid data path '" + dataPath + "'");
+    }
+    if (file.startsWith(root)) {
+      try {
+        // Follow links before the final check so a link cannot point out of the root
+        file = file.toRealPath();
+      } catch (NoSuchFileException e) {
+        throw new DataPathException("No file '" + dataPath + "' under the data root");
+      }
+    }
+    if (!file.startsWith(root)) {
+      logger.warn("Refused data path outside the data root: {}", dataPath);
+      throw new DataPathException("Data path '" + dataPath + "' is outside the data root");
+    }
+    if (!Files.isRegularFile(file) || !Files.isReadable(file)) {
+      throw new DataPathException("Data path '" + dataPath + "' is not a readable file");
+    }
+    return file;
+  }
+}
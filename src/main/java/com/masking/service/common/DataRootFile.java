@@ -0,0 +1,71 @@
+package com.masking.service.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * A file under the data root presented as an upload, so the masking engines and the lookup table
+ * loader read it exactly like a multipart file, but through {@link MappedFileInputStream} and
+ * without a spooled copy.
+ */
+final class DataRootFile implements MultipartFile {
+
+  private final String name;
+  private final Path path;
+  private final long size;
+
+  DataRootFile(String name, Path path) throws IOException {
+    this.name = name;
+    this.path = path;
+    this.size = Files.size(path);
+  }
+
+  Path path() {
+    return path;
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public String getOriginalFilename() {
+    return path.getFileName().toString();
+  }
+
+  @Override
+  public String getContentType() {
+    return "text/csv";
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @Override
+  public long getSize() {
+    return size;
+  }
+
+  @Override
+  public byte[] getBytes() throws IOException {
+    return Files.readAllBytes(path);
+  }
+
+  @Override
+  public InputStream getInputStream() throws IOException {
+    return new MappedFileInputStream(path);
+  }
+
+  @Override
+  public void transferTo(File dest) throws IOException {
+    Files.copy(path, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+  }
+}
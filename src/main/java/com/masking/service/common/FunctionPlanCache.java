@@ -0,0 +1,78 @@
+package com.masking.service.common;
+
+import com.masking.model.CompiledFunction;
+import com.masking.model.MaskingFunctionType;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Bounded LRU cache of compiled function plans, keyed by function type and normalized function
+ * text. Only valid plans are cached, so an invalid function is re-validated (and reported) every
+ * time. Plans are immutable, which makes sharing one between concurrent requests safe.
+ */
+@Service
+public class FunctionPlanCache {
+
+  private final int maxEntries;
+  private final Map<String, CompiledFunction<?>> entries;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  public FunctionPlanCache(@Value("${masking.plan-cache.max-entries:256}") int maxEntries) {
+    this.maxEntries = maxEntries;
+    this.entries =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, CompiledFunction<?>> eldest) {
+            return size() > FunctionPlanCache.this.maxEntries;
+          }
+        };
+  }
+
+  /**
+   * Returns the cached plan for {@code function}, or compiles it with {@code compiler} and caches
+   * the result if it is valid. Compilation runs outside the lock, so two requests racing on the
+   * same new function may both compile it; the plans they produce are equal.
+   */
+  @SuppressWarnings("unchecked")
+  public <P> CompiledFunction<P> compile(
+      MaskingFunctionType type, String function, Function<String, CompiledFunction<P>> compiler) {
+    String key = type + ":" + type.normalize(function);
+    CompiledFunction<P> cached;
+    synchronized (entries) {
+      cached = (CompiledFunction<P>) entries.get(key);
+    }
+    if (cached != null) {
+      hits.incrementAndGet();
+      return cached;
+    }
+
+    misses.incrementAndGet();
+    CompiledFunction<P> compiled = compiler.apply(function);
+    if (compiled.isValid() && maxEntries > 0) {
+      synchronized (entries) {
+        entries.put(key, compiled);
+      }
+    }
+    return compiled;
+  }
+
+  public Map<String, Long> stats() {
+    long size;
+    synchronized (entries) {
+      size = entries.size();
+    }
+    return Map.of(
+        "size", size, "maxEntries", (long) maxEntries, "hits", hits.get(), "misses", misses.get());
+  }
+
+  public void clear() {
+    synchronized (entries) {
+      entries.clear();
+    }
+  }
+}
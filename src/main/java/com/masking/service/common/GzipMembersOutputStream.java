@@ -0,0 +1,87 @@
+package com.masking.service.common;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes gzip as a series of members. {@link #endMember()} completes what was written so far as a
+ * member of its own, and the next write starts another; gzip readers, {@code GZIPInputStream} and
+ * {@code gunzip} among them, read the members back to back as one stream. A checkpoint can so mark
+ * a length at which the file is complete gzip.
+ */
+final class GzipMembersOutputStream extends OutputStream {
+
+  private static final int BUFFER_BYTES = 64 * 1024;
+
+  private final OutputStream out;
+  private GZIPOutputStream member;
+  private boolean written;
+
+  GzipMembersOutputStream(OutputStream out) {
+    this.out = out;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    member().write(b);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    if (len > 0) {
+      member().write(b, off, len);
+    }
+  }
+
+  private GZIPOutputStream member() throws IOException {
+    if (member == null) {
+      // Closing a member ends its deflater but leaves the file open
+      member =
+          new GZIPOutputStream(
+              new FilterOutputStream(out) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                  out.write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                  flush();
+                }
+              },
+              BUFFER_BYTES);
+      written = true;
+    }
+    return member;
+  }
+
+  /** Completes the current member, if any, and flushes it to the underlying stream. */
+  void endMember() throws IOException {
+    if (member != null) {
+      member.close();
+      member = null;
+    }
+    out.flush();
+  }
+
+  @Override
+  public void flush() throws IOException {
+    // Deflated bytes go out as the deflater emits them; only endMember() forces the rest
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      if (!written) {
+        // Even an empty output is a valid gzip file
+        member();
+      }
+      endMember();
+    } finally {
+      out.close();
+    }
+  }
+}
@@ -0,0 +1,220 @@
+package com.masking.service.common;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+/**
+ * Admission control for masking jobs. At most {@code masking.jobs.max-concurrent} jobs run at
+ * once; further jobs wait in FIFO order, up to {@code masking.jobs.max-queued} of them for at most
+ * {@code masking.jobs.queue-timeout-ms}. A job that finds the queue full is rejected with 429, one
+ * that waits too long with 503, so a burst of large uploads cannot exhaust memory or CPU.
+ *
+ * <p>Requests run on virtual threads, so waiting here is cheap; the limit is on the work itself.
+ * Asynchronous jobs, already queued by {@link MaskingJobService}, wait for a slot without a limit.
+ * Running and queued jobs are published as the {@code masking.jobs.active} and {@code
+ * masking.jobs.queued} gauges.
+ */
+@Service
+public class JobAdmission {
+
+  private static final Logger logger = LoggerFactory.getLogger(JobAdmission.class);
+
+  // How often an asynchronous job waiting for a slot checks whether it was cancelled
+  private static final long CANCEL_CHECK_MS = 250;
+
+  // 0 means one running job per core
+  @Value("${masking.jobs.max-concurrent:0}")
+  private int maxConcurrent;
+
+  @Value("${masking.jobs.max-queued:16}")
+  private int maxQueued;
+
+  @Value("${masking.jobs.queue-timeout-ms:30000}")
+  private long queueTimeoutMs;
+
+  private Semaphore permits;
+  private final AtomicInteger queued = new AtomicInteger();
+  private final AtomicInteger running = new AtomicInteger();
+
+  @Autowired private MeterRegistry meterRegistry;
+
+  @PostConstruct
+  void init() {
+    if (maxConcurrent <= 0) {
+      maxConcurrent = Runtime.getRuntime().availableProcessors();
+    }
+    permits = new Semaphore(maxConcurrent, true);
+    Gauge.builder("masking.jobs.active", running, AtomicInteger::get)
+        .description("Masking jobs holding a slot")
+        .register(meterRegistry);
+    Gauge.builder("masking.jobs.queued", queued, AtomicInteger::get)
+        .description("Masking jobs waiting for a slot")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Blocks until the job may run and returns the permit to close when it is done.
+   *
+   * @throws JobRejectedException if the queue is full (429) or the wait timed out (503)
+   */
+  public Permit admit() {
+    MaskingJob job = MaskingJob.current();
+    if (job != null) {
+      return admit(job);
+    }
+    if (!acquireIfFree()) {
+      if (queued.incrementAndGet() > maxQueued) {
+        queued.decrementAndGet();
+        logger.warn("Rejecting masking job: {} running and {} queued", running.get(), maxQueued);
+        throw new JobRejectedException(
+            HttpStatus.TOO_MANY_REQUESTS,
+            "Too many masking jobs are running or queued; retry later.",
+            retryAfterSeconds());
+      }
+      try {
+        if (!permits.tryAcquire(queueTimeoutMs, TimeUnit.MILLISECONDS)) {
+          logger.warn("Masking job waited {} ms without a free slot", queueTimeoutMs);
+          throw new JobRejectedException(
+              HttpStatus.SERVICE_UNAVAILABLE,
+              "No masking slot became free within " + queueTimeoutMs + " ms; retry later.",
+              retryAfterSeconds());
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new JobRejectedException(
+            HttpStatus.SERVICE_UNAVAILABLE, "Interrupted while waiting for a slot.", 1);
+      } finally {
+        queued.decrementAndGet();
+      }
+    }
+    running.incrementAndGet();
+    return new Permit();
+  }
+
+  /** Takes a free slot unless jobs are already waiting for one, without blocking. */
+  private boolean acquireIfFree() {
+    try {
+      // Unlike tryAcquire(), a timed acquire honours fairness and never barges past queued jobs
+      return permits.tryAcquire(0, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new JobRejectedException(
+          HttpStatus.SERVICE_UNAVAILABLE, "Interrupted while waiting for a slot.", 1);
+    }
+  }
+
+  /**
+   * Admission for an asynchronous job, which {@link MaskingJobService} has already queued: it waits
+   * as long as it takes, without counting against {@code masking.jobs.max-queued}, but gives up its
+   * place once cancelled.
+   *
+   * @throws CancellationException if the job is cancelled while it waits
+   */
+  private Permit admit(MaskingJob job) {
+    queued.incrementAndGet();
+    try {
+      while (!permits.tryAcquire(CANCEL_CHECK_MS, TimeUnit.MILLISECONDS)) {
+        job.checkCancelled();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CancellationException("Interrupted while waiting for a slot");
+    } finally {
+      queued.decrementAndGet();
+    }
+    running.incrementAndGet();
+    return new Permit();
+  }
+
+  public Map<String, Long> stats() {
+    return Map.of(
+        "running", (long) running.get(),
+        "queued", (long) queued.get(),
+        "maxConcurrent", (long) maxConcurrent,
+        "maxQueued", (long) maxQueued);
+  }
+
+  private long retryAfterSeconds() {
+    return Math.max(1, TimeUnit.MILLISECONDS.toSeconds(queueTimeoutMs));
+  }
+
+  /**
+   * A running job's slot; closing it more than once, from any thread, releases it once, so a
+   * streamed response and the end of its request can both close it. Whatever the job holds for
+   * its whole run, such as the lookup tables it leased, is released along with it.
+   */
+  public final class Permit implements AutoCloseable {
+    private final AtomicBoolean released = new AtomicBoolean();
+    private final List<Runnable> onRelease;
+
+    private Permit() {
+      this(new ArrayList<>());
+    }
+
+    private Permit(List<Runnable> onRelease) {
+      this.onRelease = onRelease;
+    }
+
+    /**
+     * Runs {@code action} when the slot is released, after the job is done.
+     *
+     * @throws IllegalStateException if the permit is already released
+     */
+    public synchronized void onRelease(Runnable action) {
+      if (released.get()) {
+        throw new IllegalStateException("Permit already released");
+      }
+      onRelease.add(action);
+    }
+
+    /**
+     * Moves the slot, and what is to be released with it, to a new permit, for a job that carries
+     * on after the request handler returns, such as a streamed response; closing this permit
+     * afterwards releases nothing.
+     */
+    public synchronized Permit handOff() {
+      if (released.getAndSet(true)) {
+        throw new IllegalStateException("Permit already released");
+      }
+      return new Permit(new ArrayList<>(onRelease));
+    }
+
+    @Override
+    public void close() {
+      List<Runnable> actions;
+      synchronized (this) {
+        if (released.getAndSet(true)) {
+          return;
+        }
+        actions = List.copyOf(onRelease);
+      }
+      try {
+        for (Runnable action : actions) {
+          try {
+            action.run();
+          } catch (RuntimeException e) {
+            logger.error("Error releasing what a masking job held", e);
+          }
+        }
+      } finally {
+        running.decrementAndGet();
+        permits.release();
+      }
+    }
+  }
+}
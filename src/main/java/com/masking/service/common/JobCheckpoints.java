@@ -0,0 +1,300 @@
+package com.masking.service.common;
+
+import com.masking.model.table.LookupTable;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Checkpoints of long masking jobs, so a job that fails or dies with the server can be resumed by
+ * sending the same request again. Every {@code masking.checkpoint.interval-ms} a running job saves
+ * the source offset and chunk number it has masked up to, its rows, and how many output bytes hold
+ * them, once those bytes are on disk. A resumed job cuts its output back to that length and carries
+ * on from that offset, so the output ends up byte for byte what an uninterrupted job writes. A
+ * gzipped output ends a gzip member at each checkpoint, so it is cut back to complete gzip and
+ * inflates to the same CSV.
+ *
+ * <p>Only a source named under the data root can be resumed, since an upload is gone with its
+ * request. A checkpoint is keyed by everything the output depends on: the function and its
+ * settings, the source file's path, size and modification time, and the lookup table's contents.
+ */
+@Service
+public class JobCheckpoints {
+
+  private static final Logger logger = LoggerFactory.getLogger(JobCheckpoints.class);
+
+  @Value("${masking.checkpoint.dir:checkpoints}")
+  private String directory;
+
+  // 0 turns checkpoints off
+  @Value("${masking.checkpoint.interval-ms:10000}")
+  private long intervalMs;
+
+  @Autowired private DataRoot dataRoot;
+  @Autowired private CompressedStreams compressedStreams;
+
+  // Checkpoints a running job holds, so two identical requests never resume the same one
+  private final Set<String> active = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Starts a job writing under {@code outputDirectory}: resumes its checkpoint if it has a usable
+   * one, and otherwise claims a new output file. A job that cannot be checkpointed still gets a
+   * run, which then only writes the output.
+   *
+   * @param settings everything besides the source and the table that the output depends on
+   */
+  public Run open(
+      String outputDirectory,
+      String function,
+      String settings,
+      MultipartFile source,
+      LookupTable lookupTable)
+      throws IOException {
+    if (intervalMs <= 0 || !dataRoot.contains(source)) {
+      return new Run(null, compressedStreams.newOutputPath(outputDirectory), null);
+    }
+    String key =
+        key(
+            function,
+            settings + compressedStreams.outputExtension(),
+            ((DataRootFile) source).path(),
+            lookupTable);
+    if (!active.add(key)) {
+      logger.info("Checkpoint {} is held by a running job; masking without checkpoints", key);
+      return new Run(null, compressedStreams.newOutputPath(outputDirectory), null);
+    }
+    try {
+      Run run = resume(key);
+      return run != null
+          ? run
+          : new Run(key, compressedStreams.newOutputPath(outputDirectory), null);
+    } catch (IOException | RuntimeException e) {
+      active.remove(key);
+      throw e;
+    }
+  }
+
+  private Run resume(String key) throws IOException {
+    Path file = checkpointFile(key);
+    if (!Files.exists(file)) {
+      return null;
+    }
+    Properties saved = new Properties();
+    try (InputStream in = Files.newInputStream(file)) {
+      saved.load(in);
+    }
+    Path output = Paths.get(saved.getProperty("output"));
+    long outputBytes = Long.parseLong(saved.getProperty("outputBytes"));
+    if (!Files.isRegularFile(output) || Files.size(output) < outputBytes) {
+      logger.warn("Output {} of checkpoint {} is gone or short; starting over", output, key);
+      Files.delete(file);
+      return null;
+    }
+    logger.info("Resuming {} at row {} from checkpoint {}", output, saved.getProperty("rows"), key);
+    return new Run(key, output, saved);
+  }
+
+  private Path checkpointFile(String key) {
+    return Paths.get(directory, key + ".properties");
+  }
+
+  private static String key(String function, String settings, Path source, LookupTable table)
+      throws IOException {
+    MessageDigest digest = sha256();
+    update(digest, function);
+    update(digest, settings);
+    update(digest, source.toString());
+    update(digest, String.valueOf(Files.size(source)));
+    update(digest, String.valueOf(Files.getLastModifiedTime(source).toMillis()));
+    if (table != null) {
+      update(digest, table.index("CHECKPOINT:content", JobCheckpoints::contentDigest));
+    }
+    return HexFormat.of().formatHex(digest.digest(), 0, 16);
+  }
+
+  /** Digest of a table's headers and values, cached on the table like its other indexes. */
+  private static String contentDigest(LookupTable table) {
+    MessageDigest digest = sha256();
+    table.getHeaders().forEach(header -> update(digest, header));
+    for (int row = 0; row < table.getRowCount(); row++) {
+      for (int column = 0; column < table.getHeaders().size(); column++) {
+        update(digest, table.getValue(row, column));
+      }
+    }
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  private static void update(MessageDigest digest, String value) {
+    // Length-prefixed, so no two different value lists hash the same bytes
+    byte[] bytes = value != null ? value.getBytes(StandardCharsets.UTF_8) : new byte[0];
+    digest.update(ByteBuffer.allocate(4).putInt(value != null ? bytes.length : -1).flip());
+    digest.update(bytes);
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * One job's output file and checkpoint. Hand it to {@link ChunkedCsvProcessor} as the listener,
+   * call {@link #complete()} once every row is written, or {@link #discard()} if there is nothing
+   * to write, and close it in any case; a job closed otherwise keeps its checkpoint and output for
+   * the next attempt.
+   */
+  public final class Run implements ChunkedCsvProcessor.WriteListener, AutoCloseable {
+    private final String key;
+    private final Path outputPath;
+    private final FileChannel channel;
+    private final OutputStream output;
+    // The gzip stream under output when output is gzipped
+    private final GzipMembersOutputStream gzip;
+    private final long sourceOffset;
+    private final int nextChunk;
+    private final long rows;
+    private long savedAt = System.nanoTime();
+    private boolean closed;
+
+    private Run(String key, Path outputPath, Properties saved) throws IOException {
+      this.key = key;
+      this.outputPath = outputPath;
+      this.channel = FileChannel.open(outputPath, StandardOpenOption.WRITE);
+      if (saved != null) {
+        sourceOffset = Long.parseLong(saved.getProperty("sourceOffset"));
+        nextChunk = Integer.parseInt(saved.getProperty("nextChunk"));
+        rows = Long.parseLong(saved.getProperty("rows"));
+        // Bytes past the checkpoint belong to chunks that are masked again
+        long outputBytes = Long.parseLong(saved.getProperty("outputBytes"));
+        channel.truncate(outputBytes);
+        channel.position(outputBytes);
+      } else {
+        sourceOffset = 0;
+        nextChunk = 0;
+        rows = 0;
+      }
+      OutputStream file = Channels.newOutputStream(channel);
+      if (compressedStreams.isGzipOutput()) {
+        gzip = new GzipMembersOutputStream(new BufferedOutputStream(file, 64 * 1024));
+        output = new BufferedOutputStream(gzip);
+      } else {
+        gzip = null;
+        output = new BufferedOutputStream(file);
+      }
+      MaskingJob job = MaskingJob.current();
+      if (job != null && key != null) {
+        job.outputResumable(outputPath);
+      }
+    }
+
+    public Path outputPath() {
+      return outputPath;
+    }
+
+    public OutputStream output() {
+      return output;
+    }
+
+    /** True if the output already holds the header and the rows before {@link #sourceOffset()}. */
+    public boolean isResuming() {
+      return sourceOffset > 0;
+    }
+
+    /** Source offset to continue from, for {@link CsvChunkReader#resumeAt(long, int)}. */
+    public long sourceOffset() {
+      return sourceOffset;
+    }
+
+    public int nextChunk() {
+      return nextChunk;
+    }
+
+    @Override
+    public void written(OutputStream out, int nextChunk, long sourcePosition, long rowsWritten)
+        throws IOException {
+      if (key == null || System.nanoTime() - savedAt < TimeUnit.MILLISECONDS.toNanos(intervalMs)) {
+        return;
+      }
+      out.flush();
+      if (gzip != null) {
+        gzip.endMember();
+      }
+      // The rows go to disk before the checkpoint that counts them
+      channel.force(false);
+      Properties checkpoint = new Properties();
+      checkpoint.setProperty("output", outputPath.toString());
+      checkpoint.setProperty("sourceOffset", String.valueOf(sourcePosition));
+      checkpoint.setProperty("nextChunk", String.valueOf(nextChunk));
+      checkpoint.setProperty("rows", String.valueOf(rows + rowsWritten));
+      checkpoint.setProperty("outputBytes", String.valueOf(channel.position()));
+      checkpoint.setProperty("savedAt", Instant.now().toString());
+      Path file = checkpointFile(key);
+      Files.createDirectories(file.getParent());
+      Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+      try (OutputStream stream = Files.newOutputStream(temporary)) {
+        checkpoint.store(stream, null);
+      }
+      Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+      savedAt = System.nanoTime();
+    }
+
+    /** Closes the finished output and drops its checkpoint. */
+    public void complete() throws IOException {
+      output.close();
+      if (key != null) {
+        Files.deleteIfExists(checkpointFile(key));
+      }
+      close();
+    }
+
+    /** Closes and deletes the output, and its checkpoint, of a job with nothing to write. */
+    public void discard() throws IOException {
+      close();
+      Files.deleteIfExists(outputPath);
+      if (key != null) {
+        Files.deleteIfExists(checkpointFile(key));
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      try {
+        output.close();
+      } finally {
+        if (key != null) {
+          active.remove(key);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,24 @@
+package com.masking.service.common;
+
+import org.springframework.http.HttpStatus;
+
+/** A masking job turned away by {@link JobAdmission}, with the HTTP status to answer with. */
+public class JobRejectedException extends RuntimeException {
+
+  private final HttpStatus status;
+  private final long retryAfterSeconds;
+
+  public JobRejectedException(HttpStatus status, String message, long retryAfterSeconds) {
+    super(message);
+    this.status = status;
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  public HttpStatus getStatus() {
+    return status;
+  }
+
+  public long getRetryAfterSeconds() {
+    return retryAfterSeconds;
+  }
+}
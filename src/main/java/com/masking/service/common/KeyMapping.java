@@ -0,0 +1,88 @@
+package com.masking.service.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Masks the values of a key column through a function, mapping each distinct value once. The
+ * mapping is shared by every column and table masked with it, so a key and the foreign keys that
+ * refer to it are masked alike, and the first value a random function picks for a key sticks.
+ */
+public final class KeyMapping {
+
+  private final MaskingStage function;
+  private final Map<String, String> mapped = new ConcurrentHashMap<>();
+
+  /**
+   * @param function a stage compiled against a single input column, the key, whose first output
+   *     column is the masked key
+   */
+  public KeyMapping(MaskingStage function) {
+    this.function = function;
+  }
+
+  /** Number of distinct values mapped so far. */
+  public int size() {
+    return mapped.size();
+  }
+
+  /**
+   * A stage masking, in place, each column of {@code inputColumns} that {@code mappings} has a
+   * mapping for; other columns pass through.
+   */
+  public static MaskingStage stage(List<String> inputColumns, Map<String, KeyMapping> mappings) {
+    List<Integer> columns = new ArrayList<>();
+    List<KeyMapping> columnMappings = new ArrayList<>();
+    for (int i = 0; i < inputColumns.size(); i++) {
+      KeyMapping mapping = mappings.get(inputColumns.get(i));
+      if (mapping != null) {
+        columns.add(i);
+        columnMappings.add(mapping);
+      }
+    }
+    return new MaskingStage(
+        List.copyOf(inputColumns),
+        chunk -> {
+          Mapper[] mappers = new Mapper[inputColumns.size()];
+          for (int i = 0; i < columns.size(); i++) {
+            mappers[columns.get(i)] = columnMappings.get(i).new Mapper(chunk);
+          }
+          return (record, out) -> {
+            for (int i = 0; i < mappers.length; i++) {
+              if (mappers[i] == null) {
+                out.add(record, i);
+              } else {
+                out.add(mappers[i].map(record.get(i)));
+              }
+            }
+          };
+        });
+  }
+
+  /** Maps values for one chunk, running the function on this chunk's worker. */
+  private final class Mapper {
+    private final MaskingStage.Worker worker;
+    private final MaskedRecord key = new MaskedRecord();
+    private final MaskedRecord masked = new MaskedRecord();
+
+    Mapper(CsvChunk chunk) {
+      this.worker = function.worker(chunk);
+    }
+
+    String map(String value) {
+      String known = mapped.get(value);
+      if (known != null) {
+        return known;
+      }
+      key.reset(null);
+      key.add(value);
+      masked.reset(null);
+      worker.mask(key, masked);
+      // Another chunk may have mapped the value meanwhile; the first mapping wins
+      String raced = mapped.putIfAbsent(value, masked.get(0));
+      return raced != null ? raced : masked.get(0);
+    }
+  }
+}
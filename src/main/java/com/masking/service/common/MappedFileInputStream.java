@@ -0,0 +1,97 @@
+package com.masking.service.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * Reads a file through a read-only memory mapping, one window of at most 1 GiB at a time, so bytes
+ * are copied straight out of the page cache without a read call per buffer. Windows are unmapped
+ * when they are garbage collected.
+ */
+final class MappedFileInputStream extends InputStream {
+
+  private static final long WINDOW_SIZE = 1L << 30;
+  private static final ByteBuffer CLOSED = ByteBuffer.allocate(0);
+
+  private final FileChannel channel;
+  private final long size;
+  private long windowStart;
+  private ByteBuffer window;
+
+  MappedFileInputStream(Path file) throws IOException {
+    this.channel = FileChannel.open(file, StandardOpenOption.READ);
+    this.size = channel.size();
+    this.window = map(0);
+  }
+
+  @Override
+  public int read() throws IOException {
+    return nextWindow() ? window.get() & 0xff : -1;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    Objects.checkFromIndexSize(off, len, b.length);
+    if (len == 0) {
+      return 0;
+    }
+    if (!nextWindow()) {
+      return -1;
+    }
+    int n = Math.min(len, window.remaining());
+    window.get(b, off, n);
+    return n;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    long skipped = 0;
+    while (skipped < n && nextWindow()) {
+      int step = (int) Math.min(n - skipped, window.remaining());
+      window.position(window.position() + step);
+      skipped += step;
+    }
+    return skipped;
+  }
+
+  @Override
+  public int available() {
+    if (window == CLOSED) {
+      return 0;
+    }
+    return (int) Math.min(Integer.MAX_VALUE, size - windowStart - window.position());
+  }
+
+  @Override
+  public void close() throws IOException {
+    window = CLOSED;
+    channel.close();
+  }
+
+  /** True once the current window has bytes left, mapping the next one if needed. */
+  private boolean nextWindow() throws IOException {
+    if (window.hasRemaining()) {
+      return true;
+    }
+    if (window == CLOSED) {
+      throw new IOException("Stream closed");
+    }
+    long next = windowStart + window.capacity();
+    if (next >= size) {
+      return false;
+    }
+    window = map(next);
+    return true;
+  }
+
+  private MappedByteBuffer map(long start) throws IOException {
+    windowStart = start;
+    return channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, size - start));
+  }
+}
@@ -0,0 +1,79 @@
+package com.masking.service.common;
+
+import java.util.Arrays;
+
+/**
+ * A record on its way through the {@link MaskingStage}s. Each column is either a field of the
+ * source record, which is only decoded if a stage reads it and otherwise copied to the output as
+ * bytes, or a value a stage produced. Two records are reused for every record of a chunk.
+ */
+public final class MaskedRecord {
+
+  private CsvTokenizer source;
+  private int size;
+
+  // Source field of each column, or -1 for a column holding a value
+  private int[] sourceFields = new int[16];
+  private String[] values = new String[16];
+
+  /** Empties the record for the next stage of the current {@code source} record. */
+  void reset(CsvTokenizer source) {
+    this.source = source;
+    this.size = 0;
+  }
+
+  /** Appends field {@code field} of the source record, which reads as empty if it is missing. */
+  void addSource(int field) {
+    append(field, null);
+  }
+
+  public MaskedRecord add(String value) {
+    append(-1, value);
+    return this;
+  }
+
+  /** Appends {@code column} of {@code record}, or an empty value for a column it does not have. */
+  public MaskedRecord add(MaskedRecord record, int column) {
+    if (column < 0 || column >= record.size) {
+      return add("");
+    }
+    append(record.sourceFields[column], record.values[column]);
+    return this;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /** The value of a column, or the empty string for a column the record does not have. */
+  public String get(int column) {
+    if (column < 0 || column >= size) {
+      return "";
+    }
+    int field = sourceFields[column];
+    return field >= 0 ? source.field(field) : values[column];
+  }
+
+  /** Writes the record, ending it. */
+  void writeTo(CsvRecordWriter output) {
+    for (int i = 0; i < size; i++) {
+      int field = sourceFields[i];
+      if (field >= 0) {
+        output.field(source, field);
+      } else {
+        output.field(values[i]);
+      }
+    }
+    output.endRecord();
+  }
+
+  private void append(int field, String value) {
+    if (size == sourceFields.length) {
+      sourceFields = Arrays.copyOf(sourceFields, size * 2);
+      values = Arrays.copyOf(values, size * 2);
+    }
+    sourceFields[size] = field;
+    values[size] = value;
+    size++;
+  }
+}
@@ -0,0 +1,208 @@
+package com.masking.service.common;
+
+import com.masking.component.ValidationResponse;
+import com.masking.model.job.MaskingJobState;
+import com.masking.model.job.MaskingJobStatus;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An asynchronous masking job run by {@link MaskingJobService}: its state, progress and result.
+ * While it runs the job is bound to its thread, so {@link ChunkedCsvProcessor} counts rows into it
+ * and stops at the next chunk once it is cancelled, {@link CompressedStreams} counts the source
+ * bytes read, {@link JobAdmission} lets it wait for a slot without a timeout, and {@link
+ * OutputFiles} records the files it writes, all without the engines passing the job along.
+ */
+public final class MaskingJob {
+
+  private static final ThreadLocal<MaskingJob> CURRENT = new ThreadLocal<>();
+
+  private final String id;
+  private final String function;
+  private final long sourceBytes;
+  private final Instant submittedAt = Instant.now();
+
+  private final LongAdder rows = new LongAdder();
+  // Bytes of the source files as stored, so compressed bytes for a compressed source
+  private final LongAdder bytesRead = new LongAdder();
+  // System.nanoTime() when the first source bytes were read, 0 before
+  private final AtomicLong readingSince = new AtomicLong();
+  private final List<Path> outputs = new CopyOnWriteArrayList<>();
+  // Outputs a checkpoint can resume; kept when the job fails
+  private final Set<Path> resumable = ConcurrentHashMap.newKeySet();
+
+  private volatile boolean cancelRequested;
+  private MaskingJobState state = MaskingJobState.QUEUED;
+  private Instant startedAt;
+  private Instant finishedAt;
+  private ValidationResponse result;
+
+  MaskingJob(String id, String function, long sourceBytes) {
+    this.id = id;
+    this.function = function;
+    this.sourceBytes = sourceBytes;
+  }
+
+  /** The job the calling thread runs, or null outside asynchronous jobs. */
+  public static MaskingJob current() {
+    return CURRENT.get();
+  }
+
+  /**
+   * Calls {@code task} with {@code job} bound to this thread, for work a job hands to threads of
+   * its own; a null job runs it unbound.
+   */
+  public static <T> T runAs(MaskingJob job, Callable<T> task) throws Exception {
+    MaskingJob previous = CURRENT.get();
+    CURRENT.set(job);
+    try {
+      return task.call();
+    } finally {
+      if (previous != null) {
+        CURRENT.set(previous);
+      } else {
+        CURRENT.remove();
+      }
+    }
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  /**
+   * @throws CancellationException once the job has been asked to stop
+   */
+  public void checkCancelled() {
+    if (cancelRequested) {
+      throw new CancellationException("Masking job " + id + " was cancelled");
+    }
+  }
+
+  void sourceRead(long bytes) {
+    readingSince.compareAndSet(0, System.nanoTime());
+    bytesRead.add(bytes);
+  }
+
+  void rowsMasked(long count) {
+    rows.add(count);
+  }
+
+  void outputCreated(Path path) {
+    outputs.add(path);
+  }
+
+  void outputResumable(Path path) {
+    if (!outputs.contains(path)) {
+      outputs.add(path);
+    }
+    resumable.add(path);
+  }
+
+  List<Path> outputs() {
+    return outputs;
+  }
+
+  /** True for a checkpointed output of a job that was not cancelled, so it can be resumed. */
+  boolean keepsOutput(Path path) {
+    return !cancelRequested && resumable.contains(path);
+  }
+
+  /** Moves a queued job to running; false if it was cancelled first. */
+  synchronized boolean start() {
+    if (state != MaskingJobState.QUEUED) {
+      return false;
+    }
+    state = MaskingJobState.RUNNING;
+    startedAt = Instant.now();
+    return true;
+  }
+
+  /**
+   * Asks the job to stop. A queued job is cancelled at once; a running one stops at its next check.
+   *
+   * @return true if the job was still queued, and so never runs
+   */
+  synchronized boolean cancel() {
+    if (state.isFinished()) {
+      return false;
+    }
+    cancelRequested = true;
+    if (state == MaskingJobState.QUEUED) {
+      finish(new ValidationResponse("CANCELLED", List.of("Cancelled before it started")));
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Records the job's response. A job that did not succeed after it was asked to stop counts as
+   * cancelled; one whose rows were all written before that still succeeded.
+   */
+  synchronized void finish(ValidationResponse response) {
+    if (succeeded(response)) {
+      state = MaskingJobState.SUCCEEDED;
+      result = response;
+    } else if (cancelRequested) {
+      state = MaskingJobState.CANCELLED;
+      result =
+          "CANCELLED".equals(response.getStatus())
+              ? response
+              : new ValidationResponse(
+                  "CANCELLED", List.of("Cancelled after " + rows.sum() + " rows"));
+    } else {
+      state = MaskingJobState.FAILED;
+      result = response;
+    }
+    finishedAt = Instant.now();
+  }
+
+  static boolean succeeded(ValidationResponse response) {
+    return "SUCCESS".equalsIgnoreCase(response.getStatus());
+  }
+
+  synchronized boolean finishedBefore(Instant instant) {
+    return finishedAt != null && finishedAt.isBefore(instant);
+  }
+
+  public synchronized MaskingJobStatus status() {
+    long read = bytesRead.sum();
+    Double percentDone = null;
+    Long etaSeconds = null;
+    long since = readingSince.get();
+    if (state == MaskingJobState.SUCCEEDED) {
+      percentDone = 100.0;
+    } else if (since != 0 && sourceBytes > 0) {
+      percentDone = Math.min(100.0, read * 100.0 / sourceBytes);
+      long elapsedNanos = System.nanoTime() - since;
+      if (state == MaskingJobState.RUNNING && read > 0 && elapsedNanos > 0) {
+        double remainingBytes = Math.max(0, sourceBytes - read);
+        etaSeconds =
+            (long) Math.ceil(remainingBytes * elapsedNanos / read / TimeUnit.SECONDS.toNanos(1));
+      }
+    }
+    return new MaskingJobStatus(
+        id,
+        function,
+        state,
+        submittedAt,
+        startedAt,
+        finishedAt,
+        rows.sum(),
+        read,
+        sourceBytes,
+        percentDone,
+        etaSeconds,
+        outputs.stream().map(Path::toString).toList(),
+        result);
+  }
+}
@@ -0,0 +1,279 @@
+package com.masking.service.common;
+
+import com.masking.component.ValidationResponse;
+import com.masking.model.job.MaskingJobStatus;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Runs masking jobs in the background so a client does not hold a connection open for a whole job.
+ * Jobs wait in FIFO order for one of {@code masking.jobs.async.workers} workers, up to {@code
+ * masking.jobs.async.max-pending} of them, then run like a synchronous request, still through
+ * {@link JobAdmission} so both kinds share its slots. Finished jobs are kept for {@code
+ * masking.jobs.async.retention-minutes} for their status to be read.
+ */
+@Service
+public class MaskingJobService {
+
+  private static final Logger logger = LoggerFactory.getLogger(MaskingJobService.class);
+
+  /** The work of one job, giving the response a synchronous request would have. */
+  @FunctionalInterface
+  public interface Task {
+    ValidationResponse run() throws Exception;
+  }
+
+  // 0 means one worker per core
+  @Value("${masking.jobs.async.workers:0}")
+  private int workers;
+
+  @Value("${masking.jobs.async.max-pending:64}")
+  private int maxPending;
+
+  @Value("${masking.jobs.async.retention-minutes:60}")
+  private long retentionMinutes;
+
+  private ThreadPoolExecutor executor;
+  private final Map<String, Entry> jobs = new ConcurrentHashMap<>();
+
+  private static final class Entry {
+    final MaskingJob job;
+    final Path spoolDirectory;
+    Runnable runner;
+
+    Entry(MaskingJob job, Path spoolDirectory) {
+      this.job = job;
+      this.spoolDirectory = spoolDirectory;
+    }
+  }
+
+  @PostConstruct
+  void start() {
+    if (workers <= 0) {
+      workers = Runtime.getRuntime().availableProcessors();
+    }
+    AtomicInteger workerCount = new AtomicInteger();
+    executor =
+        new ThreadPoolExecutor(
+            workers,
+            workers,
+            0,
+            TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(maxPending),
+            task -> {
+              Thread thread = new Thread(task, "masking-job-" + workerCount.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  /** Starts collecting the inputs of a job; close it once the job is submitted or abandoned. */
+  public Submission newSubmission() {
+    return new Submission();
+  }
+
+  /** The job's status, or null if there is no such job or it has expired. */
+  public MaskingJobStatus status(String id) {
+    evictExpired();
+    Entry entry = jobs.get(id);
+    return entry != null ? entry.job.status() : null;
+  }
+
+  /** Every job still kept, newest first. */
+  public List<MaskingJobStatus> list() {
+    evictExpired();
+    return jobs.values().stream()
+        .map(entry -> entry.job.status())
+        .sorted(Comparator.comparing(MaskingJobStatus::getSubmittedAt).reversed())
+        .toList();
+  }
+
+  /**
+   * Cancels a job: a queued job never starts and a running one stops at its next chunk, its output
+   * deleted. Finished jobs are left as they are, as is a job that writes its last row meanwhile.
+   *
+   * @return the job's status afterwards, or null if there is no such job
+   */
+  public MaskingJobStatus cancel(String id) {
+    Entry entry = jobs.get(id);
+    if (entry == null) {
+      return null;
+    }
+    if (entry.job.cancel()) {
+      // Frees its place in the queue at once; a runner already taken off it finds it cancelled
+      executor.remove(entry.runner);
+      deleteSpool(entry);
+      logger.info("Cancelled queued masking job {}", id);
+    } else if (!entry.job.status().getState().isFinished()) {
+      logger.info("Cancelling running masking job {}", id);
+    }
+    return entry.job.status();
+  }
+
+  private void run(Entry entry, Task task) {
+    MaskingJob job = entry.job;
+    if (!job.start()) {
+      return;
+    }
+    logger.info("Running masking job {}", job.getId());
+    ValidationResponse response;
+    try {
+      response = MaskingJob.runAs(job, task::run);
+      if (response == null) {
+        response = new ValidationResponse("ERROR", List.of("The job gave no response."));
+      }
+    } catch (Exception e) {
+      logger.error("Masking job {} failed", job.getId(), e);
+      response =
+          new ValidationResponse("ERROR", List.of("Internal Server Error: " + e.getMessage()));
+    } finally {
+      deleteSpool(entry);
+    }
+    if (!MaskingJob.succeeded(response)) {
+      // Partial output of a failed or cancelled job is of no use, unless a checkpoint resumes it
+      // when the request is sent again; it goes before the state shows
+      for (Path output : job.outputs()) {
+        if (job.keepsOutput(output)) {
+          continue;
+        }
+        try {
+          FileSystemUtils.deleteRecursively(output);
+        } catch (IOException e) {
+          logger.warn("Could not delete output {} of job {}", output, job.getId(), e);
+        }
+        job.outputs().remove(output);
+      }
+    }
+    job.finish(response);
+    MaskingJobStatus status = job.status();
+    logger.info(
+        "Masking job {} {} after {} rows",
+        job.getId(),
+        status.getState(),
+        status.getRowsProcessed());
+  }
+
+  private void evictExpired() {
+    Instant cutoff = Instant.now().minus(Duration.ofMinutes(retentionMinutes));
+    jobs.values().removeIf(entry -> entry.job.finishedBefore(cutoff));
+  }
+
+  private static void deleteSpool(Entry entry) {
+    if (entry.spoolDirectory != null) {
+      try {
+        FileSystemUtils.deleteRecursively(entry.spoolDirectory);
+      } catch (IOException e) {
+        logger.warn("Could not delete spooled inputs {}", entry.spoolDirectory, e);
+      }
+    }
+  }
+
+  @PreDestroy
+  void shutdown() {
+    jobs.values().forEach(entry -> entry.job.cancel());
+    executor.shutdownNow();
+  }
+
+  /**
+   * The inputs of a job being submitted. Uploads are copied to a spool directory, since the
+   * request's own copies are deleted when it ends; files under the data root are used in place.
+   * Until the job is submitted, closing the submission deletes the copies.
+   */
+  public final class Submission implements AutoCloseable {
+    private Path spoolDirectory;
+    private long sourceBytes;
+    private boolean submitted;
+
+    private Submission() {}
+
+    /** A source file, whose size the job's progress is measured against. */
+    public MultipartFile source(MultipartFile file) throws IOException {
+      MultipartFile kept = input(file);
+      sourceBytes += kept.getSize();
+      return kept;
+    }
+
+    /** Any other input file, such as a lookup table; null stays null. */
+    public MultipartFile input(MultipartFile file) throws IOException {
+      if (file == null || file instanceof DataRootFile) {
+        return file;
+      }
+      if (spoolDirectory == null) {
+        spoolDirectory = Files.createTempDirectory("masking-job-");
+      }
+      // A subdirectory per file keeps its original name, which tables are named after
+      Path copy = Files.createTempDirectory(spoolDirectory, "upload-").resolve(spooledName(file));
+      file.transferTo(copy);
+      return new DataRootFile(file.getName(), copy);
+    }
+
+    /**
+     * Queues the job.
+     *
+     * @throws JobRejectedException (429) if {@code masking.jobs.async.max-pending} jobs are queued
+     */
+    public MaskingJobStatus submit(String function, Task task) {
+      evictExpired();
+      MaskingJob job = new MaskingJob(UUID.randomUUID().toString(), function, sourceBytes);
+      Entry entry = new Entry(job, spoolDirectory);
+      entry.runner = () -> run(entry, task);
+      jobs.put(job.getId(), entry);
+      try {
+        executor.execute(entry.runner);
+      } catch (RejectedExecutionException e) {
+        jobs.remove(job.getId());
+        logger.warn("Rejecting masking job: {} jobs already pending", maxPending);
+        throw new JobRejectedException(
+            HttpStatus.TOO_MANY_REQUESTS,
+            "Too many masking jobs are pending; retry later.",
+            TimeUnit.MINUTES.toSeconds(1));
+      }
+      submitted = true;
+      logger.info("Queued {} masking job {}", function, job.getId());
+      return job.status();
+    }
+
+    @Override
+    public void close() {
+      if (!submitted && spoolDirectory != null) {
+        try {
+          FileSystemUtils.deleteRecursively(spoolDirectory);
+        } catch (IOException e) {
+          logger.warn("Could not delete spooled inputs {}", spoolDirectory, e);
+        }
+      }
+    }
+
+    private static String spooledName(MultipartFile file) {
+      // Only the last path element of a client-given name, so the copy stays in its directory
+      String name = file.getOriginalFilename();
+      name =
+          name == null
+              ? ""
+              : name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\')) + 1);
+      return name.isBlank() || name.equals(".") || name.equals("..") ? "upload.csv" : name;
+    }
+  }
+}
@@ -0,0 +1,120 @@
+package com.masking.service.common;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Micrometer meters of masking jobs, each tagged with the {@code function} that ran: a {@link
+ * com.masking.model.MaskingFunctionType} name, {@link #PIPELINE} or {@link #MULTI_TABLE}. Served
+ * in Prometheus format at {@code /actuator/prometheus}:
+ *
+ * <ul>
+ *   <li>{@code masking.phase}: time spent per {@link Phase}
+ *   <li>{@code masking.rows}, {@code masking.bytes}: source rows masked, bytes read and written
+ *   <li>{@code masking.throughput}: rows per second of each job
+ *   <li>{@code masking.lookups}: source keys that found a lookup row, or did not
+ * </ul>
+ *
+ * Running and queued jobs and lookup cache memory are gauges of {@link JobAdmission} and the
+ * lookup table registry.
+ */
+@Service
+public class MaskingMetrics {
+
+  public static final String PIPELINE = "PIPELINE";
+  public static final String MULTI_TABLE = "MULTI_TABLE";
+
+  /** Where a job spends its time, in order. */
+  public enum Phase {
+    /** Compiling the function and checking the columns it names. */
+    VALIDATION,
+    /** Parsing or fetching the lookup table. */
+    LOOKUP_LOAD,
+    /** Reading the source and cutting it into chunks. */
+    PARSE,
+    /** Tokenizing and masking chunks, summed over the worker threads. */
+    MASK,
+    /** Writing masked chunks to the output file or response. */
+    WRITE;
+
+    String tag() {
+      return name().toLowerCase(Locale.ROOT);
+    }
+  }
+
+  @Autowired private MeterRegistry registry;
+
+  /** A clock for the phases of one job that run on the calling thread, started now. */
+  public Clock clock(String function) {
+    return new Clock(function);
+  }
+
+  public void record(String function, Phase phase, long nanos) {
+    Timer.builder("masking.phase")
+        .description("Time masking jobs spend per phase")
+        .tags("function", function, "phase", phase.tag())
+        .register(registry)
+        .record(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  /** Records a masked source: its rows, bytes in and out, and the time masking it took. */
+  public void processed(String function, long rows, long bytesRead, long bytesWritten, long nanos) {
+    Counter.builder("masking.rows")
+        .description("Source rows masked")
+        .tag("function", function)
+        .register(registry)
+        .increment(rows);
+    bytes(function, "read").increment(bytesRead);
+    bytes(function, "written").increment(bytesWritten);
+    if (nanos > 0) {
+      DistributionSummary.builder("masking.throughput")
+          .description("Rows masked per second, per job")
+          .baseUnit("rows.per.second")
+          .tag("function", function)
+          .register(registry)
+          .record(rows * 1e9 / nanos);
+    }
+  }
+
+  /**
+   * The counter of source keys that matched a lookup row ({@code hit}) or none. Fetch it once per
+   * stage; incrementing it is cheap enough for every record.
+   */
+  public Counter lookups(String function, boolean hit) {
+    return Counter.builder("masking.lookups")
+        .description("Source keys looked up, by whether a lookup row matched")
+        .tags("function", function, "result", hit ? "hit" : "miss")
+        .register(registry);
+  }
+
+  private Counter bytes(String function, String direction) {
+    return Counter.builder("masking.bytes")
+        .description("CSV bytes masking jobs read and wrote")
+        .baseUnit("bytes")
+        .tags("function", function, "direction", direction)
+        .register(registry);
+  }
+
+  /** Times consecutive phases of a job on one thread. */
+  public final class Clock {
+    private final String function;
+    private long lapStarted = System.nanoTime();
+
+    private Clock(String function) {
+      this.function = function;
+    }
+
+    /** Records the time since the previous lap, or since the clock started, as {@code phase}. */
+    public void lap(Phase phase) {
+      long now = System.nanoTime();
+      record(function, phase, now - lapStarted);
+      lapStarted = now;
+    }
+  }
+}
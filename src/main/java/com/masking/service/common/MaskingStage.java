@@ -0,0 +1,41 @@
+package com.masking.service.common;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * One masking function compiled against the columns of the records it receives. {@link
+ * ChunkedCsvProcessor} chains stages so each reads the records the previous one produced, which
+ * lets several functions mask a source in a single pass.
+ *
+ * @param outputColumns names of the columns of the records the stage produces
+ * @param workers creates the worker masking the records of one chunk; workers of different chunks
+ *     run concurrently and share the stage's read-only state
+ */
+public record MaskingStage(List<String> outputColumns, Function<CsvChunk, Worker> workers) {
+
+  /** Masks the records of one chunk; not thread safe. */
+  @FunctionalInterface
+  public interface Worker {
+    /** Appends the columns of the masked record to {@code output}, which starts out empty. */
+    void mask(MaskedRecord input, MaskedRecord output);
+  }
+
+  public Worker worker(CsvChunk chunk) {
+    return workers.apply(chunk);
+  }
+
+  /**
+   * Column positions by name, in column order. A repeated name refers to its last occurrence, as
+   * in a header parsed by {@link CsvChunkReader#parseHeader(String)}, which builds on this.
+   */
+  public static Map<String, Integer> columnIndexes(List<String> columns) {
+    Map<String, Integer> indexes = new LinkedHashMap<>();
+    for (int i = 0; i < columns.size(); i++) {
+      indexes.put(columns.get(i), i);
+    }
+    return indexes;
+  }
+}
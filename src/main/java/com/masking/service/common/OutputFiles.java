@@ -0,0 +1,68 @@
+package com.masking.service.common;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Names and claims output files for the masking engines. Files claimed for an asynchronous {@link
+ * MaskingJob} are recorded in it, so its status can name them and a cancelled job removes them.
+ */
+public final class OutputFiles {
+
+  private OutputFiles() {}
+
+  /**
+   * Creates an empty {@code <directory>/output_<ddHHmmss>.csv} and returns its path. Concurrent
+   * jobs finishing in the same second get {@code _1}, {@code _2}, ... suffixes instead of writing
+   * over each other, because the file is claimed atomically before it is handed out.
+   */
+  public static Path newOutputPath(String directory) throws IOException {
+    return newOutputPath(directory, ".csv");
+  }
+
+  /** {@link #newOutputPath(String)} with another extension, such as {@code .csv.gz}. */
+  public static Path newOutputPath(String directory, String extension) throws IOException {
+    Files.createDirectories(Paths.get(directory));
+    String timestamp = new SimpleDateFormat("ddHHmmss").format(new Date());
+    for (int attempt = 0; ; attempt++) {
+      String suffix = attempt == 0 ? "" : "_" + attempt;
+      Path candidate = Paths.get(directory, "output_" + timestamp + suffix + extension);
+      try {
+        return claimed(Files.createFile(candidate));
+      } catch (FileAlreadyExistsException e) {
+        // taken by a concurrent job, try the next suffix
+      }
+    }
+  }
+
+  /**
+   * Creates an empty {@code <directory>/job_<ddHHmmss>} directory for a job writing several files
+   * and returns its path, claimed the same way as {@link #newOutputPath(String)}.
+   */
+  public static Path newOutputDirectory(String directory) throws IOException {
+    Files.createDirectories(Paths.get(directory));
+    String timestamp = new SimpleDateFormat("ddHHmmss").format(new Date());
+    for (int attempt = 0; ; attempt++) {
+      String suffix = attempt == 0 ? "" : "_" + attempt;
+      Path candidate = Paths.get(directory, "job_" + timestamp + suffix);
+      try {
+        return claimed(Files.createDirectory(candidate));
+      } catch (FileAlreadyExistsException e) {
+        // taken by a concurrent job, try the next suffix
+      }
+    }
+  }
+
+  private static Path claimed(Path path) {
+    MaskingJob job = MaskingJob.current();
+    if (job != null) {
+      job.outputCreated(path);
+    }
+    return path;
+  }
+}
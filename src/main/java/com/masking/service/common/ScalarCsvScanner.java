@@ -0,0 +1,29 @@
+package com.masking.service.common;
+
+final class ScalarCsvScanner implements CsvScanner {
+
+  static final ScalarCsvScanner INSTANCE = new ScalarCsvScanner();
+
+  private ScalarCsvScanner() {}
+
+  @Override
+  public int indexOfQuote(byte[] data, int from, int to) {
+    for (int i = from; i < to; i++) {
+      if (data[i] == '"') {
+        return i;
+      }
+    }
+    return to;
+  }
+
+  @Override
+  public int indexOfDelimiter(byte[] data, int from, int to) {
+    for (int i = from; i < to; i++) {
+      byte b = data[i];
+      if (b == ',' || b == '\n' || b == '\r') {
+        return i;
+      }
+    }
+    return to;
+  }
+}
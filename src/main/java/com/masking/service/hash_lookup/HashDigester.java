@@ -0,0 +1,169 @@
+package com.masking.service.hash_lookup;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-job HASH_LOOKUP hashing: the seed is encoded once, the {@link MessageDigest} is reused per
+ * thread and keys are fed to it straight from a reused byte buffer, so hashing a row costs little
+ * more than the digest itself.
+ *
+ * <p>For a {@link KeyedHashAlgorithm} the seed is not prepended to the key but turned into the
+ * algorithm's 128-bit key: k0 is the xxHash64 of the seed's UTF-8 bytes under seed 0, k1 the
+ * xxHash64 of the same bytes under seed k0. No seed means an all-zero key.
+ */
+public class HashDigester {
+
+  public static final String DEFAULT_ALGORITHM = "SHA-256";
+
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  // One digest instance per algorithm per thread; MessageDigest is not thread safe.
+  private static final ThreadLocal<Map<String, MessageDigest>> DIGESTS =
+      ThreadLocal.withInitial(HashMap::new);
+
+  // Scratch buffer for the UTF-8 encoding of a key, grown on demand.
+  private static final ThreadLocal<byte[]> KEY_BUFFER =
+      ThreadLocal.withInitial(() -> new byte[256]);
+
+  private final String algorithm;
+  private final KeyedHashAlgorithm keyedAlgorithm;
+  private final byte[] seedBytes;
+  private final long k0;
+  private final long k1;
+  private final boolean rawDigestKeys;
+
+  public HashDigester(String algorithm, String seed, boolean rawDigestKeys) {
+    this.algorithm = algorithm != null ? algorithm : DEFAULT_ALGORITHM;
+    this.keyedAlgorithm = KeyedHashAlgorithm.fromName(this.algorithm);
+    this.seedBytes = seed != null ? seed.getBytes(StandardCharsets.UTF_8) : new byte[0];
+    this.k0 = seed != null ? XxHash64.hash(0, seedBytes, 0, seedBytes.length) : 0;
+    this.k1 = seed != null ? XxHash64.hash(k0, seedBytes, 0, seedBytes.length) : 0;
+    this.rawDigestKeys = rawDigestKeys;
+    if (keyedAlgorithm == null) {
+      // Fail fast on an unknown algorithm instead of on the first row.
+      digestInstance();
+    }
+  }
+
+  /** True if {@code algorithm} is a {@link KeyedHashAlgorithm} or a JDK MessageDigest name. */
+  public static boolean isSupported(String algorithm) {
+    if (KeyedHashAlgorithm.fromName(algorithm) != null) {
+      return true;
+    }
+    try {
+      MessageDigest.getInstance(algorithm);
+      return true;
+    } catch (NoSuchAlgorithmException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Digest of {@code seed + key}, byte-for-byte what the former string concatenation produced, or
+   * the keyed hash of {@code key} for a {@link KeyedHashAlgorithm}.
+   */
+  public byte[] digest(String key) {
+    byte[] data = keyBuffer(key.length());
+    int length = encodeAscii(key, data);
+    if (length < 0) {
+      data = key.getBytes(StandardCharsets.UTF_8);
+      length = data.length;
+    }
+    if (keyedAlgorithm != null) {
+      return keyedAlgorithm.hash(k0, k1, data, 0, length);
+    }
+    MessageDigest md = digestInstance();
+    md.update(seedBytes);
+    md.update(data, 0, length);
+    return md.digest();
+  }
+
+  /**
+   * Key under which a digest is stored in and probed from the lookup index: the raw digest bytes,
+   * or their hex form when raw comparison is switched off.
+   */
+  public Object indexKey(String key) {
+    byte[] digest = digest(key);
+    return rawDigestKeys ? new DigestKey(digest) : toHex(digest);
+  }
+
+  public static String toHex(byte[] bytes) {
+    char[] hex = new char[bytes.length * 2];
+    for (int i = 0, j = 0; i < bytes.length; i++) {
+      int v = bytes[i] & 0xff;
+      hex[j++] = HEX_DIGITS[v >>> 4];
+      hex[j++] = HEX_DIGITS[v & 0x0f];
+    }
+    return new String(hex);
+  }
+
+  private MessageDigest digestInstance() {
+    Map<String, MessageDigest> digests = DIGESTS.get();
+    MessageDigest md = digests.get(algorithm);
+    if (md == null) {
+      try {
+        md = MessageDigest.getInstance(algorithm);
+      } catch (NoSuchAlgorithmException e) {
+        throw new IllegalArgumentException("Unsupported hash algorithm: " + algorithm, e);
+      }
+      digests.put(algorithm, md);
+    }
+    return md;
+  }
+
+  private static byte[] keyBuffer(int length) {
+    byte[] buffer = KEY_BUFFER.get();
+    if (length > buffer.length) {
+      buffer = new byte[Math.max(length, buffer.length * 2)];
+      KEY_BUFFER.set(buffer);
+    }
+    return buffer;
+  }
+
+  /**
+   * ASCII fast path of UTF-8 encoding into the thread's scratch buffer. Returns -1 when the key has
+   * non-ASCII characters so the caller falls back to {@link String#getBytes}.
+   */
+  private static int encodeAscii(String key, byte[] buffer) {
+    int length = key.length();
+    for (int i = 0; i < length; i++) {
+      char c = key.charAt(i);
+      if (c >= 0x80) {
+        return -1;
+      }
+      buffer[i] = (byte) c;
+    }
+    return length;
+  }
+
+  /** Raw digest bytes usable as a hash map key. */
+  static final class DigestKey {
+    private final byte[] bytes;
+    private final int hash;
+
+    DigestKey(byte[] bytes) {
+      this.bytes = bytes;
+      // Digest output is uniformly distributed, so its leading bytes make a good hash code.
+      int h = 0;
+      for (int i = 0; i < Math.min(4, bytes.length); i++) {
+        h = (h << 8) | (bytes[i] & 0xff);
+      }
+      this.hash = h;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof DigestKey other && Arrays.equals(bytes, other.bytes);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+}
@@ -1,240 +1,274 @@
 package com.masking.service.hash_lookup;
 
 import com.masking.component.ValidationResponse;
-import com.masking.model.hash_lookup.HashLookupStore;
+import com.masking.model.MaskingFunctionType;
+import com.masking.model.hash_lookup.HashLookupPlan;
+import com.masking.model.table.KeyIndex;
+import com.masking.model.table.LookupTable;
+import com.masking.service.common.ChunkedCsvProcessor;
+import com.masking.service.common.CompressedStreams;
+import com.masking.service.common.CsvChunkReader;
+import com.masking.service.common.CsvRecordWriter;
+import com.masking.service.common.CsvTokenizer;
+import com.masking.service.common.JobCheckpoints;
+import com.masking.service.common.MaskingMetrics;
+import com.masking.service.common.MaskingStage;
+import io.micrometer.core.instrument.Counter;
 import java.io.*;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.security.MessageDigest;
-import java.text.SimpleDateFormat;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.function.IntFunction;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 @Service
 public class HashLookupCsvGenerator {
 
+  @Value("${masking.hash-lookup.compare-raw-digest:true}")
+  private boolean compareRawDigest;
+
+  @Autowired private ChunkedCsvProcessor chunkedCsvProcessor;
+  @Autowired private MaskingMetrics maskingMetrics;
+  @Autowired private JobCheckpoints jobCheckpoints;
+  @Autowired private CompressedStreams compressedStreams;
+
+  // Records have always been written with the platform line separator
+  private static final String RECORD_SEPARATOR = System.lineSeparator();
+
+  /**
+   * Streams the source CSV through the HASH_LOOKUP masking in line-aligned chunks, masked in
+   * parallel and written in order, so only the lookup table and the chunks in flight are held in
+   * memory. A job over a data-root source is checkpointed and resumed by {@link JobCheckpoints}.
+   */
   public ValidationResponse process(
-      MultipartFile sourceCsv, MultipartFile lookupCsv, HashLookupStore hashLookupStore)
+      MultipartFile sourceCsv, LookupTable lookupTable, HashLookupPlan hashLookupPlan)
       throws Exception {
-    ValidationResponse validationResponse = new ValidationResponse();
-    String outputDir = "hash_lookup";
-    Files.createDirectories(Paths.get(outputDir));
-    String timestamp = new SimpleDateFormat("ddHHmmss").format(new Date());
-    String outputCsvPath = outputDir + "/output_" + timestamp + ".csv";
-
-    List<Map<String, String>> sourceData = readCsv(sourceCsv);
-    List<Map<String, String>> lookupData = readCsv(lookupCsv);
-    System.out.println("Source Data: " + sourceData);
-    System.out.println("Lookup Data: " + lookupData);
-
-    Map<String, Map<String, String>> lookupMap = buildLookupMap(lookupData, hashLookupStore);
-    List<String> outputHeader =
-        prepareOutputHeader(sourceData, hashLookupStore, validationResponse);
-    List<Map<String, String>> outputRows = new ArrayList<>();
-
-    for (Map<String, String> sourceRow : sourceData) {
-      String hashedKey = hashValue(sourceRow, lookupData, hashLookupStore);
-      String reversedLookupColumnValue =
-          resolveHashToLookupValue(hashedKey, lookupData, hashLookupStore);
-      System.out.println("Hashed Key: " + hashedKey);
-      System.out.println("Source Key: " + reversedLookupColumnValue);
-
-      Map<String, String> matchedRow =
-          getMatchedRow(reversedLookupColumnValue, lookupMap, lookupData, hashLookupStore);
-      Map<String, String> outputRow = createOutputRow(sourceRow, matchedRow, hashLookupStore);
-      System.out.println("Output Row: " + outputRow);
-
-      outputRows.add(outputRow);
+    String outputCsvPath;
+    try (InputStream sourceStream = compressedStreams.openSource(sourceCsv);
+        JobCheckpoints.Run run =
+            jobCheckpoints.open(
+                "hash_lookup",
+                MaskingFunctionType.HASH_LOOKUP.name(),
+                hashLookupPlan + ",compareRawDigest=" + compareRawDigest,
+                sourceCsv,
+                lookupTable)) {
+      outputCsvPath = run.outputPath().toString();
+      if (!writeOutputCsv(sourceStream, lookupTable, hashLookupPlan, run.output(), run)) {
+        run.discard();
+        return new ValidationResponse("ERROR", List.of("Source CSV is empty."));
+      }
+      run.complete();
     }
 
-    writeCsv(outputCsvPath, outputHeader, outputRows);
+    ValidationResponse validationResponse = new ValidationResponse();
     validationResponse.setStatus("Success");
     validationResponse.setMessages(
         List.of("CSV processing completed successfully: " + outputCsvPath));
-    resetColumnStore(hashLookupStore);
     return validationResponse;
   }
 
-  private Map<String, Map<String, String>> buildLookupMap(
-      List<Map<String, String>> lookupData, HashLookupStore hashLookupStore) {
-    Map<String, Map<String, String>> lookupMap = new HashMap<>();
-    if (Boolean.TRUE.equals(hashLookupStore.getCacheEnabled())) {
-      for (Map<String, String> row : lookupData) {
-        String key = buildKey(row, hashLookupStore.getLookupSearchColumns(), hashLookupStore);
-        lookupMap.put(key, row);
-      }
-    }
-    return lookupMap;
+  /**
+   * Masks {@code sourceStream} into {@code output}, header first, flushing each chunk as soon as it
+   * is masked.
+   *
+   * @return false, with nothing written, if the source is empty
+   */
+  public boolean writeOutputCsv(
+      InputStream sourceStream,
+      LookupTable lookupTable,
+      HashLookupPlan hashLookupPlan,
+      OutputStream output)
+      throws IOException {
+    return writeOutputCsv(sourceStream, lookupTable, hashLookupPlan, output, null);
   }
 
-  private List<String> prepareOutputHeader(
-      List<Map<String, String>> sourceData,
-      HashLookupStore hashLookupStore,
-      ValidationResponse validationResponse) {
-    List<String> outputHeader = new ArrayList<>(sourceData.get(0).keySet());
-    outputHeader.removeAll(hashLookupStore.getSourceSearchColumns());
-
-    if (hashLookupStore.getDestinationColumns().isEmpty()) {
-      outputHeader.addAll(hashLookupStore.getLookupValueColumns());
-      validationResponse.setMessages(List.of("Using lookup value columns as destination columns"));
-    } else {
-      outputHeader.addAll(hashLookupStore.getDestinationColumns());
+  private boolean writeOutputCsv(
+      InputStream sourceStream,
+      LookupTable lookupTable,
+      HashLookupPlan hashLookupPlan,
+      OutputStream output,
+      JobCheckpoints.Run run)
+      throws IOException {
+    CsvChunkReader source = chunkedCsvProcessor.reader(sourceStream, true);
+    String headerLine = source.readHeaderRecord();
+    if (headerLine == null) {
+      return false;
     }
+    CsvTokenizer header = chunkedCsvProcessor.tokenizer();
+    header.reset(headerLine.getBytes(StandardCharsets.UTF_8)).next();
+    List<String> headers = new ArrayList<>();
+    for (int i = 0; i < header.size(); i++) {
+      headers.add(header.field(i));
+    }
+    Map<String, Integer> sourceColumns = MaskingStage.columnIndexes(headers);
+    MaskingStage stage =
+        stage(new ArrayList<>(sourceColumns.keySet()), lookupTable, hashLookupPlan);
 
-    return outputHeader;
-  }
-
-  private Map<String, String> getMatchedRow(
-      String hashedKey,
-      Map<String, Map<String, String>> lookupMap,
-      List<Map<String, String>> lookupData,
-      HashLookupStore hashLookupStore) {
-    if (Boolean.TRUE.equals(hashLookupStore.getCacheEnabled())) {
-      return lookupMap.get(hashedKey);
+    if (run != null && run.isResuming()) {
+      // The output already holds the header and every row before the checkpoint
+      source.resumeAt(run.sourceOffset(), run.nextChunk());
     } else {
-      for (Map<String, String> row : lookupData) {
-        String key = buildKey(row, hashLookupStore.getLookupSearchColumns(), hashLookupStore);
-        if (key.equals(hashedKey)) return row;
-      }
+      new CsvRecordWriter(RECORD_SEPARATOR, 256).record(stage.outputColumns()).writeTo(output);
     }
-    return null;
+    int[] sourceFields = sourceColumns.values().stream().mapToInt(Integer::intValue).toArray();
+    chunkedCsvProcessor.process(
+        MaskingFunctionType.HASH_LOOKUP.name(),
+        source,
+        sourceFields,
+        List.of(stage),
+        output,
+        RECORD_SEPARATOR,
+        run);
+    return true;
   }
 
-  private Map<String, String> createOutputRow(
-      Map<String, String> sourceRow,
-      Map<String, String> matchedRow,
-      HashLookupStore hashLookupStore) {
-    Map<String, String> outputRow = new HashMap<>();
-    for (String col : sourceRow.keySet()) {
-      if (!hashLookupStore.getSourceSearchColumns().contains(col)) {
-        outputRow.put(col, sourceRow.get(col));
+  /**
+   * Checks the plan's lookup search and value columns against the lookup table, matched exactly as
+   * {@link #stage} resolves them. A missing one would otherwise mask every key to empty values.
+   */
+  public ValidationResponse validateLookupColumns(
+      LookupTable lookupTable, HashLookupPlan hashLookupPlan) {
+    List<String> messages = new ArrayList<>();
+    for (String column : hashLookupPlan.getLookupSearchColumns()) {
+      if (lookupTable.columnIndex(column) < 0) {
+        messages.add("Missing lookup search column in lookup CSV: " + column);
       }
     }
+    for (String column : hashLookupPlan.getLookupValueColumns()) {
+      if (lookupTable.columnIndex(column) < 0) {
+        messages.add("Missing lookup value column in lookup CSV: " + column);
+      }
+    }
+    return messages.isEmpty()
+        ? new ValidationResponse("SUCCESS", null)
+        : new ValidationResponse("FAILED", messages);
+  }
+
+  /**
+   * Compiles the HASH_LOOKUP against records with {@code inputColumns}. Every input column except
+   * the search columns passes through, followed by the destination (or lookup value) columns; a
+   * destination column that is also an input column takes the lookup value in both places.
+   */
+  public MaskingStage stage(
+      List<String> inputColumns, LookupTable lookupTable, HashLookupPlan hashLookupPlan) {
+    HashDigester digester =
+        new HashDigester(
+            hashLookupPlan.getAlgorithm(), hashLookupPlan.getSeed(), compareRawDigest);
+    // With CACHE the former lookup map kept the last row of a duplicated key, without it the
+    // linear scan found the first
+    boolean firstWins = !Boolean.TRUE.equals(hashLookupPlan.getCacheEnabled());
+    // Cached on the table under every setting that affects the digests
+    KeyIndex<Object> digestIndex =
+        lookupTable.keyIndex(
+            String.join(
+                ":",
+                "HASH_LOOKUP",
+                String.valueOf(hashLookupPlan.getAlgorithm()),
+                String.valueOf(hashLookupPlan.getSeed()),
+                String.valueOf(hashLookupPlan.getTrimCharacters()),
+                String.join(",", hashLookupPlan.getLookupSearchColumns()),
+                String.valueOf(compareRawDigest),
+                firstWins ? "first" : "last"),
+            digestKeyOfRow(lookupTable, hashLookupPlan, digester),
+            firstWins,
+            64);
+    int[] lookupValueIndexes =
+        hashLookupPlan.getLookupValueColumns().stream()
+            .mapToInt(lookupTable::columnIndex)
+            .toArray();
 
+    Map<String, Integer> columns = MaskingStage.columnIndexes(inputColumns);
+    List<String> outputColumns = prepareOutputHeader(columns.keySet(), hashLookupPlan);
+
+    // Each output column is resolved once: a destination column takes a lookup value, any other
+    // column is copied from the input
     List<String> destinationCols =
-        !hashLookupStore.getDestinationColumns().isEmpty()
-            ? hashLookupStore.getDestinationColumns()
-            : hashLookupStore.getLookupValueColumns();
-
-    for (int i = 0; i < destinationCols.size(); i++) {
-      String destCol = destinationCols.get(i);
-      String lookupCol = hashLookupStore.getLookupValueColumns().get(i);
-      String value = matchedRow != null ? matchedRow.getOrDefault(lookupCol, "") : "";
-      outputRow.put(destCol, value);
+        !hashLookupPlan.getDestinationColumns().isEmpty()
+            ? hashLookupPlan.getDestinationColumns()
+            : hashLookupPlan.getLookupValueColumns();
+    boolean[] destinationColumn = new boolean[outputColumns.size()];
+    int[] outputLookupValues = new int[outputColumns.size()];
+    int[] outputInputColumns = new int[outputColumns.size()];
+    for (int i = 0; i < outputColumns.size(); i++) {
+      int destination = destinationCols.indexOf(outputColumns.get(i));
+      destinationColumn[i] = destination >= 0;
+      outputLookupValues[i] = destination >= 0 ? lookupValueIndexes[destination] : -1;
+      outputInputColumns[i] = columns.getOrDefault(outputColumns.get(i), -1);
     }
+    int[] searchColumns =
+        hashLookupPlan.getSourceSearchColumns().stream()
+            .mapToInt(column -> columns.getOrDefault(column, -1))
+            .toArray();
+    Counter hits = maskingMetrics.lookups(MaskingFunctionType.HASH_LOOKUP.name(), true);
+    Counter misses = maskingMetrics.lookups(MaskingFunctionType.HASH_LOOKUP.name(), false);
 
-    return outputRow;
+    return new MaskingStage(
+        List.copyOf(outputColumns),
+        chunk -> {
+          StringBuilder key = new StringBuilder();
+          return (record, out) -> {
+            key.setLength(0);
+            for (int column : searchColumns) {
+              key.append(normalizeKeyPart(record.get(column), hashLookupPlan));
+            }
+            int matchedRow = digestIndex.find(digester.indexKey(key.toString()));
+            (matchedRow >= 0 ? hits : misses).increment();
+            for (int i = 0; i < outputLookupValues.length; i++) {
+              if (!destinationColumn[i]) {
+                out.add(record, outputInputColumns[i]);
+              } else if (matchedRow >= 0 && outputLookupValues[i] >= 0) {
+                out.add(lookupTable.getValue(matchedRow, outputLookupValues[i]));
+              } else {
+                out.add("");
+              }
+            }
+          };
+        });
   }
 
-  private void writeCsv(String path, List<String> headers, List<Map<String, String>> data)
-      throws Exception {
-    try (BufferedWriter writer = new BufferedWriter(new FileWriter(new File(path)))) {
-      writer.write(String.join(",", headers));
-      writer.newLine();
-      for (Map<String, String> row : data) {
-        List<String> values = new ArrayList<>();
-        for (String header : headers) {
-          values.add(row.getOrDefault(header, ""));
-        }
-        writer.write(String.join(",", values));
-        writer.newLine();
-      }
-    }
+  /**
+   * Hashes every lookup key once, with the same seed, algorithm and trim settings as the source
+   * keys, so each source row is resolved with a single digest and one map probe.
+   */
+  private IntFunction<Object> digestKeyOfRow(
+      LookupTable lookupTable, HashLookupPlan hashLookupPlan, HashDigester digester) {
+    int[] searchIndexes =
+        hashLookupPlan.getLookupSearchColumns().stream()
+            .mapToInt(lookupTable::columnIndex)
+            .toArray();
+    return row -> digester.indexKey(buildKey(lookupTable, row, searchIndexes, hashLookupPlan));
   }
 
-  private List<Map<String, String>> readCsv(MultipartFile file) throws Exception {
-    List<Map<String, String>> result = new ArrayList<>();
-    try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.getInputStream()))) {
-      String[] headers = reader.readLine().split(",");
-      String line;
-      while ((line = reader.readLine()) != null) {
-        String[] values = line.split(",", -1);
-        Map<String, String> row = new LinkedHashMap<>();
-        for (int i = 0; i < headers.length; i++) {
-          row.put(headers[i], i < values.length ? values[i] : "");
-        }
-        result.add(row);
-      }
+  private List<String> prepareOutputHeader(
+      Collection<String> sourceHeaders, HashLookupPlan hashLookupPlan) {
+    List<String> outputHeader = new ArrayList<>(sourceHeaders);
+    outputHeader.removeAll(hashLookupPlan.getSourceSearchColumns());
+
+    if (hashLookupPlan.getDestinationColumns().isEmpty()) {
+      // No destination columns: the lookup value columns are used as destination columns
+      outputHeader.addAll(hashLookupPlan.getLookupValueColumns());
+    } else {
+      outputHeader.addAll(hashLookupPlan.getDestinationColumns());
     }
-    return result;
+
+    return outputHeader;
   }
 
   private String buildKey(
-      Map<String, String> row, List<String> columns, HashLookupStore hashLookupStore) {
+      LookupTable lookupTable, int row, int[] columnIndexes, HashLookupPlan hashLookupPlan) {
     StringBuilder sb = new StringBuilder();
-    for (String col : columns) {
-      String val = row.getOrDefault(col, "");
-      if ("TRIM".equalsIgnoreCase(hashLookupStore.getTrimCharacters())) val = val.trim();
-      if ("UPPER".equalsIgnoreCase(hashLookupStore.getTrimCharacters())) val = val.toUpperCase();
-      sb.append(val);
+    for (int columnIndex : columnIndexes) {
+      String val = columnIndex >= 0 ? lookupTable.getValue(row, columnIndex) : "";
+      sb.append(normalizeKeyPart(val, hashLookupPlan));
     }
     return sb.toString();
   }
 
-  private String hashValue(
-      Map<String, String> sourceRow,
-      List<Map<String, String>> lookupData,
-      HashLookupStore hashLookupStore)
-      throws Exception {
-    // Step 1: Get raw key from source row
-    String sourceKey =
-        buildKey(sourceRow, hashLookupStore.getSourceSearchColumns(), hashLookupStore);
-
-    // Step 2: Hash using SHA-256
-    String finalInput =
-        (hashLookupStore.getSeed() != null ? hashLookupStore.getSeed() : "") + sourceKey;
-    MessageDigest md =
-        MessageDigest.getInstance(
-            hashLookupStore.getAlgorithm() != null ? hashLookupStore.getAlgorithm() : "SHA-256");
-    byte[] hash = md.digest(finalInput.getBytes("UTF-8"));
-
-    // Step 3: Convert to hex string
-    StringBuilder hex = new StringBuilder();
-    for (byte b : hash) hex.append(String.format("%02x", b));
-    return hex.toString();
-  }
-
-  private String resolveHashToLookupValue(
-      String hashedKey, List<Map<String, String>> lookupData, HashLookupStore hashLookupStore)
-      throws Exception {
-    for (Map<String, String> lookupRow : lookupData) {
-      // Build key from lookup row
-      String lookupKey =
-          buildKey(lookupRow, hashLookupStore.getLookupSearchColumns(), hashLookupStore);
-
-      // Apply hashing logic (same as hashValue)
-      String finalInput =
-          (hashLookupStore.getSeed() != null ? hashLookupStore.getSeed() : "") + lookupKey;
-      MessageDigest md =
-          MessageDigest.getInstance(
-              hashLookupStore.getAlgorithm() != null ? hashLookupStore.getAlgorithm() : "SHA-256");
-      byte[] hash = md.digest(finalInput.getBytes("UTF-8"));
-
-      // Convert to hex string
-      StringBuilder hex = new StringBuilder();
-      for (byte b : hash) hex.append(String.format("%02x", b));
-      String calculatedHash = hex.toString();
-
-      // If match found, return the original lookup key
-      if (calculatedHash.equals(hashedKey)) {
-        return lookupKey; // or return a string representation of original values if needed
-      }
-    }
-
-    return null; // No match found
-  }
-
-  public static void resetColumnStore(HashLookupStore hashLookupStore) {
-    hashLookupStore.setSourceSearchColumns(new ArrayList<>());
-    hashLookupStore.setDestinationColumns(new ArrayList<>());
-    hashLookupStore.setLookupTableName(null);
-    hashLookupStore.setLookupSearchColumns(new ArrayList<>());
-    hashLookupStore.setLookupValueColumns(new ArrayList<>());
-    hashLookupStore.setTrimCharacters(null);
-    hashLookupStore.setAlgorithm(null);
-    hashLookupStore.setSeed(null);
-    hashLookupStore.setPreserveOptions(new ArrayList<>());
-    hashLookupStore.setCacheEnabled(false);
+  private String normalizeKeyPart(String val, HashLookupPlan hashLookupPlan) {
+    if ("TRIM".equalsIgnoreCase(hashLookupPlan.getTrimCharacters())) val = val.trim();
+    if ("UPPER".equalsIgnoreCase(hashLookupPlan.getTrimCharacters())) val = val.toUpperCase();
+    return val;
   }
 }
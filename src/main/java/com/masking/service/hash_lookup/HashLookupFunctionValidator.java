@@ -1,22 +1,27 @@
 package com.masking.service.hash_lookup;
 
-import static com.masking.service.hash_lookup.HashLookupCsvGenerator.resetColumnStore;
-
 import com.masking.component.ValidationResponse;
+import com.masking.model.CompiledFunction;
+import com.masking.model.hash_lookup.HashLookupPlan;
 import com.masking.model.hash_lookup.HashLookupStore;
 import java.util.*;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 @Service
 public class HashLookupFunctionValidator {
 
-  @Autowired private HashLookupStore hashLookupStore;
-  @Autowired private ValidationResponse response;
+  /** Parses {@code input} into a fresh store and freezes it into a plan if it is valid. */
+  public CompiledFunction<HashLookupPlan> compile(String input) {
+    HashLookupStore hashLookupStore = new HashLookupStore();
+    ValidationResponse response = validateAndExtract(input, hashLookupStore);
+    if (!"SUCCESS".equalsIgnoreCase(response.getStatus())) {
+      return CompiledFunction.invalid(response);
+    }
+    return CompiledFunction.valid(response, hashLookupStore.toPlan());
+  }
 
-  public ValidationResponse validateAndExtract(String input) {
+  public ValidationResponse validateAndExtract(String input, HashLookupStore hashLookupStore) {
     List<String> messages = new ArrayList<>();
-    resetColumnStore(hashLookupStore);
 
     if (input == null || input.trim().isEmpty()) {
       return error("Input cannot be empty.");
@@ -59,6 +64,19 @@ public class HashLookupFunctionValidator {
 
       if (upperToken.startsWith("DEST=")) {
         hashLookupStore.setDestinationColumns(parseListValue(token, "DEST", messages));
+      } else if (upperToken.startsWith("ALGORITHM=") || upperToken.startsWith("ALGO=")) {
+        String algorithm = parseScalarValue(token);
+        if (HashDigester.isSupported(algorithm)) {
+          hashLookupStore.setAlgorithm(algorithm);
+        } else {
+          messages.add("Unsupported hash algorithm: " + algorithm);
+        }
+      } else if (upperToken.startsWith("SEED=")) {
+        hashLookupStore.setSeed(parseScalarValue(token));
+      } else if (upperToken.startsWith("TRIM=")) {
+        hashLookupStore.setTrimCharacters(parseScalarValue(token));
+      } else if (upperToken.equals("CACHE") || upperToken.equals("NOCACHE")) {
+        hashLookupStore.setCacheEnabled(upperToken.equals("CACHE"));
       } else if (token.matches("[a-zA-Z_][a-zA-Z0-9_]*\\(.*\\)")) {
         Map<String, List<String>> parts = parseTableBlockArgs(token, messages);
         if (!parts.isEmpty()) {
@@ -87,9 +105,7 @@ public class HashLookupFunctionValidator {
       return buildErrorResponse(messages);
     }
 
-    response.setStatus("SUCCESS");
-    response.setMessages(List.of("✅ Validation passed successfully."));
-    return response;
+    return new ValidationResponse("SUCCESS", List.of("✅ Validation passed successfully."));
   }
 
   private List<String> splitTokens(String input) {
@@ -133,6 +149,17 @@ public class HashLookupFunctionValidator {
     return Arrays.asList(value.split("\\s*,\\s*"));
   }
 
+  private String parseScalarValue(String token) {
+    String value = token.substring(token.indexOf('=') + 1).trim();
+    // Allow SEED='abc' / SEED="abc" so seeds can carry spaces
+    if (value.length() >= 2
+        && (value.startsWith("'") && value.endsWith("'")
+            || value.startsWith("\"") && value.endsWith("\""))) {
+      value = value.substring(1, value.length() - 1);
+    }
+    return value;
+  }
+
   private Map<String, List<String>> parseTableBlockArgs(String input, List<String> messages) {
     Map<String, List<String>> result = new HashMap<>();
     int firstParen = input.indexOf('(');
@@ -195,14 +222,10 @@ public class HashLookupFunctionValidator {
   }
 
   private ValidationResponse error(String msg) {
-    response.setStatus("ERROR");
-    response.setMessages(List.of("❌ " + msg));
-    return response;
+    return new ValidationResponse("ERROR", List.of("❌ " + msg));
   }
 
   private ValidationResponse buildErrorResponse(List<String> messages) {
-    response.setStatus("ERROR");
-    response.setMessages(messages);
-    return response;
+    return new ValidationResponse("ERROR", messages);
   }
 }
@@ -0,0 +1,52 @@
+package com.masking.service.hash_lookup;
+
+import java.util.Locale;
+
+/**
+ * Seeded non-cryptographic hash functions selectable as the HASH_LOOKUP {@code ALGORITHM}. They
+ * give the uniform, deterministic mapping masking needs at a fraction of the cost of a {@link
+ * java.security.MessageDigest}; they are not meant to resist a deliberate attacker.
+ */
+public enum KeyedHashAlgorithm {
+  SIPHASH24 {
+    @Override
+    public byte[] hash(long k0, long k1, byte[] data, int offset, int length) {
+      return LittleEndian.toBytes(SipHash24.hash(k0, k1, data, offset, length));
+    }
+  },
+  MURMUR3_128 {
+    @Override
+    public byte[] hash(long k0, long k1, byte[] data, int offset, int length) {
+      return Murmur3Hash128.hash(k0, data, offset, length);
+    }
+  },
+  XXHASH64 {
+    @Override
+    public byte[] hash(long k0, long k1, byte[] data, int offset, int length) {
+      return LittleEndian.toBytes(XxHash64.hash(k0, data, offset, length));
+    }
+  };
+
+  /**
+   * Hashes {@code data[offset, offset + length)} under the 128-bit key (k0, k1). Algorithms with
+   * a single 64-bit seed use k0 only.
+   */
+  public abstract byte[] hash(long k0, long k1, byte[] data, int offset, int length);
+
+  /**
+   * Resolves an {@code ALGORITHM} value such as {@code SipHash-2-4}, {@code MURMUR3_128} or {@code
+   * xxh64}, ignoring case, dashes and underscores. Returns null for anything else, which is then
+   * treated as a {@link java.security.MessageDigest} name.
+   */
+  public static KeyedHashAlgorithm fromName(String name) {
+    if (name == null) {
+      return null;
+    }
+    return switch (name.toUpperCase(Locale.ROOT).replace("-", "").replace("_", "")) {
+      case "SIPHASH24", "SIPHASH" -> SIPHASH24;
+      case "MURMUR3128", "MURMUR3" -> MURMUR3_128;
+      case "XXHASH64", "XXH64" -> XXHASH64;
+      default -> null;
+    };
+  }
+}
@@ -0,0 +1,34 @@
+package com.masking.service.hash_lookup;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/** Little-endian reads and writes on byte arrays, shared by the keyed hash implementations. */
+final class LittleEndian {
+
+  private static final VarHandle LONG =
+      MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+  private static final VarHandle INT =
+      MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+  private LittleEndian() {}
+
+  static long getLong(byte[] data, int offset) {
+    return (long) LONG.get(data, offset);
+  }
+
+  static long getUnsignedInt(byte[] data, int offset) {
+    return ((int) INT.get(data, offset)) & 0xffffffffL;
+  }
+
+  static void putLong(byte[] data, int offset, long value) {
+    LONG.set(data, offset, value);
+  }
+
+  static byte[] toBytes(long value) {
+    byte[] bytes = new byte[8];
+    putLong(bytes, 0, value);
+    return bytes;
+  }
+}
@@ -0,0 +1,85 @@
+package com.masking.service.hash_lookup;
+
+/**
+ * MurmurHash3 x64 128-bit variant. The result is returned as 16 bytes, h1 then h2, both
+ * little-endian, which is the byte order of the reference implementation's output buffer.
+ */
+public final class Murmur3Hash128 {
+
+  private static final long C1 = 0x87c37b91114253d5L;
+  private static final long C2 = 0x4cf5ad432745937fL;
+
+  private Murmur3Hash128() {}
+
+  public static byte[] hash(long seed, byte[] data, int offset, int length) {
+    long h1 = seed;
+    long h2 = seed;
+
+    int tail = length & 15;
+    int end = offset + length - tail;
+    for (int i = offset; i < end; i += 16) {
+      long k1 = LittleEndian.getLong(data, i);
+      long k2 = LittleEndian.getLong(data, i + 8);
+
+      h1 ^= mixK1(k1);
+      h1 = Long.rotateLeft(h1, 27);
+      h1 += h2;
+      h1 = h1 * 5 + 0x52dce729;
+
+      h2 ^= mixK2(k2);
+      h2 = Long.rotateLeft(h2, 31);
+      h2 += h1;
+      h2 = h2 * 5 + 0x38495ab5;
+    }
+
+    if (tail > 0) {
+      long k1 = 0;
+      long k2 = 0;
+      for (int i = tail - 1; i >= 8; i--) {
+        k2 ^= (data[end + i] & 0xffL) << ((i - 8) * 8);
+      }
+      for (int i = Math.min(tail, 8) - 1; i >= 0; i--) {
+        k1 ^= (data[end + i] & 0xffL) << (i * 8);
+      }
+      if (tail > 8) {
+        h2 ^= mixK2(k2);
+      }
+      h1 ^= mixK1(k1);
+    }
+
+    h1 ^= length;
+    h2 ^= length;
+    h1 += h2;
+    h2 += h1;
+    h1 = fmix(h1);
+    h2 = fmix(h2);
+    h1 += h2;
+    h2 += h1;
+
+    byte[] out = new byte[16];
+    LittleEndian.putLong(out, 0, h1);
+    LittleEndian.putLong(out, 8, h2);
+    return out;
+  }
+
+  private static long mixK1(long k1) {
+    k1 *= C1;
+    k1 = Long.rotateLeft(k1, 31);
+    return k1 * C2;
+  }
+
+  private static long mixK2(long k2) {
+    k2 *= C2;
+    k2 = Long.rotateLeft(k2, 33);
+    return k2 * C1;
+  }
+
+  private static long fmix(long k) {
+    k ^= k >>> 33;
+    k *= 0xff51afd7ed558ccdL;
+    k ^= k >>> 33;
+    k *= 0xc4ceb9fe1a85ec53L;
+    k ^= k >>> 33;
+    return k;
+  }
+}
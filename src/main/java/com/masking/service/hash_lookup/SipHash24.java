@@ -0,0 +1,64 @@
+package com.masking.service.hash_lookup;
+
+/** SipHash-2-4 with a 128-bit key (k0, k1), as specified by Aumasson and Bernstein. */
+public final class SipHash24 {
+
+  private long v0;
+  private long v1;
+  private long v2;
+  private long v3;
+
+  private SipHash24(long k0, long k1) {
+    v0 = k0 ^ 0x736f6d6570736575L;
+    v1 = k1 ^ 0x646f72616e646f6dL;
+    v2 = k0 ^ 0x6c7967656e657261L;
+    v3 = k1 ^ 0x7465646279746573L;
+  }
+
+  public static long hash(long k0, long k1, byte[] data, int offset, int length) {
+    // The state never escapes this call, so the JIT keeps it in registers.
+    SipHash24 state = new SipHash24(k0, k1);
+
+    int tail = length & 7;
+    int end = offset + length - tail;
+    for (int i = offset; i < end; i += 8) {
+      state.compress(LittleEndian.getLong(data, i));
+    }
+
+    long last = ((long) length) << 56;
+    for (int i = 0; i < tail; i++) {
+      last |= (data[end + i] & 0xffL) << (8 * i);
+    }
+    state.compress(last);
+
+    state.v2 ^= 0xff;
+    for (int r = 0; r < 4; r++) {
+      state.round();
+    }
+    return state.v0 ^ state.v1 ^ state.v2 ^ state.v3;
+  }
+
+  private void compress(long m) {
+    v3 ^= m;
+    round();
+    round();
+    v0 ^= m;
+  }
+
+  private void round() {
+    v0 += v1;
+    v1 = Long.rotateLeft(v1, 13);
+    v1 ^= v0;
+    v0 = Long.rotateLeft(v0, 32);
+    v2 += v3;
+    v3 = Long.rotateLeft(v3, 16);
+    v3 ^= v2;
+    v0 += v3;
+    v3 = Long.rotateLeft(v3, 21);
+    v3 ^= v0;
+    v2 += v1;
+    v1 = Long.rotateLeft(v1, 17);
+    v1 ^= v2;
+    v2 = Long.rotateLeft(v2, 32);
+  }
+}
@@ -0,0 +1,82 @@
+package com.masking.service.hash_lookup;
+
+/** xxHash64 (XXH64) by Yann Collet, seeded with a 64-bit value. */
+public final class XxHash64 {
+
+  private static final long P1 = 0x9E3779B185EBCA87L;
+  private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+  private static final long P3 = 0x165667B19E3779F9L;
+  private static final long P4 = 0x85EBCA77C2B2AE63L;
+  private static final long P5 = 0x27D4EB2F165667C5L;
+
+  private XxHash64() {}
+
+  public static long hash(long seed, byte[] data, int offset, int length) {
+    int end = offset + length;
+    int i = offset;
+    long h;
+
+    if (length >= 32) {
+      long v1 = seed + P1 + P2;
+      long v2 = seed + P2;
+      long v3 = seed;
+      long v4 = seed - P1;
+      int limit = end - 32;
+      do {
+        v1 = round(v1, LittleEndian.getLong(data, i));
+        v2 = round(v2, LittleEndian.getLong(data, i + 8));
+        v3 = round(v3, LittleEndian.getLong(data, i + 16));
+        v4 = round(v4, LittleEndian.getLong(data, i + 24));
+        i += 32;
+      } while (i <= limit);
+
+      h =
+          Long.rotateLeft(v1, 1)
+              + Long.rotateLeft(v2, 7)
+              + Long.rotateLeft(v3, 12)
+              + Long.rotateLeft(v4, 18);
+      h = mergeRound(h, v1);
+      h = mergeRound(h, v2);
+      h = mergeRound(h, v3);
+      h = mergeRound(h, v4);
+    } else {
+      h = seed + P5;
+    }
+
+    h += length;
+
+    while (i + 8 <= end) {
+      h ^= round(0, LittleEndian.getLong(data, i));
+      h = Long.rotateLeft(h, 27) * P1 + P4;
+      i += 8;
+    }
+    if (i + 4 <= end) {
+      h ^= LittleEndian.getUnsignedInt(data, i) * P1;
+      h = Long.rotateLeft(h, 23) * P2 + P3;
+      i += 4;
+    }
+    while (i < end) {
+      h ^= (data[i] & 0xffL) * P5;
+      h = Long.rotateLeft(h, 11) * P1;
+      i++;
+    }
+
+    h ^= h >>> 33;
+    h *= P2;
+    h ^= h >>> 29;
+    h *= P3;
+    h ^= h >>> 32;
+    return h;
+  }
+
+  private static long round(long acc, long input) {
+    acc += input * P2;
+    acc = Long.rotateLeft(acc, 31);
+    return acc * P1;
+  }
+
+  private static long mergeRound(long acc, long value) {
+    acc ^= round(0, value);
+    return acc * P1 + P4;
+  }
+}
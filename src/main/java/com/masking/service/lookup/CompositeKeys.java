@@ -0,0 +1,113 @@
+package com.masking.service.lookup;
+
+import com.masking.model.table.LookupTable;
+import com.masking.service.common.MaskedRecord;
+import java.util.function.IntPredicate;
+
+/**
+ * LOOKUP search keys compared field by field on trimmed values, without building a concatenated
+ * key string. Key columns are given as indexes resolved once per file; a missing column (-1) is an
+ * empty field. Because fields are never joined, a value containing a separator cannot make two
+ * different keys equal.
+ */
+final class CompositeKeys {
+
+  private CompositeKeys() {}
+
+  static int hash(LookupTable table, int row, int[] columns) {
+    int h = 1;
+    for (int column : columns) {
+      h = 31 * h + trimmedHash(column >= 0 ? table.getValue(row, column) : "");
+    }
+    return h;
+  }
+
+  static boolean sameKey(LookupTable table, int row, int otherRow, int[] columns) {
+    for (int column : columns) {
+      if (column >= 0
+          && !trimmedEquals(table.getValue(row, column), table.getValue(otherRow, column))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** {@code value.trim().hashCode()} without the substring. */
+  static int trimmedHash(String value) {
+    int end = trimmedEnd(value);
+    int h = 0;
+    for (int i = trimmedStart(value, end); i < end; i++) {
+      h = 31 * h + value.charAt(i);
+    }
+    return h;
+  }
+
+  /** {@code a.trim().equals(b.trim())} without the substrings. */
+  static boolean trimmedEquals(String a, String b) {
+    int aEnd = trimmedEnd(a);
+    int aStart = trimmedStart(a, aEnd);
+    int bEnd = trimmedEnd(b);
+    int bStart = trimmedStart(b, bEnd);
+    int length = aEnd - aStart;
+    return length == bEnd - bStart && a.regionMatches(aStart, b, bStart, length);
+  }
+
+  // Same whitespace rule as String.trim()
+  private static int trimmedEnd(String value) {
+    int end = value.length();
+    while (end > 0 && value.charAt(end - 1) <= ' ') {
+      end--;
+    }
+    return end;
+  }
+
+  private static int trimmedStart(String value, int end) {
+    int start = 0;
+    while (start < end && value.charAt(start) <= ' ') {
+      start++;
+    }
+    return start;
+  }
+
+  /**
+   * Reusable probe matching lookup rows against the key of the current source record. Only the key
+   * fields of the record are decoded, once per record.
+   */
+  static final class Probe implements IntPredicate {
+    private final LookupTable table;
+    private final int[] tableColumns;
+    private final int[] recordColumns;
+    private final String[] key;
+
+    Probe(LookupTable table, int[] tableColumns, int[] recordColumns) {
+      this.table = table;
+      this.tableColumns = tableColumns;
+      this.recordColumns = recordColumns;
+      this.key = new String[recordColumns.length];
+    }
+
+    /** Points the probe at the key of the current {@code record} and returns its hash. */
+    int reset(MaskedRecord record) {
+      int h = 1;
+      for (int i = 0; i < recordColumns.length; i++) {
+        key[i] = record.get(recordColumns[i]);
+        h = 31 * h + trimmedHash(key[i]);
+      }
+      return h;
+    }
+
+    @Override
+    public boolean test(int row) {
+      if (tableColumns.length != recordColumns.length) {
+        return false;
+      }
+      for (int i = 0; i < tableColumns.length; i++) {
+        String value = tableColumns[i] >= 0 ? table.getValue(row, tableColumns[i]) : "";
+        if (!trimmedEquals(value, key[i])) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -1,71 +1,61 @@
 package com.masking.service.lookup;
 
 import com.masking.component.ValidationResponse;
-import com.masking.model.lookup.LookUpStore;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
+import com.masking.model.lookup.LookUpPlan;
+import com.masking.model.table.LookupTable;
+import com.masking.service.common.CompressedStreams;
+import com.masking.service.common.CsvChunkReader;
+import java.io.InputStream;
 import java.util.*;
-import java.util.concurrent.*;
 import java.util.stream.Collectors;
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 @Service
 public class CsvColumnValidatorService {
 
-  private final ExecutorService executorService =
-      Executors.newFixedThreadPool(
-          2); // Thread pool to process source and lookup files concurrently
+  @Autowired private CompressedStreams compressedStreams;
 
   public ValidationResponse validateColumns(
-      MultipartFile sourceFile, MultipartFile lookupFile, LookUpStore lookUpStore) {
-    List<String> errors =
-        Collections.synchronizedList(
-            new ArrayList<>()); // Synchronized list to handle thread safety
+      MultipartFile sourceFile, LookupTable lookupTable, LookUpPlan lookUpPlan) {
+    List<String> errors = new ArrayList<>();
 
-    // CompletableFuture to process files concurrently
-    CompletableFuture<Void> sourceValidation =
-        CompletableFuture.runAsync(
-            () -> {
-              try {
-                // Validate source file columns
-                Set<String> sourceHeaders = extractHeaders(sourceFile);
-                validateMissingColumns(
-                    sourceHeaders, lookUpStore.getSourceSearchColumns(), "source", errors);
-              } catch (Exception e) {
-                errors.add("Error reading source CSV file: " + e.getMessage());
-              }
-            },
-            executorService);
+    try {
+      // Validate source file columns
+      Set<String> sourceHeaders = extractHeaders(sourceFile);
+      validateMissingColumns(
+          sourceHeaders, lookUpPlan.getSourceSearchColumns(), "source", errors);
+    } catch (Exception e) {
+      errors.add("Error reading source CSV file: " + e.getMessage());
+    }
 
-    CompletableFuture<Void> lookupValidation =
-        CompletableFuture.runAsync(
-            () -> {
-              try {
-                // Validate lookup file columns
-                Set<String> lookupHeaders = extractHeaders(lookupFile);
-                validateMissingColumns(
-                    lookupHeaders, lookUpStore.getLookupSearchColumns(), "lookup search", errors);
-                validateMissingColumns(
-                    lookupHeaders, lookUpStore.getLookupValueColumns(), "lookup value", errors);
-              } catch (Exception e) {
-                errors.add("Error reading lookup CSV file: " + e.getMessage());
-              }
-            },
-            executorService);
+    return validateLookupColumns(lookupTable, lookUpPlan, errors);
+  }
 
-    // Wait for both validations to complete
-    CompletableFuture<Void> combinedFuture =
-        CompletableFuture.allOf(sourceValidation, lookupValidation);
+  /** Same checks as {@link #validateColumns(MultipartFile, LookupTable, LookUpPlan)}. */
+  public ValidationResponse validateColumns(
+      Collection<String> sourceHeaders, LookupTable lookupTable, LookUpPlan lookUpPlan) {
+    List<String> errors = new ArrayList<>();
+    Set<String> normalizedHeaders =
+        sourceHeaders.stream().map(String::trim).collect(Collectors.toSet());
+    validateMissingColumns(
+        normalizedHeaders, lookUpPlan.getSourceSearchColumns(), "source", errors);
+    return validateLookupColumns(lookupTable, lookUpPlan, errors);
+  }
 
-    try {
-      combinedFuture.get(); // Ensure both tasks are completed before proceeding
-    } catch (InterruptedException | ExecutionException e) {
-      errors.add("Error in concurrent execution: " + e.getMessage());
-    }
+  private ValidationResponse validateLookupColumns(
+      LookupTable lookupTable, LookUpPlan lookUpPlan, List<String> errors) {
+    // Validate lookup table columns; the table is already parsed, so no file access is needed
+    Set<String> lookupHeaders =
+        lookupTable.getHeaders().stream()
+            .map(String::trim)
+            .map(String::toLowerCase)
+            .collect(Collectors.toSet());
+    validateMissingColumns(
+        lookupHeaders, lookUpPlan.getLookupSearchColumns(), "lookup search", errors);
+    validateMissingColumns(
+        lookupHeaders, lookUpPlan.getLookupValueColumns(), "lookup value", errors);
 
     return errors.isEmpty()
         ? new ValidationResponse("SUCCESS", null)
@@ -89,11 +79,12 @@ public class CsvColumnValidatorService {
   }
 
   private Set<String> extractHeaders(MultipartFile file) throws Exception {
-    try (BufferedReader reader =
-            new BufferedReader(
-                new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8));
-        CSVParser parser = CSVFormat.DEFAULT.withFirstRecordAsHeader().parse(reader)) {
-      return parser.getHeaderMap().keySet().stream()
+    try (InputStream in = compressedStreams.openSource(file)) {
+      String headerRecord = new CsvChunkReader(in, 1024, true).readHeaderRecord();
+      if (headerRecord == null) {
+        return Set.of();
+      }
+      return CsvChunkReader.headerNames(headerRecord).stream()
           .map(String::trim)
           .map(String::toLowerCase) // Normalize headers to lowercase
           .collect(Collectors.toSet());
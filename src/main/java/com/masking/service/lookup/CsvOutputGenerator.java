@@ -1,118 +1,64 @@
 package com.masking.service.lookup;
 
 import com.masking.component.ValidationResponse;
-import com.masking.model.lookup.LookUpStore;
-import java.io.BufferedWriter;
+import com.masking.model.MaskingFunctionType;
+import com.masking.model.lookup.LookUpPlan;
+import com.masking.model.table.LookupTable;
+import com.masking.model.table.RowHashIndex;
+import com.masking.service.common.ChunkedCsvProcessor;
+import com.masking.service.common.CompressedStreams;
+import com.masking.service.common.CsvChunkReader;
+import com.masking.service.common.CsvRecordWriter;
+import com.masking.service.common.JobCheckpoints;
+import com.masking.service.common.MaskingMetrics;
+import com.masking.service.common.MaskingStage;
+import io.micrometer.core.instrument.Counter;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.Reader;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.text.SimpleDateFormat;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.*;
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVPrinter;
-import org.apache.commons.csv.CSVRecord;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 @Service
 public class CsvOutputGenerator {
 
-  public ValidationResponse generateOutputCsv(
-      MultipartFile sourceCsv, MultipartFile lookupCsv, LookUpStore lookUpStore) {
-
-    ValidationResponse response = new ValidationResponse();
-
-    try (Reader sourceReader = new InputStreamReader(sourceCsv.getInputStream());
-        Reader lookupReader = new InputStreamReader(lookupCsv.getInputStream())) {
+  // CSVFormat.DEFAULT's record separator, which this engine has always written
+  private static final String RECORD_SEPARATOR = "\r\n";
 
-      List<String> sourceSearch = lookUpStore.getSourceSearchColumns();
-      List<String> lookupSearch = lookUpStore.getLookupSearchColumns();
-      List<String> lookupValue = lookUpStore.getLookupValueColumns();
-      List<String> destinationColumns = lookUpStore.getDestinationColumns();
+  @Autowired private ChunkedCsvProcessor chunkedCsvProcessor;
+  @Autowired private MaskingMetrics maskingMetrics;
+  @Autowired private JobCheckpoints jobCheckpoints;
+  @Autowired private CompressedStreams compressedStreams;
 
-      Iterable<CSVRecord> sourceRecords =
-          CSVFormat.DEFAULT.withFirstRecordAsHeader().parse(sourceReader);
-      Iterable<CSVRecord> lookupRecords =
-          CSVFormat.DEFAULT.withFirstRecordAsHeader().parse(lookupReader);
+  public ValidationResponse generateOutputCsv(
+      MultipartFile sourceCsv, LookupTable lookupTable, LookUpPlan lookUpPlan) {
 
-      Map<String, Map<String, String>> lookupMap = new HashMap<>();
+    ValidationResponse response = new ValidationResponse();
 
-      // Create lookup map from lookup CSV
-      for (CSVRecord record : lookupRecords) {
-        String key = buildKey(record, lookupSearch);
-        Map<String, String> valueMap = new HashMap<>();
-        for (String valCol : lookupValue) {
-          valueMap.put(valCol, record.get(valCol));
+    try (InputStream sourceStream = compressedStreams.openSource(sourceCsv)) {
+
+      // Output file, or the one a checkpoint of the same job resumes
+      String outputFilePath;
+      try (JobCheckpoints.Run run =
+          jobCheckpoints.open(
+              "output",
+              MaskingFunctionType.LOOKUP.name(),
+              lookUpPlan.toString(),
+              sourceCsv,
+              lookupTable)) {
+        outputFilePath = run.outputPath().toString();
+        if (!writeOutputCsv(sourceStream, lookupTable, lookUpPlan, run.output(), run)) {
+          run.discard();
+          response.setStatus("Error: Source CSV is empty.");
+          return response;
         }
-        lookupMap.put(key, valueMap);
-      }
-
-      // Prepare output folder and filename
-      String timestamp = new SimpleDateFormat("ddHHmmss").format(new Date());
-      String outputFilePath = "output/output_" + timestamp + ".csv";
-      Files.createDirectories(Paths.get("output"));
-      BufferedWriter writer = Files.newBufferedWriter(Paths.get(outputFilePath));
-
-      Iterator<CSVRecord> sourceIterator = sourceRecords.iterator();
-      if (!sourceIterator.hasNext()) {
-        response.setStatus("Error: Source CSV is empty.");
-        return response;
-      }
-
-      CSVRecord firstRecord = sourceIterator.next();
-      List<String> sourceHeaders = new ArrayList<>(firstRecord.toMap().keySet());
-
-      // Remove sourceSearchColumns from headers
-      sourceHeaders.removeAll(sourceSearch);
-
-      // Add destination columns if present, else lookup value columns
-      List<String> extraColumns;
-      if (destinationColumns != null && !destinationColumns.isEmpty()) {
-        extraColumns = destinationColumns;
-      } else {
-        extraColumns = lookupValue;
-      }
-
-      List<String> outputHeaders = new ArrayList<>(sourceHeaders);
-      outputHeaders.addAll(extraColumns);
-
-      CSVPrinter printer =
-          new CSVPrinter(
-              writer, CSVFormat.DEFAULT.withHeader(outputHeaders.toArray(new String[0])));
-
-      // Process first record separately
-      processRecord(
-          printer,
-          firstRecord,
-          sourceSearch,
-          sourceHeaders,
-          lookupMap,
-          extraColumns,
-          sourceSearch,
-          lookupSearch);
-
-      // Process remaining records
-      while (sourceIterator.hasNext()) {
-        CSVRecord srcRecord = sourceIterator.next();
-        processRecord(
-            printer,
-            srcRecord,
-            sourceSearch,
-            sourceHeaders,
-            lookupMap,
-            extraColumns,
-            sourceSearch,
-            lookupSearch);
+        run.complete();
       }
 
-      printer.flush();
-      printer.close();
-
       response.setStatus("SUCCESS");
       response.setMessages(List.of("CSV generation successful: " + outputFilePath));
-      resetColumnStore(lookUpStore);
 
     } catch (Exception e) {
       response.setStatus("Error during CSV generation");
@@ -122,68 +68,126 @@ public class CsvOutputGenerator {
     return response;
   }
 
-  private void processRecord(
-      CSVPrinter printer,
-      CSVRecord srcRecord,
-      List<String> sourceSearch,
-      List<String> sourceHeaders,
-      Map<String, Map<String, String>> lookupMap,
-      List<String> extraColumns,
-      List<String> sourceSearchColumns,
-      List<String> lookupSearchColumns) {
-
-    Map<String, String> row = new LinkedHashMap<>(srcRecord.toMap());
-
-    // Build source key
-    String srcKey = buildKey(srcRecord, sourceSearchColumns);
+  /**
+   * Masks {@code sourceStream} into {@code output}, header first. Each chunk is flushed as soon as
+   * it is masked, so a streamed response starts long before the source has been read.
+   *
+   * @return false, with nothing written, if the source has no data rows
+   */
+  public boolean writeOutputCsv(
+      InputStream sourceStream, LookupTable lookupTable, LookUpPlan lookUpPlan, OutputStream output)
+      throws IOException {
+    return writeOutputCsv(sourceStream, lookupTable, lookUpPlan, output, null);
+  }
 
-    // Remove sourceSearch columns from row
-    for (String col : sourceSearch) {
-      row.remove(col);
+  private boolean writeOutputCsv(
+      InputStream sourceStream,
+      LookupTable lookupTable,
+      LookUpPlan lookUpPlan,
+      OutputStream output,
+      JobCheckpoints.Run run)
+      throws IOException {
+    CsvChunkReader source = chunkedCsvProcessor.reader(sourceStream, true);
+    String headerRecord = source.readHeaderRecord();
+    Map<String, Integer> sourceColumns =
+        headerRecord != null ? CsvChunkReader.parseHeader(headerRecord) : Map.of();
+    MaskingStage stage = stage(new ArrayList<>(sourceColumns.keySet()), lookupTable, lookUpPlan);
+
+    if (source.isExhausted()) {
+      return false;
     }
 
-    // Prepare the output row
-    List<String> outputRow = new ArrayList<>();
-
-    // Add source columns values
-    for (String col : sourceHeaders) {
-      outputRow.add(row.getOrDefault(col, ""));
+    if (run != null && run.isResuming()) {
+      // The output already holds the header and every row before the checkpoint
+      source.resumeAt(run.sourceOffset(), run.nextChunk());
+    } else {
+      new CsvRecordWriter(RECORD_SEPARATOR, 256).record(stage.outputColumns()).writeTo(output);
     }
+    int[] sourceFields = sourceColumns.values().stream().mapToInt(Integer::intValue).toArray();
+    chunkedCsvProcessor.process(
+        MaskingFunctionType.LOOKUP.name(),
+        source,
+        sourceFields,
+        List.of(stage),
+        output,
+        RECORD_SEPARATOR,
+        run);
+    return true;
+  }
 
-    // Add lookup or destination columns values
-    Map<String, String> matched = lookupMap.get(srcKey);
-    if (matched != null) {
-      for (String col : extraColumns) {
-        outputRow.add(matched.getOrDefault(col, ""));
-      }
+  /**
+   * Compiles the LOOKUP against records with {@code inputColumns}. Every input column except the
+   * search columns passes through, followed by the destination (or lookup value) columns.
+   */
+  public MaskingStage stage(
+      List<String> inputColumns, LookupTable lookupTable, LookUpPlan lookUpPlan) {
+    List<String> sourceSearch = lookUpPlan.getSourceSearchColumns();
+    List<String> lookupSearch = lookUpPlan.getLookupSearchColumns();
+    List<String> lookupValue = lookUpPlan.getLookupValueColumns();
+    List<String> destinationColumns = lookUpPlan.getDestinationColumns();
+
+    // Key columns are resolved to indexes once; keys are then hashed and compared field by
+    // field on both sides
+    int[] lookupKeyColumns = lookupSearch.stream().mapToInt(lookupTable::columnIndex).toArray();
+    Map<String, Integer> columns = MaskingStage.columnIndexes(inputColumns);
+    int[] keyColumns =
+        sourceSearch.stream().mapToInt(col -> columns.getOrDefault(col, -1)).toArray();
+
+    // Index lookup rows by search key (last duplicate wins); cached on the table so a
+    // registered table is only indexed once
+    RowHashIndex lookupIndex =
+        lookupTable.hashIndex(
+            "LOOKUP:" + String.join(",", lookupSearch),
+            row -> CompositeKeys.hash(lookupTable, row, lookupKeyColumns),
+            (row, otherRow) ->
+                CompositeKeys.sameKey(lookupTable, row, otherRow, lookupKeyColumns),
+            false);
+    Counter hits = maskingMetrics.lookups(MaskingFunctionType.LOOKUP.name(), true);
+    Counter misses = maskingMetrics.lookups(MaskingFunctionType.LOOKUP.name(), false);
+
+    // Output layout, computed once: pass-through columns are copied by index
+    List<String> passThrough = new ArrayList<>(columns.keySet());
+    passThrough.removeAll(sourceSearch);
+    int[] passThroughColumns = passThrough.stream().mapToInt(columns::get).toArray();
+
+    // Add destination columns if present, else lookup value columns
+    List<String> extraColumns;
+    if (destinationColumns != null && !destinationColumns.isEmpty()) {
+      extraColumns = destinationColumns;
     } else {
-      for (int i = 0; i < extraColumns.size(); i++) {
-        outputRow.add("");
-      }
+      extraColumns = lookupValue;
     }
 
-    // 👉 IMPORTANT: Now print the record!
-    try {
-      printer.printRecord(outputRow);
-    } catch (IOException e) {
-      throw new RuntimeException("Error writing CSV record: " + e.getMessage(), e);
-    }
-  }
+    List<String> outputColumns = new ArrayList<>(passThrough);
+    outputColumns.addAll(extraColumns);
 
-  private String buildKey(CSVRecord record, List<String> keyColumns) {
-    return keyColumns.stream()
-        .map(col -> record.isMapped(col) ? record.get(col).trim() : "")
-        .reduce((a, b) -> a + "::" + b)
-        .orElse("");
-  }
+    // Only lookup value columns are carried over from a matched lookup row
+    int[] extraColumnIndexes = new int[extraColumns.size()];
+    for (int i = 0; i < extraColumnIndexes.length; i++) {
+      String col = extraColumns.get(i);
+      extraColumnIndexes[i] = lookupValue.contains(col) ? lookupTable.columnIndex(col) : -1;
+    }
 
-  private void resetColumnStore(LookUpStore lookUpStore) {
-    lookUpStore.setSourceSearchColumns(new ArrayList<>());
-    lookUpStore.setDestinationColumns(new ArrayList<>());
-    lookUpStore.setLookupTableName(null);
-    lookUpStore.setLookupSearchColumns(new ArrayList<>());
-    lookUpStore.setLookupValueColumns(new ArrayList<>());
-    lookUpStore.setCacheEnabled(false);
-    lookUpStore.setPreserveOptions(new ArrayList<>());
+    // Chunks are masked in parallel against the shared, read-only lookup index; only the key
+    // fields are decoded
+    return new MaskingStage(
+        List.copyOf(outputColumns),
+        chunk -> {
+          CompositeKeys.Probe probe =
+              new CompositeKeys.Probe(lookupTable, lookupKeyColumns, keyColumns);
+          return (record, out) -> {
+            // Source columns values
+            for (int column : passThroughColumns) {
+              out.add(record, column);
+            }
+            // Lookup or destination columns values
+            int matched = lookupIndex.find(probe.reset(record), probe);
+            (matched >= 0 ? hits : misses).increment();
+            for (int columnIndex : extraColumnIndexes) {
+              boolean found = matched >= 0 && columnIndex >= 0;
+              out.add(found ? lookupTable.getValue(matched, columnIndex) : "");
+            }
+          };
+        });
   }
-}
\ No newline at end of file
+}
@@ -1,6 +1,8 @@
 package com.masking.service.lookup;
 
 import com.masking.component.ValidationResponse;
+import com.masking.model.CompiledFunction;
+import com.masking.model.lookup.LookUpPlan;
 import com.masking.model.lookup.LookUpStore;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -10,6 +12,16 @@ import org.springframework.stereotype.Service;
 @Service
 public class LookUpFunctionValidator {
 
+  /** Parses {@code lookupFunction} into a fresh store and freezes it into a plan if it is valid. */
+  public CompiledFunction<LookUpPlan> compile(String lookupFunction) {
+    LookUpStore lookUpStore = new LookUpStore();
+    ValidationResponse response = validateAndExtract(lookupFunction, lookUpStore);
+    if (response.getMessages() != null && !response.getMessages().isEmpty()) {
+      return CompiledFunction.invalid(response);
+    }
+    return CompiledFunction.valid(response, lookUpStore.toPlan());
+  }
+
   public ValidationResponse validateAndExtract(String lookupFunction, LookUpStore lookUpStore) {
     List<String> errors = new ArrayList<>();
 
@@ -0,0 +1,336 @@
+package com.masking.service.pipeline;
+
+import com.masking.component.ValidationResponse;
+import com.masking.model.CompiledFunction;
+import com.masking.model.MaskingFunctionType;
+import com.masking.model.hash_lookup.HashLookupPlan;
+import com.masking.model.lookup.LookUpPlan;
+import com.masking.model.pipeline.PipelinePlan;
+import com.masking.model.random_lookup.RandomLookupPlan;
+import com.masking.model.table.LookupTable;
+import com.masking.service.common.ChunkedCsvProcessor;
+import com.masking.service.common.CompressedStreams;
+import com.masking.service.common.CsvChunkReader;
+import com.masking.service.common.CsvRecordWriter;
+import com.masking.service.common.DataPathException;
+import com.masking.service.common.FunctionPlanCache;
+import com.masking.service.common.JobAdmission;
+import com.masking.service.common.MaskingMetrics;
+import com.masking.service.common.MaskingStage;
+import com.masking.service.hash_lookup.HashLookupCsvGenerator;
+import com.masking.service.hash_lookup.HashLookupFunctionValidator;
+import com.masking.service.lookup.CsvColumnValidatorService;
+import com.masking.service.lookup.CsvOutputGenerator;
+import com.masking.service.lookup.LookUpFunctionValidator;
+import com.masking.service.random_lookup.CsvProcessorService;
+import com.masking.service.random_lookup.RandomLookupFunctionValidator;
+import com.masking.service.table.LookupTableRegistry;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Applies an ordered list of LOOKUP, HASH_LOOKUP and RAND_LOOKUP functions to a source CSV in one
+ * read and one write. Each function is compiled by its own engine into a {@link MaskingStage}
+ * against the columns the function before it produces, and every record runs through all stages
+ * before it is written; each lookup table is loaded and indexed once however many functions use
+ * it.
+ */
+@Service
+public class MaskingPipelineService {
+
+  // CSVFormat.DEFAULT's record separator, as written by the LOOKUP and RAND_LOOKUP engines
+  private static final String RECORD_SEPARATOR = "\r\n";
+
+  @Autowired private LookUpFunctionValidator lookUpFunctionValidator;
+  @Autowired private RandomLookupFunctionValidator randomLookupFunctionValidator;
+  @Autowired private HashLookupFunctionValidator hashLookupFunctionValidator;
+
+  @Autowired private CsvColumnValidatorService csvColumnValidatorService;
+  @Autowired private CsvOutputGenerator csvOutputGenerator;
+  @Autowired private CsvProcessorService csvProcessorService;
+  @Autowired private HashLookupCsvGenerator hashLookupCsvGenerator;
+
+  @Autowired private ChunkedCsvProcessor chunkedCsvProcessor;
+  @Autowired private CompressedStreams compressedStreams;
+  @Autowired private FunctionPlanCache functionPlanCache;
+  @Autowired private LookupTableRegistry lookupTableRegistry;
+
+  /**
+   * Compiles every function, in order, through the plan cache. The errors of all invalid functions
+   * are reported together, each prefixed with the function's position.
+   */
+  public CompiledFunction<PipelinePlan> compile(List<String> functions) {
+    List<String> errors = new ArrayList<>();
+    List<PipelinePlan.Step> steps = new ArrayList<>();
+    if (functions == null || functions.isEmpty()) {
+      errors.add("Give at least one function.");
+    } else {
+      for (int i = 0; i < functions.size(); i++) {
+        String function = functions.get(i);
+        MaskingFunctionType type = MaskingFunctionType.of(function);
+        if (type == null) {
+          errors.add(
+              stepPrefix(i, null)
+                  + "Function must start with 'LOOKUP(', 'HASH_LOOKUP(' or 'RAND_LOOKUP('.");
+          continue;
+        }
+        CompiledFunction<?> compiled =
+            switch (type) {
+              case LOOKUP ->
+                  functionPlanCache.compile(type, function, lookUpFunctionValidator::compile);
+              case RAND_LOOKUP ->
+                  functionPlanCache.compile(type, function, randomLookupFunctionValidator::compile);
+              case HASH_LOOKUP ->
+                  functionPlanCache.compile(type, function, hashLookupFunctionValidator::compile);
+            };
+        if (!compiled.isValid()) {
+          for (String message : compiled.getValidation().getMessages()) {
+            errors.add(stepPrefix(i, type) + message);
+          }
+          continue;
+        }
+        steps.add(step(type, compiled.getPlan()));
+      }
+    }
+    if (!errors.isEmpty()) {
+      return CompiledFunction.invalid(new ValidationResponse("FAILED", errors));
+    }
+    return CompiledFunction.valid(
+        new ValidationResponse("SUCCESS", null), new PipelinePlan(List.copyOf(steps)));
+  }
+
+  /**
+   * The lookup tables of {@code pipelinePlan} by name, each loaded once. A table comes from the
+   * lookup file named after it, without its extension ({@code optim_sales.csv} for {@code
+   * optim_sales}), and is cached if any function using it asks for {@code CACHE}; a table with no
+   * such file comes from the registry. Tables found in neither are missing from the map. Each
+   * table is leased to {@code job} until it is released.
+   *
+   * @throws DataPathException if two lookup files are named after the same table
+   */
+  public Map<String, LookupTable> resolveTables(
+      PipelinePlan pipelinePlan, List<MultipartFile> lookupFiles, JobAdmission.Permit job)
+      throws IOException {
+    Map<String, MultipartFile> filesByTable = new HashMap<>();
+    for (MultipartFile file : lookupFiles) {
+      String table = tableKey(tableName(file));
+      if (filesByTable.putIfAbsent(table, file) != null) {
+        throw new DataPathException(
+            "More than one lookup file is named for table '" + tableName(file) + "'");
+      }
+    }
+
+    Map<String, LookupTable> tables = new HashMap<>();
+    for (String tableName : pipelinePlan.getLookupTableNames()) {
+      String key = tableKey(tableName);
+      if (tables.containsKey(key)) {
+        continue;
+      }
+      boolean cache =
+          pipelinePlan.getSteps().stream()
+              .anyMatch(
+                  step -> tableKey(step.getLookupTableName()).equals(key) && step.isCacheEnabled());
+      LookupTable table =
+          lookupTableRegistry.resolve(tableName, filesByTable.get(key), cache, job);
+      if (table != null) {
+        tables.put(key, table);
+      }
+    }
+    return tables;
+  }
+
+  /** The first lookup table of {@code pipelinePlan} that {@code tables} does not have, or null. */
+  public String missingTable(PipelinePlan pipelinePlan, Map<String, LookupTable> tables) {
+    for (String tableName : pipelinePlan.getLookupTableNames()) {
+      if (!tables.containsKey(tableKey(tableName))) {
+        return tableName;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Checks every function's columns against the columns it receives, reading only the source
+   * header; for callers that cannot report a failure once output has started.
+   */
+  public ValidationResponse validateColumns(
+      MultipartFile sourceFile, PipelinePlan pipelinePlan, Map<String, LookupTable> tables) {
+    try (InputStream sourceStream = compressedStreams.openSource(sourceFile)) {
+      Map<String, Integer> sourceColumns =
+          readHeader(chunkedCsvProcessor.reader(sourceStream, true));
+      List<String> errors = new ArrayList<>();
+      stages(sourceColumns, pipelinePlan, tables, errors);
+      return errors.isEmpty()
+          ? new ValidationResponse("SUCCESS", null)
+          : new ValidationResponse("FAILED", errors);
+    } catch (IOException e) {
+      return new ValidationResponse(
+          "FAILED", List.of("Error reading source CSV file: " + e.getMessage()));
+    }
+  }
+
+  /**
+   * Validates the functions' columns and masks the source into a new file under {@code
+   * pipeline/}, in one pass over the source. No output file is created for a failed validation.
+   */
+  public ValidationResponse generateOutputCsv(
+      MultipartFile sourceFile, PipelinePlan pipelinePlan, Map<String, LookupTable> tables)
+      throws IOException {
+    try (InputStream sourceStream = compressedStreams.openSource(sourceFile)) {
+      CsvChunkReader source = chunkedCsvProcessor.reader(sourceStream, true);
+      Map<String, Integer> sourceColumns = readHeader(source);
+      if (sourceColumns == null) {
+        return new ValidationResponse("ERROR", List.of("Source CSV is empty."));
+      }
+
+      List<String> errors = new ArrayList<>();
+      List<MaskingStage> stages = stages(sourceColumns, pipelinePlan, tables, errors);
+      if (!errors.isEmpty()) {
+        return new ValidationResponse("FAILED", errors);
+      }
+
+      Path outputPath = compressedStreams.newOutputPath("pipeline");
+      try (OutputStream output = compressedStreams.newOutputStream(outputPath)) {
+        writeRecords(source, sourceColumns, stages, output);
+      }
+      String message = stages.size() + " functions applied successfully: " + outputPath;
+      return new ValidationResponse("SUCCESS", List.of(message));
+    }
+  }
+
+  /**
+   * Masks {@code sourceStream} into {@code output}, header first, flushing each chunk as soon as it
+   * is masked. The columns must have been checked with {@link #validateColumns}.
+   */
+  public void writeOutputCsv(
+      InputStream sourceStream,
+      PipelinePlan pipelinePlan,
+      Map<String, LookupTable> tables,
+      OutputStream output)
+      throws IOException {
+    CsvChunkReader source = chunkedCsvProcessor.reader(sourceStream, true);
+    Map<String, Integer> sourceColumns = readHeader(source);
+    if (sourceColumns == null) {
+      return;
+    }
+    List<String> errors = new ArrayList<>();
+    List<MaskingStage> stages = stages(sourceColumns, pipelinePlan, tables, errors);
+    if (!errors.isEmpty()) {
+      throw new IllegalStateException("Pipeline columns are invalid: " + errors);
+    }
+    writeRecords(source, sourceColumns, stages, output);
+  }
+
+  /**
+   * Compiles each step against the columns the step before it produces. Compilation stops at the
+   * first step whose columns are invalid, since the steps after it would see the wrong columns.
+   */
+  private List<MaskingStage> stages(
+      Map<String, Integer> sourceColumns,
+      PipelinePlan pipelinePlan,
+      Map<String, LookupTable> tables,
+      List<String> errors) {
+    List<String> columns =
+        sourceColumns != null ? new ArrayList<>(sourceColumns.keySet()) : List.of();
+    List<MaskingStage> stages = new ArrayList<>();
+    List<PipelinePlan.Step> steps = pipelinePlan.getSteps();
+    for (int i = 0; i < steps.size(); i++) {
+      PipelinePlan.Step step = steps.get(i);
+      LookupTable table = tables.get(tableKey(step.getLookupTableName()));
+      ValidationResponse validation =
+          switch (step.getType()) {
+            case LOOKUP ->
+                csvColumnValidatorService.validateColumns(
+                    columns, table, (LookUpPlan) step.getPlan());
+            case RAND_LOOKUP ->
+                csvProcessorService.validateColumns(
+                    columns, table, (RandomLookupPlan) step.getPlan());
+            // HASH_LOOKUP masks missing columns as empty values, as its own endpoint does
+            case HASH_LOOKUP -> new ValidationResponse("SUCCESS", null);
+          };
+      if (validation.getMessages() != null && !validation.getMessages().isEmpty()) {
+        for (String message : validation.getMessages()) {
+          errors.add(stepPrefix(i, step.getType()) + message);
+        }
+        return stages;
+      }
+
+      MaskingStage stage =
+          switch (step.getType()) {
+            case LOOKUP -> csvOutputGenerator.stage(columns, table, (LookUpPlan) step.getPlan());
+            case RAND_LOOKUP ->
+                csvProcessorService.stage(columns, table, (RandomLookupPlan) step.getPlan());
+            case HASH_LOOKUP ->
+                hashLookupCsvGenerator.stage(columns, table, (HashLookupPlan) step.getPlan());
+          };
+      stages.add(stage);
+      columns = stage.outputColumns();
+    }
+    return stages;
+  }
+
+  private void writeRecords(
+      CsvChunkReader source,
+      Map<String, Integer> sourceColumns,
+      List<MaskingStage> stages,
+      OutputStream output)
+      throws IOException {
+    List<String> outputColumns = stages.get(stages.size() - 1).outputColumns();
+    new CsvRecordWriter(RECORD_SEPARATOR, 256).record(outputColumns).writeTo(output);
+    int[] sourceFields = sourceColumns.values().stream().mapToInt(Integer::intValue).toArray();
+    chunkedCsvProcessor.process(
+        MaskingMetrics.PIPELINE, source, sourceFields, stages, output, RECORD_SEPARATOR);
+  }
+
+  private static PipelinePlan.Step step(MaskingFunctionType type, Object plan) {
+    return switch (type) {
+      case LOOKUP -> {
+        LookUpPlan lookUpPlan = (LookUpPlan) plan;
+        yield new PipelinePlan.Step(
+            type, plan, lookUpPlan.getLookupTableName(), lookUpPlan.isCacheEnabled());
+      }
+      case RAND_LOOKUP -> {
+        RandomLookupPlan randomLookupPlan = (RandomLookupPlan) plan;
+        yield new PipelinePlan.Step(
+            type, plan, randomLookupPlan.getLookupTableName(), randomLookupPlan.isCacheEnabled());
+      }
+      case HASH_LOOKUP -> {
+        HashLookupPlan hashLookupPlan = (HashLookupPlan) plan;
+        yield new PipelinePlan.Step(
+            type,
+            plan,
+            hashLookupPlan.getLookupTableName(),
+            Boolean.TRUE.equals(hashLookupPlan.getCacheEnabled()));
+      }
+    };
+  }
+
+  /** Source column indexes by name, or null if the source is empty. */
+  private static Map<String, Integer> readHeader(CsvChunkReader source) throws IOException {
+    String headerRecord = source.readHeaderRecord();
+    return headerRecord != null ? CsvChunkReader.parseHeader(headerRecord) : null;
+  }
+
+  private static String stepPrefix(int index, MaskingFunctionType type) {
+    return "Function " + (index + 1) + (type != null ? " (" + type + ")" : "") + ": ";
+  }
+
+  /** The table a file is for: its name up to the first dot. */
+  static String tableName(MultipartFile file) {
+    String name = Objects.requireNonNullElse(file.getOriginalFilename(), "");
+    name = name.substring(name.lastIndexOf('/') + 1);
+    int dot = name.indexOf('.');
+    return dot >= 0 ? name.substring(0, dot) : name;
+  }
+
+  // Table names are matched like the registry matches them
+  static String tableKey(String tableName) {
+    return tableName == null ? "" : tableName.strip().toLowerCase(Locale.ROOT);
+  }
+}
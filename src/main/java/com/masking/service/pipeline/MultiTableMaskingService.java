@@ -0,0 +1,332 @@
+package com.masking.service.pipeline;
+
+import com.masking.component.ValidationResponse;
+import com.masking.model.CompiledFunction;
+import com.masking.model.MaskingFunctionType;
+import com.masking.model.hash_lookup.HashLookupPlan;
+import com.masking.model.lookup.LookUpPlan;
+import com.masking.model.pipeline.MultiTablePlan;
+import com.masking.model.pipeline.PipelinePlan;
+import com.masking.model.random_lookup.RandomLookupPlan;
+import com.masking.model.table.LookupTable;
+import com.masking.service.common.ChunkedCsvProcessor;
+import com.masking.service.common.CompressedStreams;
+import com.masking.service.common.CsvChunkReader;
+import com.masking.service.common.CsvRecordWriter;
+import com.masking.service.common.DataPathException;
+import com.masking.service.common.KeyMapping;
+import com.masking.service.common.MaskingJob;
+import com.masking.service.common.MaskingMetrics;
+import com.masking.service.common.MaskingStage;
+import com.masking.service.common.OutputFiles;
+import com.masking.service.hash_lookup.HashLookupCsvGenerator;
+import com.masking.service.lookup.CsvColumnValidatorService;
+import com.masking.service.lookup.CsvOutputGenerator;
+import com.masking.service.random_lookup.CsvProcessorService;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Masks a set of related tables, such as the Optim extracts, with key functions that keep keys
+ * consistent across them. Each function masks one key column value by value through a {@link
+ * KeyMapping} shared by every table and column it applies to, so a customer id is masked the same
+ * way in the customers and the orders table and each distinct key is mapped only once. Tables are
+ * masked concurrently; columns keep their place and columns no function names pass through.
+ */
+@Service
+public class MultiTableMaskingService {
+
+  private static final Logger logger = LoggerFactory.getLogger(MultiTableMaskingService.class);
+
+  // CSVFormat.DEFAULT's record separator, as written by the LOOKUP and RAND_LOOKUP engines
+  private static final String RECORD_SEPARATOR = "\r\n";
+
+  @Autowired private MaskingPipelineService maskingPipelineService;
+  @Autowired private CsvColumnValidatorService csvColumnValidatorService;
+  @Autowired private CsvOutputGenerator csvOutputGenerator;
+  @Autowired private CsvProcessorService csvProcessorService;
+  @Autowired private HashLookupCsvGenerator hashLookupCsvGenerator;
+  @Autowired private ChunkedCsvProcessor chunkedCsvProcessor;
+  @Autowired private CompressedStreams compressedStreams;
+
+  // Each job writes its tables into a new job_<ddHHmmss> directory under this one
+  @Value("${masking.multi-table.output-dir:multi_table}")
+  private String outputDirectory;
+
+  /**
+   * Compiles key functions given as {@code [columns=]FUNCTION}. A function masks the one column it
+   * searches on (for RAND_LOOKUP, its one destination column) with its first value column; the
+   * optional comma-separated {@code columns} name every column sharing the mapping, such as a key
+   * and the foreign keys referring to it under other names.
+   */
+  public CompiledFunction<MultiTablePlan> compile(List<String> functions) {
+    List<String> functionTexts = new ArrayList<>();
+    List<List<String>> targets = new ArrayList<>();
+    for (String function : functions) {
+      String text = function.strip();
+      List<String> columns = null;
+      int equals = text.indexOf('=');
+      int paren = text.indexOf('(');
+      if (MaskingFunctionType.of(text) == null && equals > 0 && (paren < 0 || equals < paren)) {
+        columns = Arrays.stream(text.substring(0, equals).split(",")).map(String::strip).toList();
+        text = text.substring(equals + 1).strip();
+      }
+      functionTexts.add(text);
+      targets.add(columns);
+    }
+
+    CompiledFunction<PipelinePlan> compiled = maskingPipelineService.compile(functionTexts);
+    if (!compiled.isValid()) {
+      return CompiledFunction.invalid(compiled.getValidation());
+    }
+
+    List<String> errors = new ArrayList<>();
+    List<String> keyColumns = new ArrayList<>();
+    List<PipelinePlan.Step> steps = compiled.getPlan().getSteps();
+    for (int i = 0; i < steps.size(); i++) {
+      PipelinePlan.Step step = steps.get(i);
+      List<String> keys =
+          switch (step.getType()) {
+            case LOOKUP -> ((LookUpPlan) step.getPlan()).getSourceSearchColumns();
+            case HASH_LOOKUP -> ((HashLookupPlan) step.getPlan()).getSourceSearchColumns();
+            case RAND_LOOKUP -> ((RandomLookupPlan) step.getPlan()).getDestinationColumns();
+          };
+      if (keys.size() != 1) {
+        errors.add(prefix(i, step.getType()) + "A key function masks exactly one column.");
+        continue;
+      }
+      keyColumns.add(keys.get(0).strip());
+      if (targets.get(i) == null) {
+        targets.set(i, List.of(keys.get(0).strip()));
+      }
+    }
+    if (!errors.isEmpty()) {
+      return CompiledFunction.invalid(new ValidationResponse("FAILED", errors));
+    }
+    return CompiledFunction.valid(
+        new ValidationResponse("SUCCESS", null),
+        new MultiTablePlan(compiled.getPlan(), List.copyOf(targets), List.copyOf(keyColumns)));
+  }
+
+  /**
+   * Checks the functions against the source tables and masks each table into {@code
+   * job_<ddHHmmss>/<table>.csv} under {@code masking.multi-table.output-dir}, reading every source
+   * once. Each source is named after its file without the extension.
+   *
+   * @return FAILED, with nothing written, if a function's columns are missing; otherwise SUCCESS
+   *     with the output directory, each output file and the number of keys each function mapped
+   * @throws DataPathException if two source files are named after the same table
+   */
+  public ValidationResponse mask(
+      List<MultipartFile> sourceFiles, MultiTablePlan plan, Map<String, LookupTable> tables)
+      throws IOException {
+    Map<String, MultipartFile> sources = new LinkedHashMap<>();
+    for (MultipartFile file : sourceFiles) {
+      String name = MaskingPipelineService.tableName(file);
+      if (sources.putIfAbsent(name, file) != null) {
+        throw new DataPathException("More than one source file is named for table '" + name + "'");
+      }
+    }
+    if (sources.isEmpty()) {
+      return new ValidationResponse("FAILED", List.of("Give at least one source table."));
+    }
+
+    List<InputStream> streams = new ArrayList<>();
+    try {
+      // Headers are read first so nothing is written for an invalid job; each source then
+      // continues from its header
+      Map<String, CsvChunkReader> readers = new LinkedHashMap<>();
+      Map<String, Map<String, Integer>> columns = new LinkedHashMap<>();
+      for (Map.Entry<String, MultipartFile> source : sources.entrySet()) {
+        InputStream stream = compressedStreams.openSource(source.getValue());
+        streams.add(stream);
+        CsvChunkReader reader = chunkedCsvProcessor.reader(stream, true);
+        String headerRecord = reader.readHeaderRecord();
+        readers.put(source.getKey(), reader);
+        columns.put(
+            source.getKey(),
+            headerRecord != null ? CsvChunkReader.parseHeader(headerRecord) : Map.of());
+      }
+
+      List<String> errors = new ArrayList<>();
+      List<KeyMapping> functionMappings = new ArrayList<>();
+      Map<String, Map<String, KeyMapping>> mappingsByTable =
+          mappings(plan, tables, columns, functionMappings, errors);
+      if (!errors.isEmpty()) {
+        return new ValidationResponse("FAILED", errors);
+      }
+
+      Path jobDirectory = OutputFiles.newOutputDirectory(outputDirectory);
+      List<String> messages = new ArrayList<>();
+      messages.add(sources.size() + " tables masked successfully: " + jobDirectory);
+      Map<String, Future<?>> jobs = new LinkedHashMap<>();
+      // An asynchronous job follows its tables onto their threads
+      MaskingJob maskingJob = MaskingJob.current();
+      // Tables are masked side by side; their chunks share the chunk processor's workers
+      try (ExecutorService tableRunner = Executors.newVirtualThreadPerTaskExecutor()) {
+        for (String table : sources.keySet()) {
+          Path outputPath = jobDirectory.resolve(table + compressedStreams.outputExtension());
+          messages.add(table + ": " + outputPath);
+          jobs.put(
+              table,
+              tableRunner.submit(
+                  () ->
+                      MaskingJob.runAs(
+                          maskingJob,
+                          () -> {
+                            writeTable(
+                                readers.get(table),
+                                columns.get(table),
+                                mappingsByTable.get(table),
+                                outputPath);
+                            return null;
+                          })));
+        }
+        for (Map.Entry<String, Future<?>> job : jobs.entrySet()) {
+          await(job.getKey(), job.getValue());
+        }
+      }
+
+      List<PipelinePlan.Step> steps = plan.getFunctions().getSteps();
+      for (int i = 0; i < steps.size(); i++) {
+        int mapped = functionMappings.get(i).size();
+        messages.add(prefix(i, steps.get(i).getType()) + mapped + " distinct keys mapped");
+      }
+      return new ValidationResponse("SUCCESS", messages);
+    } finally {
+      for (InputStream stream : streams) {
+        stream.close();
+      }
+    }
+  }
+
+  /**
+   * The key mapping of every masked column by table, with the mapping of each function added to
+   * {@code functionMappings}. Functions are checked against the lookup tables and the columns they
+   * name must exist; a column named by two functions is an error.
+   */
+  private Map<String, Map<String, KeyMapping>> mappings(
+      MultiTablePlan plan,
+      Map<String, LookupTable> tables,
+      Map<String, Map<String, Integer>> columns,
+      List<KeyMapping> functionMappings,
+      List<String> errors) {
+    Map<String, Map<String, KeyMapping>> mappingsByTable = new LinkedHashMap<>();
+    columns.keySet().forEach(table -> mappingsByTable.put(table, new HashMap<>()));
+
+    List<PipelinePlan.Step> steps = plan.getFunctions().getSteps();
+    for (int i = 0; i < steps.size(); i++) {
+      PipelinePlan.Step step = steps.get(i);
+      String prefix = prefix(i, step.getType());
+      LookupTable lookupTable =
+          tables.get(MaskingPipelineService.tableKey(step.getLookupTableName()));
+      List<String> key = List.of(plan.getKeyColumns().get(i));
+      ValidationResponse validation =
+          switch (step.getType()) {
+            case LOOKUP ->
+                csvColumnValidatorService.validateColumns(
+                    key, lookupTable, (LookUpPlan) step.getPlan());
+            case RAND_LOOKUP ->
+                csvProcessorService.validateColumns(
+                    key, lookupTable, (RandomLookupPlan) step.getPlan());
+            case HASH_LOOKUP ->
+                hashLookupCsvGenerator.validateLookupColumns(
+                    lookupTable, (HashLookupPlan) step.getPlan());
+          };
+      if (validation.getMessages() != null && !validation.getMessages().isEmpty()) {
+        validation.getMessages().forEach(message -> errors.add(prefix + message));
+        continue;
+      }
+
+      KeyMapping mapping =
+          new KeyMapping(
+              switch (step.getType()) {
+                case LOOKUP ->
+                    csvOutputGenerator.stage(key, lookupTable, (LookUpPlan) step.getPlan());
+                case RAND_LOOKUP ->
+                    csvProcessorService.stage(key, lookupTable, (RandomLookupPlan) step.getPlan());
+                case HASH_LOOKUP ->
+                    hashLookupCsvGenerator.stage(
+                        key, lookupTable, (HashLookupPlan) step.getPlan());
+              });
+      functionMappings.add(mapping);
+      for (String target : plan.getTargets().get(i)) {
+        int dot = target.indexOf('.');
+        String targetTable = dot >= 0 ? target.substring(0, dot) : null;
+        String column = target.substring(dot + 1);
+        boolean found = false;
+        for (Map.Entry<String, Map<String, Integer>> table : columns.entrySet()) {
+          if ((targetTable == null || targetTable.equalsIgnoreCase(table.getKey()))
+              && table.getValue().containsKey(column)) {
+            found = true;
+            KeyMapping other = mappingsByTable.get(table.getKey()).put(column, mapping);
+            if (other != null && other != mapping) {
+              errors.add(
+                  prefix + "Column " + table.getKey() + "." + column + " is masked twice.");
+            }
+          }
+        }
+        if (!found) {
+          errors.add(prefix + "No source table has column '" + target + "'.");
+        }
+      }
+    }
+    return mappingsByTable;
+  }
+
+  private void writeTable(
+      CsvChunkReader source,
+      Map<String, Integer> sourceColumns,
+      Map<String, KeyMapping> mappings,
+      Path outputPath)
+      throws IOException {
+    MaskingStage stage = KeyMapping.stage(new ArrayList<>(sourceColumns.keySet()), mappings);
+    try (OutputStream output = compressedStreams.newOutputStream(outputPath)) {
+      if (sourceColumns.isEmpty()) {
+        // An empty source gives an empty table
+        return;
+      }
+      new CsvRecordWriter(RECORD_SEPARATOR, 256).record(stage.outputColumns()).writeTo(output);
+      int[] sourceFields = sourceColumns.values().stream().mapToInt(Integer::intValue).toArray();
+      chunkedCsvProcessor.process(
+          MaskingMetrics.MULTI_TABLE,
+          source,
+          sourceFields,
+          List.of(stage),
+          output,
+          RECORD_SEPARATOR);
+    }
+    logger.info("Masked table into {}", outputPath);
+  }
+
+  private static void await(String table, Future<?> job) throws IOException {
+    try {
+      job.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while masking table " + table, e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException io) {
+        throw io;
+      }
+      throw new IOException("Masking table " + table + " failed", e.getCause());
+    }
+  }
+
+  private static String prefix(int index, MaskingFunctionType type) {
+    return "Function " + (index + 1) + " (" + type + "): ";
+  }
+}
@@ -1,171 +1,209 @@
 package com.masking.service.random_lookup;
 
 import com.masking.component.ValidationResponse;
-import com.masking.model.random_lookup.RandomLookupStore;
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import com.masking.model.MaskingFunctionType;
+import com.masking.model.random_lookup.RandomLookupPlan;
+import com.masking.model.table.LookupTable;
+import com.masking.service.common.ChunkedCsvProcessor;
+import com.masking.service.common.CompressedStreams;
+import com.masking.service.common.CsvChunkReader;
+import com.masking.service.common.CsvRecordWriter;
+import com.masking.service.common.MaskingStage;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.text.SimpleDateFormat;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
 import java.util.*;
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
-import org.apache.commons.csv.CSVPrinter;
-import org.apache.commons.csv.CSVRecord;
+import java.util.concurrent.ThreadLocalRandom;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 @Service
 public class CsvProcessorService {
 
+  // Spreads chunk indexes over the seed space so neighbouring chunks get unrelated sequences
+  private static final long CHUNK_SEED_STEP = 0x9E3779B97F4A7C15L;
+
+  // CSVFormat.DEFAULT's record separator, which this engine has always written
+  private static final String RECORD_SEPARATOR = "\r\n";
+
+  @Autowired private ChunkedCsvProcessor chunkedCsvProcessor;
+  @Autowired private CompressedStreams compressedStreams;
+
+  /**
+   * Validates the plan against both tables and masks the source into a new file under {@code
+   * random_lookup/}, in one pass: the source header read for validation is the one the masking
+   * continues from, and no output file is created for a failed validation.
+   */
   public ValidationResponse validateAndGenerateCsv(
-      MultipartFile sourceFile, MultipartFile lookupFile, RandomLookupStore randomLookupStore) {
+      MultipartFile sourceFile, LookupTable lookupTable, RandomLookupPlan randomLookupPlan) {
     List<String> messages = new ArrayList<>();
 
-    try {
-      // Extract headers from lookup CSV
-      Set<String> lookupHeaders = extractHeaders(lookupFile);
-
-      // Validate lookupValueColumns against lookup CSV headers
-      boolean missingLookupColumn = false;
-      for (String col : randomLookupStore.getLookupValueColumns()) {
-        if (!lookupHeaders.contains(col)) {
-          messages.add("❌ Missing lookup value column in lookup CSV: " + col);
-          missingLookupColumn = true;
-        }
-      }
-      if (missingLookupColumn) {
-        return new ValidationResponse("FAILED", messages);
-      }
+    // Validate lookupValueColumns against the lookup table headers
+    ValidationResponse lookupValidation = validateLookupColumns(lookupTable, randomLookupPlan);
+    if (lookupValidation != null) {
+      return lookupValidation;
+    }
 
-      // Extract headers from source CSV
-      Set<String> sourceHeaders = extractHeaders(sourceFile);
+    try (InputStream sourceStream = compressedStreams.openSource(sourceFile)) {
+      CsvChunkReader source = chunkedCsvProcessor.reader(sourceStream, true);
+      Map<String, Integer> sourceColumns = readHeader(source);
 
       // Validate destinationColumns against source CSV headers
-      boolean missingDestColumn = false;
-      for (String destCol : randomLookupStore.getDestinationColumns()) {
-        if (!sourceHeaders.contains(destCol)) {
-          messages.add("❌ Missing destination column in source CSV: " + destCol);
-          missingDestColumn = true;
-        }
+      ValidationResponse sourceValidation =
+          validateDestinationColumns(sourceColumns.keySet(), randomLookupPlan);
+      if (sourceValidation != null) {
+        return sourceValidation;
       }
-      if (missingDestColumn) {
-        return new ValidationResponse("FAILED", messages);
+
+      Path outputPath = compressedStreams.newOutputPath("random_lookup");
+      try (OutputStream output = compressedStreams.newOutputStream(outputPath)) {
+        writeRecords(source, sourceColumns, lookupTable, randomLookupPlan, output);
       }
 
-      // If no missing columns, proceed to generate output CSV
-      return generateOutputCsv(sourceFile, lookupFile, randomLookupStore);
+      messages.add("✅ Output file generated successfully: " + outputPath);
+      return new ValidationResponse("SUCCESS", messages);
 
-    } catch (Exception e) {
-      messages.add("❌ Error: " + e.getMessage());
+    } catch (IOException e) {
+      messages.add("❌ Error generating CSV file: " + e.getMessage());
       return new ValidationResponse("FAILED", messages);
     }
   }
 
-  public ValidationResponse generateOutputCsv(
-      MultipartFile sourceFile, MultipartFile lookupFile, RandomLookupStore randomLookupStore) {
-    List<String> messages = new ArrayList<>();
-
-    try {
-      List<String> sourceHeaders = extractHeadersList(sourceFile);
-      List<Map<String, String>> lookupData = extractLookupData(lookupFile);
-
-      String timestamp = new SimpleDateFormat("ddHHmmss").format(new Date());
-      String outputFilePath = "random_lookup/output_" + timestamp + ".csv";
-
-      Files.createDirectories(Paths.get("random_lookup"));
-
-      try (BufferedReader sourceReader =
-              new BufferedReader(
-                  new InputStreamReader(sourceFile.getInputStream(), StandardCharsets.UTF_8));
-          CSVParser sourceParser = CSVFormat.DEFAULT.withFirstRecordAsHeader().parse(sourceReader);
-          BufferedWriter writer = Files.newBufferedWriter(Paths.get(outputFilePath));
-          CSVPrinter csvPrinter =
-              new CSVPrinter(
-                  writer, CSVFormat.DEFAULT.withHeader(sourceHeaders.toArray(new String[0])))) {
-
-        Random random = new Random();
-
-        for (CSVRecord sourceRecord : sourceParser) {
-          List<String> row = new ArrayList<>();
-
-          for (String header : sourceHeaders) {
-            if (randomLookupStore.getDestinationColumns().contains(header)) {
-              // Destination column: Perform random picking 'limit' times
-              String randomValue = "";
-              int limit = randomLookupStore.getLimit();
-              if (randomLookupStore.getLimit() == 0) {
-                limit = 1;
-              }
-              for (int i = 0; i < limit; i++) {
-                Map<String, String> randomLookupRow =
-                    lookupData.get(random.nextInt(lookupData.size()));
-                randomValue =
-                    randomLookupRow.get(
-                        randomLookupStore
-                            .getLookupValueColumns()
-                            .get(0)); // Assuming one lookup column for simplicity
-              }
-              row.add(randomValue);
-            } else {
-              // Non-destination column: Copy source value
-              row.add(sourceRecord.get(header));
-            }
-          }
+  /**
+   * Checks the plan's lookup value and destination columns against both tables, reading only the
+   * source header; for callers that cannot report a failure once output has started.
+   */
+  public ValidationResponse validateColumns(
+      MultipartFile sourceFile, LookupTable lookupTable, RandomLookupPlan randomLookupPlan) {
+    try (InputStream sourceStream = compressedStreams.openSource(sourceFile)) {
+      Set<String> sourceHeaders =
+          readHeader(chunkedCsvProcessor.reader(sourceStream, true)).keySet();
+      return validateColumns(sourceHeaders, lookupTable, randomLookupPlan);
+    } catch (Exception e) {
+      return new ValidationResponse("FAILED", List.of("❌ Error: " + e.getMessage()));
+    }
+  }
 
-          csvPrinter.printRecord(row);
-        }
+  /** Checks the plan's lookup value and destination columns against known source columns. */
+  public ValidationResponse validateColumns(
+      Collection<String> sourceHeaders,
+      LookupTable lookupTable,
+      RandomLookupPlan randomLookupPlan) {
+    ValidationResponse validation = validateLookupColumns(lookupTable, randomLookupPlan);
+    if (validation == null) {
+      validation = validateDestinationColumns(sourceHeaders, randomLookupPlan);
+    }
+    return validation != null ? validation : new ValidationResponse("SUCCESS", null);
+  }
 
-        messages.add("✅ Output file generated successfully: " + outputFilePath);
-        return new ValidationResponse("SUCCESS", messages);
+  /**
+   * Masks {@code sourceStream} into {@code output}, header first, flushing each chunk as soon as it
+   * is masked.
+   */
+  public void writeOutputCsv(
+      InputStream sourceStream,
+      LookupTable lookupTable,
+      RandomLookupPlan randomLookupPlan,
+      OutputStream output)
+      throws IOException {
+    CsvChunkReader source = chunkedCsvProcessor.reader(sourceStream, true);
+    writeRecords(source, readHeader(source), lookupTable, randomLookupPlan, output);
+  }
 
-      } catch (IOException e) {
-        messages.add("❌ Error generating CSV file: " + e.getMessage());
-        return new ValidationResponse("FAILED", messages);
+  private ValidationResponse validateLookupColumns(
+      LookupTable lookupTable, RandomLookupPlan randomLookupPlan) {
+    Set<String> lookupHeaders = new HashSet<>(lookupTable.getHeaders());
+    List<String> messages = new ArrayList<>();
+    for (String col : randomLookupPlan.getLookupValueColumns()) {
+      if (!lookupHeaders.contains(col)) {
+        messages.add("❌ Missing lookup value column in lookup CSV: " + col);
       }
-
-    } catch (IOException e) {
-      messages.add("❌ Error reading files: " + e.getMessage());
-      return new ValidationResponse("FAILED", messages);
     }
+    return messages.isEmpty() ? null : new ValidationResponse("FAILED", messages);
   }
 
-  private Set<String> extractHeaders(MultipartFile file) throws IOException {
-    try (BufferedReader reader =
-            new BufferedReader(
-                new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8));
-        CSVParser parser = CSVFormat.DEFAULT.withFirstRecordAsHeader().parse(reader)) {
-      return parser.getHeaderMap().keySet();
+  private ValidationResponse validateDestinationColumns(
+      Collection<String> sourceHeaders, RandomLookupPlan randomLookupPlan) {
+    List<String> messages = new ArrayList<>();
+    for (String destCol : randomLookupPlan.getDestinationColumns()) {
+      if (!sourceHeaders.contains(destCol)) {
+        messages.add("❌ Missing destination column in source CSV: " + destCol);
+      }
     }
+    return messages.isEmpty() ? null : new ValidationResponse("FAILED", messages);
   }
 
-  private List<String> extractHeadersList(MultipartFile file) throws IOException {
-    try (BufferedReader reader =
-            new BufferedReader(
-                new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8));
-        CSVParser parser = CSVFormat.DEFAULT.withFirstRecordAsHeader().parse(reader)) {
-      return new ArrayList<>(parser.getHeaderMap().keySet());
-    }
+  private static Map<String, Integer> readHeader(CsvChunkReader source) throws IOException {
+    String headerRecord = source.readHeaderRecord();
+    return headerRecord != null ? CsvChunkReader.parseHeader(headerRecord) : Map.of();
   }
 
-  private List<Map<String, String>> extractLookupData(MultipartFile file) throws IOException {
-    List<Map<String, String>> lookupData = new ArrayList<>();
-    try (BufferedReader reader =
-            new BufferedReader(
-                new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8));
-        CSVParser parser = CSVFormat.DEFAULT.withFirstRecordAsHeader().parse(reader)) {
-
-      for (CSVRecord record : parser) {
-        Map<String, String> row = new HashMap<>();
-        for (String header : parser.getHeaderMap().keySet()) {
-          row.put(header, record.get(header));
-        }
-        lookupData.add(row);
-      }
+  /** Writes the header and masks the records left in {@code source}. */
+  private void writeRecords(
+      CsvChunkReader source,
+      Map<String, Integer> sourceColumns,
+      LookupTable lookupTable,
+      RandomLookupPlan randomLookupPlan,
+      OutputStream output)
+      throws IOException {
+    MaskingStage stage =
+        stage(new ArrayList<>(sourceColumns.keySet()), lookupTable, randomLookupPlan);
+    new CsvRecordWriter(RECORD_SEPARATOR, 256).record(stage.outputColumns()).writeTo(output);
+    int[] sourceFields = sourceColumns.values().stream().mapToInt(Integer::intValue).toArray();
+    chunkedCsvProcessor.process(
+        MaskingFunctionType.RAND_LOOKUP.name(),
+        source,
+        sourceFields,
+        List.of(stage),
+        output,
+        RECORD_SEPARATOR);
+  }
+
+  /**
+   * Compiles the RAND_LOOKUP against records with {@code inputColumns}: the columns stay as they
+   * are, and each destination column gets a random lookup value.
+   */
+  public MaskingStage stage(
+      List<String> inputColumns, LookupTable lookupTable, RandomLookupPlan randomLookupPlan) {
+    // Assuming one lookup column for simplicity
+    int lookupValueIndex = lookupTable.columnIndex(randomLookupPlan.getLookupValueColumns().get(0));
+    Integer planLimit = randomLookupPlan.getLimit();
+    int limit = planLimit == null || planLimit == 0 ? 1 : planLimit;
+    Map<String, Integer> columns = MaskingStage.columnIndexes(inputColumns);
+    List<String> outputColumns = new ArrayList<>(columns.keySet());
+
+    // Layout computed once: which columns are copied and which get a random value
+    int[] inputIndexes = outputColumns.stream().mapToInt(columns::get).toArray();
+    boolean[] destination = new boolean[inputIndexes.length];
+    for (int i = 0; i < destination.length; i++) {
+      destination[i] = randomLookupPlan.getDestinationColumns().contains(outputColumns.get(i));
     }
-    return lookupData;
+
+    // Each chunk draws from its own generator, seeded from the job seed and the chunk's
+    // position, so the output does not depend on how many threads mask the chunks
+    long jobSeed = ThreadLocalRandom.current().nextLong();
+    return new MaskingStage(
+        List.copyOf(outputColumns),
+        chunk -> {
+          Random random = new Random(jobSeed + chunk.index() * CHUNK_SEED_STEP);
+          return (record, out) -> {
+            for (int i = 0; i < inputIndexes.length; i++) {
+              if (destination[i]) {
+                // Destination column: Perform random picking 'limit' times
+                String randomValue = "";
+                for (int pick = 0; pick < limit; pick++) {
+                  int randomLookupRow = random.nextInt(lookupTable.getRowCount());
+                  randomValue = lookupTable.getValue(randomLookupRow, lookupValueIndex);
+                }
+                out.add(randomValue);
+              } else {
+                // Non-destination column: Copy source value
+                out.add(record, inputIndexes[i]);
+              }
+            }
+          };
+        });
   }
 }
@@ -1,14 +1,30 @@
 package com.masking.service.random_lookup;
 
 import com.masking.component.ValidationResponse;
+import com.masking.model.CompiledFunction;
+import com.masking.model.random_lookup.RandomLookupPlan;
 import com.masking.model.random_lookup.RandomLookupStore;
 import java.util.ArrayList;
 import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 @Service
 public class RandomLookupFunctionValidator {
 
+  private static final Logger logger = LoggerFactory.getLogger(RandomLookupFunctionValidator.class);
+
+  /** Parses {@code lookupFunction} into a fresh store and freezes it into a plan if it is valid. */
+  public CompiledFunction<RandomLookupPlan> compile(String lookupFunction) {
+    RandomLookupStore randomLookupStore = new RandomLookupStore();
+    ValidationResponse response = validateAndExtract(lookupFunction, randomLookupStore);
+    if (response.getMessages() != null && !response.getMessages().isEmpty()) {
+      return CompiledFunction.invalid(response);
+    }
+    return CompiledFunction.valid(response, randomLookupStore.toPlan());
+  }
+
   public ValidationResponse validateAndExtract(
       String lookupFunction, RandomLookupStore randomLookupStore) {
     ValidationResponse response = new ValidationResponse();
@@ -106,6 +122,8 @@ public class RandomLookupFunctionValidator {
           randomLookupStore.setPreserveOptions(
               List.of(preserve.split("\\s*,\\s*"))); // Set preserve options
         }
+      } else if (part.equalsIgnoreCase("CACHE") || part.equalsIgnoreCase("NOCACHE")) {
+        randomLookupStore.setCacheEnabled(part.equalsIgnoreCase("CACHE"));
       }
       // 🛠️ New logic for simple column names
       else if (isSimpleColumnName(part)) {
@@ -133,8 +151,7 @@ public class RandomLookupFunctionValidator {
       }
     }
 
-    // Log the state of randomLookupStore for debugging
-    System.out.println(randomLookupStore);
+    logger.debug("Parsed RAND_LOOKUP function into {}", randomLookupStore);
 
     // Set response status and messages
     if (messages.isEmpty()) {
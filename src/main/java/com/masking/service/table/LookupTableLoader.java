@@ -0,0 +1,97 @@
+package com.masking.service.table;
+
+import com.masking.model.table.ColumnarLookupTable;
+import com.masking.model.table.LookupTable;
+import com.masking.model.table.LookupTableStorage;
+import com.masking.model.table.MappedLookupTable;
+import com.masking.service.common.CompressedStreams;
+import com.masking.service.common.CsvChunk;
+import com.masking.service.common.CsvChunkReader;
+import com.masking.service.common.CsvScanner;
+import com.masking.service.common.CsvTokenizer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Parses a lookup CSV (first record is the header) into a {@link ColumnarLookupTable}. Uploads of
+ * at least {@code masking.lookup-tables.mapped-threshold-bytes} are streamed into a {@link
+ * MappedLookupTable} instead of being held on the heap.
+ */
+@Service
+public class LookupTableLoader {
+
+  // Lookup CSVs are read a chunk of whole records at a time
+  private static final int CHUNK_BYTES = 1 << 20;
+
+  // Uploads this large or larger are stored off-heap; -1 keeps every table on the heap
+  @Value("${masking.lookup-tables.mapped-threshold-bytes:67108864}")
+  private long mappedThresholdBytes;
+
+  @Value("${masking.lookup-tables.mapped-dir:${java.io.tmpdir}/lookup-masking}")
+  private String mappedDir;
+
+  @Autowired private CompressedStreams compressedStreams;
+
+  public LookupTable load(String name, MultipartFile file) throws IOException {
+    return load(name, file, null);
+  }
+
+  /** Loads {@code file} into {@code storage}, or the storage its size calls for when null. */
+  public LookupTable load(String name, MultipartFile file, LookupTableStorage storage)
+      throws IOException {
+    if (storage == null) {
+      storage =
+          mappedThresholdBytes >= 0 && file.getSize() >= mappedThresholdBytes
+              ? LookupTableStorage.MAPPED
+              : LookupTableStorage.HEAP;
+    }
+    return load(name, compressedStreams.openLookupTable(file), storage);
+  }
+
+  public LookupTable load(String name, InputStream in, LookupTableStorage storage)
+      throws IOException {
+    try (in) {
+      CsvChunkReader reader = new CsvChunkReader(in, CHUNK_BYTES, true);
+      String headerRecord = reader.readHeaderRecord();
+      List<String> headers =
+          headerRecord != null ? CsvChunkReader.headerNames(headerRecord) : List.of();
+      if (storage == LookupTableStorage.MAPPED) {
+        try (MappedLookupTable.Builder builder =
+            new MappedLookupTable.Builder(name, headers, Path.of(mappedDir))) {
+          addRows(reader, builder::addRow);
+          return builder.build();
+        }
+      }
+      ColumnarLookupTable.Builder builder = new ColumnarLookupTable.Builder(name, headers);
+      addRows(reader, builder::addRow);
+      return builder.build();
+    }
+  }
+
+  /** Hands every record after the header to {@code rows}, with as many values as it has fields. */
+  private static void addRows(CsvChunkReader reader, RowSink rows) throws IOException {
+    CsvTokenizer tokenizer = new CsvTokenizer(CsvScanner.scalar());
+    CsvChunk chunk;
+    while ((chunk = reader.nextChunk()) != null) {
+      tokenizer.reset(chunk.data());
+      while (tokenizer.next()) {
+        String[] values = new String[tokenizer.size()];
+        for (int i = 0; i < values.length; i++) {
+          values[i] = tokenizer.field(i);
+        }
+        rows.addRow(values);
+      }
+    }
+  }
+
+  /** Either table builder. */
+  private interface RowSink {
+    void addRow(String[] values) throws IOException;
+  }
+}
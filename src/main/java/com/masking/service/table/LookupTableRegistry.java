@@ -0,0 +1,250 @@
+package com.masking.service.table;
+
+import com.masking.model.table.LookupTable;
+import com.masking.model.table.LookupTableInfo;
+import com.masking.model.table.LookupTableStorage;
+import com.masking.service.common.JobAdmission;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Named lookup tables kept parsed and indexed in memory across requests. Tables get here either
+ * through the {@code /api/lookup_tables} API or by running a function marked {@code CACHE} with a
+ * lookup upload; functions that name a registered table can then omit the upload. Tables stay
+ * until they are explicitly evicted or replaced.
+ *
+ * <p>The {@code masking.lookup-tables.max-bytes} budget covers the indexes engines build on a
+ * registered table as well as its rows: a new index is kept only if it fits, and each table keeps
+ * at most {@code masking.lookup-tables.max-indexes} of them, least recently used first out.
+ *
+ * <p>Jobs lease the tables they {@link #resolve resolve} until their admission permit is released.
+ * An evicted or replaced table is closed once the jobs using it are done, which unmaps and deletes
+ * the files of a {@code MAPPED} table; so is an uploaded table that is not kept here.
+ *
+ * <p>The registry's memory is published as the {@code masking.lookup.cache.size} gauge, tagged
+ * with the {@code heap} or {@code mapped} storage, next to the {@code masking.lookup.cache.tables}
+ * count.
+ */
+@Service
+public class LookupTableRegistry {
+
+  private static final Logger logger = LoggerFactory.getLogger(LookupTableRegistry.class);
+
+  private final Map<String, Registration> tables = new ConcurrentHashMap<>();
+
+  @Autowired private LookupTableLoader lookupTableLoader;
+  @Autowired private MeterRegistry meterRegistry;
+
+  // Upper bound on the estimated memory of all registered tables; 0 means unbounded
+  @Value("${masking.lookup-tables.max-bytes:0}")
+  private long maxBytes;
+
+  // Indexes kept per registered table, one per key function, hash seed and so on
+  @Value("${masking.lookup-tables.max-indexes:8}")
+  private int maxIndexes;
+
+  @PostConstruct
+  void registerMetrics() {
+    Gauge.builder("masking.lookup.cache.size", this, LookupTableRegistry::totalBytes)
+        .description("Memory of registered lookup tables and their indexes, by storage")
+        .baseUnit("bytes")
+        .tag("storage", "heap")
+        .register(meterRegistry);
+    Gauge.builder("masking.lookup.cache.size", this, LookupTableRegistry::mappedBytes)
+        .description("Memory of registered lookup tables and their indexes, by storage")
+        .baseUnit("bytes")
+        .tag("storage", "mapped")
+        .register(meterRegistry);
+    Gauge.builder("masking.lookup.cache.tables", tables, Map::size)
+        .description("Registered lookup tables")
+        .register(meterRegistry);
+  }
+
+  /** Loads and registers {@code file}; a null {@code storage} is chosen from the file size. */
+  public LookupTableInfo register(String name, MultipartFile file, LookupTableStorage storage)
+      throws IOException {
+    return register(lookupTableLoader.load(name, file, storage));
+  }
+
+  /**
+   * Registers {@code table} under its name, replacing any table of the same name.
+   *
+   * @throws IllegalStateException if the table would push the registry over its memory budget
+   */
+  public LookupTableInfo register(LookupTable table) {
+    Registration registration = new Registration(table, Instant.now());
+    Registration replaced;
+    synchronized (this) {
+      String key = key(table.getName());
+      Registration existing = tables.get(key);
+      if (maxBytes > 0) {
+        long projected =
+            totalBytes()
+                - (existing != null ? existing.table().estimatedBytes() : 0)
+                + table.estimatedBytes();
+        if (projected > maxBytes) {
+          throw new IllegalStateException(
+              "Registering lookup table '"
+                  + table.getName()
+                  + "' needs ~"
+                  + projected
+                  + " bytes, over the "
+                  + maxBytes
+                  + " byte budget. Evict unused tables first.");
+        }
+      }
+      table.limitIndexes(maxIndexes, (bytes, keep) -> chargeIndex(registration, bytes, keep));
+      replaced = tables.put(key, registration);
+    }
+    // Outside the lock: closing may wait for the table's index lock, which charges this registry
+    if (replaced != null && replaced.table() != table) {
+      replaced.table().close();
+    }
+    logger.info(
+        "Registered {} lookup table '{}' ({} rows, ~{} heap bytes, {} mapped bytes)",
+        table.getStorage(),
+        table.getName(),
+        table.getRowCount(),
+        table.estimatedBytes(),
+        table.mappedBytes());
+    return registration.info();
+  }
+
+  /**
+   * Keeps an index of {@code bytes} built on a registered table if the budget has room for it; an
+   * evicted or replaced table is no longer counted, so its indexes are kept freely.
+   */
+  private synchronized boolean chargeIndex(Registration registration, long bytes, Runnable keep) {
+    boolean registered = tables.get(key(registration.table().getName())) == registration;
+    if (registered && maxBytes > 0 && totalBytes() + bytes > maxBytes) {
+      logger.warn(
+          "Not keeping a ~{} byte index of lookup table '{}': over the {} byte budget",
+          bytes,
+          registration.table().getName(),
+          maxBytes);
+      return false;
+    }
+    keep.run();
+    return true;
+  }
+
+  /** The registered table called {@code name}, or null. */
+  public LookupTable get(String name) {
+    Registration registration = name != null ? tables.get(key(name)) : null;
+    return registration != null ? registration.table() : null;
+  }
+
+  public LookupTableInfo describe(String name) {
+    Registration registration = name != null ? tables.get(key(name)) : null;
+    return registration != null ? registration.info() : null;
+  }
+
+  /** Unregisters the table called {@code name}, closing it once no job uses it. */
+  public boolean evict(String name) {
+    Registration removed;
+    synchronized (this) {
+      removed = tables.remove(key(name));
+    }
+    if (removed != null) {
+      removed.table().close();
+      logger.info("Evicted lookup table '{}'", removed.table().getName());
+    }
+    return removed != null;
+  }
+
+  public List<LookupTableInfo> list() {
+    return tables.values().stream()
+        .map(Registration::info)
+        .sorted(Comparator.comparing(LookupTableInfo::getName))
+        .toList();
+  }
+
+  public long totalBytes() {
+    long total = 0;
+    for (Registration registration : tables.values()) {
+      total += registration.table().estimatedBytes();
+    }
+    return total;
+  }
+
+  /** Bytes of registered tables held in memory-mapped files rather than on the heap. */
+  public long mappedBytes() {
+    long total = 0;
+    for (Registration registration : tables.values()) {
+      total += registration.table().mappedBytes();
+    }
+    return total;
+  }
+
+  /**
+   * The lookup table a job should use, leased to the job until {@code job} is released. An upload
+   * always wins and, when the function asked for {@code CACHE}, is registered under {@code
+   * tableName} for later requests; otherwise it is closed with the job. Without an upload the
+   * registered table is returned, or null if there is none.
+   */
+  public LookupTable resolve(
+      String tableName, MultipartFile upload, boolean cache, JobAdmission.Permit job)
+      throws IOException {
+    if (upload != null && !upload.isEmpty()) {
+      LookupTable table = lookupTableLoader.load(tableName, upload);
+      // Leased before it is registered, so an eviction racing the job cannot close it under it
+      job.onRelease(table.lease()::close);
+      boolean kept = false;
+      if (cache && tableName != null) {
+        try {
+          register(table);
+          kept = true;
+        } catch (IllegalStateException e) {
+          logger.warn("Not caching lookup table '{}': {}", tableName, e.getMessage());
+        }
+      }
+      if (!kept) {
+        table.close();
+      }
+      return table;
+    }
+    return lease(tableName, job);
+  }
+
+  /** The registered table called {@code name}, leased to {@code job}, or null. */
+  private synchronized LookupTable lease(String name, JobAdmission.Permit job) {
+    LookupTable table = get(name);
+    if (table != null) {
+      // Under the lock, so the table cannot be evicted and closed before it is leased
+      job.onRelease(table.lease()::close);
+    }
+    return table;
+  }
+
+  private static String key(String name) {
+    return name.strip().toLowerCase(Locale.ROOT);
+  }
+
+  private record Registration(LookupTable table, Instant registeredAt) {
+    LookupTableInfo info() {
+      return new LookupTableInfo(
+          table.getName(),
+          table.getHeaders(),
+          table.getRowCount(),
+          table.getIndexCount(),
+          table.estimatedBytes(),
+          table.getStorage(),
+          table.mappedBytes(),
+          registeredAt);
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package com.masking.component;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.masking.service.common.JobAdmission;
+import com.masking.service.common.JobRejectedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+
+class ResponseCompletionSupportTests {
+
+  private final ResponseCompletionSupport support = new ResponseCompletionSupport();
+  private JobAdmission admission;
+
+  @BeforeEach
+  void setUp() {
+    admission = new JobAdmission();
+    ReflectionTestUtils.setField(admission, "maxConcurrent", 1);
+    ReflectionTestUtils.setField(admission, "maxQueued", 0);
+    ReflectionTestUtils.setField(admission, "queueTimeoutMs", 10L);
+    ReflectionTestUtils.setField(admission, "meterRegistry", new SimpleMeterRegistry());
+    ReflectionTestUtils.invokeMethod(admission, "init");
+  }
+
+  @Test
+  void requestEndingBeforeTheBodyIsWrittenReleasesTheSlot() {
+    NativeWebRequest request = request();
+    ResponseCompletion completion = support.resolveArgument(null, null, request, null);
+    assertTrue(completion.hold(admission.admit().handOff()));
+    assertEquals(1L, admission.stats().get("running"));
+
+    support.afterCompletion(request, new DeferredResult<>());
+
+    assertEquals(0L, admission.stats().get("running"));
+    admission.admit().close();
+  }
+
+  @Test
+  void slotHandedOverAfterTheRequestEndedIsReleasedAtOnce() {
+    NativeWebRequest request = request();
+    ResponseCompletion completion = support.resolveArgument(null, null, request, null);
+    support.afterCompletion(request, new DeferredResult<>());
+
+    assertFalse(completion.hold(admission.admit().handOff()));
+
+    assertEquals(0L, admission.stats().get("running"));
+  }
+
+  @Test
+  void slotClosedByTheBodyIsNotReleasedAgainWhenTheRequestEnds() {
+    NativeWebRequest request = request();
+    ResponseCompletion completion = support.resolveArgument(null, null, request, null);
+    JobAdmission.Permit permit = admission.admit().handOff();
+    completion.hold(permit);
+    permit.close();
+
+    support.afterCompletion(request, new DeferredResult<>());
+
+    // One slot: a second release would let two jobs in
+    try (JobAdmission.Permit next = admission.admit()) {
+      assertThrows(JobRejectedException.class, admission::admit);
+    }
+  }
+
+  private static NativeWebRequest request() {
+    return new ServletWebRequest(new MockHttpServletRequest());
+  }
+}
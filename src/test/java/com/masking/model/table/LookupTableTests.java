@@ -0,0 +1,152 @@
+package com.masking.model.table;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Every table storage must read back exactly the rows it was built from. */
+class LookupTableTests {
+
+  @TempDir Path tmp;
+
+  @Test
+  void emptyCellsShortRowsAndNonAsciiTextReadBackAsLoaded() throws IOException {
+    // NAME appears twice: a column name resolves to its first column
+    List<String> headers = List.of("ID", "NAME", "CITY", "NOTE", "NAME");
+    List<String[]> rows =
+        List.of(
+            new String[] {"1", "Zoë", "東京", "", "second"},
+            new String[] {"2", "", "", "", ""},
+            new String[] {"3", "Ünal", "Zürich", "emoji 😀 and \"quotes\", commas"},
+            new String[] {"1", "dup", "key", "x", "y"},
+            new String[] {"", "no id", "Ørsted", "tab\there", "z"});
+
+    assertSameRows(headers, rows.size(), rows::get, columnar(headers, rows.size(), rows::get));
+    assertSameRows(headers, rows.size(), rows::get, mapped(headers, rows.size(), rows::get));
+  }
+
+  @Test
+  void columnsOnBothSidesOfTheDictionaryCutoffsReadBackAsLoaded() throws IOException {
+    // KEY and NAME outgrow the dictionary while rows are added, CODE needs two-byte codes and FLAG
+    // one-byte codes; the values of the small table above hardly repeat, so it is packed
+    List<String> headers = List.of("KEY", "CODE", "FLAG", "NAME");
+    int rowCount = DictionaryColumn.MAX_DICTIONARY_SIZE * 3;
+    IntFunction<String[]> rowAt =
+        row ->
+            new String[] {
+              "k" + row % (DictionaryColumn.MAX_DICTIONARY_SIZE + 10),
+              "c" + row % 257,
+              row % 3 == 0 ? "" : "ÿ" + row % 7,
+              row % 2 == 0 ? "名前" + row : "n" + row / 2
+            };
+
+    assertSameRows(headers, rowCount, rowAt, columnar(headers, rowCount, rowAt));
+    assertSameRows(headers, rowCount, rowAt, mapped(headers, rowCount, rowAt));
+  }
+
+  @Test
+  void mappedTableReadsRecordsAcrossItsOneGibSegments() throws IOException {
+    // 1100 records of about a million bytes span two segments, one of them straddling the border
+    int rowCount = 1100;
+    IntFunction<String[]> rowAt =
+        row -> {
+          char fill = (char) ('a' + row % 26);
+          return new String[] {"K" + row, "é" + String.valueOf(fill).repeat(1_000_003) + row};
+        };
+    LookupTable table = mapped(List.of("KEY", "VALUE"), rowCount, rowAt);
+
+    assertTrue(table.mappedBytes() > 1L << 30, "records should not fit one segment");
+    assertSameRows(List.of("KEY", "VALUE"), rowCount, rowAt, table);
+  }
+
+  @Test
+  void closedMappedTableIsReleasedOnceItsLastLeaseIsClosed() throws IOException {
+    List<String[]> rows = List.of(new String[] {"1", "one"}, new String[] {"2", "two"});
+    LookupTable table = mapped(List.of("ID", "NAME"), rows.size(), rows::get);
+    LookupTable.Lease first = table.lease();
+    LookupTable.Lease second = table.lease();
+    KeyIndex<String> index = table.keyIndex("id", row -> table.getValue(row, 0), true, 32);
+
+    table.close();
+    assertThrows(IllegalStateException.class, table::lease);
+    first.close();
+    first.close();
+    // Still leased: the table and its index stay readable
+    assertEquals(1, table.getIndexCount());
+    assertEquals("two", table.getValue(index.find("2"), 1));
+
+    second.close();
+    assertEquals(0, table.getIndexCount());
+    try (var files = Files.list(tmp)) {
+      assertEquals(0, files.count(), "a closed table left files behind");
+    }
+  }
+
+  private static LookupTable columnar(
+      List<String> headers, int rowCount, IntFunction<String[]> rowAt) {
+    ColumnarLookupTable.Builder builder = new ColumnarLookupTable.Builder("columnar", headers);
+    for (int row = 0; row < rowCount; row++) {
+      builder.addRow(rowAt.apply(row));
+    }
+    return builder.build();
+  }
+
+  private LookupTable mapped(List<String> headers, int rowCount, IntFunction<String[]> rowAt)
+      throws IOException {
+    try (MappedLookupTable.Builder builder =
+        new MappedLookupTable.Builder("mapped", headers, tmp)) {
+      for (int row = 0; row < rowCount; row++) {
+        builder.addRow(rowAt.apply(row));
+      }
+      return builder.build();
+    }
+  }
+
+  /**
+   * Checks every value, column index and key index of {@code table} against the plain rows it was
+   * built from; a row shorter than the header reads as empty in its missing columns.
+   */
+  private static void assertSameRows(
+      List<String> headers, int rowCount, IntFunction<String[]> rowAt, LookupTable table) {
+    String storage = table.getStorage().name();
+    assertEquals(headers, table.getHeaders(), storage);
+    assertEquals(rowCount, table.getRowCount(), storage);
+    for (int column = 0; column < headers.size(); column++) {
+      String name = headers.get(column);
+      assertEquals(headers.indexOf(name), table.columnIndex(name), storage + " " + name);
+    }
+    assertEquals(-1, table.columnIndex("MISSING"), storage);
+
+    Map<String, Integer> firstRows = new HashMap<>();
+    Map<String, Integer> lastRows = new HashMap<>();
+    for (int row = 0; row < rowCount; row++) {
+      String[] values = rowAt.apply(row);
+      for (int column = 0; column < headers.size(); column++) {
+        String expected = column < values.length ? values[column] : "";
+        assertEquals(expected, table.getValue(row, column), storage + " row " + row);
+      }
+      assertEquals("", table.getValue(row, headers.size()), storage);
+      firstRows.putIfAbsent(values[0], row);
+      lastRows.put(values[0], row);
+    }
+
+    KeyIndex<String> first = table.keyIndex("first", row -> table.getValue(row, 0), true, 32);
+    KeyIndex<String> last = table.keyIndex("last", row -> table.getValue(row, 0), false, 32);
+    for (String key : firstRows.keySet()) {
+      assertEquals(firstRows.get(key), first.find(key), storage + " first row of " + key);
+      assertEquals(lastRows.get(key), last.find(key), storage + " last row of " + key);
+    }
+    assertEquals(-1, first.find("no such key"), storage);
+    assertEquals(-1, last.find("no such key"), storage);
+  }
+}
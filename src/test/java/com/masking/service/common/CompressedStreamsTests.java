@@ -0,0 +1,68 @@
+package com.masking.service.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.jupiter.api.Test;
+
+class CompressedStreamsTests {
+
+  // Larger than a background block, so the reader hands over several
+  private static final String CSV = "id,name\n" + "1,\"a, b\"\n2,c\n".repeat(40_000);
+
+  @Test
+  void plainGzipAndZipSourcesReadAsTheSameCsv() throws IOException {
+    byte[] plain = CSV.getBytes(StandardCharsets.UTF_8);
+
+    ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+    try (GZIPOutputStream out = new GZIPOutputStream(gzip)) {
+      out.write(plain);
+    }
+    ByteArrayOutputStream zip = new ByteArrayOutputStream();
+    try (ZipOutputStream out = new ZipOutputStream(zip)) {
+      out.putNextEntry(new ZipEntry("people.csv"));
+      out.write(plain);
+    }
+
+    assertEquals(CSV, read(plain));
+    assertEquals(CSV, read(gzip.toByteArray()));
+    assertEquals(CSV, read(zip.toByteArray()));
+    assertEquals("", read(new byte[0]));
+  }
+
+  @Test
+  void gzipMembersReadBackAsOneStream() throws IOException {
+    ByteArrayOutputStream file = new ByteArrayOutputStream();
+    int firstMember;
+    try (GzipMembersOutputStream out = new GzipMembersOutputStream(file)) {
+      out.write("id\n1\n".getBytes(StandardCharsets.UTF_8));
+      out.endMember();
+      firstMember = file.size();
+      out.write("2\n".getBytes(StandardCharsets.UTF_8));
+    }
+
+    assertEquals("id\n1\n2\n", gunzip(file.toByteArray(), file.size()));
+    // The file cut back to a member's end is complete gzip
+    assertEquals("id\n1\n", gunzip(file.toByteArray(), firstMember));
+  }
+
+  private static String read(byte[] bytes) throws IOException {
+    try (InputStream in = new CompressedStreams().decompressed(new ByteArrayInputStream(bytes))) {
+      return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+
+  private static String gunzip(byte[] bytes, int length) throws IOException {
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes, 0, length))) {
+      return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+}
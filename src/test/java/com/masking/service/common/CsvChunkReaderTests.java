@@ -0,0 +1,197 @@
+package com.masking.service.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.jupiter.api.Test;
+
+class CsvChunkReaderTests {
+
+  private static final String HEADER = "id,note,amount";
+
+  // Quoted newlines, escaped quotes, a quote inside an unquoted field and CRLF endings
+  private static final String QUOTED_RECORDS =
+      "1,\"first line\nsecond line\",10\r\n"
+          + "2,\"say \"\"hi\"\",\nthen, go\",20\n"
+          + "3,12\" ruler,30\n"
+          + "4,\"\",40\n"
+          + "5,plain,50";
+
+  @Test
+  void quoteAwareChunksParseToTheSameRecordsAsTheWholeFile() throws IOException {
+    StringBuilder body = new StringBuilder();
+    for (int i = 0; i < 200; i++) {
+      body.append(QUOTED_RECORDS).append('\n');
+    }
+    List<List<String>> expected = parse(body.toString());
+
+    CsvChunkReader reader = reader(HEADER + "\n" + body, true);
+    assertEquals(HEADER, reader.readHeaderRecord());
+    List<List<String>> actual = new ArrayList<>();
+    int chunks = 0;
+    CsvChunk chunk;
+    while ((chunk = reader.nextChunk()) != null) {
+      assertEquals(chunks++, chunk.index());
+      actual.addAll(parse(new String(chunk.data(), StandardCharsets.UTF_8)));
+    }
+
+    assertTrue(chunks > 1, "source should span several chunks");
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  void loneCarriageReturnsEndRecords() throws IOException {
+    StringBuilder body = new StringBuilder();
+    for (int i = 0; i < 200; i++) {
+      body.append(QUOTED_RECORDS.replace("\r\n", "\n").replace('\n', '\r')).append('\r');
+    }
+
+    CsvChunkReader reader = reader(HEADER + "\r" + body, true);
+    assertEquals(HEADER, reader.readHeaderRecord());
+    List<List<String>> actual = new ArrayList<>();
+    int chunks = 0;
+    CsvChunk chunk;
+    while ((chunk = reader.nextChunk()) != null) {
+      chunks++;
+      actual.addAll(parse(new String(chunk.data(), StandardCharsets.UTF_8)));
+    }
+
+    assertTrue(chunks > 1, "source should span several chunks");
+    assertEquals(parse(body.toString()), actual);
+  }
+
+  @Test
+  void carriageReturnAtTheEndOfTheBufferWaitsForTheNextByte() throws IOException {
+    // The reader fills 1024 bytes at a time: the first \r below is the last byte of the first fill
+    String first = "h\r" + "a".repeat(1021) + "\r";
+    for (String rest : List.of("\nb\r\nc", "b\rc")) {
+      CsvChunkReader reader = reader(first + rest, true);
+      assertEquals("h", reader.readHeaderRecord());
+      StringBuilder chunks = new StringBuilder();
+      CsvChunk chunk;
+      while ((chunk = reader.nextChunk()) != null) {
+        assertTrue(chunk.data()[0] != '\n', "a chunk must not start inside a \\r\\n");
+        chunks.append(new String(chunk.data(), StandardCharsets.UTF_8));
+      }
+      assertEquals(first.substring(2) + rest, chunks.toString());
+      assertEquals(
+          List.of(List.of("a".repeat(1021)), List.of("b"), List.of("c")),
+          parse(chunks.toString()));
+    }
+  }
+
+  @Test
+  void resumedReaderContinuesWithTheRecordsAfterTheCheckpoint() throws IOException {
+    StringBuilder body = new StringBuilder();
+    for (int i = 0; i < 200; i++) {
+      body.append(QUOTED_RECORDS).append('\n');
+    }
+    CsvChunkReader first = reader(HEADER + "\n" + body, true);
+    first.readHeaderRecord();
+    first.nextChunk();
+    CsvChunk checkpointed = first.nextChunk();
+    long offset = first.position();
+    StringBuilder rest = new StringBuilder();
+    CsvChunk chunk;
+    while ((chunk = first.nextChunk()) != null) {
+      rest.append(new String(chunk.data(), StandardCharsets.UTF_8));
+    }
+
+    CsvChunkReader resumed = reader(HEADER + "\n" + body, true);
+    assertEquals(HEADER, resumed.readHeaderRecord());
+    resumed.resumeAt(offset, checkpointed.index() + 1);
+    StringBuilder resumedRest = new StringBuilder();
+    assertEquals(checkpointed.index() + 1, (chunk = resumed.nextChunk()).index());
+    do {
+      resumedRest.append(new String(chunk.data(), StandardCharsets.UTF_8));
+    } while ((chunk = resumed.nextChunk()) != null);
+
+    assertEquals(rest.toString(), resumedRest.toString());
+    assertEquals(first.position(), resumed.position());
+  }
+
+  @Test
+  void lineModeCutsAtEveryNewline() throws IOException {
+    CsvChunkReader reader = reader("a,b\r\n\"x\ny\",1\n", false);
+    assertEquals("a,b", reader.readHeaderRecord());
+    assertEquals("\"x\ny\",1\n", new String(reader.nextChunk().data(), StandardCharsets.UTF_8));
+    assertNull(reader.nextChunk());
+  }
+
+  @Test
+  void recordLongerThanTheChunkSizeIsKeptWhole() throws IOException {
+    String longValue = "v".repeat(5000);
+    CsvChunkReader reader = reader("h\n\"" + longValue + "\nstill\"\nnext\n", true);
+    reader.readHeaderRecord();
+    assertEquals(
+        "\"" + longValue + "\nstill\"\nnext\n",
+        new String(reader.nextChunk().data(), StandardCharsets.UTF_8));
+    assertTrue(reader.isExhausted());
+  }
+
+  @Test
+  void headerEndingInALoneCarriageReturnIsCutThere() throws IOException {
+    CsvChunkReader reader = reader("a,b\r1,2\r3,4", false);
+    assertEquals("a,b", reader.readHeaderRecord());
+    assertEquals("1,2\r", new String(reader.nextChunk().data(), StandardCharsets.UTF_8));
+    assertEquals("3,4", new String(reader.nextChunk().data(), StandardCharsets.UTF_8));
+    assertNull(reader.nextChunk());
+  }
+
+  @Test
+  void emptySourceHasNoHeader() throws IOException {
+    CsvChunkReader reader = reader("", true);
+    assertNull(reader.readHeaderRecord());
+    assertTrue(reader.isExhausted());
+  }
+
+  @Test
+  void headerParsesAsCommonsCsvReadsIt() throws IOException {
+    String header = "id,\"full, name\",\"say \"\"hi\"\"\",id, note ";
+    Map<String, Integer> expected;
+    try (CSVParser parser =
+        CSVFormat.DEFAULT.builder().setHeader().build().parse(new StringReader(header))) {
+      expected = parser.getHeaderMap();
+    }
+
+    Map<String, Integer> actual = CsvChunkReader.parseHeader(header);
+    assertEquals(expected, actual);
+    assertEquals(List.copyOf(expected.keySet()), List.copyOf(actual.keySet()));
+    assertEquals(
+        List.of("id", "full, name", "say \"hi\"", "id", " note "),
+        CsvChunkReader.headerNames(header));
+  }
+
+  @Test
+  void headerWithABlankNameIsRejected() {
+    assertThrows(IllegalArgumentException.class, () -> CsvChunkReader.parseHeader("id,,note"));
+    assertThrows(IllegalArgumentException.class, () -> CsvChunkReader.parseHeader("id,note, "));
+  }
+
+  private static CsvChunkReader reader(String content, boolean quoteAware) {
+    return new CsvChunkReader(
+        new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), 1024, quoteAware);
+  }
+
+  private static List<List<String>> parse(String records) throws IOException {
+    List<List<String>> rows = new ArrayList<>();
+    try (CSVParser parser = CSVFormat.DEFAULT.parse(new StringReader(records))) {
+      for (CSVRecord record : parser) {
+        rows.add(record.toList());
+      }
+    }
+    return rows;
+  }
+}
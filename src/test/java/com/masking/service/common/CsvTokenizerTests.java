@@ -0,0 +1,133 @@
+package com.masking.service.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+class CsvTokenizerTests {
+
+  // Characters that drive quoting decisions, mixed with plain ones
+  private static final String ALPHABET = "ab,\"\r\n #!$é€ \t~";
+
+  static Stream<CsvScanner> scanners() {
+    return Stream.of(CsvScanner.scalar(), CsvScanner.vector());
+  }
+
+  @ParameterizedTest
+  @MethodSource("scanners")
+  void readsAndWritesWhatCommonsCsvPrints(CsvScanner scanner) throws IOException {
+    List<List<String>> records = randomRecords(new Random(42), 2000);
+    StringWriter expected = new StringWriter();
+    try (CSVPrinter printer = new CSVPrinter(expected, CSVFormat.DEFAULT)) {
+      for (List<String> record : records) {
+        printer.printRecord(record);
+      }
+    }
+    byte[] printed = expected.toString().getBytes(StandardCharsets.UTF_8);
+
+    CsvTokenizer tokenizer = new CsvTokenizer(scanner).reset(printed);
+    CsvRecordWriter fromStrings = new CsvRecordWriter("\r\n", 16);
+    CsvRecordWriter fromBytes = new CsvRecordWriter("\r\n", 16);
+    List<List<String>> read = new ArrayList<>();
+    while (tokenizer.next()) {
+      List<String> fields = new ArrayList<>();
+      for (int i = 0; i < tokenizer.size(); i++) {
+        fields.add(tokenizer.field(i));
+        fromBytes.field(tokenizer, i);
+      }
+      fromBytes.endRecord();
+      fromStrings.record(fields);
+      read.add(fields);
+    }
+
+    assertEquals(records, read);
+    assertEquals(expected.toString(), written(fromStrings));
+    assertEquals(expected.toString(), written(fromBytes));
+  }
+
+  @ParameterizedTest
+  @MethodSource("scanners")
+  void readsLooseInputLikeCommonsCsv(CsvScanner scanner) throws IOException {
+    String input =
+        "a,12\" ruler,\"x\"\"y\"\n\n\r\n"
+            + "\"multi\r\nline\",,\r"
+            + " lead, trail ,\"\"\n"
+            + "last,\"unterminated";
+    // commons-csv rejects the unterminated field, so it is given the closing quote
+    String closed = input + "\"";
+    List<List<String>> expected = new ArrayList<>();
+    try (CSVParser parser = CSVFormat.DEFAULT.parse(new StringReader(closed))) {
+      for (CSVRecord record : parser) {
+        expected.add(record.toList());
+      }
+    }
+
+    CsvTokenizer tokenizer =
+        new CsvTokenizer(scanner).reset(input.getBytes(StandardCharsets.UTF_8));
+    List<List<String>> read = new ArrayList<>();
+    while (tokenizer.next()) {
+      List<String> fields = new ArrayList<>();
+      for (int i = 0; i < tokenizer.size(); i++) {
+        fields.add(tokenizer.field(i));
+      }
+      read.add(fields);
+    }
+
+    assertEquals(expected, read);
+  }
+
+  @Test
+  void missingColumnsReadAndWriteAsEmptyFields() {
+    CsvTokenizer tokenizer =
+        new CsvTokenizer(CsvScanner.scalar()).reset("1,2\n".getBytes(StandardCharsets.UTF_8));
+    tokenizer.next();
+    CsvRecordWriter writer = new CsvRecordWriter("\n", 16);
+    writer.field(tokenizer, 5).field(tokenizer, 1).field(tokenizer, -1).endRecord();
+
+    assertEquals("", tokenizer.field(5));
+    assertEquals("\"\",2,\n", written(writer));
+  }
+
+  private static List<List<String>> randomRecords(Random random, int count) {
+    List<List<String>> records = new ArrayList<>();
+    for (int r = 0; r < count; r++) {
+      List<String> record = new ArrayList<>();
+      int fields = 1 + random.nextInt(5);
+      for (int f = 0; f < fields; f++) {
+        StringBuilder field = new StringBuilder();
+        int length = random.nextInt(4) == 0 ? 0 : random.nextInt(90);
+        for (int i = 0; i < length; i++) {
+          field.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        record.add(field.toString());
+      }
+      records.add(record);
+    }
+    return records;
+  }
+
+  private static String written(CsvRecordWriter writer) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try {
+      writer.writeTo(out);
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+    return out.toString(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,70 @@
+package com.masking.service.common;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+class DataRootTests {
+
+  @TempDir Path tmp;
+
+  private Path root;
+  private DataRoot dataRoot;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    root = Files.createDirectories(tmp.resolve("data"));
+    Files.createDirectories(root.resolve("in"));
+    Files.writeString(root.resolve("in/source.csv"), "id,name\n1,a\n");
+    Files.writeString(tmp.resolve("outside.csv"), "secret\n");
+    dataRoot = dataRoot(root.toString());
+  }
+
+  @Test
+  void readsFilesUnderTheRootThroughTheMapping() throws IOException {
+    MultipartFile file = dataRoot.require(null, "in/../in/source.csv", "upload", "path");
+
+    assertEquals("source.csv", file.getOriginalFilename());
+    assertEquals(12, file.getSize());
+    try (InputStream in = file.getInputStream()) {
+      assertArrayEquals("id,name\n1,a\n".getBytes(StandardCharsets.UTF_8), in.readAllBytes());
+    }
+  }
+
+  @Test
+  void refusesPathsOutsideTheRoot() throws IOException {
+    Files.createSymbolicLink(root.resolve("link.csv"), tmp.resolve("outside.csv"));
+
+    for (String path : new String[] {"../outside.csv", tmp + "/outside.csv", "link.csv", "in"}) {
+      assertThrows(DataPathException.class, () -> dataRoot.select(null, path, "upload", "path"));
+    }
+  }
+
+  @Test
+  void uploadAndPathAreExclusive() {
+    assertNull(dataRoot.select(null, " ", "upload", "path"));
+    assertThrows(DataPathException.class, () -> dataRoot.require(null, null, "upload", "path"));
+    assertThrows(
+        DataPathException.class,
+        () -> dataRoot(" ").select(null, "in/source.csv", "upload", "path"));
+  }
+
+  private static DataRoot dataRoot(String directory) throws IOException {
+    DataRoot dataRoot = new DataRoot();
+    ReflectionTestUtils.setField(dataRoot, "dataRoot", directory);
+    dataRoot.init();
+    return dataRoot;
+  }
+}
@@ -0,0 +1,106 @@
+package com.masking.service.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class JobAdmissionTests {
+
+  private JobAdmission admission;
+
+  @BeforeEach
+  void setUp() {
+    admission = new JobAdmission();
+    ReflectionTestUtils.setField(admission, "maxConcurrent", 1);
+    ReflectionTestUtils.setField(admission, "maxQueued", 1);
+    ReflectionTestUtils.setField(admission, "queueTimeoutMs", 10_000L);
+    ReflectionTestUtils.setField(admission, "meterRegistry", new SimpleMeterRegistry());
+    admission.init();
+  }
+
+  @Test
+  void jobFindingTheQueueFullIsRejectedWith429() throws InterruptedException {
+    Thread waiting;
+    try (JobAdmission.Permit running = admission.admit()) {
+      waiting = Thread.ofVirtual().start(() -> admission.admit().close());
+      awaitQueued(1);
+
+      JobRejectedException rejected = assertThrows(JobRejectedException.class, admission::admit);
+      assertEquals(HttpStatus.TOO_MANY_REQUESTS, rejected.getStatus());
+    }
+    waiting.join();
+    assertEquals(0L, admission.stats().get("running"));
+  }
+
+  @Test
+  void jobWaitingPastTheTimeoutIsRejectedWith503() {
+    ReflectionTestUtils.setField(admission, "queueTimeoutMs", 50L);
+    try (JobAdmission.Permit running = admission.admit()) {
+      JobRejectedException rejected = assertThrows(JobRejectedException.class, admission::admit);
+      assertEquals(HttpStatus.SERVICE_UNAVAILABLE, rejected.getStatus());
+      assertEquals(0L, admission.stats().get("queued"));
+    }
+  }
+
+  @Test
+  void freedSlotGoesToTheJobQueuedFirst() throws InterruptedException {
+    // The new job queues behind the waiting one instead of taking the slot
+    ReflectionTestUtils.setField(admission, "maxQueued", 2);
+    Semaphore permits = (Semaphore) ReflectionTestUtils.getField(admission, "permits");
+    // A barging job only wins the race for the freed slot some of the time
+    for (int round = 0; round < 20; round++) {
+      List<String> admitted = new CopyOnWriteArrayList<>();
+      JobAdmission.Permit running = admission.admit();
+      Thread queued =
+          Thread.ofVirtual()
+              .start(
+                  () -> {
+                    try (JobAdmission.Permit permit = admission.admit()) {
+                      admitted.add("queued");
+                    }
+                  });
+      // Wait until the job is parked on the semaphore, not just counted as queued
+      while (!permits.hasQueuedThreads()) {
+        Thread.sleep(1);
+      }
+
+      // A job arriving just as the slot frees up must not take it from the one waiting
+      running.close();
+      try (JobAdmission.Permit permit = admission.admit()) {
+        admitted.add("new");
+      }
+      queued.join();
+      assertEquals(List.of("queued", "new"), admitted, "round " + round);
+    }
+  }
+
+  @Test
+  void whatAJobHoldsIsReleasedOnceWithItsSlot() {
+    List<String> released = new CopyOnWriteArrayList<>();
+    JobAdmission.Permit request = admission.admit();
+    request.onRelease(() -> released.add("table"));
+    JobAdmission.Permit stream = request.handOff();
+    request.close();
+    assertEquals(List.of(), released);
+    assertThrows(IllegalStateException.class, () -> request.onRelease(() -> {}));
+
+    stream.close();
+    stream.close();
+    assertEquals(List.of("table"), released);
+    assertEquals(0L, admission.stats().get("running"));
+  }
+
+  private void awaitQueued(long jobs) throws InterruptedException {
+    while (admission.stats().get("queued") < jobs) {
+      Thread.sleep(5);
+    }
+  }
+}
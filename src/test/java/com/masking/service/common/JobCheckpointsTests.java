@@ -0,0 +1,172 @@
+package com.masking.service.common;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+class JobCheckpointsTests {
+
+  private static final MaskingStage UPPER_CASE_NAME =
+      new MaskingStage(
+          List.of("ID", "NAME"),
+          chunk ->
+              (input, output) -> output.add(input, 0).add(input.get(1).toUpperCase(Locale.ROOT)));
+
+  @TempDir Path tmp;
+
+  private ChunkedCsvProcessor processor;
+  private CompressedStreams compressedStreams;
+  private JobCheckpoints jobCheckpoints;
+  private MultipartFile source;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    MaskingMetrics metrics = new MaskingMetrics();
+    ReflectionTestUtils.setField(metrics, "registry", new SimpleMeterRegistry());
+    processor = new ChunkedCsvProcessor();
+    ReflectionTestUtils.setField(processor, "maskingMetrics", metrics);
+    ReflectionTestUtils.setField(processor, "threads", 2);
+    ReflectionTestUtils.setField(processor, "chunkBytes", 256);
+    processor.start();
+
+    Path data = Files.createDirectories(tmp.resolve("data"));
+    StringBuilder csv = new StringBuilder("ID,NAME\n");
+    for (int row = 0; row < 800; row++) {
+      csv.append(row).append(",name ").append(row).append('\n');
+    }
+    Files.writeString(data.resolve("source.csv"), csv);
+    DataRoot dataRoot = new DataRoot();
+    ReflectionTestUtils.setField(dataRoot, "dataRoot", data.toString());
+    dataRoot.init();
+    source = dataRoot.select(null, "source.csv", "sourceCsv", "sourcePath");
+
+    compressedStreams = new CompressedStreams();
+    jobCheckpoints = new JobCheckpoints();
+    ReflectionTestUtils.setField(
+        jobCheckpoints, "directory", tmp.resolve("checkpoints").toString());
+    ReflectionTestUtils.setField(jobCheckpoints, "intervalMs", 20L);
+    ReflectionTestUtils.setField(jobCheckpoints, "dataRoot", dataRoot);
+    ReflectionTestUtils.setField(jobCheckpoints, "compressedStreams", compressedStreams);
+  }
+
+  @Test
+  void resumedJobWritesTheSameBytesAsAnUninterruptedOne() throws IOException {
+    byte[] uninterrupted = Files.readAllBytes(mask("whole", Integer.MAX_VALUE));
+    Path resumed = mask("resumed", 10);
+    assertFalse(isEmpty(tmp.resolve("checkpoints")), "stopped job saved no checkpoint");
+
+    assertEquals(resumed, mask("resumed", Integer.MAX_VALUE));
+    assertArrayEquals(uninterrupted, Files.readAllBytes(resumed));
+    assertTrue(isEmpty(tmp.resolve("checkpoints")), "completed job keeps its checkpoint");
+  }
+
+  @Test
+  void resumedGzipJobInflatesToTheSameCsvAsAnUninterruptedOne() throws IOException {
+    ReflectionTestUtils.setField(compressedStreams, "gzipOutput", true);
+    byte[] uninterrupted = inflate(mask("whole", Integer.MAX_VALUE));
+    Path resumed = mask("resumed", 10);
+    assertFalse(isEmpty(tmp.resolve("checkpoints")), "stopped job saved no checkpoint");
+
+    // Members end at different checkpoints, so only the inflated bytes can match
+    assertEquals(resumed, mask("resumed", Integer.MAX_VALUE));
+    assertArrayEquals(uninterrupted, inflate(resumed));
+  }
+
+  @Test
+  void discardedJobLeavesNoOutput() throws IOException {
+    Path output;
+    try (JobCheckpoints.Run run =
+        jobCheckpoints.open(tmp.resolve("empty").toString(), "TEST", "", source, null)) {
+      output = run.outputPath();
+      run.discard();
+    }
+    assertFalse(Files.exists(output));
+  }
+
+  /**
+   * Masks the source into {@code directory} the way the engines do, resuming its checkpoint if
+   * there is one, and stops as if the server died after writing {@code stopAfter} chunks.
+   *
+   * @return the output file, complete if the job did not stop
+   */
+  private Path mask(String directory, int stopAfter) throws IOException {
+    Path output;
+    try (InputStream in = compressedStreams.openSource(source);
+        JobCheckpoints.Run run =
+            jobCheckpoints.open(
+                tmp.resolve(directory).toString(), "TEST", directory, source, null)) {
+      output = run.outputPath();
+      CsvChunkReader reader = processor.reader(in, true);
+      reader.readHeaderRecord();
+      if (run.isResuming()) {
+        reader.resumeAt(run.sourceOffset(), run.nextChunk());
+      } else {
+        new CsvRecordWriter("\n", 64).record(UPPER_CASE_NAME.outputColumns()).writeTo(run.output());
+      }
+      int[] chunks = {0};
+      ChunkedCsvProcessor.WriteListener listener =
+          (out, nextChunk, sourcePosition, rows) -> {
+            // Checkpoints fall due every fourth chunk, so the job stops with rows past the last
+            if (nextChunk % 4 == 0) {
+              sleep(30);
+            }
+            run.written(out, nextChunk, sourcePosition, rows);
+            if (++chunks[0] == stopAfter) {
+              throw new Stopped();
+            }
+          };
+      try {
+        processor.process(
+            "TEST",
+            reader,
+            new int[] {0, 1},
+            List.of(UPPER_CASE_NAME),
+            run.output(),
+            "\n",
+            listener);
+      } catch (Stopped e) {
+        return output;
+      }
+      run.complete();
+    }
+    return output;
+  }
+
+  /** Stands in for a job dying between two chunks. */
+  private static final class Stopped extends IOException {}
+
+  private static byte[] inflate(Path file) throws IOException {
+    try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+      return in.readAllBytes();
+    }
+  }
+
+  private static boolean isEmpty(Path directory) throws IOException {
+    try (var files = Files.list(directory)) {
+      return files.findAny().isEmpty();
+    }
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,136 @@
+package com.masking.service.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.masking.component.ValidationResponse;
+import com.masking.model.job.MaskingJobState;
+import com.masking.model.job.MaskingJobStatus;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class MaskingJobServiceTests {
+
+  @TempDir Path tmp;
+
+  private MaskingJobService jobs;
+
+  @BeforeEach
+  void setUp() {
+    jobs = new MaskingJobService();
+    ReflectionTestUtils.setField(jobs, "workers", 1);
+    ReflectionTestUtils.setField(jobs, "maxPending", 4);
+    ReflectionTestUtils.setField(jobs, "retentionMinutes", 60L);
+    jobs.start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    jobs.shutdown();
+  }
+
+  @Test
+  void runningJobStopsAtTheNextCheckAndLosesItsOutput() throws Exception {
+    Path output = Files.createFile(tmp.resolve("out.csv"));
+    CountDownLatch started = new CountDownLatch(1);
+    MaskingJobStatus submitted;
+    try (MaskingJobService.Submission submission = jobs.newSubmission()) {
+      submitted =
+          submission.submit(
+              "LOOKUP",
+              () -> {
+                MaskingJob job = MaskingJob.current();
+                job.outputCreated(output);
+                job.sourceRead(10);
+                job.rowsMasked(3);
+                started.countDown();
+                while (true) {
+                  job.checkCancelled();
+                  Thread.sleep(5);
+                }
+              });
+    }
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    assertEquals(MaskingJobState.RUNNING, jobs.status(submitted.getId()).getState());
+
+    jobs.cancel(submitted.getId());
+
+    MaskingJobStatus status = awaitFinished(submitted.getId());
+    assertEquals(MaskingJobState.CANCELLED, status.getState());
+    assertEquals(3, status.getRowsProcessed());
+    assertEquals(List.of(), status.getOutputs());
+    assertFalse(Files.exists(output));
+  }
+
+  @Test
+  void queuedJobNeverRunsOnceCancelled() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    String blocking = submit(() -> awaitRelease(release));
+    String queued = submit(() -> new ValidationResponse("SUCCESS", List.of("ran")));
+
+    assertEquals(MaskingJobState.CANCELLED, jobs.cancel(queued).getState());
+    release.countDown();
+
+    assertEquals(MaskingJobState.SUCCEEDED, awaitFinished(blocking).getState());
+    MaskingJobStatus status = jobs.status(queued);
+    assertEquals(MaskingJobState.CANCELLED, status.getState());
+    assertNotNull(status.getFinishedAt());
+    assertEquals(null, status.getStartedAt());
+  }
+
+  @Test
+  void uploadsAreSpooledUnderTheirBaseName() throws Exception {
+    MockMultipartFile upload =
+        new MockMultipartFile(
+            "sourceCsvPath", "../../people.csv", "text/csv", "id\n1\n".getBytes());
+    String id;
+    try (MaskingJobService.Submission submission = jobs.newSubmission()) {
+      var copy = submission.source(upload);
+      assertEquals("people.csv", copy.getOriginalFilename());
+      id =
+          submission
+              .submit(
+                  "LOOKUP",
+                  () -> new ValidationResponse("FAILED", List.of(new String(copy.getBytes()))))
+              .getId();
+    }
+
+    MaskingJobStatus status = awaitFinished(id);
+    assertEquals(MaskingJobState.FAILED, status.getState());
+    assertEquals(List.of("id\n1\n"), status.getResult().getMessages());
+    assertEquals(5, status.getSourceBytes());
+  }
+
+  private String submit(MaskingJobService.Task task) {
+    try (MaskingJobService.Submission submission = jobs.newSubmission()) {
+      return submission.submit("LOOKUP", task).getId();
+    }
+  }
+
+  private static ValidationResponse awaitRelease(CountDownLatch release) throws Exception {
+    release.await(5, TimeUnit.SECONDS);
+    return new ValidationResponse("SUCCESS", List.of());
+  }
+
+  private MaskingJobStatus awaitFinished(String id) throws InterruptedException {
+    for (int i = 0; i < 500; i++) {
+      MaskingJobStatus status = jobs.status(id);
+      if (status.getState().isFinished()) {
+        return status;
+      }
+      Thread.sleep(10);
+    }
+    throw new AssertionError("Job " + id + " did not finish");
+  }
+}
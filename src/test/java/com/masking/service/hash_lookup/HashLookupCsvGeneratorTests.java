@@ -0,0 +1,81 @@
+package com.masking.service.hash_lookup;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.masking.model.hash_lookup.HashLookupPlan;
+import com.masking.model.table.ColumnarLookupTable;
+import com.masking.model.table.LookupTable;
+import com.masking.service.common.ChunkedCsvProcessor;
+import com.masking.service.common.MaskingMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class HashLookupCsvGeneratorTests {
+
+  private static final String NL = System.lineSeparator();
+
+  private HashLookupCsvGenerator generator;
+  private LookupTable lookupTable;
+
+  @BeforeEach
+  void setUp() {
+    MaskingMetrics metrics = new MaskingMetrics();
+    ReflectionTestUtils.setField(metrics, "registry", new SimpleMeterRegistry());
+    ChunkedCsvProcessor processor = new ChunkedCsvProcessor();
+    ReflectionTestUtils.setField(processor, "maskingMetrics", metrics);
+    ReflectionTestUtils.setField(processor, "threads", 1);
+    ReflectionTestUtils.setField(processor, "chunkBytes", 1024);
+    ReflectionTestUtils.invokeMethod(processor, "start");
+    generator = new HashLookupCsvGenerator();
+    ReflectionTestUtils.setField(generator, "compareRawDigest", true);
+    ReflectionTestUtils.setField(generator, "chunkedCsvProcessor", processor);
+    ReflectionTestUtils.setField(generator, "maskingMetrics", metrics);
+
+    // Two lookup rows share the key "A"
+    ColumnarLookupTable.Builder builder =
+        new ColumnarLookupTable.Builder("names", List.of("KEY", "NAME"));
+    builder.addRow(new String[] {"A", "first"});
+    builder.addRow(new String[] {"B", "other"});
+    builder.addRow(new String[] {"A", "last"});
+    lookupTable = builder.build();
+  }
+
+  @Test
+  void duplicatedLookupKeyResolvesToTheFirstRowWithoutCache() throws IOException {
+    assertEquals("ID,NAME" + NL + "1,first" + NL + "2,other" + NL, mask(false));
+  }
+
+  @Test
+  void duplicatedLookupKeyResolvesToTheLastRowWithCache() throws IOException {
+    assertEquals("ID,NAME" + NL + "1,last" + NL + "2,other" + NL, mask(true));
+  }
+
+  private String mask(boolean cache) throws IOException {
+    HashLookupPlan plan =
+        new HashLookupPlan(
+            List.of("CODE"),
+            List.of(),
+            "names",
+            List.of("KEY"),
+            List.of("NAME"),
+            null,
+            null,
+            cache,
+            List.of(),
+            null);
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    generator.writeOutputCsv(
+        new ByteArrayInputStream("ID,CODE\n1,A\n2,B\n".getBytes(StandardCharsets.UTF_8)),
+        lookupTable,
+        plan,
+        output);
+    return output.toString(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,91 @@
+package com.masking.service.hash_lookup;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import org.junit.jupiter.api.Test;
+
+class KeyedHashAlgorithmTests {
+
+  private static final String FOX = "The quick brown fox jumps over the lazy dog";
+
+  // Reference vectors from the SipHash paper (key 00..0f, message 00..n-1)
+  @Test
+  void sipHash24MatchesReferenceVectors() {
+    long k0 = 0x0706050403020100L;
+    long k1 = 0x0f0e0d0c0b0a0908L;
+    assertEquals(0x726fdb47dd0e0e31L, SipHash24.hash(k0, k1, sequence(0), 0, 0));
+    assertEquals(0x74f839c593dc67fdL, SipHash24.hash(k0, k1, sequence(1), 0, 1));
+    assertEquals(0xab0200f58b01d137L, SipHash24.hash(k0, k1, sequence(7), 0, 7));
+    assertEquals(0x93f5f5799a932462L, SipHash24.hash(k0, k1, sequence(8), 0, 8));
+    assertEquals(0xa129ca6149be45e5L, SipHash24.hash(k0, k1, sequence(15), 0, 15));
+    assertEquals(0x3f2acc7f57c29bdbL, SipHash24.hash(k0, k1, sequence(16), 0, 16));
+    assertEquals(0x958a324ceb064572L, SipHash24.hash(k0, k1, sequence(63), 0, 63));
+  }
+
+  // Reference output of MurmurHash3_x64_128 (h1 then h2, little-endian)
+  @Test
+  void murmur3Hash128MatchesReferenceVectors() {
+    byte[] fox = FOX.getBytes(StandardCharsets.UTF_8);
+    assertHex("6c1b07bc7bbc4be347939ac4a93c437a", Murmur3Hash128.hash(0, fox, 0, fox.length));
+    assertHex("23851bfa7da72af0b9cb11da106601d1", Murmur3Hash128.hash(42, sequence(0), 0, 0));
+    assertHex("c86d220bd3fe3e3259c45986f2bdbd16", Murmur3Hash128.hash(42, sequence(1), 0, 1));
+    assertHex("978391e0fa433644f61df7fd40c85aed", Murmur3Hash128.hash(42, sequence(9), 0, 9));
+    assertHex("4585ab968ff982cbdc832087a0ad8c9b", Murmur3Hash128.hash(42, sequence(15), 0, 15));
+    assertHex("29de86174ffab552401e4260c55b4d3c", Murmur3Hash128.hash(42, sequence(16), 0, 16));
+    assertHex("fba12a339df8088f6cdf19cd98b42b59", Murmur3Hash128.hash(42, sequence(17), 0, 17));
+    assertHex("88c822c826e0c45feb92aac7c5043334", Murmur3Hash128.hash(42, sequence(31), 0, 31));
+    assertHex("5ef21d9e1f1493d6c83597ea936145af", Murmur3Hash128.hash(42, sequence(33), 0, 33));
+  }
+
+  // Reference output of XXH64
+  @Test
+  void xxHash64MatchesReferenceVectors() {
+    byte[] fox = FOX.getBytes(StandardCharsets.UTF_8);
+    byte[] abc = "abc".getBytes(StandardCharsets.UTF_8);
+    long seed = 0x9E3779B97F4A7C15L;
+    assertEquals(0xef46db3751d8e999L, XxHash64.hash(0, new byte[0], 0, 0));
+    assertEquals(0x44bc2cf5ad770999L, XxHash64.hash(0, abc, 0, abc.length));
+    assertEquals(0xd1b38ddc85a6fba1L, XxHash64.hash(12345, fox, 0, fox.length));
+    assertEquals(0x67bc6ed5f6c6e4baL, XxHash64.hash(seed, sequence(3), 0, 3));
+    assertEquals(0xd89842cd31e24e54L, XxHash64.hash(seed, sequence(4), 0, 4));
+    assertEquals(0xd18b6d7a5a668732L, XxHash64.hash(seed, sequence(8), 0, 8));
+    assertEquals(0x132649ea1128bfa2L, XxHash64.hash(seed, sequence(12), 0, 12));
+    assertEquals(0xf3da6d05709c035dL, XxHash64.hash(seed, sequence(31), 0, 31));
+    assertEquals(0xa1c89217e9d50750L, XxHash64.hash(seed, sequence(32), 0, 32));
+    assertEquals(0xe6a3c00cd6e74075L, XxHash64.hash(seed, sequence(33), 0, 33));
+    assertEquals(0x3b97d91eba03e785L, XxHash64.hash(seed, sequence(100), 0, 100));
+  }
+
+  @Test
+  void hashesRespectOffsetIntoBuffer() {
+    byte[] padded = new byte[20];
+    System.arraycopy(sequence(15), 0, padded, 5, 15);
+    assertEquals(
+        0xa129ca6149be45e5L,
+        SipHash24.hash(0x0706050403020100L, 0x0f0e0d0c0b0a0908L, padded, 5, 15));
+  }
+
+  @Test
+  void resolvesAlgorithmNames() {
+    assertEquals(KeyedHashAlgorithm.SIPHASH24, KeyedHashAlgorithm.fromName("SipHash-2-4"));
+    assertEquals(KeyedHashAlgorithm.MURMUR3_128, KeyedHashAlgorithm.fromName("murmur3_128"));
+    assertEquals(KeyedHashAlgorithm.XXHASH64, KeyedHashAlgorithm.fromName("xxh64"));
+    assertNull(KeyedHashAlgorithm.fromName("SHA-256"));
+  }
+
+  private static byte[] sequence(int length) {
+    byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++) {
+      bytes[i] = (byte) i;
+    }
+    return bytes;
+  }
+
+  private static void assertHex(String expected, byte[] actual) {
+    assertArrayEquals(HexFormat.of().parseHex(expected), actual);
+  }
+}
@@ -0,0 +1,95 @@
+package com.masking.service.lookup;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.masking.model.lookup.LookUpPlan;
+import com.masking.model.table.ColumnarLookupTable;
+import com.masking.model.table.LookupTable;
+import com.masking.service.common.ChunkedCsvProcessor;
+import com.masking.service.common.MaskingMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class CsvOutputGeneratorTests {
+
+  private static final String CODE_AND_NAME =
+      "LOOKUP(SRCSEARCH=(code, name), people(LKPSEARCH=(code, name), VALUES=(masked)))";
+
+  private CsvOutputGenerator generator;
+  private LookupTable lookupTable;
+
+  @BeforeEach
+  void setUp() {
+    MaskingMetrics metrics = new MaskingMetrics();
+    ReflectionTestUtils.setField(metrics, "registry", new SimpleMeterRegistry());
+    ChunkedCsvProcessor processor = new ChunkedCsvProcessor();
+    ReflectionTestUtils.setField(processor, "maskingMetrics", metrics);
+    ReflectionTestUtils.setField(processor, "threads", 1);
+    ReflectionTestUtils.setField(processor, "chunkBytes", 1024);
+    ReflectionTestUtils.invokeMethod(processor, "start");
+    generator = new CsvOutputGenerator();
+    ReflectionTestUtils.setField(generator, "chunkedCsvProcessor", processor);
+    ReflectionTestUtils.setField(generator, "maskingMetrics", metrics);
+
+    // The first two keys both join to "a::b::c", the old key string of a composite key
+    ColumnarLookupTable.Builder builder =
+        new ColumnarLookupTable.Builder("people", List.of("code", "name", "masked"));
+    builder.addRow(new String[] {"a::b", "c", "first"});
+    builder.addRow(new String[] {"a", "b::c", "second"});
+    builder.addRow(new String[] {"x", " Jane ", "third"});
+    lookupTable = builder.build();
+  }
+
+  @Test
+  void compositeKeysMatchFieldByFieldOnTrimmedValues() throws IOException {
+    String source =
+        "id,code,name\n"
+            + "1,a::b,c\n"
+            + "2,a,b::c\n"
+            // Whitespace around either side of a key field is not part of the key
+            + "3, x ,Jane\n"
+            + "4,a::b::c,\n"
+            + "5,a,b\n";
+
+    assertEquals(records("id,masked", "1,first", "2,second", "3,third", "4,", "5,"), mask(source));
+  }
+
+  @Test
+  void keysThatJoinToTheSameStringNoLongerCollide() throws IOException {
+    // Keyed by the joined string, the second row replaced the first and both records got it
+    assertEquals(oldKey("a::b", "c"), oldKey("a", "b::c"));
+    assertEquals(oldKey(" x ", "Jane"), oldKey("x", " Jane "));
+
+    assertEquals(
+        records("id,masked", "1,first", "2,second"), mask("id,code,name\n1,a::b,c\n2,a,b::c\n"));
+  }
+
+  private String mask(String source) throws IOException {
+    LookUpPlan plan = new LookUpFunctionValidator().compile(CODE_AND_NAME).getPlan();
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    generator.writeOutputCsv(
+        new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8)),
+        lookupTable,
+        plan,
+        output);
+    return output.toString(StandardCharsets.UTF_8);
+  }
+
+  private static String records(String... records) {
+    return Stream.of(records).map(record -> record + "\r\n").collect(Collectors.joining());
+  }
+
+  /** The key string LOOKUP used to build: trimmed fields joined with {@code ::}. */
+  private static String oldKey(String... fields) {
+    return Stream.of(fields).map(String::trim).collect(Collectors.joining("::"));
+  }
+}
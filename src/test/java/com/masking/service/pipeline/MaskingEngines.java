@@ -0,0 +1,89 @@
+package com.masking.service.pipeline;
+
+import com.masking.service.common.ChunkedCsvProcessor;
+import com.masking.service.common.CompressedStreams;
+import com.masking.service.common.FunctionPlanCache;
+import com.masking.service.common.JobAdmission;
+import com.masking.service.common.MaskingMetrics;
+import com.masking.service.hash_lookup.HashLookupCsvGenerator;
+import com.masking.service.hash_lookup.HashLookupFunctionValidator;
+import com.masking.service.lookup.CsvColumnValidatorService;
+import com.masking.service.lookup.CsvOutputGenerator;
+import com.masking.service.lookup.LookUpFunctionValidator;
+import com.masking.service.random_lookup.CsvProcessorService;
+import com.masking.service.random_lookup.RandomLookupFunctionValidator;
+import com.masking.service.table.LookupTableLoader;
+import com.masking.service.table.LookupTableRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.file.Path;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * The three engines, the pipeline and the multi-table service wired together the way Spring wires
+ * them, with lookup tables kept on the heap and multi-table jobs writing under {@code output}.
+ * Jobs are admitted one at a time, without a queue.
+ */
+final class MaskingEngines {
+
+  final CompressedStreams compressedStreams = new CompressedStreams();
+  final ChunkedCsvProcessor processor = new ChunkedCsvProcessor();
+  final CsvOutputGenerator csvOutputGenerator = new CsvOutputGenerator();
+  final CsvProcessorService csvProcessorService = new CsvProcessorService();
+  final HashLookupCsvGenerator hashLookupCsvGenerator = new HashLookupCsvGenerator();
+  final LookupTableLoader loader;
+  final LookupTableRegistry registry = new LookupTableRegistry();
+  final MaskingPipelineService pipeline = new MaskingPipelineService();
+  final MultiTableMaskingService multiTable = new MultiTableMaskingService();
+  final JobAdmission admission = new JobAdmission();
+
+  /** Chunks of about {@code chunkBytes} are masked on {@code threads} workers. */
+  MaskingEngines(int threads, int chunkBytes, LookupTableLoader loader, Path output) {
+    this.loader = loader;
+    MaskingMetrics metrics = new MaskingMetrics();
+    ReflectionTestUtils.setField(metrics, "registry", new SimpleMeterRegistry());
+    ReflectionTestUtils.setField(processor, "maskingMetrics", metrics);
+    ReflectionTestUtils.setField(processor, "threads", threads);
+    ReflectionTestUtils.setField(processor, "chunkBytes", chunkBytes);
+    ReflectionTestUtils.invokeMethod(processor, "start");
+    ReflectionTestUtils.setField(admission, "maxConcurrent", 1);
+    ReflectionTestUtils.setField(admission, "meterRegistry", new SimpleMeterRegistry());
+    ReflectionTestUtils.invokeMethod(admission, "init");
+
+    ReflectionTestUtils.setField(csvOutputGenerator, "chunkedCsvProcessor", processor);
+    ReflectionTestUtils.setField(csvOutputGenerator, "maskingMetrics", metrics);
+    ReflectionTestUtils.setField(csvProcessorService, "chunkedCsvProcessor", processor);
+    ReflectionTestUtils.setField(hashLookupCsvGenerator, "compareRawDigest", true);
+    ReflectionTestUtils.setField(hashLookupCsvGenerator, "chunkedCsvProcessor", processor);
+    ReflectionTestUtils.setField(hashLookupCsvGenerator, "maskingMetrics", metrics);
+
+    ReflectionTestUtils.setField(loader, "mappedThresholdBytes", -1L);
+    ReflectionTestUtils.setField(loader, "compressedStreams", compressedStreams);
+    ReflectionTestUtils.setField(registry, "lookupTableLoader", loader);
+    ReflectionTestUtils.setField(registry, "maxIndexes", 8);
+
+    CsvColumnValidatorService csvColumnValidatorService = new CsvColumnValidatorService();
+    wire(pipeline, csvColumnValidatorService);
+    ReflectionTestUtils.setField(
+        pipeline, "lookUpFunctionValidator", new LookUpFunctionValidator());
+    ReflectionTestUtils.setField(
+        pipeline, "randomLookupFunctionValidator", new RandomLookupFunctionValidator());
+    ReflectionTestUtils.setField(
+        pipeline, "hashLookupFunctionValidator", new HashLookupFunctionValidator());
+    ReflectionTestUtils.setField(pipeline, "functionPlanCache", new FunctionPlanCache(16));
+    ReflectionTestUtils.setField(pipeline, "lookupTableRegistry", registry);
+
+    wire(multiTable, csvColumnValidatorService);
+    ReflectionTestUtils.setField(multiTable, "maskingPipelineService", pipeline);
+    ReflectionTestUtils.setField(multiTable, "outputDirectory", output.toString());
+  }
+
+  /** Sets the fields the pipeline and the multi-table service have in common. */
+  private void wire(Object service, CsvColumnValidatorService csvColumnValidatorService) {
+    ReflectionTestUtils.setField(service, "csvColumnValidatorService", csvColumnValidatorService);
+    ReflectionTestUtils.setField(service, "csvOutputGenerator", csvOutputGenerator);
+    ReflectionTestUtils.setField(service, "csvProcessorService", csvProcessorService);
+    ReflectionTestUtils.setField(service, "hashLookupCsvGenerator", hashLookupCsvGenerator);
+    ReflectionTestUtils.setField(service, "chunkedCsvProcessor", processor);
+    ReflectionTestUtils.setField(service, "compressedStreams", compressedStreams);
+  }
+}
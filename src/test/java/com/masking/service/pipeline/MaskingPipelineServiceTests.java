@@ -0,0 +1,219 @@
+package com.masking.service.pipeline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.masking.model.CompiledFunction;
+import com.masking.model.hash_lookup.HashLookupPlan;
+import com.masking.model.lookup.LookUpPlan;
+import com.masking.model.pipeline.PipelinePlan;
+import com.masking.model.random_lookup.RandomLookupPlan;
+import com.masking.model.table.ColumnarLookupTable;
+import com.masking.model.table.LookupTable;
+import com.masking.service.common.DataPathException;
+import com.masking.service.common.JobAdmission;
+import com.masking.service.hash_lookup.HashLookupCsvGenerator;
+import com.masking.service.lookup.CsvOutputGenerator;
+import com.masking.service.random_lookup.CsvProcessorService;
+import com.masking.service.table.LookupTableLoader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+class MaskingPipelineServiceTests {
+
+  private static final String SALESMAN_TERRITORY =
+      "LOOKUP(salesman_id, optim_sales(salesman_id, VALUES=(territory)))";
+  // Reads the territory column the LOOKUP above adds
+  private static final String TERRITORY_MANAGER =
+      "LOOKUP(territory, optim_sales(territory, VALUES=(manager_id)))";
+
+  @TempDir Path tmp;
+
+  private final List<String> loadedTables = new ArrayList<>();
+  private CsvOutputGenerator csvOutputGenerator;
+  private CsvProcessorService csvProcessorService;
+  private HashLookupCsvGenerator hashLookupCsvGenerator;
+  private MaskingPipelineService pipeline;
+  private JobAdmission.Permit job;
+
+  @BeforeEach
+  void setUp() {
+    // Counts the lookup files parsed
+    LookupTableLoader loader =
+        new LookupTableLoader() {
+          @Override
+          public LookupTable load(String name, MultipartFile file) throws IOException {
+            loadedTables.add(name);
+            return super.load(name, file);
+          }
+        };
+    MaskingEngines engines = new MaskingEngines(2, 512, loader, tmp);
+    csvOutputGenerator = engines.csvOutputGenerator;
+    csvProcessorService = engines.csvProcessorService;
+    hashLookupCsvGenerator = engines.hashLookupCsvGenerator;
+    pipeline = engines.pipeline;
+    job = engines.admission.admit();
+  }
+
+  @AfterEach
+  void tearDown() {
+    job.close();
+  }
+
+  @Test
+  void eachFunctionSeesTheColumnsTheOneBeforeItProduces() throws IOException {
+    MultipartFile source = fixture("optim_customers");
+    PipelinePlan plan = compile(SALESMAN_TERRITORY, TERRITORY_MANAGER);
+    Map<String, LookupTable> tables =
+        pipeline.resolveTables(plan, List.of(fixture("optim_sales")), job);
+    assertEquals("SUCCESS", pipeline.validateColumns(source, plan, tables).getStatus());
+
+    // The source has no territory, and the first LOOKUP drops salesman_id
+    PipelinePlan reversed = compile(TERRITORY_MANAGER, SALESMAN_TERRITORY);
+    assertEquals(
+        List.of("Function 1 (LOOKUP): Missing source column in CSV: territory"),
+        pipeline.validateColumns(source, reversed, tables).getMessages());
+    PipelinePlan twice = compile(SALESMAN_TERRITORY, SALESMAN_TERRITORY, TERRITORY_MANAGER);
+    assertEquals(
+        List.of("Function 2 (LOOKUP): Missing source column in CSV: salesman_id"),
+        pipeline.validateColumns(source, twice, tables).getMessages());
+  }
+
+  @Test
+  void eachTableIsLoadedOnceWhateverCaseOrSpacingNamesIt() throws IOException {
+    PipelinePlan plan =
+        compile(
+            SALESMAN_TERRITORY,
+            "HASH_LOOKUP(territory, DEST=(region), OPTIM_SALES(territory, values=(last_name)))",
+            "RAND_LOOKUP( Optim_Sales , DEST=(custname), VALUES=(first_name), 1)");
+
+    Map<String, LookupTable> tables =
+        pipeline.resolveTables(plan, List.of(fixture("Optim_Sales", "optim_sales")), job);
+
+    assertEquals(Set.of("optim_sales"), tables.keySet());
+    assertEquals(1, loadedTables.size(), loadedTables.toString());
+    assertNull(pipeline.missingTable(plan, tables));
+    assertThrows(
+        DataPathException.class,
+        () ->
+            pipeline.resolveTables(
+                plan,
+                List.of(fixture("optim_sales"), fixture("OPTIM_SALES", "optim_sales")),
+                job));
+  }
+
+  @Test
+  void errorsArePrefixedWithTheFunctionTheyBelongTo() {
+    CompiledFunction<PipelinePlan> compiled =
+        pipeline.compile(
+            List.of(SALESMAN_TERRITORY, "RAND_LOOKUP()", "HASH_LOOKUP(cust_id)", "MASK(cust_id)"));
+
+    assertEquals("FAILED", compiled.getValidation().getStatus());
+    List<String> messages = compiled.getValidation().getMessages();
+    assertTrue(messages.get(0).startsWith("Function 2 (RAND_LOOKUP): "), messages.toString());
+    assertTrue(
+        messages.stream().anyMatch(message -> message.startsWith("Function 3 (HASH_LOOKUP): ")),
+        messages.toString());
+    assertEquals(
+        "Function 4: Function must start with 'LOOKUP(', 'HASH_LOOKUP(' or 'RAND_LOOKUP('.",
+        messages.get(messages.size() - 1));
+    assertTrue(
+        messages.stream().noneMatch(message -> message.startsWith("Function 1 ")),
+        messages.toString());
+  }
+
+  @Test
+  void pipelineMasksLikeTheThreeEndpointsOneAfterAnother() throws IOException {
+    PipelinePlan plan =
+        compile(
+            SALESMAN_TERRITORY,
+            "HASH_LOOKUP(territory, DEST=(region), optim_sales(territory, values=(last_name)))",
+            "RAND_LOOKUP(masked_names, DEST=(custname), VALUES=(name), 1)");
+    Map<String, LookupTable> tables =
+        new HashMap<>(pipeline.resolveTables(plan, List.of(fixture("optim_sales")), job));
+    // One row, so the random pick is the same in both runs
+    ColumnarLookupTable.Builder names =
+        new ColumnarLookupTable.Builder("masked_names", List.of("name"));
+    names.addRow(new String[] {"Masked Name"});
+    tables.put("masked_names", names.build());
+    byte[] source = Files.readAllBytes(Path.of("csv_files", "optim_customers.csv"));
+
+    ByteArrayOutputStream piped = new ByteArrayOutputStream();
+    pipeline.writeOutputCsv(new ByteArrayInputStream(source), plan, tables, piped);
+
+    List<PipelinePlan.Step> steps = plan.getSteps();
+    LookupTable sales = tables.get("optim_sales");
+    ByteArrayOutputStream lookedUp = new ByteArrayOutputStream();
+    csvOutputGenerator.writeOutputCsv(
+        new ByteArrayInputStream(source), sales, (LookUpPlan) steps.get(0).getPlan(), lookedUp);
+    ByteArrayOutputStream hashed = new ByteArrayOutputStream();
+    hashLookupCsvGenerator.writeOutputCsv(
+        new ByteArrayInputStream(lookedUp.toByteArray()),
+        sales,
+        (HashLookupPlan) steps.get(1).getPlan(),
+        hashed);
+    ByteArrayOutputStream randomized = new ByteArrayOutputStream();
+    csvProcessorService.writeOutputCsv(
+        new ByteArrayInputStream(hashed.toByteArray()),
+        tables.get("masked_names"),
+        (RandomLookupPlan) steps.get(2).getPlan(),
+        randomized);
+
+    // The engines differ in record separators only, so records are compared
+    List<List<String>> expected = records(randomized);
+    assertEquals(21, expected.size());
+    assertEquals("Masked Name", expected.get(1).get(expected.get(0).indexOf("custname")));
+    assertEquals(expected, records(piped));
+  }
+
+  private PipelinePlan compile(String... functions) {
+    CompiledFunction<PipelinePlan> compiled = pipeline.compile(List.of(functions));
+    assertTrue(compiled.isValid(), String.valueOf(compiled.getValidation().getMessages()));
+    return compiled.getPlan();
+  }
+
+  private static List<List<String>> records(ByteArrayOutputStream csv) throws IOException {
+    List<List<String>> records = new ArrayList<>();
+    try (CSVParser parser =
+        CSVFormat.DEFAULT.parse(new StringReader(csv.toString(StandardCharsets.UTF_8)))) {
+      for (CSVRecord record : parser) {
+        records.add(record.toList());
+      }
+    }
+    return records;
+  }
+
+  private static MultipartFile fixture(String table) throws IOException {
+    return fixture(table, table);
+  }
+
+  /** The {@code csv_files} fixture of {@code table}, uploaded as {@code <name>.csv}. */
+  private static MultipartFile fixture(String name, String table) throws IOException {
+    return new MockMultipartFile(
+        name,
+        name + ".csv",
+        "text/csv",
+        Files.readAllBytes(Path.of("csv_files", table + ".csv")));
+  }
+}
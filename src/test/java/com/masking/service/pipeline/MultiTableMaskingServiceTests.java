@@ -0,0 +1,232 @@
+package com.masking.service.pipeline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.masking.component.ValidationResponse;
+import com.masking.model.CompiledFunction;
+import com.masking.model.pipeline.MultiTablePlan;
+import com.masking.model.table.LookupTable;
+import com.masking.service.table.LookupTableLoader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+/** Masks the Optim extracts under {@code csv_files} with key functions shared across tables. */
+class MultiTableMaskingServiceTests {
+
+  private static final Path FIXTURES = Path.of("csv_files");
+
+  // A salesman id and the columns referring to it, one of them named with its table
+  private static final String SALESMAN =
+      "salesman_id,manager_id,optim_orders.order_salesman="
+          + "LOOKUP(salesman_id, optim_sales(salesman_id, VALUES=(email_address)))";
+  private static final String CUSTOMER =
+      "HASH_LOOKUP(cust_id, DEST=(cust_id), optim_customers(cust_id, values=(email_address)))";
+  private static final String ITEM =
+      "RAND_LOOKUP(optim_items, DEST=(item_id), VALUES=(item_description), 1)";
+
+  @TempDir Path tmp;
+
+  private MultiTableMaskingService service;
+  private Map<String, LookupTable> tables;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    // Small chunks on several threads, so the tables' chunks map keys concurrently
+    MaskingEngines engines =
+        new MaskingEngines(4, 128, new LookupTableLoader(), tmp.resolve("multi_table"));
+    service = engines.multiTable;
+    tables = new HashMap<>();
+    for (String table : List.of("optim_sales", "optim_customers", "optim_items")) {
+      tables.put(table, engines.loader.load(table, upload(table)));
+    }
+  }
+
+  @Test
+  void sameKeyIsMaskedAlikeInEveryTableAndColumn() throws IOException {
+    Path output =
+        mask(
+            List.of(SALESMAN, CUSTOMER, ITEM),
+            "optim_customers",
+            "optim_orders",
+            "optim_sales",
+            "optim_details",
+            "optim_items");
+
+    Map<String, String> salesmen =
+        maskedKeys(
+            output,
+            "optim_customers.salesman_id",
+            "optim_sales.salesman_id",
+            "optim_sales.manager_id",
+            "optim_orders.order_salesman");
+    assertEquals("john.smith@optim.com", salesmen.get("SM0001"));
+    Map<String, String> customers =
+        maskedKeys(output, "optim_customers.cust_id", "optim_orders.cust_id");
+    assertNotEquals("C0001", customers.get("C0001"));
+    maskedKeys(output, "optim_details.item_id", "optim_items.item_id");
+
+    // Columns no function names pass through
+    assertEquals(
+        column(fixture("optim_details"), "item_quantity"),
+        column(output.resolve("optim_details.csv"), "item_quantity"));
+  }
+
+  @Test
+  void eachDistinctKeyIsMappedOnce() throws IOException {
+    ValidationResponse response =
+        maskResponse(
+            List.of(SALESMAN, CUSTOMER, ITEM),
+            "optim_customers",
+            "optim_orders",
+            "optim_sales",
+            "optim_details",
+            "optim_items");
+    Path output = Path.of(response.getMessages().get(0).split(": ")[1]);
+
+    int salesmen =
+        maskedKeys(
+                output,
+                "optim_customers.salesman_id",
+                "optim_sales.salesman_id",
+                "optim_sales.manager_id",
+                "optim_orders.order_salesman")
+            .size();
+    int customers = maskedKeys(output, "optim_customers.cust_id", "optim_orders.cust_id").size();
+    int items = maskedKeys(output, "optim_details.item_id", "optim_items.item_id").size();
+    List<String> messages = response.getMessages();
+    assertTrue(
+        messages.contains("Function 1 (LOOKUP): " + salesmen + " distinct keys mapped"),
+        messages.toString());
+    assertTrue(
+        messages.contains("Function 2 (HASH_LOOKUP): " + customers + " distinct keys mapped"),
+        messages.toString());
+    assertTrue(
+        messages.contains("Function 3 (RAND_LOOKUP): " + items + " distinct keys mapped"),
+        messages.toString());
+  }
+
+  @Test
+  void columnNamedByTwoFunctionsIsRejected() throws IOException {
+    String phone =
+        "HASH_LOOKUP(salesman_id, DEST=(salesman_id),"
+            + " optim_sales(salesman_id, values=(phone_number)))";
+    CompiledFunction<MultiTablePlan> compiled = service.compile(List.of(SALESMAN, phone));
+    assertTrue(compiled.isValid());
+
+    ValidationResponse response =
+        service.mask(sources("optim_customers", "optim_sales"), compiled.getPlan(), tables);
+
+    assertEquals("FAILED", response.getStatus());
+    String twice = "Function 2 (HASH_LOOKUP): Column optim_customers.salesman_id is masked twice.";
+    assertTrue(response.getMessages().contains(twice), response.getMessages().toString());
+    assertFalse(Files.exists(tmp.resolve("multi_table")), "a rejected job wrote output");
+  }
+
+  @Test
+  void hashKeyNamingAMissingLookupColumnIsRejected() throws IOException {
+    String misspelled =
+        "HASH_LOOKUP(cust_id, DEST=(cust_id), optim_customers(cust_id, values=(email_adress)))";
+    CompiledFunction<MultiTablePlan> compiled = service.compile(List.of(misspelled));
+    assertTrue(compiled.isValid());
+
+    ValidationResponse response =
+        service.mask(sources("optim_customers", "optim_orders"), compiled.getPlan(), tables);
+
+    assertEquals("FAILED", response.getStatus());
+    String missing = "Function 1 (HASH_LOOKUP): Missing lookup value column in lookup CSV: ";
+    assertEquals(List.of(missing + "email_adress"), response.getMessages());
+    assertFalse(Files.exists(tmp.resolve("multi_table")), "a rejected job wrote output");
+  }
+
+  @Test
+  void randomKeyKeepsItsFirstValueAcrossConcurrentTables() throws IOException {
+    // Each run draws new random values; the tables race to map the same items first
+    for (int run = 0; run < 5; run++) {
+      Path output = mask(List.of(ITEM), "optim_details", "optim_items");
+      maskedKeys(output, "optim_details.item_id", "optim_items.item_id");
+    }
+  }
+
+  private Path mask(List<String> functions, String... sourceTables) throws IOException {
+    ValidationResponse response = maskResponse(functions, sourceTables);
+    return Path.of(response.getMessages().get(0).split(": ")[1]);
+  }
+
+  private ValidationResponse maskResponse(List<String> functions, String... sourceTables)
+      throws IOException {
+    CompiledFunction<MultiTablePlan> compiled = service.compile(functions);
+    assertTrue(compiled.isValid(), String.valueOf(compiled.getValidation().getMessages()));
+    ValidationResponse response = service.mask(sources(sourceTables), compiled.getPlan(), tables);
+    assertEquals("SUCCESS", response.getStatus(), String.valueOf(response.getMessages()));
+    return response;
+  }
+
+  /**
+   * Pairs each key in the {@code table.column}s with its masked value, checking that a key is
+   * masked to the same value wherever it appears.
+   */
+  private static Map<String, String> maskedKeys(Path output, String... tableColumns)
+      throws IOException {
+    Map<String, String> masked = new HashMap<>();
+    for (String tableColumn : tableColumns) {
+      String table = tableColumn.substring(0, tableColumn.indexOf('.'));
+      String column = tableColumn.substring(tableColumn.indexOf('.') + 1);
+      List<String> keys = column(fixture(table), column);
+      List<String> values = column(output.resolve(table + ".csv"), column);
+      assertEquals(keys.size(), values.size(), tableColumn);
+      for (int row = 0; row < keys.size(); row++) {
+        String first = masked.putIfAbsent(keys.get(row), values.get(row));
+        if (first != null) {
+          assertEquals(first, values.get(row), tableColumn + " key " + keys.get(row));
+        }
+      }
+    }
+    return masked;
+  }
+
+  private static List<String> column(Path csv, String column) throws IOException {
+    try (Reader reader = Files.newBufferedReader(csv);
+        CSVParser parser =
+            CSVFormat.DEFAULT
+                .builder()
+                .setHeader()
+                .setSkipHeaderRecord(true)
+                .build()
+                .parse(reader)) {
+      return parser.getRecords().stream().map(record -> record.get(column)).toList();
+    }
+  }
+
+  private static List<MultipartFile> sources(String... tables) throws IOException {
+    List<MultipartFile> sources = new ArrayList<>();
+    for (String table : tables) {
+      sources.add(upload(table));
+    }
+    return sources;
+  }
+
+  private static MultipartFile upload(String table) throws IOException {
+    return new MockMultipartFile(
+        table, table + ".csv", "text/csv", Files.readAllBytes(fixture(table)));
+  }
+
+  private static Path fixture(String table) {
+    return FIXTURES.resolve(table + ".csv");
+  }
+}
@@ -0,0 +1,78 @@
+package com.masking.service.table;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.masking.model.table.LookupTable;
+import com.masking.model.table.LookupTableStorage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class LookupTableLoaderTests {
+
+  // Quoted delimiters and line breaks, escaped quotes, CRLF endings, empty lines and a short row
+  private static final String LOOKUP =
+      "ID,\"FULL, NAME\",NOTE\r\n"
+          + "1,\"Doe, Jane\",\"first line\nsecond line\"\r\n"
+          + "2,\"say \"\"hi\"\"\",12\" ruler\n"
+          + "\n"
+          + "3,Zoë,\n"
+          + "4,short\n"
+          + "5,\"\",\" padded \"";
+
+  @TempDir Path tmp;
+
+  @Test
+  void lookupCsvLoadsAsCommonsCsvReadsIt() throws IOException {
+    List<List<String>> expected = new ArrayList<>();
+    List<String> headers;
+    try (CSVParser parser =
+        CSVFormat.DEFAULT
+            .builder()
+            .setHeader()
+            .setSkipHeaderRecord(true)
+            .build()
+            .parse(new StringReader(LOOKUP))) {
+      headers = parser.getHeaderNames();
+      for (CSVRecord record : parser) {
+        expected.add(record.toList());
+      }
+    }
+
+    LookupTableLoader loader = new LookupTableLoader();
+    ReflectionTestUtils.setField(loader, "mappedDir", tmp.toString());
+    for (LookupTableStorage storage : LookupTableStorage.values()) {
+      LookupTable table = loader.load("people", source(), storage);
+      assertEquals(headers, table.getHeaders(), storage.name());
+      assertEquals(expected, rows(table, expected), storage.name());
+    }
+  }
+
+  private static ByteArrayInputStream source() {
+    return new ByteArrayInputStream(LOOKUP.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /** The rows of {@code table}, each cut to the length of the matching {@code expected} row. */
+  private static List<List<String>> rows(LookupTable table, List<List<String>> expected) {
+    List<List<String>> rows = new ArrayList<>();
+    for (int row = 0; row < table.getRowCount(); row++) {
+      List<String> values = new ArrayList<>();
+      int size = row < expected.size() ? expected.get(row).size() : table.getHeaders().size();
+      for (int column = 0; column < size; column++) {
+        values.add(table.getValue(row, column));
+      }
+      rows.add(values);
+    }
+    return rows;
+  }
+}
@@ -0,0 +1,169 @@
+package com.masking.service.table;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.masking.model.table.ColumnarLookupTable;
+import com.masking.model.table.KeyIndex;
+import com.masking.model.table.LookupTable;
+import com.masking.model.table.MappedLookupTable;
+import com.masking.service.common.CompressedStreams;
+import com.masking.service.common.JobAdmission;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class LookupTableRegistryTests {
+
+  @TempDir Path tmp;
+
+  private LookupTableRegistry registry;
+  private JobAdmission admission;
+  private LookupTable table;
+
+  @BeforeEach
+  void setUp() {
+    // Every upload is stored MAPPED under tmp
+    LookupTableLoader loader = new LookupTableLoader();
+    ReflectionTestUtils.setField(loader, "mappedThresholdBytes", 0L);
+    ReflectionTestUtils.setField(loader, "mappedDir", tmp.toString());
+    ReflectionTestUtils.setField(loader, "compressedStreams", new CompressedStreams());
+    registry = new LookupTableRegistry();
+    ReflectionTestUtils.setField(registry, "lookupTableLoader", loader);
+    ReflectionTestUtils.setField(registry, "maxIndexes", 8);
+    admission = new JobAdmission();
+    ReflectionTestUtils.setField(admission, "maxConcurrent", 2);
+    ReflectionTestUtils.setField(admission, "meterRegistry", new SimpleMeterRegistry());
+    ReflectionTestUtils.invokeMethod(admission, "init");
+    table = sales();
+  }
+
+  @Test
+  void indexesThatWouldOverrunTheBudgetAreBuiltButNotKept() {
+    long tableBytes = table.estimatedBytes();
+    long indexBytes = index(sales(), "probe").estimatedBytes();
+    ReflectionTestUtils.setField(registry, "maxBytes", tableBytes + indexBytes * 5 / 2);
+    registry.register(table);
+
+    // A new hash seed per request: only the first two fit
+    for (int seed = 0; seed < 6; seed++) {
+      KeyIndex<String> index = index(table, "seed " + seed);
+      assertEquals(7, index.find("id7"), "an index must work whether it is kept or not");
+    }
+    assertEquals(2, table.getIndexCount());
+    assertTrue(registry.totalBytes() <= tableBytes + indexBytes * 5 / 2);
+    assertSame(index(table, "seed 0"), index(table, "seed 0"));
+  }
+
+  @Test
+  void eachTableKeepsItsMostRecentlyUsedIndexes() {
+    ReflectionTestUtils.setField(registry, "maxIndexes", 3);
+    registry.register(table);
+
+    KeyIndex<String> first = index(table, "seed 0");
+    KeyIndex<String> second = index(table, "seed 1");
+    index(table, "seed 2");
+    // Using the first index again leaves the second and third as the least recently used
+    assertSame(first, index(table, "seed 0"));
+    index(table, "seed 3");
+    index(table, "seed 4");
+
+    assertEquals(3, table.getIndexCount());
+    assertSame(first, index(table, "seed 0"));
+    assertNotSame(second, index(table, "seed 1"));
+  }
+
+  @Test
+  void evictedTablesAreNoLongerCharged() {
+    ReflectionTestUtils.setField(registry, "maxBytes", table.estimatedBytes());
+    registry.register(table);
+    index(table, "before");
+    assertEquals(0, table.getIndexCount());
+
+    registry.evict("SALES");
+    index(table, "after");
+    assertEquals(1, table.getIndexCount());
+    assertEquals(0, registry.totalBytes());
+  }
+
+  @Test
+  void evictedTableIsClosedOnceTheJobsUsingItAreDone() throws IOException {
+    LookupTable mapped = mapped("sales");
+    registry.register(mapped);
+    JobAdmission.Permit job = admission.admit();
+    assertSame(mapped, registry.resolve("Sales", null, false, job));
+    index(mapped, "id");
+
+    registry.evict("sales");
+    assertThrows(IllegalStateException.class, mapped::lease);
+    assertEquals(1, mapped.getIndexCount(), "closed while a job still uses it");
+    // A streamed response carries the job's lease on
+    JobAdmission.Permit stream = job.handOff();
+    job.close();
+    assertEquals(1, mapped.getIndexCount(), "closed while a job still uses it");
+
+    stream.close();
+    assertEquals(0, mapped.getIndexCount());
+  }
+
+  @Test
+  void replacedTableAndUncachedUploadsAreClosedWithTheirJob() throws IOException {
+    LookupTable old = mapped("sales");
+    registry.register(old);
+    index(old, "id");
+    LookupTable uploaded;
+    LookupTable cached;
+    try (JobAdmission.Permit job = admission.admit()) {
+      uploaded = registry.resolve("sales", upload(), false, job);
+      index(uploaded, "id");
+      cached = registry.resolve("sales", upload(), true, job);
+      index(cached, "id");
+      // Nobody leased the table the cached upload replaced
+      assertEquals(0, old.getIndexCount());
+      assertEquals(1, uploaded.getIndexCount());
+    }
+
+    assertEquals(0, uploaded.getIndexCount());
+    assertEquals(1, cached.getIndexCount(), "a registered table was closed");
+    assertSame(cached, registry.get("sales"));
+  }
+
+  private LookupTable mapped(String name) throws IOException {
+    try (MappedLookupTable.Builder builder =
+        new MappedLookupTable.Builder(name, List.of("ID", "NAME"), tmp)) {
+      builder.addRow(new String[] {"id1", "name 1"});
+      return builder.build();
+    }
+  }
+
+  private static MockMultipartFile upload() {
+    return new MockMultipartFile(
+        "lookupCsvPath",
+        "sales.csv",
+        "text/csv",
+        "ID,NAME\nid1,name 1\n".getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static LookupTable sales() {
+    ColumnarLookupTable.Builder builder =
+        new ColumnarLookupTable.Builder("sales", List.of("ID", "NAME"));
+    for (int row = 0; row < 1000; row++) {
+      builder.addRow(new String[] {"id" + row, "name " + row});
+    }
+    return builder.build();
+  }
+
+  private static KeyIndex<String> index(LookupTable table, String key) {
+    return table.keyIndex(key, row -> table.getValue(row, 0), true, 32);
+  }
+}
@@ -0,0 +1,42 @@
+package com.masking.service.common;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Compares {@link ByteVector#SPECIES_PREFERRED} bytes at a time against the structural bytes and
+ * finishes the last partial vector with the scalar loop. Only built with the {@code vector} Maven
+ * profile, and only loaded by {@link CsvScanner#vector()} once the incubator module is known to be
+ * present.
+ */
+final class VectorCsvScanner implements CsvScanner {
+
+  private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+  @Override
+  public int indexOfQuote(byte[] data, int from, int to) {
+    int i = from;
+    for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+      VectorMask<Byte> quotes = ByteVector.fromArray(SPECIES, data, i).eq((byte) '"');
+      if (quotes.anyTrue()) {
+        return i + quotes.firstTrue();
+      }
+    }
+    return ScalarCsvScanner.INSTANCE.indexOfQuote(data, i, to);
+  }
+
+  @Override
+  public int indexOfDelimiter(byte[] data, int from, int to) {
+    int i = from;
+    for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+      ByteVector bytes = ByteVector.fromArray(SPECIES, data, i);
+      VectorMask<Byte> delimiters =
+          bytes.eq((byte) ',').or(bytes.eq((byte) '\n')).or(bytes.eq((byte) '\r'));
+      if (delimiters.anyTrue()) {
+        return i + delimiters.firstTrue();
+      }
+    }
+    return ScalarCsvScanner.INSTANCE.indexOfDelimiter(data, i, to);
+  }
+}